@@ -0,0 +1,187 @@
+package com.databasepreservation.visualization.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.databasepreservation.model.data.Cell;
+import com.databasepreservation.model.data.NullCell;
+import com.databasepreservation.model.data.Row;
+import com.databasepreservation.model.data.SimpleCell;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerColumn;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerDatabase;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerMetadata;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerSchema;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerTable;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerType;
+import com.databasepreservation.visualization.shared.ViewerSafeConstants;
+import com.databasepreservation.visualization.utils.SolrUtils;
+
+/**
+ * Builds the tables, rows and database metadata used by the benchmarks. The
+ * data is generated from a fixed seed, so every run uses the same values.
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+final class BenchmarkData {
+  private static final long SEED = 42;
+
+  /**
+   * The kinds of cells found in SIARD tables (binary cells are not included,
+   * converting them copies the blob to disk)
+   */
+  enum CellKind {
+    STRING(ViewerType.dbTypes.STRING, "CHARACTER VARYING(250)", ViewerSafeConstants.SOLR_DYN_TEXT_GENERAL),
+    INTEGER(ViewerType.dbTypes.NUMERIC_INTEGER, "INTEGER", ViewerSafeConstants.SOLR_DYN_TLONG),
+    DECIMAL(ViewerType.dbTypes.NUMERIC_FLOATING_POINT, "DECIMAL(12,2)", ViewerSafeConstants.SOLR_DYN_TDOUBLE),
+    DATE(ViewerType.dbTypes.DATETIME, "DATE", ViewerSafeConstants.SOLR_DYN_TDATE),
+    TIMESTAMP(ViewerType.dbTypes.DATETIME, "TIMESTAMP", ViewerSafeConstants.SOLR_DYN_TDATE),
+    BOOLEAN(ViewerType.dbTypes.BOOLEAN, "BOOLEAN", ViewerSafeConstants.SOLR_DYN_BOOLEAN),
+    NULL(ViewerType.dbTypes.STRING, "CHARACTER VARYING(250)", ViewerSafeConstants.SOLR_DYN_TEXT_GENERAL);
+
+    private final ViewerType.dbTypes dbType;
+    private final String typeName;
+    private final String solrSuffix;
+
+    CellKind(ViewerType.dbTypes dbType, String typeName, String solrSuffix) {
+      this.dbType = dbType;
+      this.typeName = typeName;
+      this.solrSuffix = solrSuffix;
+    }
+  }
+
+  private static final String[] WORDS = {"lorem", "ipsum", "dolor", "sit", "amet", "consectetur", "adipiscing",
+    "elit", "sed", "do", "eiusmod", "tempor", "incididunt", "ut", "labore", "et", "dolore", "magna", "aliqua"};
+
+  private BenchmarkData() {
+  }
+
+  /**
+   * @return a table with the specified number of columns, all of the same
+   *         kind, or one of each kind (cycling) if kind is null
+   */
+  static ViewerTable createTable(String name, int columnCount, CellKind kind) {
+    ViewerTable table = new ViewerTable();
+    table.setUuid(SolrUtils.randomUUID());
+    table.setName(name);
+    table.setDescription("Table " + name);
+    table.setSchemaName("public");
+
+    List<ViewerColumn> columns = new ArrayList<>();
+    for (int i = 0; i < columnCount; i++) {
+      CellKind columnKind = getKind(kind, i);
+
+      ViewerType type = new ViewerType();
+      type.setDbType(columnKind.dbType);
+      type.setTypeName(columnKind.typeName);
+      type.setOriginalTypeName(columnKind.typeName);
+
+      ViewerColumn column = new ViewerColumn();
+      column.setSolrName(ViewerSafeConstants.SOLR_INDEX_ROW_COLUMN_NAME_PREFIX + i + columnKind.solrSuffix);
+      column.setDisplayName("column_" + i);
+      column.setDescription("Column " + i + " of " + name);
+      column.setType(type);
+      column.setNillable(true);
+      column.setColumnIndexInEnclosingTable(i);
+      columns.add(column);
+    }
+    table.setColumns(columns);
+    return table;
+  }
+
+  /**
+   * @return toolkit rows matching the columns of a table created with the same
+   *         kind
+   */
+  static List<Row> createRows(ViewerTable table, CellKind kind, int rowCount) {
+    Random random = new Random(SEED);
+    List<Row> rows = new ArrayList<>(rowCount);
+    for (int r = 0; r < rowCount; r++) {
+      List<Cell> cells = new ArrayList<>();
+      for (int c = 0; c < table.getColumns().size(); c++) {
+        String id = "r" + r + "c" + c;
+        CellKind columnKind = getKind(kind, c);
+        if (columnKind == CellKind.NULL) {
+          cells.add(new NullCell(id));
+        } else {
+          cells.add(new SimpleCell(id, randomValue(random, columnKind)));
+        }
+      }
+      rows.add(new Row(r, cells));
+    }
+    return rows;
+  }
+
+  /**
+   * @return a database with the specified number of schemas, tables and
+   *         columns, similar to the metadata of a large SIARD archive
+   */
+  static ViewerDatabase createDatabase(int schemaCount, int tablesPerSchema, int columnsPerTable) {
+    List<ViewerSchema> schemas = new ArrayList<>();
+    for (int s = 0; s < schemaCount; s++) {
+      ViewerSchema schema = new ViewerSchema();
+      schema.setUUID(SolrUtils.randomUUID());
+      schema.setName("schema_" + s);
+      schema.setDescription("Schema " + s);
+
+      List<ViewerTable> tables = new ArrayList<>();
+      for (int t = 0; t < tablesPerSchema; t++) {
+        ViewerTable table = createTable("table_" + s + "_" + t, columnsPerTable, null);
+        table.setSchemaUUID(schema.getUUID());
+        table.setSchemaName(schema.getName());
+        table.setCountRows(t * 1000L);
+        tables.add(table);
+      }
+      schema.setTables(tables);
+      schemas.add(schema);
+    }
+
+    ViewerMetadata metadata = new ViewerMetadata();
+    metadata.setName("benchmark");
+    metadata.setDescription("Generated database with " + schemaCount * tablesPerSchema + " tables");
+    metadata.setArchivalDate("2016-01-01T00:00:00.000Z");
+    metadata.setArchiver("dbvtk-benchmarks");
+    metadata.setDatabaseProduct("PostgreSQL 9.5");
+    metadata.setSchemas(schemas);
+
+    ViewerDatabase database = new ViewerDatabase();
+    database.setUuid(SolrUtils.randomUUID());
+    database.setMetadata(metadata);
+    return database;
+  }
+
+  /**
+   * @return the kind of the column, or one of each kind (cycling) if kind is
+   *         null
+   */
+  private static CellKind getKind(CellKind kind, int columnIndex) {
+    return kind != null ? kind : CellKind.values()[columnIndex % CellKind.values().length];
+  }
+
+  private static String randomValue(Random random, CellKind kind) {
+    switch (kind) {
+      case INTEGER:
+        return Integer.toString(random.nextInt(1000000));
+      case DECIMAL:
+        return String.format("%d.%02d", random.nextInt(100000), random.nextInt(100));
+      case DATE:
+        return String.format("%04d-%02d-%02d", 1990 + random.nextInt(30), 1 + random.nextInt(12),
+          1 + random.nextInt(28));
+      case TIMESTAMP:
+        return String.format("%04d-%02d-%02dT%02d:%02d:%02d.000Z", 1990 + random.nextInt(30),
+          1 + random.nextInt(12), 1 + random.nextInt(28), random.nextInt(24), random.nextInt(60), random.nextInt(60));
+      case BOOLEAN:
+        return Boolean.toString(random.nextBoolean());
+      default:
+        StringBuilder text = new StringBuilder();
+        int words = 1 + random.nextInt(12);
+        for (int i = 0; i < words; i++) {
+          if (i > 0) {
+            text.append(' ');
+          }
+          text.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return text.toString();
+    }
+  }
+}
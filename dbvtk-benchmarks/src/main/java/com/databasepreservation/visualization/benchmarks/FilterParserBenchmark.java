@@ -0,0 +1,92 @@
+package com.databasepreservation.visualization.benchmarks;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.roda.core.data.adapter.filter.BasicSearchFilterParameter;
+import org.roda.core.data.adapter.filter.DateIntervalFilterParameter;
+import org.roda.core.data.adapter.filter.EmptyKeyFilterParameter;
+import org.roda.core.data.adapter.filter.Filter;
+import org.roda.core.data.adapter.filter.FilterParameter;
+import org.roda.core.data.adapter.filter.LongRangeFilterParameter;
+import org.roda.core.data.adapter.filter.OneOfManyFilterParameter;
+import org.roda.core.data.adapter.filter.SimpleFilterParameter;
+import org.roda.core.data.exceptions.RequestNotValidException;
+
+import com.databasepreservation.visualization.shared.ViewerSafeConstants;
+import com.databasepreservation.visualization.utils.SolrUtils;
+
+/**
+ * Conversion of the filters built by the viewer to Solr queries
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FilterParserBenchmark {
+  /**
+   * <ul>
+   * <li>default: the filter used when a table is opened</li>
+   * <li>search: a basic search, typed in the search box</li>
+   * <li>advanced: an advanced search on several columns of different types</li>
+   * <li>relation: the filter used to follow a foreign key with a composite key
+   * </li>
+   * <li>oneOfMany: a selection of facet values</li>
+   * </ul>
+   */
+  @Param({"default", "search", "advanced", "relation", "oneOfMany"})
+  public String filterType;
+
+  private Filter filter;
+
+  @Setup
+  public void setup() {
+    switch (filterType) {
+      case "default":
+        filter = ViewerSafeConstants.DEFAULT_FILTER;
+        break;
+      case "search":
+        filter = new Filter(new BasicSearchFilterParameter(ViewerSafeConstants.SOLR_ROW_SEARCH, "lorem ipsum dolor"));
+        break;
+      case "advanced":
+        filter = new Filter(Arrays.<FilterParameter> asList(new BasicSearchFilterParameter("col0_t", "consectetur"),
+          new LongRangeFilterParameter("col1_tl", 1000L, 50000L), new DateIntervalFilterParameter("col3_tdt",
+            "col3_tdt", new Date(631152000000L), new Date(946684800000L)), new SimpleFilterParameter("col5_b",
+            "true")));
+        break;
+      case "relation":
+        filter = new Filter(Arrays.<FilterParameter> asList(new SimpleFilterParameter("col0_tl", "123456"),
+          new SimpleFilterParameter("col1_t", "lorem ipsum"), new EmptyKeyFilterParameter("col2_tl")));
+        break;
+      case "oneOfMany":
+        List<String> values = Arrays.asList("lorem", "ipsum", "dolor", "sit", "amet", "consectetur", "adipiscing",
+          "elit");
+        filter = new Filter(new OneOfManyFilterParameter("col4_s", values));
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown filter type: " + filterType);
+    }
+  }
+
+  @Benchmark
+  public String parseFilter() throws RequestNotValidException {
+    return SolrUtils.parseFilter(filter);
+  }
+}
@@ -0,0 +1,69 @@
+package com.databasepreservation.visualization.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerMetadata;
+import com.databasepreservation.visualization.exceptions.ViewerException;
+import com.databasepreservation.visualization.transformers.JsonTransformer;
+
+/**
+ * Serialization of database metadata to JSON (done when a database is
+ * ingested) and back (done when the metadata is not cached), for catalogs from
+ * a few tables to thousands of tables
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MetadataJsonBenchmark {
+  /**
+   * schemas x tables per schema
+   */
+  @Param({"1x10", "5x100", "10x500"})
+  public String catalogSize;
+
+  @Param({"20"})
+  public int columnsPerTable;
+
+  private ViewerMetadata metadata;
+  private String json;
+
+  @Setup
+  public void setup() throws ViewerException {
+    String[] size = catalogSize.split("x");
+    metadata = BenchmarkData.createDatabase(Integer.parseInt(size[0]), Integer.parseInt(size[1]), columnsPerTable)
+      .getMetadata();
+    json = JsonTransformer.getJsonFromObject(metadata);
+  }
+
+  @Benchmark
+  public String toJson() throws ViewerException {
+    return JsonTransformer.getJsonFromObject(metadata);
+  }
+
+  @Benchmark
+  public ViewerMetadata fromJson() throws ViewerException {
+    return JsonTransformer.getObjectFromJson(json, ViewerMetadata.class);
+  }
+
+  @Benchmark
+  public ViewerMetadata roundTrip() throws ViewerException {
+    return JsonTransformer.getObjectFromJson(JsonTransformer.getJsonFromObject(metadata), ViewerMetadata.class);
+  }
+}
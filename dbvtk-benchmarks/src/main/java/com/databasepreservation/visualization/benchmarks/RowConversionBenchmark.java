@@ -0,0 +1,114 @@
+package com.databasepreservation.visualization.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrInputDocument;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.databasepreservation.model.data.Row;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerRow;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerTable;
+import com.databasepreservation.visualization.exceptions.ViewerException;
+import com.databasepreservation.visualization.transformers.SolrTransformer;
+import com.databasepreservation.visualization.transformers.ToolkitStructure2ViewerStructure;
+
+/**
+ * Row conversions done for every row during ingest (toolkit row to viewer row
+ * to Solr document) and for every row shown or exported (Solr document to
+ * viewer row), by kind of cell.
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RowConversionBenchmark {
+  private static final String MIXED = "MIXED";
+  // power of two, so the next row index is a mask away
+  private static final int ROWS = 1024;
+
+  @Param({MIXED, "STRING", "INTEGER", "DECIMAL", "DATE", "TIMESTAMP", "BOOLEAN", "NULL"})
+  public String cellKind;
+
+  @Param({"20"})
+  public int columns;
+
+  private ViewerTable table;
+  private List<Row> rows;
+  private List<ViewerRow> viewerRows;
+  private List<SolrDocument> documents;
+  private int next = 0;
+
+  @Setup
+  public void setup() throws ViewerException {
+    BenchmarkData.CellKind kind = MIXED.equals(cellKind) ? null : BenchmarkData.CellKind.valueOf(cellKind);
+    table = BenchmarkData.createTable("benchmark", columns, kind);
+    rows = BenchmarkData.createRows(table, kind, ROWS);
+
+    viewerRows = new ArrayList<>(ROWS);
+    documents = new ArrayList<>(ROWS);
+    for (int i = 0; i < ROWS; i++) {
+      ViewerRow viewerRow = ToolkitStructure2ViewerStructure.getRow(table, rows.get(i), i);
+      viewerRows.add(viewerRow);
+      documents.add(toSolrDocument(SolrTransformer.fromRow(table, viewerRow)));
+    }
+  }
+
+  @Benchmark
+  public ViewerRow getRow() throws ViewerException {
+    int index = nextIndex();
+    return ToolkitStructure2ViewerStructure.getRow(table, rows.get(index), index);
+  }
+
+  @Benchmark
+  public SolrInputDocument fromRow() throws ViewerException {
+    return SolrTransformer.fromRow(table, viewerRows.get(nextIndex()));
+  }
+
+  @Benchmark
+  public ViewerRow toRow() {
+    return SolrTransformer.toRow(documents.get(nextIndex()));
+  }
+
+  /**
+   * Ingest path, as done by SolrManager.addRow for each row read from SIARD
+   */
+  @Benchmark
+  public SolrInputDocument getRowAndFromRow() throws ViewerException {
+    int index = nextIndex();
+    return SolrTransformer.fromRow(table, ToolkitStructure2ViewerStructure.getRow(table, rows.get(index), index));
+  }
+
+  private int nextIndex() {
+    next = (next + 1) & (ROWS - 1);
+    return next;
+  }
+
+  /**
+   * @return the document as it would be returned by Solr (all values are kept
+   *         as strings)
+   */
+  private static SolrDocument toSolrDocument(SolrInputDocument input) {
+    SolrDocument doc = new SolrDocument();
+    for (String name : input.getFieldNames()) {
+      doc.setField(name, input.getFieldValue(name));
+    }
+    return doc;
+  }
+}
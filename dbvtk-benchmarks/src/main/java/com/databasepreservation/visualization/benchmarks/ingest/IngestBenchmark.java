@@ -0,0 +1,196 @@
+package com.databasepreservation.visualization.benchmarks.ingest;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import com.databasepreservation.model.data.Row;
+import com.databasepreservation.model.structure.TableStructure;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerDatabaseFromToolkit;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerRow;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerTable;
+import com.databasepreservation.visualization.exceptions.ViewerException;
+import com.databasepreservation.visualization.transformers.SolrTransformer;
+import com.databasepreservation.visualization.transformers.ToolkitStructure2ViewerStructure;
+import com.databasepreservation.visualization.utils.IndexBackend;
+import com.databasepreservation.visualization.utils.IndexBackends;
+
+/**
+ * Ingests a synthetic database the same way a SIARD archive is ingested
+ * (ToolkitStructure2ViewerStructure and the index backend) and reports the
+ * throughput, the time spent in garbage collection and the peak heap usage.
+ *
+ * Usage: java -cp benchmarks.jar
+ * com.databasepreservation.visualization.benchmarks.ingest.IngestBenchmark
+ * [solr url | --no-solr]
+ *
+ * The Solr URL defaults to http://127.0.0.1:8983/solr, and Solr must be running
+ * in SolrCloud mode with the dbvtk configsets uploaded, as for the viewer. The
+ * index is configured with the usual dbvtk.index.backend and dbvtk.solr.*
+ * system properties (see IndexBackends), and the database with the
+ * dbvtk.bench.* system properties (see SyntheticDatabaseSettings). With --no-solr, rows are converted to Solr
+ * documents but not sent anywhere, which measures the conversion alone.
+ *
+ * Binary cells are copied to the viewer user directory, as in a real ingest.
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+public class IngestBenchmark {
+  private static final String DEFAULT_SOLR_URL = "http://127.0.0.1:8983/solr";
+  private static final String NO_SOLR = "--no-solr";
+  private static final long PROGRESS_INTERVAL = TimeUnit.SECONDS.toNanos(10);
+
+  private final SyntheticDatabaseGenerator generator;
+  private final IndexBackend indexBackend;
+
+  private long rows = 0;
+  private long bytes = 0;
+  private String databaseUUID = null;
+
+  public IngestBenchmark(SyntheticDatabaseGenerator generator, IndexBackend indexBackend) {
+    this.generator = generator;
+    this.indexBackend = indexBackend;
+  }
+
+  public static void main(String[] args) throws ViewerException {
+    String url = args.length > 0 ? args[0] : DEFAULT_SOLR_URL;
+    IndexBackend indexBackend = null;
+    if (!NO_SOLR.equals(url)) {
+      indexBackend = IndexBackends.fromSystemProperties(url);
+      System.out.println("Index: " + indexBackend.getClass().getSimpleName());
+    }
+
+    SyntheticDatabaseSettings settings = SyntheticDatabaseSettings.fromSystemProperties();
+    System.out.println("Database: " + settings);
+    try {
+      new IngestBenchmark(new SyntheticDatabaseGenerator(settings), indexBackend).run();
+    } finally {
+      if (indexBackend != null) {
+        indexBackend.freeResources();
+      }
+    }
+  }
+
+  public void run() throws ViewerException {
+    resetPeakHeapUsage();
+    long gcTimeBefore = getGarbageCollectionTime();
+    long gcCountBefore = getGarbageCollectionCount();
+    long start = System.nanoTime();
+
+    ViewerDatabaseFromToolkit database = ToolkitStructure2ViewerStructure.getDatabase(generator.getStructure());
+    databaseUUID = database.getUUID();
+    if (indexBackend != null) {
+      indexBackend.addDatabase(database);
+    }
+    long structureEnd = System.nanoTime();
+
+    long lastProgress = structureEnd;
+    for (TableStructure tableStructure : generator.getTables()) {
+      ViewerTable table = database.getTable(tableStructure.getId());
+      if (indexBackend != null) {
+        indexBackend.addTable(table);
+      }
+
+      SyntheticDatabaseGenerator.RowIterator tableRows = generator.getRows(tableStructure);
+      long rowIndex = 0;
+      while (tableRows.hasNext()) {
+        Row row = tableRows.next();
+        ViewerRow viewerRow = ToolkitStructure2ViewerStructure.getRow(table, row, rowIndex++);
+        if (indexBackend != null) {
+          indexBackend.addRow(table, viewerRow);
+        } else {
+          SolrTransformer.fromRow(table, viewerRow);
+        }
+        rows++;
+
+        long now = System.nanoTime();
+        if (now - lastProgress > PROGRESS_INTERVAL) {
+          lastProgress = now;
+          System.out.println(String.format(Locale.ENGLISH, "%d rows, %.0f rows/s", rows,
+            rows / seconds(now - structureEnd)));
+        }
+      }
+      bytes += tableRows.getGeneratedBytes();
+    }
+    long rowsEnd = System.nanoTime();
+
+    if (indexBackend != null) {
+      indexBackend.commitAll();
+    }
+    long end = System.nanoTime();
+
+    long gcTime = getGarbageCollectionTime() - gcTimeBefore;
+    long gcCount = getGarbageCollectionCount() - gcCountBefore;
+    double total = seconds(end - start);
+
+    System.out.println("---");
+    System.out.println(String.format(Locale.ENGLISH, "tables:            %d", generator.getTables().size()));
+    System.out.println(String.format(Locale.ENGLISH, "rows:              %d", rows));
+    System.out.println(String.format(Locale.ENGLISH, "source data:       %.1f MB", bytes / 1e6));
+    System.out.println(String.format(Locale.ENGLISH, "structure:         %.2f s", seconds(structureEnd - start)));
+    System.out.println(String.format(Locale.ENGLISH, "rows:              %.2f s", seconds(rowsEnd - structureEnd)));
+    System.out.println(String.format(Locale.ENGLISH, "commit:            %.2f s", seconds(end - rowsEnd)));
+    System.out.println(String.format(Locale.ENGLISH, "total:             %.2f s", total));
+    System.out.println(String.format(Locale.ENGLISH, "throughput:        %.0f rows/s, %.2f MB/s", rows / total,
+      bytes / 1e6 / total));
+    System.out.println(String.format(Locale.ENGLISH, "gc:                %d collections, %.2f s (%.1f%%)", gcCount,
+      gcTime / 1000.0, 100.0 * gcTime / 1000.0 / total));
+    System.out.println(String.format(Locale.ENGLISH, "peak heap:         %.1f MB", getPeakHeapUsage() / 1e6));
+  }
+
+  /**
+   * @return the UUID of the ingested database, after run()
+   */
+  public String getDatabaseUUID() {
+    return databaseUUID;
+  }
+
+  private static double seconds(long nanos) {
+    return nanos / (double) TimeUnit.SECONDS.toNanos(1);
+  }
+
+  /**
+   * @return the time spent in garbage collection since the JVM started, in
+   *         milliseconds
+   */
+  private static long getGarbageCollectionTime() {
+    long time = 0;
+    for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+      time += Math.max(0, collector.getCollectionTime());
+    }
+    return time;
+  }
+
+  private static long getGarbageCollectionCount() {
+    long count = 0;
+    for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+      count += Math.max(0, collector.getCollectionCount());
+    }
+    return count;
+  }
+
+  private static void resetPeakHeapUsage() {
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        pool.resetPeakUsage();
+      }
+    }
+  }
+
+  /**
+   * @return the sum of the peak usage of each heap pool (the pools may peak at
+   *         different times, so this is an upper bound of the peak heap usage)
+   */
+  private static long getPeakHeapUsage() {
+    long peak = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+        peak += pool.getPeakUsage().getUsed();
+      }
+    }
+    return peak;
+  }
+}
@@ -0,0 +1,393 @@
+package com.databasepreservation.visualization.benchmarks.ingest;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+import com.databasepreservation.model.data.BinaryCell;
+import com.databasepreservation.model.data.Cell;
+import com.databasepreservation.model.data.NullCell;
+import com.databasepreservation.model.data.Row;
+import com.databasepreservation.model.data.SimpleCell;
+import com.databasepreservation.model.exception.ModuleException;
+import com.databasepreservation.model.structure.CheckConstraint;
+import com.databasepreservation.model.structure.ColumnStructure;
+import com.databasepreservation.model.structure.DatabaseStructure;
+import com.databasepreservation.model.structure.ForeignKey;
+import com.databasepreservation.model.structure.PrimaryKey;
+import com.databasepreservation.model.structure.PrivilegeStructure;
+import com.databasepreservation.model.structure.Reference;
+import com.databasepreservation.model.structure.RoleStructure;
+import com.databasepreservation.model.structure.RoutineStructure;
+import com.databasepreservation.model.structure.SchemaStructure;
+import com.databasepreservation.model.structure.TableStructure;
+import com.databasepreservation.model.structure.Trigger;
+import com.databasepreservation.model.structure.UserStructure;
+import com.databasepreservation.model.structure.ViewStructure;
+import com.databasepreservation.model.structure.type.SimpleTypeBinary;
+import com.databasepreservation.model.structure.type.SimpleTypeBoolean;
+import com.databasepreservation.model.structure.type.SimpleTypeDateTime;
+import com.databasepreservation.model.structure.type.SimpleTypeNumericApproximate;
+import com.databasepreservation.model.structure.type.SimpleTypeNumericExact;
+import com.databasepreservation.model.structure.type.SimpleTypeString;
+import com.databasepreservation.model.structure.type.Type;
+import com.databasepreservation.visualization.benchmarks.ingest.SyntheticDatabaseSettings.ColumnKind;
+
+/**
+ * Generates a database structure, as read by DBPTK from a SIARD archive, and
+ * the rows of each of its tables. The rows are generated while they are read,
+ * so databases of any size can be generated without keeping them in memory.
+ *
+ * The same settings (including the seed) always generate the same database.
+ * Every table has an integer primary key ("id"), followed by the foreign key
+ * columns (referencing tables generated before it) and by the other columns.
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+public class SyntheticDatabaseGenerator {
+  private static final String PRIMARY_KEY_COLUMN = "id";
+  private static final String[] WORDS = {"lorem", "ipsum", "dolor", "sit", "amet", "consectetur", "adipiscing",
+    "elit", "sed", "do", "eiusmod", "tempor", "incididunt", "ut", "labore", "et", "dolore", "magna", "aliqua",
+    "Lisboa", "Braga", "Porto", "Coimbra", "arquivo", "registo", "processo", "documento"};
+
+  private final SyntheticDatabaseSettings settings;
+  private final DatabaseStructure structure;
+
+  // table id -> kind of each column, including the keys
+  private final Map<String, List<ColumnKind>> columnKinds = new HashMap<>();
+  // table id -> referenced table of each foreign key column (null for the
+  // other columns)
+  private final Map<String, List<TableStructure>> columnReferences = new HashMap<>();
+  // table id -> seed used to generate its rows
+  private final Map<String, Long> tableSeeds = new HashMap<>();
+
+  public SyntheticDatabaseGenerator(SyntheticDatabaseSettings settings) {
+    this.settings = settings;
+    this.structure = createStructure();
+  }
+
+  public DatabaseStructure getStructure() {
+    return structure;
+  }
+
+  /**
+   * @return all the tables, in the order they were generated (referenced
+   *         tables first)
+   */
+  public List<TableStructure> getTables() {
+    List<TableStructure> tables = new ArrayList<>();
+    for (SchemaStructure schema : structure.getSchemas()) {
+      tables.addAll(schema.getTables());
+    }
+    return tables;
+  }
+
+  /**
+   * @return a new iterator over the rows of the table, which are generated as
+   *         they are read
+   */
+  public RowIterator getRows(TableStructure table) {
+    return new RowIterator(table);
+  }
+
+  private DatabaseStructure createStructure() {
+    Random random = new Random(settings.getSeed());
+    DatabaseStructure database = new DatabaseStructure();
+    database.setName("synthetic_" + settings.getSeed());
+    database.setDescription("Synthetic database: " + settings);
+    database.setArchiver("dbvtk-benchmarks");
+    database.setArchivalDate(new DateTime(2016, 1, 1, 0, 0, DateTimeZone.UTC));
+    database.setProductName("Synthetic");
+    database.setUsers(Collections.<UserStructure> emptyList());
+    database.setRoles(Collections.<RoleStructure> emptyList());
+    database.setPrivileges(Collections.<PrivilegeStructure> emptyList());
+
+    List<TableStructure> generated = new ArrayList<>();
+    List<SchemaStructure> schemas = new ArrayList<>();
+    for (int s = 0; s < settings.getSchemas(); s++) {
+      SchemaStructure schema = new SchemaStructure();
+      schema.setName("schema_" + s);
+      schema.setRoutines(Collections.<RoutineStructure> emptyList());
+      schema.setViews(Collections.<ViewStructure> emptyList());
+
+      List<TableStructure> tables = new ArrayList<>();
+      // tables are spread over the schemas, the first ones get the remainder
+      int tableCount = settings.getTables() / settings.getSchemas()
+        + (s < settings.getTables() % settings.getSchemas() ? 1 : 0);
+      for (int t = 0; t < tableCount; t++) {
+        TableStructure table = createTable(random, schema.getName(), "table_" + generated.size(), generated);
+        tables.add(table);
+        generated.add(table);
+      }
+      schema.setTables(tables);
+      schemas.add(schema);
+    }
+    database.setSchemas(schemas);
+    return database;
+  }
+
+  private TableStructure createTable(Random random, String schemaName, String name, List<TableStructure> previous) {
+    String id = schemaName + "." + name;
+    TableStructure table = new TableStructure();
+    table.setId(id);
+    table.setName(name);
+    table.setSchema(schemaName);
+    table.setRows(randomRowCount(random));
+    table.setTriggers(Collections.<Trigger> emptyList());
+    table.setCheckConstraints(Collections.<CheckConstraint> emptyList());
+
+    List<ColumnStructure> columns = new ArrayList<>();
+    List<ColumnKind> kinds = new ArrayList<>();
+    List<TableStructure> references = new ArrayList<>();
+
+    columns.add(createColumn(id, PRIMARY_KEY_COLUMN, ColumnKind.INTEGER, false));
+    kinds.add(ColumnKind.INTEGER);
+    references.add(null);
+    PrimaryKey primaryKey = new PrimaryKey();
+    primaryKey.setName("pk_" + name);
+    primaryKey.setColumnNames(Arrays.asList(PRIMARY_KEY_COLUMN));
+    table.setPrimaryKey(primaryKey);
+
+    List<ForeignKey> foreignKeys = new ArrayList<>();
+    int foreignKeyCount = previous.isEmpty() ? 0 : randomForeignKeyCount(random);
+    for (int f = 0; f < foreignKeyCount; f++) {
+      TableStructure referenced = previous.get(random.nextInt(previous.size()));
+      String columnName = referenced.getName() + "_" + f + "_id";
+      columns.add(createColumn(id, columnName, ColumnKind.INTEGER, true));
+      kinds.add(ColumnKind.INTEGER);
+      references.add(referenced);
+
+      ForeignKey foreignKey = new ForeignKey();
+      foreignKey.setId(id + ".fk_" + f);
+      foreignKey.setName("fk_" + name + "_" + f);
+      foreignKey.setReferencedSchema(referenced.getSchema());
+      foreignKey.setReferencedTable(referenced.getName());
+      foreignKey.setReferences(Arrays.asList(new Reference(columnName, PRIMARY_KEY_COLUMN)));
+      foreignKeys.add(foreignKey);
+    }
+    table.setForeignKeys(foreignKeys);
+
+    for (int c = 0; c < settings.getColumnsPerTable(); c++) {
+      ColumnKind kind = randomColumnKind(random);
+      columns.add(createColumn(id, "column_" + c + "_" + kind.name().toLowerCase(), kind, true));
+      kinds.add(kind);
+      references.add(null);
+    }
+    table.setColumns(columns);
+
+    columnKinds.put(id, kinds);
+    columnReferences.put(id, references);
+    tableSeeds.put(id, random.nextLong());
+    return table;
+  }
+
+  private static ColumnStructure createColumn(String tableId, String name, ColumnKind kind, boolean nillable) {
+    ColumnStructure column = new ColumnStructure();
+    column.setId(tableId + "." + name);
+    column.setName(name);
+    column.setType(createType(kind));
+    column.setNillable(nillable);
+    column.setIsAutoIncrement(false);
+    return column;
+  }
+
+  private static Type createType(ColumnKind kind) {
+    Type type;
+    String typeName;
+    switch (kind) {
+      case INTEGER:
+        type = new SimpleTypeNumericExact(10, 0);
+        typeName = "INTEGER";
+        break;
+      case DECIMAL:
+        type = new SimpleTypeNumericExact(12, 2);
+        typeName = "DECIMAL(12,2)";
+        break;
+      case DOUBLE:
+        type = new SimpleTypeNumericApproximate(53);
+        typeName = "DOUBLE PRECISION";
+        break;
+      case DATE:
+        type = new SimpleTypeDateTime(false, false);
+        typeName = "DATE";
+        break;
+      case TIMESTAMP:
+        type = new SimpleTypeDateTime(true, false);
+        typeName = "TIMESTAMP";
+        break;
+      case BOOLEAN:
+        type = new SimpleTypeBoolean();
+        typeName = "BOOLEAN";
+        break;
+      case BINARY:
+        type = new SimpleTypeBinary();
+        typeName = "BINARY LARGE OBJECT";
+        break;
+      default:
+        type = new SimpleTypeString(250, true);
+        typeName = "CHARACTER VARYING(250)";
+        break;
+    }
+    type.setSql2008TypeName(typeName);
+    type.setOriginalTypeName(typeName);
+    return type;
+  }
+
+  /**
+   * @return a row count between the minimum and the maximum, log-uniformly
+   *         distributed
+   */
+  private long randomRowCount(Random random) {
+    double min = Math.log(Math.max(1, settings.getMinRowsPerTable()));
+    double max = Math.log(Math.max(settings.getMinRowsPerTable(), settings.getMaxRowsPerTable()));
+    return Math.round(Math.exp(min + random.nextDouble() * (max - min)));
+  }
+
+  private int randomForeignKeyCount(Random random) {
+    double density = settings.getForeignKeyDensity();
+    int count = (int) density;
+    if (random.nextDouble() < density - count) {
+      count++;
+    }
+    return count;
+  }
+
+  private ColumnKind randomColumnKind(Random random) {
+    int total = 0;
+    for (int weight : settings.getColumnMix().values()) {
+      total += weight;
+    }
+    int value = random.nextInt(total);
+    for (Map.Entry<ColumnKind, Integer> entry : settings.getColumnMix().entrySet()) {
+      value -= entry.getValue();
+      if (value < 0) {
+        return entry.getKey();
+      }
+    }
+    throw new IllegalStateException("Invalid column mix: " + settings.getColumnMix());
+  }
+
+  /**
+   * Generates the rows of a table, counting the size of the generated values
+   */
+  public class RowIterator implements Iterator<Row> {
+    private final TableStructure table;
+    private final List<ColumnKind> kinds;
+    private final List<TableStructure> references;
+    private final Random random;
+    private long nextIndex = 0;
+    private long generatedBytes = 0;
+
+    private RowIterator(TableStructure table) {
+      this.table = table;
+      this.kinds = columnKinds.get(table.getId());
+      this.references = columnReferences.get(table.getId());
+      this.random = new Random(tableSeeds.get(table.getId()));
+    }
+
+    @Override
+    public boolean hasNext() {
+      return nextIndex < table.getRows();
+    }
+
+    @Override
+    public Row next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+
+      long index = nextIndex++;
+      List<Cell> cells = new ArrayList<>(kinds.size());
+      for (int c = 0; c < kinds.size(); c++) {
+        String cellId = table.getId() + "." + index + "." + c;
+        TableStructure referenced = references.get(c);
+        if (c == 0) {
+          cells.add(simpleCell(cellId, Long.toString(index)));
+        } else if (referenced != null) {
+          cells.add(simpleCell(cellId, Long.toString(randomLong(referenced.getRows()))));
+        } else if (random.nextDouble() < settings.getNullRatio()) {
+          cells.add(new NullCell(cellId));
+        } else if (kinds.get(c) == ColumnKind.BINARY) {
+          cells.add(binaryCell(cellId));
+        } else {
+          cells.add(simpleCell(cellId, randomValue(kinds.get(c))));
+        }
+      }
+      return new Row(index, cells);
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+
+    /**
+     * @return the size of the values generated so far (characters of the
+     *         simple cells and bytes of the binary cells)
+     */
+    public long getGeneratedBytes() {
+      return generatedBytes;
+    }
+
+    private SimpleCell simpleCell(String id, String value) {
+      generatedBytes += value.length();
+      return new SimpleCell(id, value);
+    }
+
+    private Cell binaryCell(String id) {
+      byte[] data = new byte[settings.getBlobSize()];
+      random.nextBytes(data);
+      generatedBytes += data.length;
+      try {
+        return new BinaryCell(id, new ByteArrayInputStream(data));
+      } catch (ModuleException e) {
+        throw new IllegalStateException("Could not create binary cell " + id, e);
+      }
+    }
+
+    private long randomLong(long bound) {
+      return bound <= 0 ? 0 : (random.nextLong() & Long.MAX_VALUE) % bound;
+    }
+
+    private String randomValue(ColumnKind kind) {
+      switch (kind) {
+        case INTEGER:
+          return Integer.toString(random.nextInt(1000000));
+        case DECIMAL:
+          return String.format("%d.%02d", random.nextInt(10000000), random.nextInt(100));
+        case DOUBLE:
+          return Double.toString(random.nextGaussian() * 1000);
+        case DATE:
+          return String.format("%04d-%02d-%02d", 1950 + random.nextInt(70), 1 + random.nextInt(12),
+            1 + random.nextInt(28));
+        case TIMESTAMP:
+          return String.format("%04d-%02d-%02dT%02d:%02d:%02d.%03dZ", 1950 + random.nextInt(70),
+            1 + random.nextInt(12), 1 + random.nextInt(28), random.nextInt(24), random.nextInt(60),
+            random.nextInt(60), random.nextInt(1000));
+        case BOOLEAN:
+          return Boolean.toString(random.nextBoolean());
+        default:
+          StringBuilder text = new StringBuilder();
+          // mostly short values (names, codes), some long ones (descriptions)
+          int words = random.nextInt(10) == 0 ? 10 + random.nextInt(30) : 1 + random.nextInt(4);
+          for (int i = 0; i < words; i++) {
+            if (i > 0) {
+              text.append(' ');
+            }
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+          }
+          return text.toString();
+      }
+    }
+  }
+}
@@ -0,0 +1,184 @@
+package com.databasepreservation.visualization.benchmarks.ingest;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Shape of a synthetic database. Every setting can be overridden by a system
+ * property with the "dbvtk.bench." prefix, e.g. -Ddbvtk.bench.tables=200
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+public class SyntheticDatabaseSettings {
+  public static final String PROPERTY_PREFIX = "dbvtk.bench.";
+  public static final String PROPERTY_SEED = PROPERTY_PREFIX + "seed";
+  public static final String PROPERTY_SCHEMAS = PROPERTY_PREFIX + "schemas";
+  public static final String PROPERTY_TABLES = PROPERTY_PREFIX + "tables";
+  public static final String PROPERTY_COLUMNS = PROPERTY_PREFIX + "columns";
+  public static final String PROPERTY_COLUMN_MIX = PROPERTY_PREFIX + "columnMix";
+  public static final String PROPERTY_MIN_ROWS = PROPERTY_PREFIX + "minRows";
+  public static final String PROPERTY_MAX_ROWS = PROPERTY_PREFIX + "maxRows";
+  public static final String PROPERTY_FOREIGN_KEY_DENSITY = PROPERTY_PREFIX + "foreignKeyDensity";
+  public static final String PROPERTY_NULL_RATIO = PROPERTY_PREFIX + "nullRatio";
+  public static final String PROPERTY_BLOB_SIZE = PROPERTY_PREFIX + "blobSize";
+
+  /**
+   * The column types that can be generated
+   */
+  public enum ColumnKind {
+    STRING, INTEGER, DECIMAL, DOUBLE, DATE, TIMESTAMP, BOOLEAN, BINARY
+  }
+
+  private long seed = 42;
+  private int schemas = 1;
+  private int tables = 20;
+  // besides the primary key and the foreign keys
+  private int columnsPerTable = 10;
+  // relative weight of each column kind
+  private Map<ColumnKind, Integer> columnMix = parseColumnMix("string:4,integer:2,decimal:1,double:1,date:1,"
+    + "timestamp:1,boolean:1,binary:0");
+  // row counts are log-uniformly distributed, so there are few big tables
+  private long minRowsPerTable = 100;
+  private long maxRowsPerTable = 100000;
+  // average number of foreign keys per table
+  private double foreignKeyDensity = 1.0;
+  // fraction of the cells (outside keys) that are null
+  private double nullRatio = 0.05;
+  // bytes
+  private int blobSize = 16 * 1024;
+
+  public static SyntheticDatabaseSettings fromSystemProperties() {
+    SyntheticDatabaseSettings settings = new SyntheticDatabaseSettings();
+    settings.seed = Long.getLong(PROPERTY_SEED, settings.seed);
+    settings.schemas = Integer.getInteger(PROPERTY_SCHEMAS, settings.schemas);
+    settings.tables = Integer.getInteger(PROPERTY_TABLES, settings.tables);
+    settings.columnsPerTable = Integer.getInteger(PROPERTY_COLUMNS, settings.columnsPerTable);
+    String mix = System.getProperty(PROPERTY_COLUMN_MIX);
+    if (mix != null) {
+      settings.columnMix = parseColumnMix(mix);
+    }
+    settings.minRowsPerTable = Long.getLong(PROPERTY_MIN_ROWS, settings.minRowsPerTable);
+    settings.maxRowsPerTable = Long.getLong(PROPERTY_MAX_ROWS, settings.maxRowsPerTable);
+    String density = System.getProperty(PROPERTY_FOREIGN_KEY_DENSITY);
+    if (density != null) {
+      settings.foreignKeyDensity = Double.parseDouble(density);
+    }
+    String nullRatio = System.getProperty(PROPERTY_NULL_RATIO);
+    if (nullRatio != null) {
+      settings.nullRatio = Double.parseDouble(nullRatio);
+    }
+    settings.blobSize = Integer.getInteger(PROPERTY_BLOB_SIZE, settings.blobSize);
+    return settings;
+  }
+
+  /**
+   * @param mix
+   *          comma separated kind:weight pairs, e.g. "string:3,integer:1"
+   */
+  public static Map<ColumnKind, Integer> parseColumnMix(String mix) {
+    Map<ColumnKind, Integer> weights = new LinkedHashMap<>();
+    for (String entry : mix.split(",")) {
+      String[] parts = entry.trim().split(":");
+      if (parts.length != 2) {
+        throw new IllegalArgumentException("Invalid column mix entry: " + entry);
+      }
+      int weight = Integer.parseInt(parts[1].trim());
+      if (weight > 0) {
+        weights.put(ColumnKind.valueOf(parts[0].trim().toUpperCase(Locale.ENGLISH)), weight);
+      }
+    }
+    if (weights.isEmpty()) {
+      throw new IllegalArgumentException("The column mix must have at least one kind with a positive weight");
+    }
+    return weights;
+  }
+
+  public long getSeed() {
+    return seed;
+  }
+
+  public void setSeed(long seed) {
+    this.seed = seed;
+  }
+
+  public int getSchemas() {
+    return schemas;
+  }
+
+  public void setSchemas(int schemas) {
+    this.schemas = schemas;
+  }
+
+  public int getTables() {
+    return tables;
+  }
+
+  public void setTables(int tables) {
+    this.tables = tables;
+  }
+
+  public int getColumnsPerTable() {
+    return columnsPerTable;
+  }
+
+  public void setColumnsPerTable(int columnsPerTable) {
+    this.columnsPerTable = columnsPerTable;
+  }
+
+  public Map<ColumnKind, Integer> getColumnMix() {
+    return columnMix;
+  }
+
+  public void setColumnMix(Map<ColumnKind, Integer> columnMix) {
+    this.columnMix = columnMix;
+  }
+
+  public long getMinRowsPerTable() {
+    return minRowsPerTable;
+  }
+
+  public void setMinRowsPerTable(long minRowsPerTable) {
+    this.minRowsPerTable = minRowsPerTable;
+  }
+
+  public long getMaxRowsPerTable() {
+    return maxRowsPerTable;
+  }
+
+  public void setMaxRowsPerTable(long maxRowsPerTable) {
+    this.maxRowsPerTable = maxRowsPerTable;
+  }
+
+  public double getForeignKeyDensity() {
+    return foreignKeyDensity;
+  }
+
+  public void setForeignKeyDensity(double foreignKeyDensity) {
+    this.foreignKeyDensity = foreignKeyDensity;
+  }
+
+  public double getNullRatio() {
+    return nullRatio;
+  }
+
+  public void setNullRatio(double nullRatio) {
+    this.nullRatio = nullRatio;
+  }
+
+  public int getBlobSize() {
+    return blobSize;
+  }
+
+  public void setBlobSize(int blobSize) {
+    this.blobSize = blobSize;
+  }
+
+  @Override
+  public String toString() {
+    return "SyntheticDatabaseSettings{seed=" + seed + ", schemas=" + schemas + ", tables=" + tables
+      + ", columnsPerTable=" + columnsPerTable + ", columnMix=" + columnMix + ", minRowsPerTable=" + minRowsPerTable
+      + ", maxRowsPerTable=" + maxRowsPerTable + ", foreignKeyDensity=" + foreignKeyDensity + ", nullRatio="
+      + nullRatio + ", blobSize=" + blobSize + '}';
+  }
+}
@@ -0,0 +1,340 @@
+package com.databasepreservation.visualization.benchmarks.load;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.roda.core.data.adapter.filter.BasicSearchFilterParameter;
+import org.roda.core.data.adapter.filter.Filter;
+import org.roda.core.data.adapter.filter.FilterParameter;
+import org.roda.core.data.adapter.filter.SimpleFilterParameter;
+import org.roda.core.data.adapter.sort.SortParameter;
+import org.roda.core.data.adapter.sort.Sorter;
+import org.roda.core.data.adapter.sublist.Sublist;
+import org.roda.core.data.exceptions.RODAException;
+import org.roda.core.data.v2.index.IndexResult;
+
+import com.databasepreservation.visualization.benchmarks.load.LatencyRecorder.Operation;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerCell;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerColumn;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerDatabase;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerForeignKey;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerReference;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerRow;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerSchema;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerTable;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerType;
+import com.databasepreservation.visualization.exceptions.ViewerException;
+import com.databasepreservation.visualization.shared.ViewerSafeConstants;
+import com.databasepreservation.visualization.transformers.JsonTransformer;
+import com.databasepreservation.visualization.utils.IndexBackend;
+import com.databasepreservation.visualization.utils.SolrDocumentStream;
+
+/**
+ * Replays the requests made by an archivist browsing a database in the viewer:
+ * open a database, a schema and a table, browse, sort and page through the
+ * rows, search, open a record and follow one of its references, and sometimes
+ * export the table.
+ *
+ * The requests are the IndexBackend calls that BrowserServiceImpl delegates to
+ * (with the same arguments as the web client), so the measured latency is the
+ * server side latency of the GWT RPC calls, without the RPC serialization.
+ * Exports are made through the REST API (ExportsResource) if a viewer URL is
+ * set, or streamed from the index otherwise.
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+public class ArchivistSession {
+  private final IndexBackend indexBackend;
+  private final LoadTestSettings settings;
+  private final List<String> databaseUUIDs;
+  private final LatencyRecorder recorder;
+  private final Random random;
+  // identifies the "view" of this user in tagged queries, as TableRowList does
+  private final String requestTag;
+  private long requestSerial = 0;
+  private Operation current = null;
+
+  public ArchivistSession(IndexBackend indexBackend, LoadTestSettings settings, List<String> databaseUUIDs,
+    LatencyRecorder recorder, Random random, String requestTag) {
+    this.indexBackend = indexBackend;
+    this.settings = settings;
+    this.databaseUUIDs = databaseUUIDs;
+    this.recorder = recorder;
+    this.random = random;
+    this.requestTag = requestTag;
+  }
+
+  /**
+   * Replays one session. If a request fails, the error is recorded and the
+   * session ends.
+   *
+   * @param deadline
+   *          System.nanoTime() after which no more requests are made
+   * @return false if the session ended because of an error
+   */
+  public boolean run(long deadline) throws InterruptedException {
+    try {
+      replay(deadline);
+      return true;
+    } catch (RODAException | ViewerException | IOException | RuntimeException e) {
+      if (current != null) {
+        recorder.recordError(current);
+      }
+      return false;
+    } finally {
+      current = null;
+    }
+  }
+
+  private void replay(long deadline) throws RODAException, ViewerException, IOException, InterruptedException {
+    // home page
+    long start = begin(Operation.LIST_DATABASES);
+    indexBackend.find(null, ViewerDatabase.class, new Filter(), null, new Sublist(0, settings.getPageSize()), null);
+    end(start);
+    if (!think(deadline)) {
+      return;
+    }
+
+    String databaseUUID = databaseUUIDs.get(random.nextInt(databaseUUIDs.size()));
+    start = begin(Operation.OPEN_DATABASE);
+    ViewerDatabase database = indexBackend.retrieveDatabaseSummary(null, databaseUUID);
+    end(start);
+    if (!think(deadline)) {
+      return;
+    }
+
+    List<ViewerSchema> schemas = new ArrayList<>(database.getMetadata().getSchemas());
+    ViewerSchema schemaSummary = schemas.get(random.nextInt(schemas.size()));
+    start = begin(Operation.OPEN_SCHEMA);
+    ViewerSchema schema = indexBackend.retrieveSchema(null, databaseUUID, schemaSummary.getUUID());
+    end(start);
+    if (schema.getTables() == null || schema.getTables().isEmpty() || !think(deadline)) {
+      return;
+    }
+
+    ViewerTable tableSummary = schema.getTables().get(random.nextInt(schema.getTables().size()));
+    start = begin(Operation.OPEN_TABLE);
+    ViewerTable table = indexBackend.retrieveTable(null, databaseUUID, tableSummary.getUUID());
+    end(start);
+
+    // the table is shown with its first page of rows
+    start = begin(Operation.BROWSE);
+    IndexResult<ViewerRow> rows = findRows(table, ViewerSafeConstants.DEFAULT_FILTER, null, 0);
+    end(start);
+    if (!think(deadline) || !page(deadline, table, ViewerSafeConstants.DEFAULT_FILTER, null, rows)) {
+      return;
+    }
+
+    ViewerColumn sortColumn = randomSortableColumn(table);
+    if (sortColumn != null) {
+      Sorter sorter = new Sorter(new SortParameter(sortColumn.getSortSolrName(), random.nextBoolean()));
+      start = begin(Operation.SORT);
+      rows = findRows(table, ViewerSafeConstants.DEFAULT_FILTER, sorter, 0);
+      end(start);
+      if (!think(deadline) || !page(deadline, table, ViewerSafeConstants.DEFAULT_FILTER, sorter, rows)) {
+        return;
+      }
+    }
+
+    String term = randomSearchTerm(table, rows);
+    if (term != null) {
+      Filter searchFilter = new Filter(new BasicSearchFilterParameter(ViewerSafeConstants.SOLR_ROW_SEARCH, term));
+      start = begin(Operation.SEARCH);
+      IndexResult<ViewerRow> found = findRows(table, searchFilter, null, 0);
+      end(start);
+      if (!found.getResults().isEmpty()) {
+        rows = found;
+      }
+      if (!think(deadline)) {
+        return;
+      }
+    }
+
+    if (!rows.getResults().isEmpty()) {
+      ViewerRow row = rows.getResults().get(random.nextInt(rows.getResults().size()));
+      start = begin(Operation.OPEN_RECORD);
+      indexBackend.retrieveRowWithRelations(null, databaseUUID, table.getUUID(), row.getUUID());
+      end(start);
+      if (!think(deadline)) {
+        return;
+      }
+
+      if (table.getForeignKeys() != null && !table.getForeignKeys().isEmpty()) {
+        followReference(databaseUUID, table, row);
+        if (!think(deadline)) {
+          return;
+        }
+      }
+    }
+
+    if (random.nextDouble() < settings.getExportProbability()) {
+      start = begin(Operation.EXPORT);
+      export(databaseUUID, table);
+      end(start);
+    }
+  }
+
+  private IndexResult<ViewerRow> findRows(ViewerTable table, Filter filter, Sorter sorter, int offset)
+    throws RODAException {
+    return indexBackend.findRows(null, ViewerRow.class, table.getUUID(), filter, sorter,
+      new Sublist(offset, settings.getPageSize()), null, null, requestTag, ++requestSerial);
+  }
+
+  /**
+   * Goes through a few of the next pages of rows
+   *
+   * @return false if the test is over
+   */
+  private boolean page(long deadline, ViewerTable table, Filter filter, Sorter sorter, IndexResult<ViewerRow> first)
+    throws RODAException, InterruptedException {
+    int pages = random.nextInt(settings.getMaxPages() + 1);
+    for (int i = 1; i <= pages; i++) {
+      int offset = i * settings.getPageSize();
+      if (offset >= first.getTotalCount()) {
+        break;
+      }
+      long start = begin(Operation.PAGE);
+      findRows(table, filter, sorter, offset);
+      end(start);
+      if (!think(deadline)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Opens the table referenced by one of the foreign keys of the row, filtered
+   * by the values of the row, as done by the links in the record page
+   */
+  private void followReference(String databaseUUID, ViewerTable table, ViewerRow row) throws RODAException {
+    ViewerForeignKey foreignKey = table.getForeignKeys().get(random.nextInt(table.getForeignKeys().size()));
+
+    long start = begin(Operation.OPEN_TABLE);
+    ViewerTable referencedTable = indexBackend.retrieveTable(null, databaseUUID, foreignKey.getReferencedTableUUID());
+    end(start);
+
+    List<FilterParameter> filterParameters = new ArrayList<>();
+    for (ViewerReference reference : foreignKey.getReferences()) {
+      ViewerColumn sourceColumn = table.getColumns().get(reference.getSourceColumnIndex());
+      ViewerColumn referencedColumn = referencedTable.getColumns().get(reference.getReferencedColumnIndex());
+      ViewerCell cell = row.getCells().get(sourceColumn.getSolrName());
+      if (cell == null || cell.getValue() == null) {
+        // a null foreign key does not reference anything
+        return;
+      }
+      filterParameters.add(new SimpleFilterParameter(referencedColumn.getSolrName(), cell.getValue()));
+    }
+
+    start = begin(Operation.FOLLOW_REFERENCE);
+    findRows(referencedTable, new Filter(filterParameters), null, 0);
+    end(start);
+  }
+
+  private void export(String databaseUUID, ViewerTable table) throws RODAException, ViewerException, IOException {
+    List<String> fields = new ArrayList<>();
+    for (ViewerColumn column : table.getColumns()) {
+      fields.add(column.getSolrName());
+    }
+    Sublist sublist = new Sublist(0, settings.getExportRows());
+
+    if (settings.getViewerUrl() != null) {
+      // http://hostname:port/api/v1/exports/csv/databaseUUID/tableUUID?...
+      String url = settings.getViewerUrl().replaceAll("/+$", "") + "/" + ViewerSafeConstants.API_SERVLET
+        + ViewerSafeConstants.API_V1_EXPORT_RESOURCE + "/csv/" + databaseUUID + "/" + table.getUUID() + "?"
+        + ViewerSafeConstants.API_QUERY_PARAM_FIELDS + "=" + encode(JsonTransformer.getJsonFromObject(fields)) + "&"
+        + ViewerSafeConstants.API_QUERY_PARAM_FILTER + "="
+        + encode(JsonTransformer.getJsonFromObject(ViewerSafeConstants.DEFAULT_FILTER)) + "&"
+        + ViewerSafeConstants.API_QUERY_PARAM_SUBLIST + "=" + encode(JsonTransformer.getJsonFromObject(sublist));
+
+      HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+      try {
+        if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+          throw new IOException("Export failed with HTTP " + connection.getResponseCode() + ": " + url);
+        }
+        try (InputStream in = connection.getInputStream()) {
+          byte[] buffer = new byte[8192];
+          while (in.read(buffer) != -1) {
+            // only the time to receive the export matters
+          }
+        }
+      } finally {
+        connection.disconnect();
+      }
+    } else {
+      try (SolrDocumentStream stream = indexBackend.streamRows(null, table.getUUID(),
+        ViewerSafeConstants.DEFAULT_FILTER, null, sublist, fields)) {
+        while (stream.next() != null) {
+          // only the time to read the rows matters
+        }
+      }
+    }
+  }
+
+  private ViewerColumn randomSortableColumn(ViewerTable table) {
+    List<ViewerColumn> sortable = new ArrayList<>();
+    for (ViewerColumn column : table.getColumns()) {
+      if (column.sortable()) {
+        sortable.add(column);
+      }
+    }
+    return sortable.isEmpty() ? null : sortable.get(random.nextInt(sortable.size()));
+  }
+
+  /**
+   * @return a word from a text cell of the rows, so the search usually finds
+   *         something, or null if there are no text cells
+   */
+  private String randomSearchTerm(ViewerTable table, IndexResult<ViewerRow> rows) {
+    List<String> words = new ArrayList<>();
+    for (ViewerRow row : rows.getResults()) {
+      for (ViewerColumn column : table.getColumns()) {
+        ViewerCell cell = row.getCells().get(column.getSolrName());
+        if (column.getType().getDbType() == ViewerType.dbTypes.STRING && cell != null && cell.getValue() != null) {
+          for (String word : cell.getValue().split("\\W+")) {
+            if (word.length() > 2) {
+              words.add(word);
+            }
+          }
+        }
+      }
+    }
+    return words.isEmpty() ? null : words.get(random.nextInt(words.size()));
+  }
+
+  /**
+   * Waits for an exponentially distributed time, like a person reading the
+   * page before the next action
+   *
+   * @return false if the test is over
+   */
+  private boolean think(long deadline) throws InterruptedException {
+    long millis = (long) (-settings.getThinkTime() * Math.log(1 - random.nextDouble()));
+    long remaining = (deadline - System.nanoTime()) / 1000000;
+    if (millis >= remaining) {
+      return false;
+    }
+    Thread.sleep(millis);
+    return true;
+  }
+
+  private long begin(Operation operation) {
+    current = operation;
+    return System.nanoTime();
+  }
+
+  private void end(long start) {
+    recorder.record(current, System.nanoTime() - start);
+    current = null;
+  }
+
+  private static String encode(String value) throws IOException {
+    return URLEncoder.encode(value, "UTF-8");
+  }
+}
@@ -0,0 +1,138 @@
+package com.databasepreservation.visualization.benchmarks.load;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the latency of each operation made by a user. Each user has its own
+ * recorder (it is not thread safe), and the recorders are merged at the end of
+ * the test to compute the percentiles.
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+public class LatencyRecorder {
+  /**
+   * The operations made by an archivist, in the order they usually happen
+   */
+  public enum Operation {
+    LIST_DATABASES, OPEN_DATABASE, OPEN_SCHEMA, OPEN_TABLE, BROWSE, SORT, PAGE, SEARCH, OPEN_RECORD,
+    FOLLOW_REFERENCE, EXPORT
+  }
+
+  private final Map<Operation, Samples> samples = new EnumMap<>(Operation.class);
+
+  public LatencyRecorder() {
+    for (Operation operation : Operation.values()) {
+      samples.put(operation, new Samples());
+    }
+  }
+
+  public void record(Operation operation, long nanos) {
+    samples.get(operation).add(nanos);
+  }
+
+  public void recordError(Operation operation) {
+    samples.get(operation).errors++;
+  }
+
+  public void merge(LatencyRecorder other) {
+    for (Operation operation : Operation.values()) {
+      Samples mine = samples.get(operation);
+      Samples theirs = other.samples.get(operation);
+      for (int i = 0; i < theirs.count; i++) {
+        mine.add(theirs.values[i]);
+      }
+      mine.errors += theirs.errors;
+    }
+  }
+
+  public long getCount() {
+    long count = 0;
+    for (Samples operationSamples : samples.values()) {
+      count += operationSamples.count;
+    }
+    return count;
+  }
+
+  public long getErrors() {
+    long errors = 0;
+    for (Samples operationSamples : samples.values()) {
+      errors += operationSamples.errors;
+    }
+    return errors;
+  }
+
+  /**
+   * @return a table with the count, errors, throughput and latency percentiles
+   *         (in milliseconds) of each operation and of all operations
+   * @param elapsedNanos
+   *          the duration of the test, to compute the throughput
+   */
+  public String report(long elapsedNanos) {
+    double seconds = elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1);
+    StringBuilder report = new StringBuilder(String.format(Locale.ENGLISH,
+      "%-17s %9s %7s %9s %9s %9s %9s %9s %9s%n", "operation", "count", "errors", "ops/s", "mean", "p50", "p90",
+      "p99", "max"));
+
+    Samples all = new Samples();
+    for (Map.Entry<Operation, Samples> entry : samples.entrySet()) {
+      Samples operationSamples = entry.getValue();
+      if (operationSamples.count > 0 || operationSamples.errors > 0) {
+        report.append(operationSamples.format(entry.getKey().name().toLowerCase(Locale.ENGLISH), seconds));
+      }
+      for (int i = 0; i < operationSamples.count; i++) {
+        all.add(operationSamples.values[i]);
+      }
+      all.errors += operationSamples.errors;
+    }
+    report.append(all.format("all", seconds));
+    return report.toString();
+  }
+
+  private static class Samples {
+    private long[] values = new long[1024];
+    private int count = 0;
+    private long errors = 0;
+
+    private void add(long nanos) {
+      if (count == values.length) {
+        values = Arrays.copyOf(values, values.length * 2);
+      }
+      values[count++] = nanos;
+    }
+
+    private String format(String name, double seconds) {
+      long[] sorted = Arrays.copyOf(values, count);
+      Arrays.sort(sorted);
+
+      long sum = 0;
+      for (long value : sorted) {
+        sum += value;
+      }
+      double mean = count > 0 ? millis(sum) / count : 0;
+
+      return String.format(Locale.ENGLISH, "%-17s %9d %7d %9.1f %9.1f %9.1f %9.1f %9.1f %9.1f%n", name, count,
+        errors, count / seconds, mean, millis(percentile(sorted, 0.5)), millis(percentile(sorted, 0.9)),
+        millis(percentile(sorted, 0.99)), millis(count > 0 ? sorted[count - 1] : 0));
+    }
+
+    /**
+     * @return the value below which the fraction of the (sorted) samples falls,
+     *         using the nearest-rank method
+     */
+    private static long percentile(long[] sorted, double fraction) {
+      if (sorted.length == 0) {
+        return 0;
+      }
+      int rank = (int) Math.ceil(fraction * sorted.length);
+      return sorted[Math.max(0, rank - 1)];
+    }
+
+    private static double millis(long nanos) {
+      return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+  }
+}
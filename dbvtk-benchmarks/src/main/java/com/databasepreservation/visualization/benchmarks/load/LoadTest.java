@@ -0,0 +1,164 @@
+package com.databasepreservation.visualization.benchmarks.load;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.roda.core.data.adapter.filter.Filter;
+import org.roda.core.data.adapter.sublist.Sublist;
+
+import com.databasepreservation.visualization.benchmarks.ingest.IngestBenchmark;
+import com.databasepreservation.visualization.benchmarks.ingest.SyntheticDatabaseGenerator;
+import com.databasepreservation.visualization.benchmarks.ingest.SyntheticDatabaseSettings;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerDatabase;
+import com.databasepreservation.visualization.utils.IndexBackend;
+import com.databasepreservation.visualization.utils.IndexBackends;
+
+/**
+ * Simulates concurrent archivists browsing the viewer (see ArchivistSession)
+ * and reports the throughput and the latency percentiles of each operation.
+ *
+ * Usage: java -cp benchmarks.jar
+ * com.databasepreservation.visualization.benchmarks.load.LoadTest
+ *
+ * The test is configured with the dbvtk.load.* system properties (see
+ * LoadTestSettings) and the index with the usual dbvtk.index.backend and
+ * dbvtk.solr.* system properties (see IndexBackends). If dbvtk.load.solrInstall
+ * is set, a local Solr is started from that installation and a synthetic
+ * database (configured with the dbvtk.bench.* system properties) is ingested
+ * before the test; otherwise the databases already in the index (e.g. the Solr
+ * at dbvtk.load.solrUrl) are browsed.
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+public class LoadTest {
+  private static final long PROGRESS_INTERVAL = TimeUnit.SECONDS.toMillis(10);
+  private static final int MAX_DATABASES = 1000;
+
+  private final LoadTestSettings settings;
+  private final IndexBackend indexBackend;
+  private final AtomicLong sessions = new AtomicLong();
+  private final AtomicLong failedSessions = new AtomicLong();
+
+  public LoadTest(LoadTestSettings settings, IndexBackend indexBackend) {
+    this.settings = settings;
+    this.indexBackend = indexBackend;
+  }
+
+  public static void main(String[] args) throws Exception {
+    LoadTestSettings settings = LoadTestSettings.fromSystemProperties();
+    System.out.println("Load test: " + settings);
+
+    SolrLauncher launcher = null;
+    if (settings.getSolrInstall() != null) {
+      launcher = new SolrLauncher(settings.getSolrInstall(), settings.getSolrPort());
+      launcher.start();
+    }
+
+    IndexBackend indexBackend = null;
+    try {
+      indexBackend = IndexBackends.fromSystemProperties(settings.getSolrUrl());
+      System.out.println("Index: " + indexBackend.getClass().getSimpleName());
+
+      List<String> databaseUUIDs;
+      if (settings.isIngest()) {
+        SyntheticDatabaseSettings databaseSettings = SyntheticDatabaseSettings.fromSystemProperties();
+        System.out.println("Ingesting database: " + databaseSettings);
+        IngestBenchmark ingest = new IngestBenchmark(new SyntheticDatabaseGenerator(databaseSettings), indexBackend);
+        ingest.run();
+        databaseUUIDs = Collections.singletonList(ingest.getDatabaseUUID());
+      } else if (settings.getDatabase() != null) {
+        databaseUUIDs = Collections.singletonList(settings.getDatabase());
+      } else {
+        databaseUUIDs = new ArrayList<>();
+        for (ViewerDatabase database : indexBackend.find(null, ViewerDatabase.class, new Filter(), null,
+          new Sublist(0, MAX_DATABASES), null).getResults()) {
+          databaseUUIDs.add(database.getUUID());
+        }
+      }
+
+      if (databaseUUIDs.isEmpty()) {
+        System.err.println("There are no databases to browse, set " + LoadTestSettings.PROPERTY_INGEST + "=true");
+        return;
+      }
+
+      new LoadTest(settings, indexBackend).run(databaseUUIDs);
+    } finally {
+      if (indexBackend != null) {
+        indexBackend.freeResources();
+      }
+      if (launcher != null) {
+        launcher.stop();
+      }
+    }
+  }
+
+  public void run(final List<String> databaseUUIDs) throws InterruptedException {
+    final long start = System.nanoTime();
+    final long deadline = start + TimeUnit.SECONDS.toNanos(settings.getDuration());
+    final long rampUpNanos = TimeUnit.SECONDS.toNanos(settings.getRampUp());
+
+    ExecutorService executor = Executors.newFixedThreadPool(settings.getUsers());
+    List<Future<LatencyRecorder>> users = new ArrayList<>();
+    for (int i = 0; i < settings.getUsers(); i++) {
+      final int user = i;
+      users.add(executor.submit(new Callable<LatencyRecorder>() {
+        @Override
+        public LatencyRecorder call() throws InterruptedException {
+          LatencyRecorder recorder = new LatencyRecorder();
+          ArchivistSession session = new ArchivistSession(indexBackend, settings, databaseUUIDs, recorder,
+            new Random(settings.getSeed() + user), "load-" + user);
+
+          // the users start evenly spread over the ramp up period
+          long userStart = start + rampUpNanos * user / settings.getUsers();
+          TimeUnit.NANOSECONDS.sleep(Math.max(0, userStart - System.nanoTime()));
+
+          while (System.nanoTime() < deadline) {
+            if (!session.run(deadline)) {
+              failedSessions.incrementAndGet();
+              // do not flood a failing server with requests
+              TimeUnit.MILLISECONDS.sleep(settings.getThinkTime());
+            }
+            sessions.incrementAndGet();
+          }
+          return recorder;
+        }
+      }));
+    }
+    executor.shutdown();
+
+    while (!executor.awaitTermination(PROGRESS_INTERVAL, TimeUnit.MILLISECONDS)) {
+      System.out.println(String.format(Locale.ENGLISH, "%.0f s, %d sessions, %d failed",
+        (System.nanoTime() - start) / 1e9, sessions.get(), failedSessions.get()));
+    }
+    long elapsed = System.nanoTime() - start;
+
+    LatencyRecorder all = new LatencyRecorder();
+    for (Future<LatencyRecorder> user : users) {
+      try {
+        all.merge(user.get());
+      } catch (ExecutionException e) {
+        System.err.println("A user stopped unexpectedly: " + e.getCause());
+      }
+    }
+
+    System.out.println("---");
+    System.out.println(String.format(Locale.ENGLISH, "users:             %d", settings.getUsers()));
+    System.out.println(String.format(Locale.ENGLISH, "duration:          %.1f s", elapsed / 1e9));
+    System.out.println(String.format(Locale.ENGLISH, "sessions:          %d (%d failed)", sessions.get(),
+      failedSessions.get()));
+    System.out.println(String.format(Locale.ENGLISH, "requests:          %d (%d failed), %.1f requests/s",
+      all.getCount(), all.getErrors(), all.getCount() / (elapsed / 1e9)));
+    System.out.println("latency (ms):");
+    System.out.print(all.report(elapsed));
+  }
+}
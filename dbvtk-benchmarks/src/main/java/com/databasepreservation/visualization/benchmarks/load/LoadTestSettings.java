@@ -0,0 +1,213 @@
+package com.databasepreservation.visualization.benchmarks.load;
+
+/**
+ * Settings of a load test. Every setting can be overridden by a system property
+ * with the "dbvtk.load." prefix, e.g. -Ddbvtk.load.users=50
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+public class LoadTestSettings {
+  public static final String PROPERTY_PREFIX = "dbvtk.load.";
+  public static final String PROPERTY_USERS = PROPERTY_PREFIX + "users";
+  public static final String PROPERTY_DURATION = PROPERTY_PREFIX + "duration";
+  public static final String PROPERTY_RAMP_UP = PROPERTY_PREFIX + "rampUp";
+  public static final String PROPERTY_THINK_TIME = PROPERTY_PREFIX + "thinkTime";
+  public static final String PROPERTY_PAGE_SIZE = PROPERTY_PREFIX + "pageSize";
+  public static final String PROPERTY_MAX_PAGES = PROPERTY_PREFIX + "maxPages";
+  public static final String PROPERTY_EXPORT_PROBABILITY = PROPERTY_PREFIX + "exportProbability";
+  public static final String PROPERTY_EXPORT_ROWS = PROPERTY_PREFIX + "exportRows";
+  public static final String PROPERTY_SEED = PROPERTY_PREFIX + "seed";
+  public static final String PROPERTY_DATABASE = PROPERTY_PREFIX + "database";
+  public static final String PROPERTY_SOLR_URL = PROPERTY_PREFIX + "solrUrl";
+  public static final String PROPERTY_SOLR_INSTALL = PROPERTY_PREFIX + "solrInstall";
+  public static final String PROPERTY_SOLR_PORT = PROPERTY_PREFIX + "solrPort";
+  public static final String PROPERTY_INGEST = PROPERTY_PREFIX + "ingest";
+  public static final String PROPERTY_VIEWER_URL = PROPERTY_PREFIX + "viewerUrl";
+
+  // concurrent archivists, each one replaying sessions until the test ends
+  private int users = 10;
+  // seconds
+  private int duration = 300;
+  // seconds, the users are started evenly during this period
+  private int rampUp = 30;
+  // milliseconds, mean of the (exponentially distributed) pause between actions
+  private long thinkTime = 2000;
+  private int pageSize = 25;
+  // the most pages a user goes through after browsing or sorting a table
+  private int maxPages = 3;
+  // probability of exporting a table at the end of a session
+  private double exportProbability = 0.05;
+  private int exportRows = 10000;
+  private long seed = 42;
+  // UUID of the database to browse, all databases are used if null
+  private String database = null;
+  private String solrUrl = "http://127.0.0.1:8983/solr";
+  // if set, a Solr from this installation is started (and stopped) by the test
+  private String solrInstall = null;
+  private int solrPort = 8983;
+  // ingest a synthetic database (see SyntheticDatabaseSettings) before the test
+  private boolean ingest = false;
+  // if set, exports are requested from the REST API of this viewer instead of
+  // being streamed from Solr in-process
+  private String viewerUrl = null;
+
+  public static LoadTestSettings fromSystemProperties() {
+    LoadTestSettings settings = new LoadTestSettings();
+    settings.users = Integer.getInteger(PROPERTY_USERS, settings.users);
+    settings.duration = Integer.getInteger(PROPERTY_DURATION, settings.duration);
+    settings.rampUp = Integer.getInteger(PROPERTY_RAMP_UP, settings.rampUp);
+    settings.thinkTime = Long.getLong(PROPERTY_THINK_TIME, settings.thinkTime);
+    settings.pageSize = Integer.getInteger(PROPERTY_PAGE_SIZE, settings.pageSize);
+    settings.maxPages = Integer.getInteger(PROPERTY_MAX_PAGES, settings.maxPages);
+    String exportProbability = System.getProperty(PROPERTY_EXPORT_PROBABILITY);
+    if (exportProbability != null) {
+      settings.exportProbability = Double.parseDouble(exportProbability);
+    }
+    settings.exportRows = Integer.getInteger(PROPERTY_EXPORT_ROWS, settings.exportRows);
+    settings.seed = Long.getLong(PROPERTY_SEED, settings.seed);
+    settings.database = System.getProperty(PROPERTY_DATABASE, settings.database);
+    settings.solrInstall = System.getProperty(PROPERTY_SOLR_INSTALL, settings.solrInstall);
+    settings.solrPort = Integer.getInteger(PROPERTY_SOLR_PORT, settings.solrPort);
+    if (settings.solrInstall != null) {
+      settings.solrUrl = "http://127.0.0.1:" + settings.solrPort + "/solr";
+      // a fresh Solr has nothing to browse
+      settings.ingest = settings.database == null;
+    }
+    settings.solrUrl = System.getProperty(PROPERTY_SOLR_URL, settings.solrUrl);
+    String ingest = System.getProperty(PROPERTY_INGEST);
+    if (ingest != null) {
+      settings.ingest = Boolean.parseBoolean(ingest);
+    }
+    settings.viewerUrl = System.getProperty(PROPERTY_VIEWER_URL, settings.viewerUrl);
+    return settings;
+  }
+
+  public int getUsers() {
+    return users;
+  }
+
+  public void setUsers(int users) {
+    this.users = users;
+  }
+
+  public int getDuration() {
+    return duration;
+  }
+
+  public void setDuration(int duration) {
+    this.duration = duration;
+  }
+
+  public int getRampUp() {
+    return rampUp;
+  }
+
+  public void setRampUp(int rampUp) {
+    this.rampUp = rampUp;
+  }
+
+  public long getThinkTime() {
+    return thinkTime;
+  }
+
+  public void setThinkTime(long thinkTime) {
+    this.thinkTime = thinkTime;
+  }
+
+  public int getPageSize() {
+    return pageSize;
+  }
+
+  public void setPageSize(int pageSize) {
+    this.pageSize = pageSize;
+  }
+
+  public int getMaxPages() {
+    return maxPages;
+  }
+
+  public void setMaxPages(int maxPages) {
+    this.maxPages = maxPages;
+  }
+
+  public double getExportProbability() {
+    return exportProbability;
+  }
+
+  public void setExportProbability(double exportProbability) {
+    this.exportProbability = exportProbability;
+  }
+
+  public int getExportRows() {
+    return exportRows;
+  }
+
+  public void setExportRows(int exportRows) {
+    this.exportRows = exportRows;
+  }
+
+  public long getSeed() {
+    return seed;
+  }
+
+  public void setSeed(long seed) {
+    this.seed = seed;
+  }
+
+  public String getDatabase() {
+    return database;
+  }
+
+  public void setDatabase(String database) {
+    this.database = database;
+  }
+
+  public String getSolrUrl() {
+    return solrUrl;
+  }
+
+  public void setSolrUrl(String solrUrl) {
+    this.solrUrl = solrUrl;
+  }
+
+  public String getSolrInstall() {
+    return solrInstall;
+  }
+
+  public void setSolrInstall(String solrInstall) {
+    this.solrInstall = solrInstall;
+  }
+
+  public int getSolrPort() {
+    return solrPort;
+  }
+
+  public void setSolrPort(int solrPort) {
+    this.solrPort = solrPort;
+  }
+
+  public boolean isIngest() {
+    return ingest;
+  }
+
+  public void setIngest(boolean ingest) {
+    this.ingest = ingest;
+  }
+
+  public String getViewerUrl() {
+    return viewerUrl;
+  }
+
+  public void setViewerUrl(String viewerUrl) {
+    this.viewerUrl = viewerUrl;
+  }
+
+  @Override
+  public String toString() {
+    return "LoadTestSettings{users=" + users + ", duration=" + duration + ", rampUp=" + rampUp + ", thinkTime="
+      + thinkTime + ", pageSize=" + pageSize + ", maxPages=" + maxPages + ", exportProbability=" + exportProbability
+      + ", exportRows=" + exportRows + ", seed=" + seed + ", database=" + database + ", solrUrl=" + solrUrl
+      + ", solrInstall=" + solrInstall + ", solrPort=" + solrPort + ", ingest=" + ingest + ", viewerUrl="
+      + viewerUrl + '}';
+  }
+}
@@ -0,0 +1,63 @@
+package com.databasepreservation.visualization.benchmarks.load;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.databasepreservation.visualization.utils.SolrUtils;
+
+/**
+ * Starts and stops a local Solr (in SolrCloud mode, with its embedded
+ * ZooKeeper) from a Solr installation, using the bin/solr script, and uploads
+ * the dbvtk configsets to it.
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+public class SolrLauncher {
+  // the embedded zookeeper listens on the solr port plus 1000
+  private static final int ZOOKEEPER_PORT_OFFSET = 1000;
+
+  private final File solrInstall;
+  private final int port;
+
+  public SolrLauncher(String solrInstall, int port) {
+    this.solrInstall = new File(solrInstall);
+    this.port = port;
+  }
+
+  /**
+   * Starts Solr and uploads the configsets. Returns when Solr is ready.
+   */
+  public void start() throws IOException, InterruptedException {
+    run("start", "-c", "-p", Integer.toString(port));
+    SolrUtils.setupSolrCloudConfigsets(getZkHost());
+  }
+
+  public void stop() throws IOException, InterruptedException {
+    run("stop", "-p", Integer.toString(port));
+  }
+
+  public String getZkHost() {
+    return "127.0.0.1:" + (port + ZOOKEEPER_PORT_OFFSET);
+  }
+
+  private void run(String... arguments) throws IOException, InterruptedException {
+    boolean windows = System.getProperty("os.name").toLowerCase().startsWith("windows");
+    File script = new File(new File(solrInstall, "bin"), windows ? "solr.cmd" : "solr");
+    if (!script.isFile()) {
+      throw new IOException("Could not find the solr script in " + solrInstall);
+    }
+
+    List<String> command = new ArrayList<>();
+    command.add(script.getAbsolutePath());
+    command.addAll(Arrays.asList(arguments));
+
+    Process process = new ProcessBuilder(command).directory(solrInstall).inheritIO().start();
+    int exitCode = process.waitFor();
+    if (exitCode != 0) {
+      throw new IOException("Command " + command + " failed with exit code " + exitCode);
+    }
+  }
+}
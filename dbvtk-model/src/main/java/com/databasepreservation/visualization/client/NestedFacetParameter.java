@@ -0,0 +1,52 @@
+package com.databasepreservation.visualization.client;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.roda.core.data.adapter.facet.FacetParameter;
+import org.roda.core.data.adapter.facet.SimpleFacetParameter;
+
+/**
+ * A field facet that, for each of its values, computes other facets (field,
+ * range or statistics facets) restricted to the documents with that value.
+ *
+ * Results for the sub facets are returned as additional FacetFieldResults,
+ * with a field named "parentName/parentValue/subFacetName". Only values
+ * selected in the parent facet are used to filter results.
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+public class NestedFacetParameter extends SimpleFacetParameter {
+  public static final String PATH_SEPARATOR = "/";
+
+  private List<FacetParameter> subFacets;
+
+  public NestedFacetParameter() {
+    super();
+    subFacets = new ArrayList<>();
+  }
+
+  public NestedFacetParameter(String name, FacetParameter... subFacets) {
+    super(name);
+    this.subFacets = new ArrayList<>(Arrays.asList(subFacets));
+  }
+
+  public NestedFacetParameter(String name, int limit, FacetParameter... subFacets) {
+    super(name, limit);
+    this.subFacets = new ArrayList<>(Arrays.asList(subFacets));
+  }
+
+  public List<FacetParameter> getSubFacets() {
+    return subFacets;
+  }
+
+  public void setSubFacets(List<FacetParameter> subFacets) {
+    this.subFacets = subFacets;
+  }
+
+  @Override
+  public String toString() {
+    return "NestedFacetParameter [name=" + getName() + ", values=" + getValues() + ", subFacets=" + subFacets + "]";
+  }
+}
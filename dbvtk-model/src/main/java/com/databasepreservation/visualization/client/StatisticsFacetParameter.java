@@ -0,0 +1,64 @@
+package com.databasepreservation.visualization.client;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.roda.core.data.adapter.facet.FacetParameter;
+
+/**
+ * A facet that computes statistics (min, max, average, etc) about the values
+ * of a field, instead of counting documents per value.
+ *
+ * The result is a FacetFieldResult for the field, with one value per
+ * statistic: the label is the statistic function and the value is its result.
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+public class StatisticsFacetParameter extends FacetParameter {
+  public static final String MIN = "min";
+  public static final String MAX = "max";
+  public static final String AVG = "avg";
+  public static final String SUM = "sum";
+  public static final String SUMSQ = "sumsq";
+  // exact number of distinct values
+  public static final String UNIQUE = "unique";
+  // estimated number of distinct values (HyperLogLog)
+  public static final String HLL = "hll";
+
+  private List<String> functions;
+
+  public StatisticsFacetParameter() {
+    super();
+    functions = new ArrayList<>();
+  }
+
+  /**
+   * @param name
+   *          the field name
+   * @param functions
+   *          the statistic functions to compute, see the constants in this
+   *          class. If none are specified, min and max are computed.
+   */
+  public StatisticsFacetParameter(String name, String... functions) {
+    super(name);
+    if (functions.length == 0) {
+      this.functions = new ArrayList<>(Arrays.asList(MIN, MAX));
+    } else {
+      this.functions = new ArrayList<>(Arrays.asList(functions));
+    }
+  }
+
+  public List<String> getFunctions() {
+    return functions;
+  }
+
+  public void setFunctions(List<String> functions) {
+    this.functions = functions;
+  }
+
+  @Override
+  public String toString() {
+    return "StatisticsFacetParameter [name=" + getName() + ", functions=" + functions + "]";
+  }
+}
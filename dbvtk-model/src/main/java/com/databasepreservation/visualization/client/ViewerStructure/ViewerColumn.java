@@ -8,6 +8,10 @@ import java.io.Serializable;
 public class ViewerColumn implements Serializable {
   private String solrName;
 
+  // may be null for columns that can not be sorted, or that were ingested
+  // before sort keys existed
+  private String sortSolrName;
+
   private String displayName;
 
   private ViewerType type;
@@ -22,6 +26,9 @@ public class ViewerColumn implements Serializable {
 
   private int columnIndexInEnclosingTable;
 
+  // may be null if the statistics were not computed during ingest
+  private ViewerColumnStatistics statistics;
+
   public ViewerColumn() {
   }
 
@@ -33,6 +40,18 @@ public class ViewerColumn implements Serializable {
     this.solrName = solrName;
   }
 
+  /**
+   * @return the name of the field used to sort by this column, which is the
+   *         column field itself unless a sort key field was created for it
+   */
+  public String getSortSolrName() {
+    return sortSolrName != null ? sortSolrName : solrName;
+  }
+
+  public void setSortSolrName(String sortSolrName) {
+    this.sortSolrName = sortSolrName;
+  }
+
   public String getDisplayName() {
     return displayName;
   }
@@ -85,8 +104,8 @@ public class ViewerColumn implements Serializable {
    * @return true if the column should be sortable when displayed in a UI table
    */
   public boolean sortable() {
-    // TODO: add some logic to decide if the column should be sortable
-    return true;
+    // binary columns only contain the names of the files with their contents
+    return type == null || !ViewerType.dbTypes.BINARY.equals(type.getDbType());
   }
 
   @Override
@@ -103,4 +122,16 @@ public class ViewerColumn implements Serializable {
   public void setColumnIndexInEnclosingTable(int columnIndexInEnclosingTable) {
     this.columnIndexInEnclosingTable = columnIndexInEnclosingTable;
   }
+
+  /**
+   * @return statistics about the values in this column, or null if they are
+   *         not available
+   */
+  public ViewerColumnStatistics getStatistics() {
+    return statistics;
+  }
+
+  public void setStatistics(ViewerColumnStatistics statistics) {
+    this.statistics = statistics;
+  }
 }
@@ -0,0 +1,113 @@
+package com.databasepreservation.visualization.client.ViewerStructure;
+
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Statistics about the values of a column, computed while the database was
+ * being ingested.
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+public class ViewerColumnStatistics implements Serializable {
+  private long nullCount;
+
+  private long nonNullCount;
+
+  private String min;
+
+  private String max;
+
+  private long distinctCount;
+
+  private boolean distinctCountExact;
+
+  // most frequent values -> number of rows, ordered by descending count. Only
+  // present for columns with few distinct values
+  private LinkedHashMap<String, Long> topValues;
+
+  public ViewerColumnStatistics() {
+    topValues = new LinkedHashMap<>();
+  }
+
+  public long getNullCount() {
+    return nullCount;
+  }
+
+  public void setNullCount(long nullCount) {
+    this.nullCount = nullCount;
+  }
+
+  public long getNonNullCount() {
+    return nonNullCount;
+  }
+
+  public void setNonNullCount(long nonNullCount) {
+    this.nonNullCount = nonNullCount;
+  }
+
+  /**
+   * @return the minimum value, or null if the column only has null values or
+   *         its values can not be compared
+   */
+  public String getMin() {
+    return min;
+  }
+
+  public void setMin(String min) {
+    this.min = min;
+  }
+
+  /**
+   * @return the maximum value, or null if the column only has null values or
+   *         its values can not be compared
+   */
+  public String getMax() {
+    return max;
+  }
+
+  public void setMax(String max) {
+    this.max = max;
+  }
+
+  /**
+   * @return the number of distinct non-null values. It is an estimate unless
+   *         isDistinctCountExact() is true
+   */
+  public long getDistinctCount() {
+    return distinctCount;
+  }
+
+  public void setDistinctCount(long distinctCount) {
+    this.distinctCount = distinctCount;
+  }
+
+  public boolean isDistinctCountExact() {
+    return distinctCountExact;
+  }
+
+  public void setDistinctCountExact(boolean distinctCountExact) {
+    this.distinctCountExact = distinctCountExact;
+  }
+
+  /**
+   * @return Map of the most frequent values to the number of rows with that
+   *         value, ordered by descending number of rows. Empty if the column
+   *         has too many distinct values.
+   */
+  public Map<String, Long> getTopValues() {
+    return topValues;
+  }
+
+  public void setTopValues(LinkedHashMap<String, Long> topValues) {
+    this.topValues = topValues;
+  }
+
+  @Override
+  public String toString() {
+    return "ViewerColumnStatistics{" + "nullCount=" + nullCount + ", nonNullCount=" + nonNullCount + ", min='" + min
+      + '\'' + ", max='" + max + '\'' + ", distinctCount=" + distinctCount + ", distinctCountExact="
+      + distinctCountExact + ", topValues=" + topValues + '}';
+  }
+}
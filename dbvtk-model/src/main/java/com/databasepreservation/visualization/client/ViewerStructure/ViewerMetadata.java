@@ -1,6 +1,7 @@
 package com.databasepreservation.visualization.client.ViewerStructure;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -202,4 +203,32 @@ public class ViewerMetadata implements Serializable {
   public ViewerSchema getSchema(String schemaUUID) {
     return schemas.get(schemaUUID);
   }
+
+  /**
+   * Replaces a schema and its tables (e.g. the summaries of a schema and its
+   * tables) by another version of the same schema
+   */
+  public void putSchema(ViewerSchema schema) {
+    schemas.put(schema.getUUID(), schema);
+    for (ViewerTable table : schema.getTables()) {
+      tables.put(table.getUUID(), table);
+    }
+  }
+
+  /**
+   * Replaces a table (e.g. the summary of a table) by another version of the
+   * same table, also replacing it in the list of tables of its schema
+   */
+  public void putTable(ViewerTable table) {
+    tables.put(table.getUUID(), table);
+
+    ViewerSchema schema = schemas.get(table.getSchemaUUID());
+    if (schema != null && schema.getTables() != null) {
+      List<ViewerTable> schemaTables = new ArrayList<>(schema.getTables().size());
+      for (ViewerTable schemaTable : schema.getTables()) {
+        schemaTables.add(schemaTable.getUUID().equals(table.getUUID()) ? table : schemaTable);
+      }
+      schema.setTables(schemaTables);
+    }
+  }
 }
@@ -0,0 +1,82 @@
+package com.databasepreservation.visualization.client.ViewerStructure;
+
+import java.io.Serializable;
+
+/**
+ * A foreign key relation between a row and the rows of another table (or the
+ * same table, for self-referencing foreign keys), along with the number of
+ * related rows
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+public class ViewerRowRelation implements Serializable {
+  private String tableUUID;
+  private ViewerForeignKey foreignKey;
+  private boolean referencedBy;
+  private long count;
+  private ViewerRow relatedRow;
+
+  public ViewerRowRelation() {
+  }
+
+  public ViewerRowRelation(String tableUUID, ViewerForeignKey foreignKey, boolean referencedBy) {
+    this.tableUUID = tableUUID;
+    this.foreignKey = foreignKey;
+    this.referencedBy = referencedBy;
+  }
+
+  /**
+   * @return the UUID of the other table in the relation
+   */
+  public String getTableUUID() {
+    return tableUUID;
+  }
+
+  public void setTableUUID(String tableUUID) {
+    this.tableUUID = tableUUID;
+  }
+
+  public ViewerForeignKey getForeignKey() {
+    return foreignKey;
+  }
+
+  public void setForeignKey(ViewerForeignKey foreignKey) {
+    this.foreignKey = foreignKey;
+  }
+
+  /**
+   * @return true if the foreign key belongs to the other table and references
+   *         the row (an incoming reference), false if the foreign key belongs
+   *         to the row table (an outgoing reference)
+   */
+  public boolean isReferencedBy() {
+    return referencedBy;
+  }
+
+  public void setReferencedBy(boolean referencedBy) {
+    this.referencedBy = referencedBy;
+  }
+
+  /**
+   * @return the number of rows of the other table that are related to the row
+   */
+  public long getCount() {
+    return count;
+  }
+
+  public void setCount(long count) {
+    this.count = count;
+  }
+
+  /**
+   * @return the related row, for outgoing references that match exactly one
+   *         row; null otherwise
+   */
+  public ViewerRow getRelatedRow() {
+    return relatedRow;
+  }
+
+  public void setRelatedRow(ViewerRow relatedRow) {
+    this.relatedRow = relatedRow;
+  }
+}
@@ -0,0 +1,41 @@
+package com.databasepreservation.visualization.client.ViewerStructure;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A row along with its foreign key relations (outgoing and incoming), as
+ * needed to display a record
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+public class ViewerRowWithRelations implements Serializable {
+  private ViewerRow row;
+  private List<ViewerRowRelation> relations;
+
+  public ViewerRowWithRelations() {
+    relations = new ArrayList<>();
+  }
+
+  public ViewerRowWithRelations(ViewerRow row, List<ViewerRowRelation> relations) {
+    this.row = row;
+    this.relations = relations;
+  }
+
+  public ViewerRow getRow() {
+    return row;
+  }
+
+  public void setRow(ViewerRow row) {
+    this.row = row;
+  }
+
+  public List<ViewerRowRelation> getRelations() {
+    return relations;
+  }
+
+  public void setRelations(List<ViewerRowRelation> relations) {
+    this.relations = relations;
+  }
+}
@@ -25,6 +25,7 @@ public class ViewerSafeConstants {
   public static final String SOLR_INDEX_DATABASE_COLLECTION_NAME = "dbv-database";
   public static final String SOLR_INDEX_SEARCHES_COLLECTION_NAME = "dbv-searches";
   public static final String SOLR_INDEX_ROW_COLLECTION_NAME_PREFIX = "dbv-table-";
+  public static final String SOLR_INDEX_SHARED_TABLE_COLLECTION_NAME = "dbv-tables-shared";
   public static final String SOLR_INDEX_ROW_COLUMN_NAME_PREFIX = "col";
 
   /*
@@ -32,6 +33,17 @@ public class ViewerSafeConstants {
    */
   public static final String SOLR_DATABASE_ID = "id";
   public static final String SOLR_DATABASE_METADATA = "metadata";
+  public static final String SOLR_DATABASE_PRIVILEGES = "privileges";
+  public static final String SOLR_DATABASE_DOCUMENT_TYPE = "document_type";
+  public static final String SOLR_DATABASE_DATABASE_UUID = "database_uuid";
+  public static final String SOLR_DATABASE_SCHEMA_UUID = "schema_uuid";
+  public static final String SOLR_DATABASE_TABLE_COLLECTION = "table_collection";
+  public static final String SOLR_DATABASE_TABLE_DOC_VALUES = "table_doc_values";
+
+  // values for SOLR_DATABASE_DOCUMENT_TYPE
+  public static final String SOLR_DATABASE_DOCUMENT_TYPE_DATABASE = "database";
+  public static final String SOLR_DATABASE_DOCUMENT_TYPE_SCHEMA = "schema";
+  public static final String SOLR_DATABASE_DOCUMENT_TYPE_TABLE = "table";
 
   /*
    * SEARCHES FIELDS
@@ -50,6 +62,8 @@ public class ViewerSafeConstants {
    */
   public static final String SOLR_ROW_ID = "id";
   public static final String SOLR_ROW_SEARCH = "search";
+  // only present in the rows stored in the collection shared by small tables
+  public static final String SOLR_ROW_TABLE_UUID = "table_uuid";
 
   /*
    * DYNAMIC FIELD TYPES (suffixes)
@@ -66,6 +80,14 @@ public class ViewerSafeConstants {
   public static final String SOLR_DYN_STRING = "_s";
   public static final String SOLR_DYN_TEXT_GENERAL = "_t";
 
+  // docValues only, filled by the schema (copyField) from SOLR_DYN_TEXT_GENERAL
+  public static final String SOLR_DYN_SORT = "_sort";
+  // docValues only, filled by the schema (copyField) from the non-text single
+  // valued fields, appended to their name (e.g. col4_ti_dv)
+  public static final String SOLR_DYN_DOC_VALUES = "_dv";
+  // stored, not indexed
+  public static final String SOLR_DYN_STORED = "_stored";
+
   // indexed, stored, multiValued
   public static final String SOLR_DYN_BOOLEANS = "_bs";
   public static final String SOLR_DYN_DATES = "_dts";
@@ -94,6 +116,8 @@ public class ViewerSafeConstants {
    * OTHER SOLR
    */
   public static final Filter DEFAULT_FILTER = new Filter(new BasicSearchFilterParameter(SOLR_ROW_SEARCH, "*"));
+  // the maximum number of rows that can be retrieved by UUID in a single request
+  public static final int MAX_ROWS_RETRIEVED_BY_ID = 1000;
 
   /*
    * API related (from RODA)
@@ -141,12 +165,20 @@ public class ViewerSafeConstants {
    */
   public static final String API_SERVLET = "api";
   public static final String API_V1_EXPORT_RESOURCE = "/v1/exports";
+  public static final String API_V1_EXPORT_JOBS_RESOURCE = "/v1/exportjobs";
+  public static final String API_EXPORT_JOB_FILE = "file";
+  public static final String API_V1_SLOW_QUERIES_RESOURCE = "/v1/slowqueries";
+  public static final String API_V1_METRICS_RESOURCE = "/v1/metrics";
+  public static final String API_V1_DATABASE_RESOURCE = "/v1/database";
+  public static final String API_DATABASE_METADATA = "metadata";
   public static final String API_PATH_PARAM_DATABASE_UUID = "databaseUUID";
   public static final String API_PATH_PARAM_TABLE_UUID = "tableUUID";
   public static final String API_QUERY_PARAM_FIELDS = "fl";
   public static final String API_QUERY_PARAM_FILTER = "f";
   public static final String API_QUERY_PARAM_SORTER = "s";
   public static final String API_QUERY_PARAM_SUBLIST = "sl";
+  public static final String API_QUERY_PARAM_GZIP = "gzip";
+  public static final String API_PATH_PARAM_EXPORT_FORMAT = "format";
 
   public static final String API_PATH_PARAM_SOLR_COLLECTION = "collection";
   public static final String API_PATH_PARAM_SOLR_QUERY = "query";
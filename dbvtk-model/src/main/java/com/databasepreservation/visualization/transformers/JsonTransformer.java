@@ -1,6 +1,9 @@
 package com.databasepreservation.visualization.transformers;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -8,6 +11,8 @@ import org.slf4j.LoggerFactory;
 import com.databasepreservation.visualization.exceptions.ViewerException;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 
 /**
  * @author Bruno Ferreira <bferreira@keep.pt>
@@ -15,12 +20,15 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 public class JsonTransformer {
   private static final Logger LOGGER = LoggerFactory.getLogger(JsonTransformer.class);
 
+  // ObjectMapper, ObjectReader and ObjectWriter are thread-safe once configured
+  private static final ObjectMapper MAPPER = new ObjectMapper(new JsonFactory());
+  private static final ObjectWriter WRITER = MAPPER.writer();
+  private static final ConcurrentMap<Class<?>, ObjectReader> READERS = new ConcurrentHashMap<>();
+
   public static String getJsonFromObject(Object object) throws ViewerException {
     String ret = null;
     try {
-      JsonFactory factory = new JsonFactory();
-      ObjectMapper mapper = new ObjectMapper(factory);
-      ret = mapper.writeValueAsString(object);
+      ret = WRITER.writeValueAsString(object);
     } catch (IOException e) {
       throw new ViewerException("Error transforming object '" + object + "' to json string", e);
     }
@@ -30,12 +38,40 @@ public class JsonTransformer {
   public static <T> T getObjectFromJson(String json, Class<T> objectClass) throws ViewerException {
     T ret;
     try {
-      JsonFactory factory = new JsonFactory();
-      ObjectMapper mapper = new ObjectMapper(factory);
-      ret = mapper.readValue(json, objectClass);
+      ret = getReader(objectClass).readValue(json);
+    } catch (IOException e) {
+      throw new ViewerException("Error while parsing JSON", e);
+    }
+    return ret;
+  }
+
+  public static <T> T getObjectFromJson(InputStream json, Class<T> objectClass) throws ViewerException {
+    T ret;
+    try {
+      ret = getReader(objectClass).readValue(json);
     } catch (IOException e) {
       throw new ViewerException("Error while parsing JSON", e);
     }
     return ret;
   }
+
+  /**
+   * Gets a shared (and thread-safe) reader for the specified class, creating it
+   * if needed
+   *
+   * @param objectClass
+   *          the class of the objects to read
+   * @return the reader
+   */
+  private static ObjectReader getReader(Class<?> objectClass) {
+    ObjectReader reader = READERS.get(objectClass);
+    if (reader == null) {
+      reader = MAPPER.readerFor(objectClass);
+      ObjectReader existing = READERS.putIfAbsent(objectClass, reader);
+      if (existing != null) {
+        reader = existing;
+      }
+    }
+    return reader;
+  }
 }
@@ -4,6 +4,7 @@ import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -23,10 +24,13 @@ import com.databasepreservation.visualization.client.SavedSearch;
 import com.databasepreservation.visualization.client.ViewerStructure.ViewerCell;
 import com.databasepreservation.visualization.client.ViewerStructure.ViewerDatabase;
 import com.databasepreservation.visualization.client.ViewerStructure.ViewerMetadata;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerPrivilegeStructure;
 import com.databasepreservation.visualization.client.ViewerStructure.ViewerRow;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerSchema;
 import com.databasepreservation.visualization.client.ViewerStructure.ViewerTable;
 import com.databasepreservation.visualization.exceptions.ViewerException;
 import com.databasepreservation.visualization.shared.ViewerSafeConstants;
+import com.databasepreservation.visualization.utils.TableCollection;
 import com.databasepreservation.visualization.utils.ViewerUtils;
 
 /**
@@ -63,10 +67,67 @@ public class SolrTransformer {
     return doc;
   }
 
+  /**
+   * Creates the database document. Its metadata is only a summary: schemas and
+   * tables are listed (name, description, row count), but their complete
+   * metadata is stored in separate documents, created by fromSchema and
+   * fromTable.
+   */
   public static SolrInputDocument fromDatabase(ViewerDatabase viewerDatabase) throws ViewerException {
     SolrInputDocument doc = new SolrInputDocument();
     doc.addField(ViewerSafeConstants.SOLR_DATABASE_ID, viewerDatabase.getUUID());
-    doc.addField(ViewerSafeConstants.SOLR_DATABASE_METADATA, metadataAsJsonString(viewerDatabase.getMetadata()));
+    doc.addField(ViewerSafeConstants.SOLR_DATABASE_DOCUMENT_TYPE,
+      ViewerSafeConstants.SOLR_DATABASE_DOCUMENT_TYPE_DATABASE);
+    doc.addField(ViewerSafeConstants.SOLR_DATABASE_METADATA,
+      metadataAsJsonString(toMetadataSummary(viewerDatabase.getMetadata())));
+    if (viewerDatabase.getMetadata().getPrivileges() != null) {
+      doc.addField(ViewerSafeConstants.SOLR_DATABASE_PRIVILEGES,
+        JsonTransformer.getJsonFromObject(viewerDatabase.getMetadata().getPrivileges()));
+    }
+    return doc;
+  }
+
+  /**
+   * Creates the document for a schema, containing the schema views and routines
+   * and a summary of its tables
+   */
+  public static SolrInputDocument fromSchema(String databaseUUID, ViewerSchema viewerSchema) throws ViewerException {
+    SolrInputDocument doc = new SolrInputDocument();
+    doc.addField(ViewerSafeConstants.SOLR_DATABASE_ID, viewerSchema.getUUID());
+    doc.addField(ViewerSafeConstants.SOLR_DATABASE_DOCUMENT_TYPE, ViewerSafeConstants.SOLR_DATABASE_DOCUMENT_TYPE_SCHEMA);
+    doc.addField(ViewerSafeConstants.SOLR_DATABASE_DATABASE_UUID, databaseUUID);
+
+    ViewerSchema schema = toSchemaSummary(viewerSchema);
+    schema.setViews(viewerSchema.getViews());
+    schema.setRoutines(viewerSchema.getRoutines());
+    doc.addField(ViewerSafeConstants.SOLR_DATABASE_METADATA, JsonTransformer.getJsonFromObject(schema));
+    return doc;
+  }
+
+  /**
+   * Creates the document for a table, containing its complete metadata
+   */
+  public static SolrInputDocument fromTable(String databaseUUID, ViewerTable viewerTable) throws ViewerException {
+    return fromTable(databaseUUID, viewerTable, null);
+  }
+
+  /**
+   * Creates the document for a table, containing its complete metadata, the
+   * name of the collection where its rows are stored and whether the rows have
+   * docValues only copies of their fields
+   */
+  public static SolrInputDocument fromTable(String databaseUUID, ViewerTable viewerTable,
+    TableCollection tableCollection) throws ViewerException {
+    SolrInputDocument doc = new SolrInputDocument();
+    if (tableCollection != null) {
+      doc.addField(ViewerSafeConstants.SOLR_DATABASE_TABLE_COLLECTION, tableCollection.getName());
+      doc.addField(ViewerSafeConstants.SOLR_DATABASE_TABLE_DOC_VALUES, tableCollection.hasDocValues());
+    }
+    doc.addField(ViewerSafeConstants.SOLR_DATABASE_ID, viewerTable.getUUID());
+    doc.addField(ViewerSafeConstants.SOLR_DATABASE_DOCUMENT_TYPE, ViewerSafeConstants.SOLR_DATABASE_DOCUMENT_TYPE_TABLE);
+    doc.addField(ViewerSafeConstants.SOLR_DATABASE_DATABASE_UUID, databaseUUID);
+    doc.addField(ViewerSafeConstants.SOLR_DATABASE_SCHEMA_UUID, viewerTable.getSchemaUUID());
+    doc.addField(ViewerSafeConstants.SOLR_DATABASE_METADATA, JsonTransformer.getJsonFromObject(viewerTable));
     return doc;
   }
 
@@ -74,6 +135,56 @@ public class SolrTransformer {
     return JsonTransformer.getJsonFromObject(viewerMetadata);
   }
 
+  /**
+   * @return a copy of the metadata without privileges (which are stored in a
+   *         separate field), views, routines and without the columns, keys,
+   *         constraints and triggers of each table
+   */
+  private static ViewerMetadata toMetadataSummary(ViewerMetadata metadata) {
+    ViewerMetadata summary = new ViewerMetadata();
+    summary.setName(metadata.getName());
+    summary.setDescription(metadata.getDescription());
+    summary.setArchiver(metadata.getArchiver());
+    summary.setArchiverContact(metadata.getArchiverContact());
+    summary.setDataOwner(metadata.getDataOwner());
+    summary.setDataOriginTimespan(metadata.getDataOriginTimespan());
+    summary.setProducerApplication(metadata.getProducerApplication());
+    summary.setArchivalDate(metadata.getArchivalDate());
+    summary.setClientMachine(metadata.getClientMachine());
+    summary.setDatabaseProduct(metadata.getDatabaseProduct());
+    summary.setDatabaseUser(metadata.getDatabaseUser());
+    summary.setUsers(metadata.getUsers());
+    summary.setRoles(metadata.getRoles());
+
+    List<ViewerSchema> schemas = new ArrayList<>();
+    for (ViewerSchema schema : metadata.getSchemas()) {
+      schemas.add(toSchemaSummary(schema));
+    }
+    summary.setSchemas(schemas);
+    return summary;
+  }
+
+  private static ViewerSchema toSchemaSummary(ViewerSchema schema) {
+    ViewerSchema summary = new ViewerSchema();
+    summary.setUUID(schema.getUUID());
+    summary.setName(schema.getName());
+    summary.setDescription(schema.getDescription());
+
+    List<ViewerTable> tables = new ArrayList<>();
+    for (ViewerTable table : schema.getTables()) {
+      ViewerTable tableSummary = new ViewerTable();
+      tableSummary.setUuid(table.getUUID());
+      tableSummary.setName(table.getName());
+      tableSummary.setDescription(table.getDescription());
+      tableSummary.setCountRows(table.getCountRows());
+      tableSummary.setSchemaUUID(table.getSchemaUUID());
+      tableSummary.setSchemaName(table.getSchemaName());
+      tables.add(tableSummary);
+    }
+    summary.setTables(tables);
+    return summary;
+  }
+
   public static SolrInputDocument fromRow(ViewerTable table, ViewerRow row) throws ViewerException {
     SolrInputDocument doc = new SolrInputDocument();
 
@@ -112,8 +223,79 @@ public class SolrTransformer {
     return viewerDatabase;
   }
 
+  public static ViewerDatabase toDatabase(SolrDocument doc, String metadataAsJsonString) throws ViewerException {
+    ViewerDatabase viewerDatabase = new ViewerDatabase();
+    viewerDatabase.setUuid(objectToString(doc.get(ViewerSafeConstants.SOLR_DATABASE_ID)));
+    viewerDatabase.setMetadata(JsonTransformer.getObjectFromJson(metadataAsJsonString, ViewerMetadata.class));
+    return viewerDatabase;
+  }
+
+  /**
+   * @return the database metadata (as a JSON string) stored in a database
+   *         document
+   */
+  public static String toMetadataJson(SolrDocument doc) {
+    return objectToString(doc.get(ViewerSafeConstants.SOLR_DATABASE_METADATA));
+  }
+
+  /**
+   * @return true if the document was created by fromDatabase, false if it is a
+   *         schema or table document. Documents created before metadata was
+   *         split do not have a document type and are database documents that
+   *         contain the complete metadata.
+   */
+  public static boolean isDatabaseDocument(SolrDocument doc) {
+    String documentType = objectToString(doc.get(ViewerSafeConstants.SOLR_DATABASE_DOCUMENT_TYPE));
+    return documentType == null || ViewerSafeConstants.SOLR_DATABASE_DOCUMENT_TYPE_DATABASE.equals(documentType);
+  }
+
+  /**
+   * @return true if the database document only contains a summary of the
+   *         metadata, and the schemas and tables are stored in separate
+   *         documents
+   */
+  public static boolean isDatabaseSummaryDocument(SolrDocument doc) {
+    return ViewerSafeConstants.SOLR_DATABASE_DOCUMENT_TYPE_DATABASE.equals(objectToString(doc
+      .get(ViewerSafeConstants.SOLR_DATABASE_DOCUMENT_TYPE)));
+  }
+
+  public static boolean isSchemaDocument(SolrDocument doc) {
+    return ViewerSafeConstants.SOLR_DATABASE_DOCUMENT_TYPE_SCHEMA.equals(objectToString(doc
+      .get(ViewerSafeConstants.SOLR_DATABASE_DOCUMENT_TYPE)));
+  }
+
+  public static boolean isTableDocument(SolrDocument doc) {
+    return ViewerSafeConstants.SOLR_DATABASE_DOCUMENT_TYPE_TABLE.equals(objectToString(doc
+      .get(ViewerSafeConstants.SOLR_DATABASE_DOCUMENT_TYPE)));
+  }
+
+  /**
+   * @return the database privileges (as a JSON string) stored in a database
+   *         summary document, or null if there are none
+   */
+  public static String toPrivilegesJson(SolrDocument doc) {
+    return objectToString(doc.get(ViewerSafeConstants.SOLR_DATABASE_PRIVILEGES));
+  }
+
+  public static List<ViewerPrivilegeStructure> toPrivileges(String privilegesAsJsonString) throws ViewerException {
+    List<ViewerPrivilegeStructure> privileges = new ArrayList<>();
+    if (privilegesAsJsonString != null) {
+      Collections.addAll(privileges,
+        JsonTransformer.getObjectFromJson(privilegesAsJsonString, ViewerPrivilegeStructure[].class));
+    }
+    return privileges;
+  }
+
+  public static ViewerSchema toSchema(SolrDocument doc) throws ViewerException {
+    return JsonTransformer.getObjectFromJson(toMetadataJson(doc), ViewerSchema.class);
+  }
+
+  public static ViewerTable toTable(SolrDocument doc) throws ViewerException {
+    return JsonTransformer.getObjectFromJson(toMetadataJson(doc), ViewerTable.class);
+  }
+
   private static ViewerMetadata toMetadata(SolrDocument doc) throws ViewerException {
-    String metadataAsJsonString = objectToString(doc.get(ViewerSafeConstants.SOLR_DATABASE_METADATA));
+    String metadataAsJsonString = toMetadataJson(doc);
     return JsonTransformer.getObjectFromJson(metadataAsJsonString, ViewerMetadata.class);
   }
 
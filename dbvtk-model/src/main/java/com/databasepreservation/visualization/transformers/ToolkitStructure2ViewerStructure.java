@@ -436,6 +436,7 @@ public class ToolkitStructure2ViewerStructure {
 
     result.setDisplayName(column.getName());
     result.setSolrName(getColumnSolrName(index, column.getType()));
+    result.setSortSolrName(getColumnSortSolrName(result.getSolrName()));
     result.setColumnIndexInEnclosingTable(index);
     result.setDescription(column.getDescription());
     result.setAutoIncrement(column.getIsAutoIncrement());
@@ -461,7 +462,8 @@ public class ToolkitStructure2ViewerStructure {
     String suffix;
 
     if (type instanceof SimpleTypeBinary) {
-      suffix = ViewerSafeConstants.SOLR_DYN_TEXT_GENERAL;
+      // only the name of the file is stored, there is no point in indexing it
+      suffix = ViewerSafeConstants.SOLR_DYN_STORED;
     } else if (type instanceof SimpleTypeBoolean) {
       suffix = ViewerSafeConstants.SOLR_DYN_BOOLEAN;
     } else if (type instanceof SimpleTypeDateTime) {
@@ -492,6 +494,26 @@ public class ToolkitStructure2ViewerStructure {
     return ViewerSafeConstants.SOLR_INDEX_ROW_COLUMN_NAME_PREFIX + index + suffix;
   }
 
+  /**
+   * Gets the name of the field used to sort a column. Text columns are sorted
+   * using a sort key field (with docValues) that the table schema fills with a
+   * copy of the text, the other columns are sorted using their own field.
+   *
+   * @param solrName
+   *          the column name, including the dynamic type suffix
+   * @return the sort field name, or null if the column can not be sorted
+   */
+  private static String getColumnSortSolrName(String solrName) {
+    if (solrName.endsWith(ViewerSafeConstants.SOLR_DYN_TEXT_GENERAL)) {
+      return solrName.substring(0, solrName.length() - ViewerSafeConstants.SOLR_DYN_TEXT_GENERAL.length())
+        + ViewerSafeConstants.SOLR_DYN_SORT;
+    } else if (solrName.endsWith(ViewerSafeConstants.SOLR_DYN_STORED)) {
+      return null;
+    } else {
+      return solrName;
+    }
+  }
+
   private static ViewerType getType(Type type) throws ViewerException {
     ViewerType result = new ViewerType();
 
@@ -0,0 +1,113 @@
+package com.databasepreservation.visualization.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
+
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerColumn;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerDatabase;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerForeignKey;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerMetadata;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerSchema;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerTable;
+
+/**
+ * A parsed database, as kept by the MetadataCache, along with an ETag for its
+ * metadata and some lookup indexes that are computed once when the metadata is
+ * parsed.
+ *
+ * Instances are shared between requests and must not be modified.
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+public class CachedDatabase {
+  private final ViewerDatabase database;
+  private final String eTag;
+
+  // tableUUID -> (solrName -> column)
+  private final Map<String, Map<String, ViewerColumn>> columnsBySolrName;
+
+  // tableUUID -> list of (sourceTable, foreignKey) where the foreign key
+  // references the table
+  private final Map<String, List<Pair<ViewerTable, ViewerForeignKey>>> foreignKeysReferencingTable;
+
+  public CachedDatabase(ViewerDatabase database, String eTag) {
+    this.database = database;
+    this.eTag = eTag;
+
+    columnsBySolrName = new HashMap<>();
+    foreignKeysReferencingTable = new HashMap<>();
+
+    ViewerMetadata metadata = database.getMetadata();
+    for (ViewerSchema schema : metadata.getSchemas()) {
+      for (ViewerTable table : schema.getTables()) {
+        Map<String, ViewerColumn> columns = new HashMap<>();
+        for (ViewerColumn column : table.getColumns()) {
+          columns.put(column.getSolrName(), column);
+        }
+        columnsBySolrName.put(table.getUUID(), columns);
+
+        if (table.getForeignKeys() != null) {
+          for (ViewerForeignKey foreignKey : table.getForeignKeys()) {
+            List<Pair<ViewerTable, ViewerForeignKey>> referencing = foreignKeysReferencingTable.get(foreignKey
+              .getReferencedTableUUID());
+            if (referencing == null) {
+              referencing = new ArrayList<>();
+              foreignKeysReferencingTable.put(foreignKey.getReferencedTableUUID(), referencing);
+            }
+            referencing.add(new ImmutablePair<>(table, foreignKey));
+          }
+        }
+      }
+    }
+  }
+
+  public ViewerDatabase getDatabase() {
+    return database;
+  }
+
+  public ViewerMetadata getMetadata() {
+    return database.getMetadata();
+  }
+
+  /**
+   * @return an identifier for the current version of the metadata, suitable to
+   *         be used as an HTTP ETag
+   */
+  public String getETag() {
+    return eTag;
+  }
+
+  public ViewerTable getTable(String tableUUID) {
+    return database.getMetadata().getTable(tableUUID);
+  }
+
+  /**
+   * @return the column with the specified solr name in the table, or null if it
+   *         does not exist
+   */
+  public ViewerColumn getColumn(String tableUUID, String solrName) {
+    Map<String, ViewerColumn> columns = columnsBySolrName.get(tableUUID);
+    if (columns == null) {
+      return null;
+    }
+    return columns.get(solrName);
+  }
+
+  /**
+   * @return pairs of (source table, foreign key) for all the foreign keys that
+   *         reference the specified table
+   */
+  public List<Pair<ViewerTable, ViewerForeignKey>> getForeignKeysReferencing(String tableUUID) {
+    List<Pair<ViewerTable, ViewerForeignKey>> referencing = foreignKeysReferencingTable.get(tableUUID);
+    if (referencing == null) {
+      return Collections.emptyList();
+    }
+    return Collections.unmodifiableList(referencing);
+  }
+}
@@ -0,0 +1,228 @@
+package com.databasepreservation.visualization.utils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.request.QueryRequest;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A SolrClient that coalesces identical concurrent queries: while a query is
+ * running, other threads making the same query (same collection, handler and
+ * parameters) wait for it and share its response, instead of sending it to
+ * Solr again. This protects Solr when many users open the same database or
+ * table at the same time.
+ *
+ * Responses (and the documents in them) are mutable and callers may change
+ * them, so when a response is shared every caller gets its own copy. Requests
+ * that nobody waited for return the response unchanged. When the request
+ * fails, every waiting caller gets the same exception.
+ *
+ * Only plain queries (including real-time gets) are coalesced. Updates and
+ * queries with their own response parser (e.g. streamed CSV) are sent to the
+ * delegate client.
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+public class CoalescingSolrClient extends SolrClient {
+  private static final Logger LOGGER = LoggerFactory.getLogger(CoalescingSolrClient.class);
+
+  private final SolrClient delegate;
+  private final ConcurrentMap<String, Flight> inFlight = new ConcurrentHashMap<>();
+  private final Metrics.Counter coalescedRequests = Metrics.counter("dbvtk_solr_coalesced_requests_total",
+    "Solr requests answered with the response of an identical concurrent request").labels();
+
+  public CoalescingSolrClient(SolrClient delegate) {
+    this.delegate = delegate;
+  }
+
+  /**
+   * @return the client that actually sends the requests to Solr
+   */
+  public SolrClient getDelegate() {
+    return delegate;
+  }
+
+  /**
+   * @return the number of requests that were answered with the response of an
+   *         identical request
+   */
+  public long getCoalescedRequests() {
+    return coalescedRequests.get();
+  }
+
+  @Override
+  public NamedList<Object> request(SolrRequest request, String collection) throws SolrServerException, IOException {
+    String key = getKey(request, collection);
+    if (key == null) {
+      return delegate.request(request, collection);
+    }
+
+    Flight flight = new Flight();
+    Flight existing;
+    while ((existing = inFlight.putIfAbsent(key, flight)) != null) {
+      if (existing.join()) {
+        coalescedRequests.inc();
+        LOGGER.trace("Waiting for identical request in {}", key);
+        return copy(await(existing.response));
+      }
+      // the identical request finished, but was not removed yet
+      inFlight.remove(key, existing);
+    }
+
+    try {
+      NamedList<Object> response = delegate.request(request, collection);
+      boolean shared = flight.close() > 0;
+      flight.response.complete(response);
+      // the waiters copy the response, so it must not be changed by this caller
+      return shared ? copy(response) : response;
+    } catch (SolrServerException | IOException | RuntimeException e) {
+      flight.close();
+      flight.response.completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlight.remove(key, flight);
+    }
+  }
+
+  /**
+   * @return a deep copy of a response, or of a value in a response (values
+   *         other than named lists, documents, maps and lists are immutable)
+   */
+  @SuppressWarnings("unchecked")
+  static <T> T copy(T value) {
+    Object copy;
+    if (value instanceof SolrDocumentList) {
+      SolrDocumentList documents = (SolrDocumentList) value;
+      SolrDocumentList documentsCopy = new SolrDocumentList();
+      documentsCopy.setNumFound(documents.getNumFound());
+      documentsCopy.setStart(documents.getStart());
+      documentsCopy.setMaxScore(documents.getMaxScore());
+      for (SolrDocument document : documents) {
+        documentsCopy.add(copy(document));
+      }
+      copy = documentsCopy;
+    } else if (value instanceof SolrDocument) {
+      SolrDocument document = (SolrDocument) value;
+      SolrDocument documentCopy = new SolrDocument();
+      for (Map.Entry<String, Object> field : document) {
+        documentCopy.setField(field.getKey(), copy(field.getValue()));
+      }
+      if (document.hasChildDocuments()) {
+        for (SolrDocument child : document.getChildDocuments()) {
+          documentCopy.addChildDocument(copy(child));
+        }
+      }
+      copy = documentCopy;
+    } else if (value instanceof NamedList) {
+      NamedList<Object> list = (NamedList<Object>) value;
+      NamedList<Object> listCopy = value instanceof SimpleOrderedMap ? new SimpleOrderedMap<>() : new NamedList<>();
+      for (int i = 0; i < list.size(); i++) {
+        listCopy.add(list.getName(i), copy(list.getVal(i)));
+      }
+      copy = listCopy;
+    } else if (value instanceof Map) {
+      Map<Object, Object> mapCopy = new LinkedHashMap<>();
+      for (Map.Entry<Object, Object> entry : ((Map<Object, Object>) value).entrySet()) {
+        mapCopy.put(entry.getKey(), copy(entry.getValue()));
+      }
+      copy = mapCopy;
+    } else if (value instanceof List) {
+      List<Object> listCopy = new ArrayList<>();
+      for (Object item : (List<Object>) value) {
+        listCopy.add(copy(item));
+      }
+      copy = listCopy;
+    } else {
+      copy = value;
+    }
+    return (T) copy;
+  }
+
+  /**
+   * @return the key that identifies the request, or null if the request can
+   *         not be coalesced
+   */
+  private static String getKey(SolrRequest request, String collection) {
+    if (!(request instanceof QueryRequest) || request.getResponseParser() != null
+      || request.getStreamingResponseCallback() != null) {
+      return null;
+    }
+
+    SolrParams params = request.getParams();
+    return collection + request.getPath() + (params != null ? params.toQueryString() : "");
+  }
+
+  private static NamedList<Object> await(CompletableFuture<NamedList<Object>> flight) throws SolrServerException,
+    IOException {
+    try {
+      return flight.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SolrServerException("Interrupted while waiting for an identical request", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof SolrServerException) {
+        throw (SolrServerException) cause;
+      } else if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new SolrServerException(cause);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    delegate.close();
+  }
+
+  /**
+   * A request that is running, and the callers waiting for its response
+   */
+  private static class Flight {
+    private final CompletableFuture<NamedList<Object>> response = new CompletableFuture<>();
+    // guarded by this
+    private int waiters = 0;
+    private boolean closed = false;
+
+    /**
+     * @return true if the caller can wait for the response, false if the
+     *         request already finished
+     */
+    private synchronized boolean join() {
+      if (closed) {
+        return false;
+      }
+      waiters++;
+      return true;
+    }
+
+    /**
+     * Stops accepting waiters
+     *
+     * @return the number of callers waiting for the response
+     */
+    private synchronized int close() {
+      closed = true;
+      return waiters;
+    }
+  }
+}
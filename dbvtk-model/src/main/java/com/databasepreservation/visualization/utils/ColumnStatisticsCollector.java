@@ -0,0 +1,169 @@
+package com.databasepreservation.visualization.utils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerColumn;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerColumnStatistics;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerType;
+
+/**
+ * Computes statistics about the values of a column as the rows are ingested,
+ * using constant memory per column: min/max, null counts and, for columns with
+ * few distinct values, the exact distinct count and the most frequent values.
+ * Columns with more distinct values get an HyperLogLog estimate of the distinct
+ * values, allocated only when the exact counts are discarded.
+ *
+ * Not thread-safe.
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+public class ColumnStatisticsCollector {
+  // columns with more distinct values than this do not get top values
+  private static final int MAX_TRACKED_VALUES = 1000;
+  private static final int MAX_TRACKED_VALUE_LENGTH = 200;
+  private static final int TOP_VALUES = 10;
+
+  private final ViewerType.dbTypes dbType;
+
+  private long nullCount = 0;
+  private long nonNullCount = 0;
+  private String min = null;
+  private String max = null;
+  private BigDecimal numericMin = null;
+  private BigDecimal numericMax = null;
+  private boolean comparable;
+
+  // created when valueCounts is discarded, from the values counted until then
+  private HyperLogLog distinctValues = null;
+  // exact value counts, discarded (set to null) when there are too many values
+  private Map<String, Long> valueCounts = new HashMap<>();
+
+  public ColumnStatisticsCollector(ViewerColumn column) {
+    dbType = column.getType() != null ? column.getType().getDbType() : null;
+    comparable = dbType != null && !ViewerType.dbTypes.BINARY.equals(dbType)
+      && !ViewerType.dbTypes.COMPOSED_ARRAY.equals(dbType) && !ViewerType.dbTypes.COMPOSED_STRUCTURE.equals(dbType);
+
+    if (ViewerType.dbTypes.BINARY.equals(dbType)) {
+      // values are the names of the files where the blobs are stored
+      valueCounts = null;
+    }
+  }
+
+  /**
+   * @param value
+   *          the cell value, null for database NULLs
+   */
+  public void add(String value) {
+    if (value == null) {
+      nullCount++;
+      return;
+    }
+    nonNullCount++;
+
+    if (comparable) {
+      updateMinMax(value);
+    }
+
+    if (valueCounts != null) {
+      if (value.length() > MAX_TRACKED_VALUE_LENGTH) {
+        discardValueCounts();
+      } else {
+        Long count = valueCounts.get(value);
+        valueCounts.put(value, count == null ? 1L : count + 1L);
+        if (valueCounts.size() > MAX_TRACKED_VALUES) {
+          discardValueCounts();
+        }
+      }
+    }
+
+    if (distinctValues != null) {
+      distinctValues.add(value);
+    }
+  }
+
+  /**
+   * Stops counting the values exactly, and starts estimating the distinct
+   * values from the ones seen so far
+   */
+  private void discardValueCounts() {
+    distinctValues = new HyperLogLog();
+    for (String trackedValue : valueCounts.keySet()) {
+      distinctValues.add(trackedValue);
+    }
+    valueCounts = null;
+  }
+
+  private void updateMinMax(String value) {
+    if (ViewerType.dbTypes.NUMERIC_INTEGER.equals(dbType) || ViewerType.dbTypes.NUMERIC_FLOATING_POINT.equals(dbType)) {
+      BigDecimal number;
+      try {
+        number = new BigDecimal(value);
+      } catch (NumberFormatException e) {
+        // not a number after all (e.g. NaN or Infinity), stop computing min/max
+        comparable = false;
+        min = null;
+        max = null;
+        return;
+      }
+      if (numericMin == null || number.compareTo(numericMin) < 0) {
+        numericMin = number;
+        min = value;
+      }
+      if (numericMax == null || number.compareTo(numericMax) > 0) {
+        numericMax = number;
+        max = value;
+      }
+    } else {
+      // dates are in UTC ISO-8601 format, so they can be compared as strings
+      if (min == null || value.compareTo(min) < 0) {
+        min = value;
+      }
+      if (max == null || value.compareTo(max) > 0) {
+        max = value;
+      }
+    }
+  }
+
+  public ViewerColumnStatistics getStatistics() {
+    ViewerColumnStatistics statistics = new ViewerColumnStatistics();
+    statistics.setNullCount(nullCount);
+    statistics.setNonNullCount(nonNullCount);
+    statistics.setMin(min);
+    statistics.setMax(max);
+
+    if (valueCounts != null) {
+      statistics.setDistinctCount(valueCounts.size());
+      statistics.setDistinctCountExact(true);
+      statistics.setTopValues(getTopValues());
+    } else if (distinctValues != null) {
+      // the estimate can not be larger than the number of values
+      statistics.setDistinctCount(Math.min(distinctValues.estimate(), nonNullCount));
+      statistics.setDistinctCountExact(false);
+    }
+    return statistics;
+  }
+
+  private LinkedHashMap<String, Long> getTopValues() {
+    List<Map.Entry<String, Long>> entries = new ArrayList<>(valueCounts.entrySet());
+    Collections.sort(entries, new Comparator<Map.Entry<String, Long>>() {
+      @Override
+      public int compare(Map.Entry<String, Long> o1, Map.Entry<String, Long> o2) {
+        int byCount = o2.getValue().compareTo(o1.getValue());
+        return byCount != 0 ? byCount : o1.getKey().compareTo(o2.getKey());
+      }
+    });
+
+    LinkedHashMap<String, Long> topValues = new LinkedHashMap<>();
+    for (Map.Entry<String, Long> entry : entries.subList(0, Math.min(TOP_VALUES, entries.size()))) {
+      topValues.put(entry.getKey(), entry.getValue());
+    }
+    return topValues;
+  }
+}
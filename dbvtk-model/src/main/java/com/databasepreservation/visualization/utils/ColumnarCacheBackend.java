@@ -0,0 +1,472 @@
+package com.databasepreservation.visualization.utils;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.apache.solr.common.SolrDocument;
+
+import org.roda.core.data.adapter.facet.Facets;
+import org.roda.core.data.adapter.filter.Filter;
+import org.roda.core.data.adapter.sort.Sorter;
+import org.roda.core.data.adapter.sublist.Sublist;
+import org.roda.core.data.exceptions.GenericException;
+import org.roda.core.data.exceptions.NotFoundException;
+import org.roda.core.data.exceptions.RequestNotValidException;
+import org.roda.core.data.v2.index.IndexResult;
+import org.roda.core.data.v2.index.IsIndexed;
+import org.roda.core.data.v2.user.RodaUser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.databasepreservation.visualization.client.SavedSearch;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerDatabase;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerRow;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerRowWithRelations;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerSchema;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerTable;
+import com.databasepreservation.visualization.exceptions.ViewerException;
+
+/**
+ * Wraps an index backend, keeping the rows of small tables in memory (see
+ * ColumnarTable) so that finding and counting their rows does not query the
+ * index.
+ *
+ * A table is loaded the first time its rows are searched, if it has at most
+ * the configured number of rows, and the least recently used tables are
+ * evicted when the cache is full. Requests that can not be answered from
+ * memory (facets, or queries that ColumnarTable can not evaluate) and all the
+ * other operations are passed to the wrapped backend.
+ *
+ * Tables are evicted when rows are added or committed through this backend.
+ * Changes made by other processes (e.g. a table being ingested while it is
+ * browsed) are noticed by comparing the number of rows of the cached table with
+ * the index, after the table has been cached for some time.
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+public class ColumnarCacheBackend implements IndexBackend {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ColumnarCacheBackend.class);
+  private static final int MAX_UNCACHEABLE_TABLES = 1024;
+  private static final long DEFAULT_TIME_TO_LIVE = 60 * 1000L;
+
+  private static final Metrics.Family<Metrics.Counter> CACHE_REQUESTS = Metrics.counter(
+    "dbvtk_columnar_cache_requests_total",
+    "Row searches on the in-memory table cache, by result (hit, miss or bypass to the index)", "result");
+  private static final Metrics.Counter HITS = CACHE_REQUESTS.labels("hit");
+  private static final Metrics.Counter MISSES = CACHE_REQUESTS.labels("miss");
+  private static final Metrics.Counter BYPASSES = CACHE_REQUESTS.labels("bypass");
+
+  private final IndexBackend delegate;
+  private final int maxRows;
+  private final long timeToLive;
+  // the Lucene backend returns the stored values as they were indexed
+  private final boolean valuesAsIndexed;
+
+  // guarded by itself
+  private final Map<String, CachedTable> tables;
+
+  // tables that are too large (or have values that can not be kept in
+  // memory), and when that was found out. guarded by tables
+  private final Map<String, Long> uncacheable;
+
+  // tables being loaded (or revalidated), so that concurrent searches on a
+  // table that is not cached wait for a single load. guarded by tables
+  private final Map<String, FutureTask<CachedTable>> loading = new HashMap<>();
+
+  // incremented when tables are evicted, so that tables loaded meanwhile are
+  // not cached; guarded by tables
+  private long generation = 0;
+
+  private static final class CachedTable {
+    private final ColumnarTable table;
+    // when the number of rows in the index was last checked to be the same
+    private final long validated;
+
+    CachedTable(ColumnarTable table) {
+      this.table = table;
+      this.validated = System.currentTimeMillis();
+    }
+  }
+
+  /**
+   * @param maxRows
+   *          the maximum number of rows of a table kept in memory
+   * @param maxTables
+   *          the maximum number of tables kept in memory
+   */
+  public ColumnarCacheBackend(IndexBackend delegate, int maxRows, int maxTables) {
+    this(delegate, maxRows, maxTables, DEFAULT_TIME_TO_LIVE);
+  }
+
+  /**
+   * @param maxRows
+   *          the maximum number of rows of a table kept in memory
+   * @param maxTables
+   *          the maximum number of tables kept in memory
+   * @param timeToLive
+   *          milliseconds after which the number of rows of a cached table is
+   *          compared with the index again (and the table is loaded again if
+   *          it changed)
+   */
+  public ColumnarCacheBackend(IndexBackend delegate, int maxRows, int maxTables, long timeToLive) {
+    this.delegate = delegate;
+    this.maxRows = maxRows;
+    this.timeToLive = timeToLive;
+    this.valuesAsIndexed = delegate instanceof LuceneIndexBackend;
+    this.tables = createLRUMap(maxTables);
+    this.uncacheable = createLRUMap(MAX_UNCACHEABLE_TABLES);
+  }
+
+  private static <V> Map<String, V> createLRUMap(final int maxEntries) {
+    return new LinkedHashMap<String, V>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+        return size() > maxEntries;
+      }
+    };
+  }
+
+  public IndexBackend getDelegate() {
+    return delegate;
+  }
+
+  private boolean isExpired(long timestamp) {
+    return System.currentTimeMillis() - timestamp > timeToLive;
+  }
+
+  /**
+   * Gets a table from the cache, loading it if needed. Concurrent requests for
+   * a table that is not cached wait for a single load.
+   *
+   * @return the table, or null if it can not be kept in memory
+   */
+  private ColumnarTable getTable(final RodaUser user, final String tableUUID) throws GenericException,
+    RequestNotValidException {
+    FutureTask<CachedTable> task;
+    boolean load = false;
+    long loadGeneration;
+    synchronized (tables) {
+      final CachedTable cached = tables.get(tableUUID);
+      if (cached != null && !isExpired(cached.validated)) {
+        return cached.table;
+      }
+      Long uncacheableSince = uncacheable.get(tableUUID);
+      if (uncacheableSince != null && !isExpired(uncacheableSince)) {
+        return null;
+      }
+
+      loadGeneration = generation;
+      task = loading.get(tableUUID);
+      if (task == null) {
+        task = new FutureTask<>(new Callable<CachedTable>() {
+          @Override
+          public CachedTable call() throws Exception {
+            return load(user, tableUUID, cached);
+          }
+        });
+        loading.put(tableUUID, task);
+        load = true;
+      }
+    }
+
+    if (load) {
+      task.run();
+    }
+
+    CachedTable loaded;
+    try {
+      loaded = task.get();
+    } catch (ExecutionException e) {
+      if (load) {
+        synchronized (tables) {
+          loading.remove(tableUUID);
+        }
+      }
+      Throwable cause = e.getCause();
+      if (cause instanceof GenericException) {
+        throw (GenericException) cause;
+      } else if (cause instanceof RequestNotValidException) {
+        throw (RequestNotValidException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else {
+        throw new GenericException("Could not load table " + tableUUID, cause);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new GenericException("Interrupted while waiting for table " + tableUUID, e);
+    }
+
+    if (load) {
+      synchronized (tables) {
+        loading.remove(tableUUID);
+        if (loadGeneration == generation) {
+          if (loaded != null) {
+            tables.put(tableUUID, loaded);
+            uncacheable.remove(tableUUID);
+          } else {
+            tables.remove(tableUUID);
+            uncacheable.put(tableUUID, System.currentTimeMillis());
+          }
+        }
+      }
+    }
+    return loaded != null ? loaded.table : null;
+  }
+
+  /**
+   * Loads a table, or keeps the previously cached version if the number of
+   * rows in the index did not change
+   *
+   * @return the table, or null if it can not be kept in memory
+   */
+  private CachedTable load(RodaUser user, String tableUUID, CachedTable previous) throws GenericException,
+    RequestNotValidException {
+    long start = System.currentTimeMillis();
+    long total = delegate.countRows(user, ViewerRow.class, tableUUID, null);
+
+    if (previous != null && previous.table.getRowCount() == total) {
+      return new CachedTable(previous.table);
+    }
+
+    if (total > maxRows) {
+      LOGGER.debug("Table {} has {} rows, it will not be kept in memory", tableUUID, total);
+      return null;
+    }
+
+    ColumnarTable.Builder builder = ColumnarTable.builder((int) total, valuesAsIndexed);
+    try (SolrDocumentStream stream = delegate.streamRows(user, tableUUID, null, null, null, null)) {
+      SolrDocument doc;
+      while ((doc = stream.next()) != null) {
+        if (builder.getRowCount() >= total || !builder.add(SolrUtils.solrDocumentTo(ViewerRow.class, doc))) {
+          LOGGER.debug("Table {} will not be kept in memory", tableUUID);
+          return null;
+        }
+      }
+    } catch (IOException e) {
+      LOGGER.debug("Could not close the stream of table {}", tableUUID, e);
+    }
+
+    // rows added while loading (e.g. while the table is being ingested) are
+    // noticed when the cached table expires
+    if (builder.getRowCount() != total) {
+      LOGGER.debug("Table {} changed while being loaded, it will not be kept in memory", tableUUID);
+      return null;
+    }
+
+    ColumnarTable table = builder.build();
+    LOGGER.info("Loaded table {} in memory ({} rows, {} columns) in {} ms", tableUUID, table.getRowCount(),
+      table.getColumnCount(), System.currentTimeMillis() - start);
+    return new CachedTable(table);
+  }
+
+  private void evict(String tableUUID) {
+    synchronized (tables) {
+      generation++;
+      tables.remove(tableUUID);
+      uncacheable.remove(tableUUID);
+    }
+  }
+
+  private void evictAll() {
+    synchronized (tables) {
+      generation++;
+      tables.clear();
+      uncacheable.clear();
+    }
+  }
+
+  private static boolean hasFacets(Facets facets) {
+    return facets != null && (!facets.getParameters().isEmpty() || (facets.getQuery() != null && !facets.getQuery()
+      .isEmpty()));
+  }
+
+  /**
+   * @return the rows found in memory, or null if the request must be passed to
+   *         the wrapped backend
+   */
+  private <T extends IsIndexed> IndexResult<T> findInMemory(RodaUser user, Class<T> classToReturn, String tableUUID,
+    Filter filter, Sorter sorter, Sublist sublist, Facets facets, List<String> fieldsToReturn)
+    throws GenericException, RequestNotValidException {
+    IndexResult<T> ret = null;
+    if (ViewerRow.class.equals(classToReturn) && !hasFacets(facets)) {
+      boolean cached;
+      synchronized (tables) {
+        cached = tables.containsKey(tableUUID);
+      }
+      ColumnarTable table = getTable(user, tableUUID);
+      if (table != null) {
+        ret = table.find(classToReturn, LuceneDocuments.parseFilter(filter), sorter, sublist, fieldsToReturn);
+      }
+      if (ret != null) {
+        (cached ? HITS : MISSES).inc();
+      }
+    }
+
+    if (ret == null) {
+      BYPASSES.inc();
+    }
+    return ret;
+  }
+
+  @Override
+  public void addDatabase(ViewerDatabase database) throws ViewerException {
+    delegate.addDatabase(database);
+    evictAll();
+  }
+
+  @Override
+  public void addTable(ViewerTable table) throws ViewerException {
+    delegate.addTable(table);
+    evict(table.getUUID());
+  }
+
+  @Override
+  public void addRow(ViewerTable table, ViewerRow row) throws ViewerException {
+    delegate.addRow(table, row);
+    evict(table.getUUID());
+  }
+
+  @Override
+  public void commitAll() throws ViewerException {
+    delegate.commitAll();
+    evictAll();
+  }
+
+  @Override
+  public void freeResources() throws ViewerException {
+    evictAll();
+    delegate.freeResources();
+  }
+
+  @Override
+  public <T extends IsIndexed> IndexResult<T> find(RodaUser user, Class<T> classToReturn, Filter filter, Sorter sorter,
+    Sublist sublist, Facets facets) throws GenericException, RequestNotValidException {
+    return delegate.find(user, classToReturn, filter, sorter, sublist, facets);
+  }
+
+  @Override
+  public <T extends IsIndexed> Long count(RodaUser user, Class<T> classToReturn, Filter filter)
+    throws GenericException, RequestNotValidException {
+    return delegate.count(user, classToReturn, filter);
+  }
+
+  @Override
+  public <T extends IsIndexed> T retrieve(RodaUser user, Class<T> classToReturn, String id) throws NotFoundException,
+    GenericException {
+    return delegate.retrieve(user, classToReturn, id);
+  }
+
+  @Override
+  public CachedDatabase retrieveCachedDatabase(RodaUser user, String databaseUUID) throws NotFoundException,
+    GenericException {
+    return delegate.retrieveCachedDatabase(user, databaseUUID);
+  }
+
+  @Override
+  public ViewerDatabase retrieveDatabaseSummary(RodaUser user, String databaseUUID) throws NotFoundException,
+    GenericException {
+    return delegate.retrieveDatabaseSummary(user, databaseUUID);
+  }
+
+  @Override
+  public ViewerSchema retrieveSchema(RodaUser user, String databaseUUID, String schemaUUID) throws NotFoundException,
+    GenericException {
+    return delegate.retrieveSchema(user, databaseUUID, schemaUUID);
+  }
+
+  @Override
+  public ViewerTable retrieveTable(RodaUser user, String databaseUUID, String tableUUID) throws NotFoundException,
+    GenericException {
+    return delegate.retrieveTable(user, databaseUUID, tableUUID);
+  }
+
+  @Override
+  public <T extends IsIndexed> IndexResult<T> findRows(RodaUser user, Class<T> classToReturn, String tableUUID,
+    Filter filter, Sorter sorter, Sublist sublist, Facets facets) throws GenericException, RequestNotValidException {
+    IndexResult<T> ret = findInMemory(user, classToReturn, tableUUID, filter, sorter, sublist, facets, null);
+    return ret != null ? ret : delegate.findRows(user, classToReturn, tableUUID, filter, sorter, sublist, facets);
+  }
+
+  @Override
+  public <T extends IsIndexed> IndexResult<T> findRows(RodaUser user, Class<T> classToReturn, String tableUUID,
+    Filter filter, Sorter sorter, Sublist sublist, Facets facets, List<String> fieldsToReturn)
+    throws GenericException, RequestNotValidException {
+    IndexResult<T> ret = findInMemory(user, classToReturn, tableUUID, filter, sorter, sublist, facets,
+      fieldsToReturn);
+    return ret != null ? ret : delegate.findRows(user, classToReturn, tableUUID, filter, sorter, sublist, facets,
+      fieldsToReturn);
+  }
+
+  /**
+   * Searches in memory are not cancelled, they are faster than the queries
+   * that would supersede them
+   */
+  @Override
+  public <T extends IsIndexed> IndexResult<T> findRows(RodaUser user, Class<T> classToReturn, String tableUUID,
+    Filter filter, Sorter sorter, Sublist sublist, Facets facets, List<String> fieldsToReturn, String requestTag,
+    long requestSerial) throws GenericException, RequestNotValidException {
+    IndexResult<T> ret = findInMemory(user, classToReturn, tableUUID, filter, sorter, sublist, facets,
+      fieldsToReturn);
+    return ret != null ? ret : delegate.findRows(user, classToReturn, tableUUID, filter, sorter, sublist, facets,
+      fieldsToReturn, requestTag, requestSerial);
+  }
+
+  /**
+   * Streams (used by the exports) are always read from the index
+   */
+  @Override
+  public SolrDocumentStream streamRows(RodaUser user, String tableUUID, Filter filter, Sorter sorter,
+    Sublist sublist, List<String> fields) throws GenericException, RequestNotValidException {
+    return delegate.streamRows(user, tableUUID, filter, sorter, sublist, fields);
+  }
+
+  @Override
+  public <T extends IsIndexed> Long countRows(RodaUser user, Class<T> classToReturn, String tableUUID, Filter filter)
+    throws GenericException, RequestNotValidException {
+    ColumnarTable table = getTable(user, tableUUID);
+    Long ret = table != null ? table.count(LuceneDocuments.parseFilter(filter)) : null;
+    return ret != null ? ret : delegate.countRows(user, classToReturn, tableUUID, filter);
+  }
+
+  @Override
+  public <T extends IsIndexed> T retrieveRows(RodaUser user, Class<T> classToReturn, String tableUUID, String rowUUID)
+    throws NotFoundException, GenericException {
+    return delegate.retrieveRows(user, classToReturn, tableUUID, rowUUID);
+  }
+
+  @Override
+  public <T extends IsIndexed> Map<String, List<T>> retrieveRows(RodaUser user, Class<T> classToReturn,
+    Map<String, ? extends Collection<String>> rowUUIDsByTable) throws GenericException, RequestNotValidException {
+    return delegate.retrieveRows(user, classToReturn, rowUUIDsByTable);
+  }
+
+  @Override
+  public ViewerRowWithRelations retrieveRowWithRelations(RodaUser user, String databaseUUID, String tableUUID,
+    String rowUUID) throws NotFoundException, GenericException {
+    return delegate.retrieveRowWithRelations(user, databaseUUID, tableUUID, rowUUID);
+  }
+
+  @Override
+  public void addSavedSearch(RodaUser user, SavedSearch savedSearch) throws NotFoundException, GenericException {
+    delegate.addSavedSearch(user, savedSearch);
+  }
+
+  @Override
+  public void editSavedSearch(RodaUser user, String uuid, String name, String description) throws NotFoundException,
+    GenericException {
+    delegate.editSavedSearch(user, uuid, name, description);
+  }
+
+  @Override
+  public void deleteSavedSearch(RodaUser user, String uuid) throws NotFoundException, GenericException {
+    delegate.deleteSavedSearch(user, uuid);
+  }
+}
@@ -0,0 +1,1381 @@
+package com.databasepreservation.visualization.utils;
+
+import java.io.IOException;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.DoublePoint;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.MatchNoDocsQuery;
+import org.apache.lucene.search.PhraseQuery;
+import org.apache.lucene.search.PointRangeQuery;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TermRangeQuery;
+import org.apache.lucene.search.WildcardQuery;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.NumericUtils;
+import org.apache.lucene.util.automaton.CharacterRunAutomaton;
+import org.roda.core.data.adapter.sort.SortParameter;
+import org.roda.core.data.adapter.sort.Sorter;
+import org.roda.core.data.adapter.sublist.Sublist;
+import org.roda.core.data.v2.index.FacetFieldResult;
+import org.roda.core.data.v2.index.IndexResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerCell;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerRow;
+import com.databasepreservation.visualization.shared.ViewerSafeConstants;
+
+/**
+ * The rows of a table kept in memory by column, so that small tables can be
+ * filtered, sorted and paged without querying the index.
+ *
+ * Text, string and boolean values are dictionary encoded: each row keeps the
+ * code of its value (in a byte, char or int array, depending on the number of
+ * distinct values), and each distinct value is analyzed and ranked only once.
+ * Numbers and dates are kept in primitive arrays.
+ *
+ * Filters are evaluated on the Lucene queries created by LuceneDocuments, with
+ * the same field types and analysis as the embedded Lucene backend (so words
+ * are not stemmed, as they are by the Solr schema). The catch-all "search"
+ * field is matched by analyzing the values as they are returned by the index.
+ * Numbers and dates are only matched that way if the index returns them as
+ * they were indexed (the Lucene backend does, Solr does not), otherwise a
+ * search on the catch-all field of a table with those is left to the index.
+ * Rows are kept in the order they were added (ColumnarCacheBackend streams
+ * them by id), which is used instead of the relevance when there is no sorter,
+ * and to break ties.
+ *
+ * Instances are immutable once built and can be shared between threads.
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+final class ColumnarTable {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ColumnarTable.class);
+
+  private final int rowCount;
+  private final IdColumn ids;
+  private final Map<String, Column> columns;
+  private final boolean valuesAsIndexed;
+
+  private ColumnarTable(int rowCount, IdColumn ids, Map<String, Column> columns, boolean valuesAsIndexed) {
+    this.rowCount = rowCount;
+    this.ids = ids;
+    this.columns = columns;
+    this.valuesAsIndexed = valuesAsIndexed;
+  }
+
+  /**
+   * @param valuesAsIndexed
+   *          true if the index returns the values exactly as they were
+   *          indexed (and copied to the catch-all field)
+   */
+  static Builder builder(int capacity, boolean valuesAsIndexed) {
+    return new Builder(capacity, valuesAsIndexed);
+  }
+
+  int getRowCount() {
+    return rowCount;
+  }
+
+  int getColumnCount() {
+    return columns.size();
+  }
+
+  /**
+   * @return the rows that match the query, or null if the query can not be
+   *         evaluated in memory
+   */
+  <T> IndexResult<T> find(Class<T> classToReturn, Query query, Sorter sorter, Sublist sublist,
+    List<String> fieldsToReturn) {
+    BitSet matches = matchOrNull(query);
+    if (matches == null) {
+      return null;
+    }
+
+    int[] rows = sort(matches, sorter);
+    int from = Math.min(sublist.getFirstElementIndex(), rows.length);
+    int to = (int) Math.min((long) from + sublist.getMaximumElementCount(), rows.length);
+    Set<String> fields = fieldsToReturn != null ? new HashSet<>(fieldsToReturn) : null;
+
+    List<T> docs = new ArrayList<>(to - from);
+    for (int i = from; i < to; i++) {
+      docs.add(classToReturn.cast(toRow(rows[i], fields)));
+    }
+    return new IndexResult<T>(sublist.getFirstElementIndex(), docs.size(), rows.length, docs,
+      Collections.<FacetFieldResult> emptyList());
+  }
+
+  /**
+   * @return the number of rows that match the query, or null if the query can
+   *         not be evaluated in memory
+   */
+  Long count(Query query) {
+    BitSet matches = matchOrNull(query);
+    return matches != null ? Long.valueOf(matches.cardinality()) : null;
+  }
+
+  private BitSet matchOrNull(Query query) {
+    try {
+      return match(query);
+    } catch (UnsupportedQueryException e) {
+      LOGGER.debug("Can not evaluate query {} in memory: {}", query, e.getMessage());
+      return null;
+    }
+  }
+
+  private ViewerRow toRow(int row, Set<String> fields) {
+    ViewerRow viewerRow = new ViewerRow();
+    viewerRow.setUUID(ids.getValue(row));
+
+    Map<String, ViewerCell> cells = new HashMap<>();
+    for (Column column : columns.values()) {
+      if (column.has(row) && (fields == null || fields.contains(column.name))) {
+        ViewerCell cell = new ViewerCell();
+        cell.setValue(column.getValue(row));
+        cells.put(column.name, cell);
+      }
+    }
+    viewerRow.setCells(cells);
+    return viewerRow;
+  }
+
+  /***********************************************************************************
+   * Sorting
+   **********************************************************************************/
+
+  private int[] sort(BitSet matches, Sorter sorter) {
+    final List<Column> sortColumns = new ArrayList<>();
+    final List<Boolean> descending = new ArrayList<>();
+    if (sorter != null) {
+      for (SortParameter parameter : sorter.getParameters()) {
+        Column column = getSortColumn(parameter.getName());
+        if (column != null) {
+          sortColumns.add(column);
+          descending.add(parameter.isDescending());
+        }
+      }
+    }
+
+    int[] rows = new int[matches.cardinality()];
+    int i = 0;
+    for (int row = matches.nextSetBit(0); row >= 0; row = matches.nextSetBit(row + 1)) {
+      rows[i++] = row;
+    }
+    if (sortColumns.isEmpty()) {
+      return rows;
+    }
+
+    Integer[] boxed = new Integer[rows.length];
+    for (i = 0; i < rows.length; i++) {
+      boxed[i] = rows[i];
+    }
+
+    // the sort is stable, so ties keep the order of the rows
+    Arrays.sort(boxed, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer a, Integer b) {
+        for (int j = 0; j < sortColumns.size(); j++) {
+          Column column = sortColumns.get(j);
+          boolean hasA = column.has(a);
+          boolean hasB = column.has(b);
+          if (hasA != hasB) {
+            // missing values last, in both directions
+            return hasA ? -1 : 1;
+          }
+          if (hasA) {
+            int result = Long.compare(column.getSortKey(a), column.getSortKey(b));
+            if (result != 0) {
+              return descending.get(j) ? -result : result;
+            }
+          }
+        }
+        return 0;
+      }
+    });
+
+    for (i = 0; i < rows.length; i++) {
+      rows[i] = boxed[i];
+    }
+    return rows;
+  }
+
+  /**
+   * @return the column to sort by the field, as in LuceneDocuments.parseSorter
+   *         (text columns are sorted by their "_sort" field), or null if the
+   *         field can not be sorted
+   */
+  private Column getSortColumn(String field) {
+    if (ViewerSafeConstants.SOLR_ROW_ID.equals(field)) {
+      return ids;
+    }
+
+    String name = field;
+    if (field.endsWith(ViewerSafeConstants.SOLR_DYN_SORT)) {
+      name = field.substring(0, field.length() - ViewerSafeConstants.SOLR_DYN_SORT.length())
+        + ViewerSafeConstants.SOLR_DYN_TEXT_GENERAL;
+    }
+
+    Column column = columns.get(name);
+    if (column == null || column.type == LuceneDocuments.FieldType.STORED) {
+      return null;
+    }
+    return column;
+  }
+
+  /***********************************************************************************
+   * Filtering
+   **********************************************************************************/
+
+  private BitSet match(Query query) throws UnsupportedQueryException {
+    if (query instanceof BoostQuery) {
+      return match(((BoostQuery) query).getQuery());
+    } else if (query instanceof MatchAllDocsQuery) {
+      BitSet all = new BitSet(rowCount);
+      all.set(0, rowCount);
+      return all;
+    } else if (query instanceof MatchNoDocsQuery) {
+      return new BitSet(rowCount);
+    } else if (query instanceof BooleanQuery) {
+      return matchBoolean((BooleanQuery) query);
+    } else if (query instanceof TermQuery) {
+      Term term = ((TermQuery) query).getTerm();
+      if (LuceneDocuments.FIELD_NAMES.equals(term.field())) {
+        return matchExisting(term.text());
+      }
+      return matchTerms(term.field(), new ExactMatcher(term.text()));
+    } else if (query instanceof PrefixQuery) {
+      Term prefix = ((PrefixQuery) query).getPrefix();
+      return matchTerms(prefix.field(), new PrefixMatcher(prefix.text()));
+    } else if (query instanceof WildcardQuery) {
+      Term term = ((WildcardQuery) query).getTerm();
+      return matchTerms(term.field(), new WildcardMatcher(term));
+    } else if (query instanceof TermRangeQuery) {
+      TermRangeQuery range = (TermRangeQuery) query;
+      return matchTerms(range.getField(), new RangeMatcher(range));
+    } else if (query instanceof PhraseQuery) {
+      return matchPhrase((PhraseQuery) query);
+    } else if (query instanceof PointRangeQuery) {
+      return matchPoints((PointRangeQuery) query);
+    }
+    throw new UnsupportedQueryException("unsupported query type " + query.getClass().getSimpleName());
+  }
+
+  private BitSet matchBoolean(BooleanQuery query) throws UnsupportedQueryException {
+    BitSet required = null;
+    BitSet optional = null;
+    BitSet prohibited = null;
+
+    for (BooleanClause clause : query.clauses()) {
+      BitSet matches = match(clause.getQuery());
+      switch (clause.getOccur()) {
+        case MUST:
+        case FILTER:
+          if (required == null) {
+            required = matches;
+          } else {
+            required.and(matches);
+          }
+          break;
+        case SHOULD:
+          if (optional == null) {
+            optional = matches;
+          } else {
+            optional.or(matches);
+          }
+          break;
+        case MUST_NOT:
+        default:
+          if (prohibited == null) {
+            prohibited = matches;
+          } else {
+            prohibited.or(matches);
+          }
+          break;
+      }
+    }
+
+    int minimumShouldMatch = query.getMinimumNumberShouldMatch();
+    if (minimumShouldMatch > 1) {
+      throw new UnsupportedQueryException("minimum should match " + minimumShouldMatch);
+    }
+
+    BitSet ret;
+    if (required != null) {
+      ret = required;
+      if (minimumShouldMatch == 1) {
+        ret.and(optional != null ? optional : new BitSet(rowCount));
+      }
+    } else if (optional != null) {
+      ret = optional;
+    } else {
+      // only prohibited clauses (or none) match nothing, as in Lucene
+      ret = new BitSet(rowCount);
+    }
+
+    if (prohibited != null) {
+      ret.andNot(prohibited);
+    }
+    return ret;
+  }
+
+  private BitSet matchExisting(String field) {
+    if (ViewerSafeConstants.SOLR_ROW_ID.equals(field)) {
+      return ids.matchExisting();
+    }
+    Column column = columns.get(field);
+    return column != null ? column.matchExisting() : new BitSet(rowCount);
+  }
+
+  private BitSet matchTerms(String field, TermMatcher matcher) throws UnsupportedQueryException {
+    if (ViewerSafeConstants.SOLR_ROW_SEARCH.equals(field)) {
+      BitSet ret = new BitSet(rowCount);
+      for (Column column : columns.values()) {
+        checkSearchable(column);
+        ret.or(column.matchSearchTerms(matcher));
+      }
+      return ret;
+    } else if (ViewerSafeConstants.SOLR_ROW_ID.equals(field)) {
+      return ids.matchTerms(matcher);
+    }
+
+    Column column = columns.get(field);
+    return column != null ? column.matchTerms(matcher) : new BitSet(rowCount);
+  }
+
+  private BitSet matchPhrase(PhraseQuery query) throws UnsupportedQueryException {
+    if (query.getSlop() != 0) {
+      throw new UnsupportedQueryException("sloppy phrase");
+    }
+
+    Term[] terms = query.getTerms();
+    if (terms.length == 0) {
+      return new BitSet(rowCount);
+    }
+    String[] texts = new String[terms.length];
+    for (int i = 0; i < terms.length; i++) {
+      texts[i] = terms[i].text();
+    }
+    int[] positions = query.getPositions();
+
+    String field = terms[0].field();
+    if (ViewerSafeConstants.SOLR_ROW_SEARCH.equals(field)) {
+      BitSet ret = new BitSet(rowCount);
+      for (Column column : columns.values()) {
+        checkSearchable(column);
+        ret.or(column.matchSearchPhrase(texts, positions));
+      }
+      return ret;
+    }
+
+    Column column = columns.get(field);
+    if (column == null) {
+      return new BitSet(rowCount);
+    } else if (column.type != LuceneDocuments.FieldType.TEXT) {
+      throw new UnsupportedQueryException("phrase on field " + field);
+    }
+    return ((DictionaryColumn) column).matchPhrase(texts, positions);
+  }
+
+  /**
+   * Numbers and dates returned by Solr are formatted differently from the
+   * values that were copied to the catch-all field when they were indexed
+   * (e.g. "12.50" is returned as "12.5")
+   */
+  private void checkSearchable(Column column) throws UnsupportedQueryException {
+    if (!valuesAsIndexed && (column instanceof LongColumn || column instanceof DoubleColumn)) {
+      throw new UnsupportedQueryException("catch-all search on numeric field " + column.name);
+    }
+  }
+
+  private BitSet matchPoints(PointRangeQuery query) throws UnsupportedQueryException {
+    if (query.getNumDims() != 1) {
+      throw new UnsupportedQueryException("points with " + query.getNumDims() + " dimensions");
+    }
+
+    Column column = columns.get(query.getField());
+    if (column instanceof LongColumn) {
+      return ((LongColumn) column).matchRange(LongPoint.decodeDimension(query.getLowerPoint(), 0),
+        LongPoint.decodeDimension(query.getUpperPoint(), 0));
+    } else if (column instanceof DoubleColumn) {
+      return ((DoubleColumn) column).matchRange(DoublePoint.decodeDimension(query.getLowerPoint(), 0),
+        DoublePoint.decodeDimension(query.getUpperPoint(), 0));
+    }
+    return new BitSet(rowCount);
+  }
+
+  private static class UnsupportedQueryException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    UnsupportedQueryException(String message) {
+      super(message);
+    }
+  }
+
+  /**
+   * Matches terms (tokens of text values, or whole values of the other
+   * fields), as the term, prefix, wildcard and range queries do
+   */
+  private abstract static class TermMatcher {
+    abstract boolean matches(String term);
+
+    /**
+     * @return the only term that matches, or null if more than one term may
+     *         match
+     */
+    String getExactTerm() {
+      return null;
+    }
+  }
+
+  private static class ExactMatcher extends TermMatcher {
+    private final String term;
+
+    ExactMatcher(String term) {
+      this.term = term;
+    }
+
+    @Override
+    boolean matches(String term) {
+      return this.term.equals(term);
+    }
+
+    @Override
+    String getExactTerm() {
+      return term;
+    }
+  }
+
+  private static class PrefixMatcher extends TermMatcher {
+    private final String prefix;
+
+    PrefixMatcher(String prefix) {
+      this.prefix = prefix;
+    }
+
+    @Override
+    boolean matches(String term) {
+      return term.startsWith(prefix);
+    }
+  }
+
+  private static class WildcardMatcher extends TermMatcher {
+    private final CharacterRunAutomaton automaton;
+
+    WildcardMatcher(Term term) {
+      this.automaton = new CharacterRunAutomaton(WildcardQuery.toAutomaton(term));
+    }
+
+    @Override
+    boolean matches(String term) {
+      return automaton.run(term);
+    }
+  }
+
+  private static class RangeMatcher extends TermMatcher {
+    private final BytesRef lower;
+    private final BytesRef upper;
+    private final boolean includeLower;
+    private final boolean includeUpper;
+
+    RangeMatcher(TermRangeQuery query) {
+      this.lower = query.getLowerTerm();
+      this.upper = query.getUpperTerm();
+      this.includeLower = query.includesLower();
+      this.includeUpper = query.includesUpper();
+    }
+
+    @Override
+    boolean matches(String term) {
+      // UTF-8 bytes, to compare terms as Lucene does
+      BytesRef bytes = new BytesRef(term);
+      if (lower != null) {
+        int result = bytes.compareTo(lower);
+        if (result < 0 || (result == 0 && !includeLower)) {
+          return false;
+        }
+      }
+      if (upper != null) {
+        int result = bytes.compareTo(upper);
+        if (result > 0 || (result == 0 && !includeUpper)) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /***********************************************************************************
+   * Columns
+   **********************************************************************************/
+
+  private abstract static class Column {
+    final String name;
+    final LuceneDocuments.FieldType type;
+    final int rowCount;
+    // the tokens of each value in the catch-all field, see getSearchTokens
+    private volatile String[][] searchTokens;
+
+    Column(String name, LuceneDocuments.FieldType type, int rowCount) {
+      this.name = name;
+      this.type = type;
+      this.rowCount = rowCount;
+    }
+
+    abstract boolean has(int row);
+
+    /**
+     * @return the value as returned by the index
+     */
+    abstract String getValue(int row);
+
+    /**
+     * @return a key that sorts the row as the sort field of the column in the
+     *         index
+     */
+    abstract long getSortKey(int row);
+
+    BitSet matchExisting() {
+      BitSet ret = new BitSet(rowCount);
+      for (int row = 0; row < rowCount; row++) {
+        if (has(row)) {
+          ret.set(row);
+        }
+      }
+      return ret;
+    }
+
+    /**
+     * Matches the terms of the column field
+     */
+    abstract BitSet matchTerms(TermMatcher matcher);
+
+    /**
+     * Matches the terms that the column values add to the catch-all field
+     */
+    BitSet matchSearchTerms(TermMatcher matcher) {
+      String[][] tokens = getSearchTokens();
+      BitSet ret = new BitSet(rowCount);
+      for (int row = 0; row < rowCount; row++) {
+        if (tokens[row] != null) {
+          for (String token : tokens[row]) {
+            if (matcher.matches(token)) {
+              ret.set(row);
+              break;
+            }
+          }
+        }
+      }
+      return ret;
+    }
+
+    /**
+     * Matches a phrase in the catch-all field
+     */
+    BitSet matchSearchPhrase(String[] terms, int[] positions) {
+      String[][] tokens = getSearchTokens();
+      BitSet ret = new BitSet(rowCount);
+      for (int row = 0; row < rowCount; row++) {
+        if (tokens[row] != null && containsPhrase(tokens[row], terms, positions)) {
+          ret.set(row);
+        }
+      }
+      return ret;
+    }
+
+    /**
+     * @return the tokens of each value, analyzed as the catch-all field is. The
+     *         values are only analyzed the first time the catch-all field is
+     *         searched.
+     */
+    private String[][] getSearchTokens() {
+      String[][] ret = searchTokens;
+      if (ret == null) {
+        ret = new String[rowCount][];
+        for (int row = 0; row < rowCount; row++) {
+          String value = getValue(row);
+          if (value != null) {
+            List<String> tokens = analyze(value);
+            ret[row] = tokens.toArray(new String[tokens.size()]);
+          }
+        }
+        searchTokens = ret;
+      }
+      return ret;
+    }
+  }
+
+  private static boolean containsPhrase(String[] valueTokens, String[] phrase, int[] positions) {
+    for (int start = 0; start < valueTokens.length; start++) {
+      boolean matches = true;
+      for (int i = 0; i < phrase.length && matches; i++) {
+        int position = start + positions[i] - positions[0];
+        matches = position < valueTokens.length && valueTokens[position].equals(phrase[i]);
+      }
+      if (matches) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static List<String> analyze(String value) {
+    List<String> ret = new ArrayList<>();
+    try (TokenStream stream = LuceneDocuments.ANALYZER.tokenStream(ViewerSafeConstants.SOLR_ROW_SEARCH, value)) {
+      CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+      stream.reset();
+      while (stream.incrementToken()) {
+        ret.add(term.toString());
+      }
+      stream.end();
+    } catch (IOException e) {
+      // not expected when reading from a string
+      LOGGER.warn("Could not analyze value {}", value, e);
+    }
+    return ret;
+  }
+
+  /**
+   * The row ids, which are unique and so not worth encoding
+   */
+  private static final class IdColumn extends Column {
+    private final String[] values;
+    // computed when the rows are first sorted by id
+    private volatile int[] ranks;
+
+    IdColumn(String[] values, int rowCount) {
+      super(ViewerSafeConstants.SOLR_ROW_ID, LuceneDocuments.FieldType.STRING, rowCount);
+      this.values = values;
+    }
+
+    @Override
+    boolean has(int row) {
+      return values[row] != null;
+    }
+
+    @Override
+    String getValue(int row) {
+      return values[row];
+    }
+
+    @Override
+    long getSortKey(int row) {
+      int[] ret = ranks;
+      if (ret == null) {
+        ret = rank(values, LuceneDocuments.FieldType.STRING);
+        ranks = ret;
+      }
+      return ret[row];
+    }
+
+    @Override
+    BitSet matchTerms(TermMatcher matcher) {
+      BitSet ret = new BitSet(rowCount);
+      for (int row = 0; row < rowCount; row++) {
+        if (values[row] != null && matcher.matches(values[row])) {
+          ret.set(row);
+        }
+      }
+      return ret;
+    }
+
+    @Override
+    BitSet matchSearchTerms(TermMatcher matcher) {
+      // the id is not copied to the catch-all field
+      return new BitSet(rowCount);
+    }
+
+    @Override
+    BitSet matchSearchPhrase(String[] terms, int[] positions) {
+      return new BitSet(rowCount);
+    }
+  }
+
+  /**
+   * Text, string, boolean and stored values, encoded with a dictionary of the
+   * distinct values
+   */
+  private static final class DictionaryColumn extends Column {
+    private final String[] values;
+    private final Codes codes;
+    // sort rank of each distinct value
+    private final int[] ranks;
+    // distinct tokens of all the values, sorted
+    private final String[] tokens;
+    // tokens of each distinct value, by position
+    private final int[][] valueTokens;
+
+    DictionaryColumn(String name, LuceneDocuments.FieldType type, int rowCount, String[] values, Codes codes,
+      String[] tokens, int[][] valueTokens) {
+      super(name, type, rowCount);
+      this.values = values;
+      this.codes = codes;
+      this.ranks = rank(values, type);
+      this.tokens = tokens;
+      this.valueTokens = valueTokens;
+    }
+
+    @Override
+    boolean has(int row) {
+      return codes.get(row) >= 0;
+    }
+
+    @Override
+    String getValue(int row) {
+      int code = codes.get(row);
+      return code >= 0 ? values[code] : null;
+    }
+
+    @Override
+    long getSortKey(int row) {
+      return ranks[codes.get(row)];
+    }
+
+    @Override
+    BitSet matchTerms(TermMatcher matcher) {
+      switch (type) {
+        case TEXT:
+          return matchTokens(matcher);
+        case STRING:
+        case BOOLEAN:
+          BitSet matchingValues = new BitSet(values.length);
+          for (int code = 0; code < values.length; code++) {
+            if (matcher.matches(getTerm(values[code]))) {
+              matchingValues.set(code);
+            }
+          }
+          return toRows(matchingValues);
+        default:
+          // stored values are not indexed
+          return new BitSet(rowCount);
+      }
+    }
+
+    private String getTerm(String value) {
+      return type == LuceneDocuments.FieldType.BOOLEAN ? Boolean.toString(Boolean.parseBoolean(value)) : value;
+    }
+
+    @Override
+    BitSet matchSearchTerms(TermMatcher matcher) {
+      return matchTokens(matcher);
+    }
+
+    @Override
+    BitSet matchSearchPhrase(String[] terms, int[] positions) {
+      return matchPhrase(terms, positions);
+    }
+
+    private BitSet matchTokens(TermMatcher matcher) {
+      BitSet matchingTokens = new BitSet(tokens.length);
+      String exactTerm = matcher.getExactTerm();
+      if (exactTerm != null) {
+        int token = Arrays.binarySearch(tokens, exactTerm);
+        if (token < 0) {
+          return new BitSet(rowCount);
+        }
+        matchingTokens.set(token);
+      } else {
+        for (int token = 0; token < tokens.length; token++) {
+          if (matcher.matches(tokens[token])) {
+            matchingTokens.set(token);
+          }
+        }
+      }
+
+      BitSet matchingValues = new BitSet(values.length);
+      for (int code = 0; code < values.length; code++) {
+        for (int token : valueTokens[code]) {
+          if (matchingTokens.get(token)) {
+            matchingValues.set(code);
+            break;
+          }
+        }
+      }
+      return toRows(matchingValues);
+    }
+
+    BitSet matchPhrase(String[] terms, int[] positions) {
+      int[] phrase = new int[terms.length];
+      for (int i = 0; i < terms.length; i++) {
+        phrase[i] = Arrays.binarySearch(tokens, terms[i]);
+        if (phrase[i] < 0) {
+          return new BitSet(rowCount);
+        }
+      }
+
+      BitSet matchingValues = new BitSet(values.length);
+      for (int code = 0; code < values.length; code++) {
+        if (containsPhrase(valueTokens[code], phrase, positions)) {
+          matchingValues.set(code);
+        }
+      }
+      return toRows(matchingValues);
+    }
+
+    private static boolean containsPhrase(int[] valueTokens, int[] phrase, int[] positions) {
+      for (int start = 0; start < valueTokens.length; start++) {
+        boolean matches = true;
+        for (int i = 0; i < phrase.length && matches; i++) {
+          int position = start + positions[i] - positions[0];
+          matches = position < valueTokens.length && valueTokens[position] == phrase[i];
+        }
+        if (matches) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private BitSet toRows(BitSet matchingValues) {
+      BitSet ret = new BitSet(rowCount);
+      if (matchingValues.isEmpty()) {
+        return ret;
+      }
+      for (int row = 0; row < rowCount; row++) {
+        int code = codes.get(row);
+        if (code >= 0 && matchingValues.get(code)) {
+          ret.set(row);
+        }
+      }
+      return ret;
+    }
+  }
+
+  /**
+   * Integers and dates (as milliseconds since the epoch)
+   */
+  private static final class LongColumn extends Column {
+    private final long[] values;
+    private final BitSet present;
+    private final NumberFormat format;
+
+    LongColumn(String name, LuceneDocuments.FieldType type, int rowCount, long[] values, BitSet present,
+      NumberFormat format) {
+      super(name, type, rowCount);
+      this.values = values;
+      this.present = present;
+      this.format = format;
+    }
+
+    @Override
+    boolean has(int row) {
+      return present.get(row);
+    }
+
+    @Override
+    String getValue(int row) {
+      return present.get(row) ? format.format(values[row]) : null;
+    }
+
+    @Override
+    long getSortKey(int row) {
+      return values[row];
+    }
+
+    @Override
+    BitSet matchExisting() {
+      return (BitSet) present.clone();
+    }
+
+    @Override
+    BitSet matchTerms(TermMatcher matcher) {
+      // numbers and dates are indexed as points, not terms
+      return new BitSet(rowCount);
+    }
+
+
+    BitSet matchRange(long lower, long upper) {
+      BitSet ret = new BitSet(rowCount);
+      for (int row = present.nextSetBit(0); row >= 0; row = present.nextSetBit(row + 1)) {
+        if (values[row] >= lower && values[row] <= upper) {
+          ret.set(row);
+        }
+      }
+      return ret;
+    }
+  }
+
+  private static final class DoubleColumn extends Column {
+    private final double[] values;
+    private final BitSet present;
+
+    DoubleColumn(String name, int rowCount, double[] values, BitSet present) {
+      super(name, LuceneDocuments.FieldType.DOUBLE, rowCount);
+      this.values = values;
+      this.present = present;
+    }
+
+    @Override
+    boolean has(int row) {
+      return present.get(row);
+    }
+
+    @Override
+    String getValue(int row) {
+      return present.get(row) ? Double.toString(values[row]) : null;
+    }
+
+    @Override
+    long getSortKey(int row) {
+      return NumericUtils.doubleToSortableLong(values[row]);
+    }
+
+    @Override
+    BitSet matchExisting() {
+      return (BitSet) present.clone();
+    }
+
+    @Override
+    BitSet matchTerms(TermMatcher matcher) {
+      // numbers are indexed as points, not terms
+      return new BitSet(rowCount);
+    }
+
+    BitSet matchRange(double lower, double upper) {
+      BitSet ret = new BitSet(rowCount);
+      for (int row = present.nextSetBit(0); row >= 0; row = present.nextSetBit(row + 1)) {
+        if (values[row] >= lower && values[row] <= upper) {
+          ret.set(row);
+        }
+      }
+      return ret;
+    }
+  }
+
+  /**
+   * @return the sort rank of each value, equal values (or values with the same
+   *         sort key) having the same rank
+   */
+  private static int[] rank(String[] values, LuceneDocuments.FieldType type) {
+    final String[] keys = new String[values.length];
+    Integer[] order = new Integer[values.length];
+    for (int i = 0; i < values.length; i++) {
+      keys[i] = getSortKey(values[i], type);
+      order[i] = i;
+    }
+
+    Arrays.sort(order, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer a, Integer b) {
+        return compareCodePoints(keys[a], keys[b]);
+      }
+    });
+
+    int[] ranks = new int[values.length];
+    int rank = 0;
+    for (int i = 0; i < order.length; i++) {
+      if (i > 0 && compareCodePoints(keys[order[i - 1]], keys[order[i]]) != 0) {
+        rank++;
+      }
+      ranks[order[i]] = rank;
+    }
+    return ranks;
+  }
+
+  private static String getSortKey(String value, LuceneDocuments.FieldType type) {
+    if (value == null) {
+      return "";
+    }
+    switch (type) {
+      case TEXT:
+        // as the "_sort" field, filled with a prefix of the text
+        return value.length() > LuceneDocuments.SORT_FIELD_MAX_CHARS ? value.substring(0,
+          LuceneDocuments.SORT_FIELD_MAX_CHARS) : value;
+      case BOOLEAN:
+        return Boolean.toString(Boolean.parseBoolean(value));
+      default:
+        return value;
+    }
+  }
+
+  /**
+   * Compares strings by code point, which is the order of their UTF-8 bytes
+   * (the order of the sort fields in the index)
+   */
+  private static int compareCodePoints(String a, String b) {
+    int i = 0;
+    int j = 0;
+    while (i < a.length() && j < b.length()) {
+      int codePointA = a.codePointAt(i);
+      int codePointB = b.codePointAt(j);
+      if (codePointA != codePointB) {
+        return Integer.compare(codePointA, codePointB);
+      }
+      i += Character.charCount(codePointA);
+      j += Character.charCount(codePointB);
+    }
+    return Integer.compare(a.length() - i, b.length() - j);
+  }
+
+  /**
+   * The dictionary code of each row, packed in the smallest array that fits the
+   * number of distinct values
+   */
+  private static final class Codes {
+    private final byte[] bytes;
+    private final char[] chars;
+    private final int[] ints;
+
+    /**
+     * @param codes
+     *          the code of each row plus one (0 for rows without value)
+     */
+    Codes(int[] codes, int distinctValues) {
+      if (distinctValues < 0xFF) {
+        bytes = new byte[codes.length];
+        for (int i = 0; i < codes.length; i++) {
+          bytes[i] = (byte) codes[i];
+        }
+        chars = null;
+        ints = null;
+      } else if (distinctValues < 0xFFFF) {
+        chars = new char[codes.length];
+        for (int i = 0; i < codes.length; i++) {
+          chars[i] = (char) codes[i];
+        }
+        bytes = null;
+        ints = null;
+      } else {
+        ints = codes;
+        bytes = null;
+        chars = null;
+      }
+    }
+
+    /**
+     * @return the code of the row, or -1 if the row has no value
+     */
+    int get(int row) {
+      if (bytes != null) {
+        return (bytes[row] & 0xFF) - 1;
+      } else if (chars != null) {
+        return chars[row] - 1;
+      } else {
+        return ints[row] - 1;
+      }
+    }
+  }
+
+  /**
+   * How the values of a numeric column are returned by the index. Numbers are
+   * only kept in primitive arrays if they can be formatted back exactly as
+   * they were returned.
+   */
+  private enum NumberFormat {
+    INTEGER {
+      @Override
+      long parse(String value) {
+        return Long.parseLong(value);
+      }
+
+      @Override
+      String format(long value) {
+        return Long.toString(value);
+      }
+    },
+    /**
+     * ISO-8601 instants, as stored by the Lucene backend
+     */
+    ISO_INSTANT {
+      @Override
+      long parse(String value) {
+        return Instant.parse(value).toEpochMilli();
+      }
+
+      @Override
+      String format(long value) {
+        return Instant.ofEpochMilli(value).toString();
+      }
+    },
+    /**
+     * Dates returned by SolrJ, converted by SolrTransformer.toRow with
+     * Date.toString
+     */
+    DATE_STRING {
+      private final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("EEE MMM dd HH:mm:ss zzz yyyy",
+        Locale.US);
+
+      @Override
+      long parse(String value) {
+        return ZonedDateTime.parse(value, formatter).toInstant().toEpochMilli();
+      }
+
+      @Override
+      String format(long value) {
+        return new Date(value).toString();
+      }
+    };
+
+    abstract long parse(String value);
+
+    abstract String format(long value);
+
+    /**
+     * @return the number, or null if the value is not valid or would not be
+     *         formatted back exactly as it is
+     */
+    Long parseExact(String value) {
+      try {
+        long number = parse(value);
+        return format(number).equals(value) ? Long.valueOf(number) : null;
+      } catch (NumberFormatException | DateTimeException e) {
+        return null;
+      }
+    }
+  }
+
+  /***********************************************************************************
+   * Building
+   **********************************************************************************/
+
+  /**
+   * Builds a table from rows, in the order they are added
+   */
+  static final class Builder {
+    private final int capacity;
+    private final String[] ids;
+    private final Map<String, ColumnBuilder> columns = new LinkedHashMap<>();
+    private final boolean valuesAsIndexed;
+    private int rowCount = 0;
+
+    private Builder(int capacity, boolean valuesAsIndexed) {
+      this.capacity = capacity;
+      this.valuesAsIndexed = valuesAsIndexed;
+      this.ids = new String[capacity];
+    }
+
+    int getRowCount() {
+      return rowCount;
+    }
+
+    /**
+     * @return false if the row can not be added, because the table already has
+     *         as many rows as expected or because some value can not be kept
+     *         in memory exactly as returned by the index
+     */
+    boolean add(ViewerRow row) {
+      if (rowCount >= capacity) {
+        return false;
+      }
+
+      int index = rowCount++;
+      ids[index] = row.getUUID();
+      for (Map.Entry<String, ViewerCell> cell : row.getCells().entrySet()) {
+        String value = cell.getValue().getValue();
+        if (value == null) {
+          continue;
+        }
+
+        ColumnBuilder column = columns.get(cell.getKey());
+        if (column == null) {
+          column = newColumnBuilder(cell.getKey());
+          columns.put(cell.getKey(), column);
+        }
+        if (!column.add(index, value)) {
+          LOGGER.debug("Value {} of column {} can not be kept in memory", value, cell.getKey());
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private ColumnBuilder newColumnBuilder(String name) {
+      LuceneDocuments.FieldType type = LuceneDocuments.getFieldType(name);
+      switch (type) {
+        case LONG:
+        case DATE:
+          return new LongColumnBuilder(name, type, capacity);
+        case DOUBLE:
+          return new DoubleColumnBuilder(name, capacity);
+        default:
+          return new DictionaryColumnBuilder(name, type, capacity);
+      }
+    }
+
+    ColumnarTable build() {
+      Map<String, Column> built = new LinkedHashMap<>();
+      for (ColumnBuilder column : columns.values()) {
+        built.put(column.name, column.build(rowCount));
+      }
+      return new ColumnarTable(rowCount, new IdColumn(Arrays.copyOf(ids, rowCount), rowCount), built,
+        valuesAsIndexed);
+    }
+  }
+
+  private abstract static class ColumnBuilder {
+    final String name;
+
+    ColumnBuilder(String name) {
+      this.name = name;
+    }
+
+    /**
+     * @return false if the value can not be kept
+     */
+    abstract boolean add(int row, String value);
+
+    abstract Column build(int rowCount);
+  }
+
+  private static final class DictionaryColumnBuilder extends ColumnBuilder {
+    private final LuceneDocuments.FieldType type;
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
+    // code plus one, 0 for rows without value
+    private final int[] codes;
+
+    DictionaryColumnBuilder(String name, LuceneDocuments.FieldType type, int capacity) {
+      super(name);
+      this.type = type;
+      this.codes = new int[capacity];
+    }
+
+    @Override
+    boolean add(int row, String value) {
+      Integer code = dictionary.get(value);
+      if (code == null) {
+        code = values.size();
+        dictionary.put(value, code);
+        values.add(value);
+      }
+      codes[row] = code + 1;
+      return true;
+    }
+
+    @Override
+    Column build(int rowCount) {
+      String[] distinctValues = values.toArray(new String[values.size()]);
+
+      // analyzed as the catch-all field, which is also how text fields are
+      // analyzed
+      List<List<String>> analyzed = new ArrayList<>(distinctValues.length);
+      Set<String> distinctTokens = new HashSet<>();
+      for (String value : distinctValues) {
+        List<String> valueTokens = analyze(value);
+        analyzed.add(valueTokens);
+        distinctTokens.addAll(valueTokens);
+      }
+
+      String[] tokens = distinctTokens.toArray(new String[distinctTokens.size()]);
+      Arrays.sort(tokens);
+      Map<String, Integer> tokenIds = new HashMap<>();
+      for (int i = 0; i < tokens.length; i++) {
+        tokenIds.put(tokens[i], i);
+      }
+
+      int[][] valueTokens = new int[distinctValues.length][];
+      for (int code = 0; code < distinctValues.length; code++) {
+        List<String> valueAnalyzed = analyzed.get(code);
+        valueTokens[code] = new int[valueAnalyzed.size()];
+        for (int i = 0; i < valueAnalyzed.size(); i++) {
+          valueTokens[code][i] = tokenIds.get(valueAnalyzed.get(i));
+        }
+      }
+
+      return new DictionaryColumn(name, type, rowCount, distinctValues, new Codes(Arrays.copyOf(codes, rowCount),
+        distinctValues.length), tokens, valueTokens);
+    }
+  }
+
+  private static final class LongColumnBuilder extends ColumnBuilder {
+    private final LuceneDocuments.FieldType type;
+    private final long[] values;
+    private final BitSet present = new BitSet();
+    private NumberFormat format;
+
+    LongColumnBuilder(String name, LuceneDocuments.FieldType type, int capacity) {
+      super(name);
+      this.type = type;
+      this.values = new long[capacity];
+      if (type == LuceneDocuments.FieldType.LONG) {
+        format = NumberFormat.INTEGER;
+      }
+    }
+
+    @Override
+    boolean add(int row, String value) {
+      Long number;
+      if (format == null) {
+        // dates are returned as Date.toString or as ISO-8601, depending on
+        // the backend
+        format = NumberFormat.ISO_INSTANT;
+        number = format.parseExact(value);
+        if (number == null) {
+          format = NumberFormat.DATE_STRING;
+          number = format.parseExact(value);
+        }
+      } else {
+        number = format.parseExact(value);
+      }
+
+      if (number == null) {
+        return false;
+      }
+      values[row] = number;
+      present.set(row);
+      return true;
+    }
+
+    @Override
+    Column build(int rowCount) {
+      return new LongColumn(name, type, rowCount, Arrays.copyOf(values, rowCount), present, format);
+    }
+  }
+
+  private static final class DoubleColumnBuilder extends ColumnBuilder {
+    private final double[] values;
+    private final BitSet present = new BitSet();
+
+    DoubleColumnBuilder(String name, int capacity) {
+      super(name);
+      this.values = new double[capacity];
+    }
+
+    @Override
+    boolean add(int row, String value) {
+      double number;
+      try {
+        number = Double.parseDouble(value);
+      } catch (NumberFormatException e) {
+        return false;
+      }
+      if (!Double.toString(number).equals(value)) {
+        // would not be returned as it was
+        return false;
+      }
+      values[row] = number;
+      present.set(row);
+      return true;
+    }
+
+    @Override
+    Column build(int rowCount) {
+      return new DoubleColumn(name, rowCount, Arrays.copyOf(values, rowCount), present);
+    }
+  }
+}
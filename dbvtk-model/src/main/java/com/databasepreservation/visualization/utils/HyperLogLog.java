@@ -0,0 +1,112 @@
+package com.databasepreservation.visualization.utils;
+
+/**
+ * HyperLogLog sketch used to estimate the number of distinct values in a
+ * stream using a fixed (and small) amount of memory.
+ *
+ * With the default precision it uses 4KB and has a standard error of about
+ * 1.6%.
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+public class HyperLogLog {
+  private static final int DEFAULT_PRECISION = 12;
+
+  private final int precision;
+  private final byte[] registers;
+
+  public HyperLogLog() {
+    this(DEFAULT_PRECISION);
+  }
+
+  /**
+   * @param precision
+   *          number of bits used to choose a register, between 4 and 16
+   */
+  public HyperLogLog(int precision) {
+    if (precision < 4 || precision > 16) {
+      throw new IllegalArgumentException("precision must be between 4 and 16");
+    }
+    this.precision = precision;
+    this.registers = new byte[1 << precision];
+  }
+
+  public void add(String value) {
+    long hash = hash(value);
+    int index = (int) (hash >>> (64 - precision));
+    // position of the first 1 bit in the remaining bits
+    long remaining = (hash << precision) | (1L << (precision - 1));
+    byte rank = (byte) (Long.numberOfLeadingZeros(remaining) + 1);
+    if (rank > registers[index]) {
+      registers[index] = rank;
+    }
+  }
+
+  /**
+   * Adds the values counted by another sketch to this one, as if they had been
+   * added to this sketch
+   *
+   * @param other
+   *          a sketch with the same precision
+   */
+  public void merge(HyperLogLog other) {
+    if (other.precision != precision) {
+      throw new IllegalArgumentException("Can not merge sketches with different precisions");
+    }
+    for (int i = 0; i < registers.length; i++) {
+      if (other.registers[i] > registers[i]) {
+        registers[i] = other.registers[i];
+      }
+    }
+  }
+
+  public long estimate() {
+    int m = registers.length;
+    double sum = 0;
+    int zeros = 0;
+    for (byte register : registers) {
+      sum += 1.0 / (1L << register);
+      if (register == 0) {
+        zeros++;
+      }
+    }
+
+    double estimate = alpha(m) * m * m / sum;
+    if (estimate <= 2.5 * m && zeros > 0) {
+      // small range correction (linear counting)
+      estimate = m * Math.log((double) m / zeros);
+    }
+    return Math.round(estimate);
+  }
+
+  private static double alpha(int m) {
+    switch (m) {
+      case 16:
+        return 0.673;
+      case 32:
+        return 0.697;
+      case 64:
+        return 0.709;
+      default:
+        return 0.7213 / (1 + 1.079 / m);
+    }
+  }
+
+  /**
+   * 64 bit FNV-1a hash of the string, followed by the MurmurHash3 finalizer to
+   * spread the bits
+   */
+  private static long hash(String value) {
+    long hash = 0xcbf29ce484222325L;
+    for (int i = 0; i < value.length(); i++) {
+      hash ^= value.charAt(i);
+      hash *= 0x100000001b3L;
+    }
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+}
@@ -0,0 +1,160 @@
+package com.databasepreservation.visualization.utils;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.roda.core.data.adapter.facet.Facets;
+import org.roda.core.data.adapter.filter.Filter;
+import org.roda.core.data.adapter.sort.Sorter;
+import org.roda.core.data.adapter.sublist.Sublist;
+import org.roda.core.data.exceptions.GenericException;
+import org.roda.core.data.exceptions.NotFoundException;
+import org.roda.core.data.exceptions.RequestNotValidException;
+import org.roda.core.data.v2.index.IndexResult;
+import org.roda.core.data.v2.index.IsIndexed;
+import org.roda.core.data.v2.user.RodaUser;
+
+import com.databasepreservation.visualization.client.SavedSearch;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerDatabase;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerRow;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerRowWithRelations;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerSchema;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerTable;
+import com.databasepreservation.visualization.exceptions.ViewerException;
+
+/**
+ * Stores and searches the databases, their rows and the saved searches. The
+ * viewer services (BrowserServiceImpl and the REST API) only use this
+ * interface, so the index can either be a Solr server (SolrManager) or an
+ * embedded Lucene index (LuceneIndexBackend).
+ *
+ * Filters, sorters and field names are the same for every implementation (the
+ * Solr field names, with their dynamic type suffixes).
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+public interface IndexBackend {
+  /**
+   * Adds (or replaces) a database, and prepares the index to receive its tables
+   */
+  void addDatabase(ViewerDatabase database) throws ViewerException;
+
+  /**
+   * Prepares the index to receive the rows of a table. Tables are ingested one
+   * at a time: the rows of the previously added tables must all have been
+   * added.
+   */
+  void addTable(ViewerTable table) throws ViewerException;
+
+  void addRow(ViewerTable table, ViewerRow row) throws ViewerException;
+
+  /**
+   * Makes everything added since the last commit durable and visible
+   */
+  void commitAll() throws ViewerException;
+
+  /**
+   * Frees the resources (connections, threads, open files) used by this backend
+   */
+  void freeResources() throws ViewerException;
+
+  <T extends IsIndexed> IndexResult<T> find(RodaUser user, Class<T> classToReturn, Filter filter, Sorter sorter,
+    Sublist sublist, Facets facets) throws GenericException, RequestNotValidException;
+
+  <T extends IsIndexed> Long count(RodaUser user, Class<T> classToReturn, Filter filter) throws GenericException,
+    RequestNotValidException;
+
+  <T extends IsIndexed> T retrieve(RodaUser user, Class<T> classToReturn, String id) throws NotFoundException,
+    GenericException;
+
+  /**
+   * Gets a database (with parsed metadata and lookup indexes), usually from a
+   * cache
+   */
+  CachedDatabase retrieveCachedDatabase(RodaUser user, String databaseUUID) throws NotFoundException,
+    GenericException;
+
+  /**
+   * Gets a database with only a summary of its metadata (schemas and tables are
+   * listed, but without their structure)
+   */
+  ViewerDatabase retrieveDatabaseSummary(RodaUser user, String databaseUUID) throws NotFoundException,
+    GenericException;
+
+  ViewerSchema retrieveSchema(RodaUser user, String databaseUUID, String schemaUUID) throws NotFoundException,
+    GenericException;
+
+  ViewerTable retrieveTable(RodaUser user, String databaseUUID, String tableUUID) throws NotFoundException,
+    GenericException;
+
+  <T extends IsIndexed> IndexResult<T> findRows(RodaUser user, Class<T> classToReturn, String tableUUID,
+    Filter filter, Sorter sorter, Sublist sublist, Facets facets) throws GenericException, RequestNotValidException;
+
+  /**
+   * @param fieldsToReturn
+   *          the names of the fields to load for each row, or null to load all
+   *          fields. The row id is always returned.
+   */
+  <T extends IsIndexed> IndexResult<T> findRows(RodaUser user, Class<T> classToReturn, String tableUUID,
+    Filter filter, Sorter sorter, Sublist sublist, Facets facets, List<String> fieldsToReturn)
+    throws GenericException, RequestNotValidException;
+
+  /**
+   * Finds rows on behalf of a view that supersedes its own queries: if a query
+   * with the same tag and a lower serial is still running, it may be cancelled.
+   *
+   * @param requestTag
+   *          identifies the view making the request
+   * @param requestSerial
+   *          increases with each request made by the view
+   */
+  <T extends IsIndexed> IndexResult<T> findRows(RodaUser user, Class<T> classToReturn, String tableUUID,
+    Filter filter, Sorter sorter, Sublist sublist, Facets facets, List<String> fieldsToReturn, String requestTag,
+    long requestSerial) throws GenericException, RequestNotValidException;
+
+  /**
+   * Streams the rows of a table that match the filter and are inside the
+   * sublist (all rows if the sublist is null). The returned stream must be
+   * closed after being used.
+   *
+   * @param fields
+   *          the fields to return, or null to return all stored fields
+   */
+  SolrDocumentStream streamRows(RodaUser user, String tableUUID, Filter filter, Sorter sorter, Sublist sublist,
+    List<String> fields) throws GenericException, RequestNotValidException;
+
+  <T extends IsIndexed> Long countRows(RodaUser user, Class<T> classToReturn, String tableUUID, Filter filter)
+    throws GenericException, RequestNotValidException;
+
+  <T extends IsIndexed> T retrieveRows(RodaUser user, Class<T> classToReturn, String tableUUID, String rowUUID)
+    throws NotFoundException, GenericException;
+
+  /**
+   * Retrieves many rows, possibly from different tables, at once
+   *
+   * @param rowUUIDsByTable
+   *          the UUIDs of the rows to retrieve, grouped by table UUID
+   * @return the rows that were found, grouped by table UUID. Rows that do not
+   *         exist are not included.
+   * @throws RequestNotValidException
+   *           if more than ViewerSafeConstants.MAX_ROWS_RETRIEVED_BY_ID rows
+   *           are requested
+   */
+  <T extends IsIndexed> Map<String, List<T>> retrieveRows(RodaUser user, Class<T> classToReturn,
+    Map<String, ? extends Collection<String>> rowUUIDsByTable) throws GenericException, RequestNotValidException;
+
+  /**
+   * Retrieves a row along with its foreign key relations (see
+   * ViewerRowWithRelations)
+   */
+  ViewerRowWithRelations retrieveRowWithRelations(RodaUser user, String databaseUUID, String tableUUID,
+    String rowUUID) throws NotFoundException, GenericException;
+
+  void addSavedSearch(RodaUser user, SavedSearch savedSearch) throws NotFoundException, GenericException;
+
+  void editSavedSearch(RodaUser user, String uuid, String name, String description) throws NotFoundException,
+    GenericException;
+
+  void deleteSavedSearch(RodaUser user, String uuid) throws NotFoundException, GenericException;
+}
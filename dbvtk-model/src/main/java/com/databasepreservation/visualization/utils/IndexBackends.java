@@ -0,0 +1,82 @@
+package com.databasepreservation.visualization.utils;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.databasepreservation.visualization.ViewerConstants;
+
+/**
+ * Creates the index backend chosen using system properties:
+ * -Ddbvtk.index.backend=solr (the default) uses a Solr server or SolrCloud
+ * cluster, configured with the dbvtk.solr.* system properties (see
+ * SolrClientSettings); -Ddbvtk.index.backend=lucene uses embedded Lucene
+ * indexes, stored in the directory set by -Ddbvtk.lucene.path (by default, the
+ * lucene directory inside the viewer user directory).
+ *
+ * Setting -Ddbvtk.columnar.maxRows to a positive number keeps the tables with
+ * up to that number of rows in memory (see ColumnarCacheBackend), at most
+ * -Ddbvtk.columnar.maxTables tables at a time. Cached tables are checked for
+ * changes every -Ddbvtk.columnar.timeToLive milliseconds.
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+public final class IndexBackends {
+  private static final Logger LOGGER = LoggerFactory.getLogger(IndexBackends.class);
+
+  public static final String PROPERTY_BACKEND = "dbvtk.index.backend";
+  public static final String PROPERTY_LUCENE_PATH = "dbvtk.lucene.path";
+  public static final String PROPERTY_COLUMNAR_MAX_ROWS = "dbvtk.columnar.maxRows";
+  public static final String PROPERTY_COLUMNAR_MAX_TABLES = "dbvtk.columnar.maxTables";
+  public static final String PROPERTY_COLUMNAR_TIME_TO_LIVE = "dbvtk.columnar.timeToLive";
+
+  public static final String BACKEND_SOLR = "solr";
+  public static final String BACKEND_LUCENE = "lucene";
+
+  private static final Path DEFAULT_LUCENE_PATH = ViewerConstants.USER_DBVIEWER_DIR.resolve("lucene");
+  private static final int DEFAULT_COLUMNAR_MAX_TABLES = 64;
+  private static final long DEFAULT_COLUMNAR_TIME_TO_LIVE = 60 * 1000L;
+
+  private IndexBackends() {
+  }
+
+  /**
+   * @param solrUrl
+   *          the URL of the Solr server, used if the Solr backend is chosen and
+   *          no ZooKeeper host is set
+   */
+  public static IndexBackend fromSystemProperties(String solrUrl) {
+    IndexBackend backend = createBackend(solrUrl);
+
+    int maxRows = Integer.getInteger(PROPERTY_COLUMNAR_MAX_ROWS, 0);
+    if (maxRows > 0) {
+      int maxTables = Integer.getInteger(PROPERTY_COLUMNAR_MAX_TABLES, DEFAULT_COLUMNAR_MAX_TABLES);
+      long timeToLive = Long.getLong(PROPERTY_COLUMNAR_TIME_TO_LIVE, DEFAULT_COLUMNAR_TIME_TO_LIVE);
+      LOGGER.info("Keeping up to {} tables with at most {} rows in memory", maxTables, maxRows);
+      return new ColumnarCacheBackend(backend, maxRows, maxTables, timeToLive);
+    }
+    return backend;
+  }
+
+  private static IndexBackend createBackend(String solrUrl) {
+    String backend = System.getProperty(PROPERTY_BACKEND, BACKEND_SOLR);
+    if (BACKEND_LUCENE.equalsIgnoreCase(backend)) {
+      String path = System.getProperty(PROPERTY_LUCENE_PATH);
+      return new LuceneIndexBackend(path != null ? Paths.get(path) : DEFAULT_LUCENE_PATH);
+    }
+
+    if (!BACKEND_SOLR.equalsIgnoreCase(backend)) {
+      LOGGER.warn("Unknown index backend '{}' in {}, using {}", backend, PROPERTY_BACKEND, BACKEND_SOLR);
+    }
+
+    SolrClientSettings settings = SolrClientSettings.fromSystemProperties();
+    if (settings.isCloud()) {
+      LOGGER.info("Using SolrCloud through ZooKeeper at {}", settings.getZkHost());
+    } else {
+      LOGGER.info("Using Solr at {}", solrUrl);
+    }
+    return new SolrManager(solrUrl, settings);
+  }
+}
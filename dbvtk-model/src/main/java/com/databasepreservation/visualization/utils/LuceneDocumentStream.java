@@ -0,0 +1,140 @@
+package com.databasepreservation.visualization.utils;
+
+import java.io.IOException;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.TopDocs;
+import org.apache.solr.common.SolrDocument;
+import org.roda.core.data.exceptions.GenericException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Streams the documents of a Lucene index that match a query, in pages that
+ * continue after the last document of the previous page (the equivalent of a
+ * Solr cursorMark). The same searcher is used for all pages, so the documents
+ * added while streaming are not returned.
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+class LuceneDocumentStream extends SolrDocumentStream {
+  private static final Logger LOGGER = LoggerFactory.getLogger(LuceneDocumentStream.class);
+
+  private final LuceneIndex index;
+  private final IndexSearcher searcher;
+  private final Query query;
+  private final Sort sort;
+  private final List<String> fields;
+  private final Set<String> fieldsToLoad;
+  private final int pageSize;
+
+  private ScoreDoc[] page = new ScoreDoc[0];
+  private int pageIndex = 0;
+  private ScoreDoc last = null;
+  private boolean lastPage = false;
+  // documents still to be returned
+  private long remaining;
+
+  /**
+   * @param sort
+   *          must have a tie breaker (e.g. the id), so that the pages do not
+   *          overlap
+   * @param offset
+   *          the number of documents to skip
+   * @param limit
+   *          the maximum number of documents to return
+   */
+  LuceneDocumentStream(LuceneIndex index, Query query, Sort sort, int offset, int limit, List<String> fields,
+    int pageSize) throws GenericException {
+    this.index = index;
+    this.query = query;
+    this.sort = sort;
+    this.fields = fields;
+    // null loads all stored fields
+    this.fieldsToLoad = fields != null ? new LinkedHashSet<>(fields) : null;
+    this.pageSize = pageSize;
+    this.remaining = limit;
+
+    try {
+      searcher = index.acquire();
+    } catch (IOException e) {
+      throw new GenericException("Could not open index " + index.getName(), e);
+    }
+
+    if (searcher == null) {
+      // the index does not exist (yet)
+      lastPage = true;
+    } else if (offset > 0) {
+      // documents before the offset are skipped using a first page that ends
+      // on the last skipped document
+      try {
+        TopDocs skipped = searcher.search(query, offset, sort);
+        if (skipped.scoreDocs.length < offset) {
+          lastPage = true;
+        } else {
+          last = skipped.scoreDocs[skipped.scoreDocs.length - 1];
+        }
+      } catch (IOException e) {
+        try {
+          index.release(searcher);
+        } catch (IOException e1) {
+          LOGGER.debug("Could not release searcher", e1);
+        }
+        throw new GenericException("Could not search index " + index.getName(), e);
+      }
+    }
+  }
+
+  @Override
+  public SolrDocument next() throws GenericException {
+    if (remaining <= 0) {
+      return null;
+    }
+
+    try {
+      if (pageIndex >= page.length) {
+        if (lastPage) {
+          return null;
+        }
+        nextPage();
+        if (page.length == 0) {
+          return null;
+        }
+      }
+
+      ScoreDoc scoreDoc = page[pageIndex++];
+      remaining--;
+      return LuceneDocuments.toSolrDocument(searcher.doc(scoreDoc.doc, fieldsToLoad));
+    } catch (IOException e) {
+      throw new GenericException("Could not read documents from index " + index.getName(), e);
+    }
+  }
+
+  private void nextPage() throws IOException {
+    int rows = (int) Math.min(pageSize, remaining);
+    TopDocs topDocs = last == null ? searcher.search(query, rows, sort) : searcher.searchAfter(last, query, rows,
+      sort);
+    page = topDocs.scoreDocs;
+    pageIndex = 0;
+    lastPage = page.length < rows;
+    if (page.length > 0) {
+      last = page[page.length - 1];
+    }
+  }
+
+  @Override
+  public List<String> getFields() {
+    return fields;
+  }
+
+  @Override
+  public void close() throws IOException {
+    index.release(searcher);
+  }
+}
@@ -0,0 +1,579 @@
+package com.databasepreservation.visualization.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.DelegatingAnalyzerWrapper;
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.analysis.util.CharArraySet;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.DoubleDocValuesField;
+import org.apache.lucene.document.DoublePoint;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.MatchNoDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TermRangeQuery;
+import org.apache.lucene.util.BytesRef;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.SolrInputField;
+import org.roda.core.data.adapter.filter.Filter;
+import org.roda.core.data.adapter.sort.SortParameter;
+import org.roda.core.data.adapter.sort.Sorter;
+import org.roda.core.data.exceptions.RequestNotValidException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.databasepreservation.visualization.shared.ViewerSafeConstants;
+
+/**
+ * Converts the documents created by SolrTransformer to Lucene documents (and
+ * back), and the filters and sorters to Lucene queries and sorts, emulating
+ * the Solr schemas in the dbvtk configsets: the field types are given by the
+ * dynamic field suffixes, text fields are copied to their "_sort" field (first
+ * 100 characters) and every row value is copied to the "search" field.
+ *
+ * Only the original values are stored, as strings, so stored documents look
+ * like the ones returned by Solr for the same fields.
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+final class LuceneDocuments {
+  private static final Logger LOGGER = LoggerFactory.getLogger(LuceneDocuments.class);
+
+  /**
+   * Indexes the names of the fields present in each document, to find the
+   * documents that have (or do not have) a value in a field
+   */
+  static final String FIELD_NAMES = "_fields";
+
+  // same as the maxChars of the copyField to the sort fields, in the schema
+  static final int SORT_FIELD_MAX_CHARS = 100;
+
+  private static final Pattern DATE_MATH = Pattern
+    .compile("([+-])(\\d+)(YEAR|MONTH|DAY|HOUR|MINUTE|SECOND|MILLISECOND)S?");
+
+  enum FieldType {
+    STRING, TEXT, LONG, DOUBLE, DATE, BOOLEAN, SORT, STORED
+  }
+
+  private static final Analyzer TEXT_ANALYZER = new StandardAnalyzer(CharArraySet.EMPTY_SET);
+  private static final Analyzer KEYWORD_ANALYZER = new KeywordAnalyzer();
+
+  /**
+   * Analyzes text fields like the text_general Solr type (without stopwords)
+   * and all other fields as a single token
+   */
+  static final Analyzer ANALYZER = new DelegatingAnalyzerWrapper(Analyzer.PER_FIELD_REUSE_STRATEGY) {
+    @Override
+    protected Analyzer getWrappedAnalyzer(String fieldName) {
+      return getFieldType(fieldName) == FieldType.TEXT ? TEXT_ANALYZER : KEYWORD_ANALYZER;
+    }
+  };
+
+  private LuceneDocuments() {
+  }
+
+  static FieldType getFieldType(String name) {
+    switch (name) {
+      case ViewerSafeConstants.SOLR_ROW_SEARCH:
+      case ViewerSafeConstants.SOLR_SEARCHES_NAME:
+      case ViewerSafeConstants.SOLR_SEARCHES_DESCRIPTION:
+        return FieldType.TEXT;
+      case ViewerSafeConstants.SOLR_DATABASE_METADATA:
+      case ViewerSafeConstants.SOLR_DATABASE_PRIVILEGES:
+      case ViewerSafeConstants.SOLR_DATABASE_TABLE_COLLECTION:
+      case ViewerSafeConstants.SOLR_DATABASE_TABLE_DOC_VALUES:
+      case ViewerSafeConstants.SOLR_SEARCHES_SEARCH_INFO_JSON:
+        return FieldType.STORED;
+      case ViewerSafeConstants.SOLR_SEARCHES_DATE_ADDED:
+        return FieldType.DATE;
+      default:
+        break;
+    }
+
+    int index = name.lastIndexOf('_');
+    String suffix = index >= 0 ? name.substring(index) : "";
+    switch (suffix) {
+      case ViewerSafeConstants.SOLR_DYN_TEXT_GENERAL:
+        return FieldType.TEXT;
+      case ViewerSafeConstants.SOLR_DYN_SORT:
+        return FieldType.SORT;
+      case ViewerSafeConstants.SOLR_DYN_STORED:
+        return FieldType.STORED;
+      case ViewerSafeConstants.SOLR_DYN_LONG:
+      case ViewerSafeConstants.SOLR_DYN_TLONG:
+      case ViewerSafeConstants.SOLR_DYN_LONGS:
+      case ViewerSafeConstants.SOLR_DYN_TLONGS:
+      case ViewerSafeConstants.SOLR_DYN_INT:
+      case ViewerSafeConstants.SOLR_DYN_TINT:
+      case ViewerSafeConstants.SOLR_DYN_INTS:
+      case ViewerSafeConstants.SOLR_DYN_TINTS:
+        return FieldType.LONG;
+      case ViewerSafeConstants.SOLR_DYN_DOUBLE:
+      case ViewerSafeConstants.SOLR_DYN_TDOUBLE:
+      case ViewerSafeConstants.SOLR_DYN_DOUBLES:
+      case ViewerSafeConstants.SOLR_DYN_TDOUBLES:
+      case ViewerSafeConstants.SOLR_DYN_FLOAT:
+      case ViewerSafeConstants.SOLR_DYN_TFLOAT:
+      case ViewerSafeConstants.SOLR_DYN_FLOATS:
+      case ViewerSafeConstants.SOLR_DYN_TFLOATS:
+        return FieldType.DOUBLE;
+      case ViewerSafeConstants.SOLR_DYN_DATE:
+      case ViewerSafeConstants.SOLR_DYN_TDATE:
+      case ViewerSafeConstants.SOLR_DYN_DATES:
+      case ViewerSafeConstants.SOLR_DYN_TDATES:
+        return FieldType.DATE;
+      case ViewerSafeConstants.SOLR_DYN_BOOLEAN:
+      case ViewerSafeConstants.SOLR_DYN_BOOLEANS:
+        return FieldType.BOOLEAN;
+      default:
+        // ids, uuids, document types and strings
+        return FieldType.STRING;
+    }
+  }
+
+  /**
+   * @return the name of the docValues field used to sort by a text field, or
+   *         null if the field can not be sorted
+   */
+  private static String getTextSortField(String name) {
+    if (name.endsWith(ViewerSafeConstants.SOLR_DYN_TEXT_GENERAL)) {
+      return name.substring(0, name.length() - ViewerSafeConstants.SOLR_DYN_TEXT_GENERAL.length())
+        + ViewerSafeConstants.SOLR_DYN_SORT;
+    }
+    return null;
+  }
+
+  /**
+   * Converts a document created by SolrTransformer
+   *
+   * @param catchAll
+   *          true to copy all values to the "search" field, as the table
+   *          schema does
+   */
+  static Document toDocument(SolrInputDocument input, boolean catchAll) {
+    Document doc = new Document();
+    Set<String> names = new LinkedHashSet<>();
+    for (SolrInputField field : input) {
+      String name = field.getName();
+      FieldType type = getFieldType(name);
+      boolean first = true;
+      for (Object value : field.getValues()) {
+        if (value == null) {
+          continue;
+        }
+        String string = toStoredString(value);
+        addField(doc, name, type, string, first);
+        if (catchAll && !ViewerSafeConstants.SOLR_ROW_ID.equals(name)) {
+          doc.add(new TextField(ViewerSafeConstants.SOLR_ROW_SEARCH, string, Field.Store.NO));
+        }
+        names.add(name);
+        first = false;
+      }
+    }
+
+    for (String name : names) {
+      doc.add(new StringField(FIELD_NAMES, name, Field.Store.NO));
+    }
+    return doc;
+  }
+
+  private static String toStoredString(Object value) {
+    if (value instanceof Date) {
+      return Instant.ofEpochMilli(((Date) value).getTime()).toString();
+    }
+    return value.toString();
+  }
+
+  /**
+   * @param first
+   *          true for the first value of the field in the document (the only
+   *          one that is used for sorting)
+   */
+  private static void addField(Document doc, String name, FieldType type, String value, boolean first) {
+    switch (type) {
+      case TEXT:
+        doc.add(new TextField(name, value, Field.Store.YES));
+        String sortName = getTextSortField(name);
+        if (first && sortName != null) {
+          doc.add(new SortedDocValuesField(sortName, toBytesRef(value.length() > SORT_FIELD_MAX_CHARS ? value
+            .substring(0, SORT_FIELD_MAX_CHARS) : value)));
+        }
+        break;
+      case LONG:
+      case DATE:
+        doc.add(new StoredField(name, value));
+        Long number = type == FieldType.LONG ? parseLong(value) : parseDate(value);
+        if (number != null) {
+          doc.add(new LongPoint(name, number));
+          if (first) {
+            doc.add(new NumericDocValuesField(name, number));
+          }
+        }
+        break;
+      case DOUBLE:
+        doc.add(new StoredField(name, value));
+        Double decimal = parseDouble(value);
+        if (decimal != null) {
+          doc.add(new DoublePoint(name, decimal));
+          if (first) {
+            doc.add(new DoubleDocValuesField(name, decimal));
+          }
+        }
+        break;
+      case BOOLEAN:
+        String bool = Boolean.toString(Boolean.parseBoolean(value));
+        doc.add(new StringField(name, bool, Field.Store.YES));
+        if (first) {
+          doc.add(new SortedDocValuesField(name, new BytesRef(bool)));
+        }
+        break;
+      case SORT:
+        if (first) {
+          doc.add(new SortedDocValuesField(name, toBytesRef(value)));
+        }
+        break;
+      case STORED:
+        doc.add(new StoredField(name, value));
+        break;
+      case STRING:
+      default:
+        if (isIndexable(value)) {
+          doc.add(new StringField(name, value, Field.Store.YES));
+        } else {
+          // too long to be a single term, it can only be retrieved
+          doc.add(new StoredField(name, value));
+        }
+        if (first) {
+          doc.add(new SortedDocValuesField(name, toBytesRef(value)));
+        }
+        break;
+    }
+  }
+
+  private static boolean isIndexable(String value) {
+    // an UTF-8 character has at most 3 bytes per UTF-16 char
+    return value.length() * 3 <= IndexWriter.MAX_TERM_LENGTH
+      || value.getBytes(StandardCharsets.UTF_8).length <= IndexWriter.MAX_TERM_LENGTH;
+  }
+
+  /**
+   * @return the value as doc values, truncated to the maximum length allowed
+   */
+  private static BytesRef toBytesRef(String value) {
+    BytesRef bytes = new BytesRef(value);
+    if (bytes.length > IndexWriter.MAX_TERM_LENGTH) {
+      bytes.length = IndexWriter.MAX_TERM_LENGTH;
+    }
+    return bytes;
+  }
+
+  /**
+   * Converts the stored fields of a document to a Solr document, which can be
+   * converted by SolrTransformer
+   */
+  static SolrDocument toSolrDocument(Document doc) {
+    SolrDocument ret = new SolrDocument();
+    for (IndexableField field : doc) {
+      ret.addField(field.name(), field.stringValue());
+    }
+    return ret;
+  }
+
+  static Set<String> getFieldsToLoad(List<String> fields) {
+    if (fields == null) {
+      return null;
+    }
+    Set<String> ret = new LinkedHashSet<>(fields);
+    ret.add(ViewerSafeConstants.SOLR_ROW_ID);
+    return ret;
+  }
+
+  static Query parseFilter(Filter filter) throws RequestNotValidException {
+    String query = SolrUtils.parseFilter(filter);
+    try {
+      return new FilterQueryParser().parse(query);
+    } catch (org.apache.lucene.queryparser.classic.ParseException e) {
+      throw new RequestNotValidException("Invalid query: " + query, e);
+    }
+  }
+
+  /**
+   * @param tieBreaker
+   *          true to sort by id after the sorter fields, so that the order is
+   *          the same in every search
+   * @return the sort, or null to sort by relevance
+   */
+  static Sort parseSorter(Sorter sorter, boolean tieBreaker) {
+    List<SortField> fields = new ArrayList<>();
+    if (sorter != null) {
+      for (SortParameter parameter : sorter.getParameters()) {
+        SortField field = toSortField(parameter.getName(), parameter.isDescending());
+        if (field != null) {
+          fields.add(field);
+        }
+      }
+    }
+
+    if (tieBreaker) {
+      fields.add(toSortField(ViewerSafeConstants.SOLR_ROW_ID, false));
+    }
+    return fields.isEmpty() ? null : new Sort(fields.toArray(new SortField[fields.size()]));
+  }
+
+  private static SortField toSortField(String name, boolean descending) {
+    SortField field;
+    switch (getFieldType(name)) {
+      case LONG:
+      case DATE:
+        field = new SortField(name, SortField.Type.LONG, descending);
+        // missing values last, as strings
+        field.setMissingValue(descending ? Long.MIN_VALUE : Long.MAX_VALUE);
+        break;
+      case DOUBLE:
+        field = new SortField(name, SortField.Type.DOUBLE, descending);
+        field.setMissingValue(descending ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY);
+        break;
+      case TEXT:
+        String sortName = getTextSortField(name);
+        if (sortName == null) {
+          LOGGER.warn("Can not sort by text field {}", name);
+          return null;
+        }
+        field = new SortField(sortName, SortField.Type.STRING, descending);
+        field.setMissingValue(SortField.STRING_LAST);
+        break;
+      case STORED:
+        LOGGER.warn("Can not sort by stored field {}", name);
+        return null;
+      default:
+        field = new SortField(name, SortField.Type.STRING, descending);
+        field.setMissingValue(SortField.STRING_LAST);
+        break;
+    }
+    return field;
+  }
+
+  static Long parseLong(String value) {
+    try {
+      return Long.parseLong(value.trim());
+    } catch (NumberFormatException e) {
+      // some integer types may have been written as decimals
+      Double decimal = parseDouble(value);
+      return decimal != null ? Long.valueOf(decimal.longValue()) : null;
+    }
+  }
+
+  static Double parseDouble(String value) {
+    try {
+      return Double.parseDouble(value.trim());
+    } catch (NumberFormatException e) {
+      LOGGER.debug("Could not parse number {}", value);
+      return null;
+    }
+  }
+
+  /**
+   * Parses a date as accepted by Solr: an ISO-8601 instant, optionally followed
+   * by date math (e.g. 2016-01-01T00:00:00Z+1DAY-1MILLISECOND)
+   *
+   * @return the milliseconds since the epoch, or null if the date is not valid
+   */
+  static Long parseDate(String value) {
+    String date = value.trim();
+    int zone = date.indexOf('Z');
+    String math = "";
+    if (zone > 0) {
+      math = date.substring(zone + 1);
+      date = date.substring(0, zone + 1);
+    }
+
+    ZonedDateTime dateTime;
+    try {
+      dateTime = Instant.parse(date).atZone(ZoneOffset.UTC);
+    } catch (DateTimeParseException e) {
+      try {
+        dateTime = ViewerUtils.parseDate(value).toInstant().atZone(ZoneOffset.UTC);
+        math = "";
+      } catch (ParseException | RuntimeException e1) {
+        LOGGER.debug("Could not parse date {}", value);
+        return null;
+      }
+    }
+
+    Matcher matcher = DATE_MATH.matcher(math);
+    int end = 0;
+    while (matcher.lookingAt()) {
+      long amount = Long.parseLong(matcher.group(2));
+      if ("-".equals(matcher.group(1))) {
+        amount = -amount;
+      }
+      dateTime = dateTime.plus(amount, toChronoUnit(matcher.group(3)));
+      end = matcher.end();
+      matcher.region(end, math.length());
+    }
+    if (end != math.length()) {
+      LOGGER.debug("Could not parse date math {}", math);
+      return null;
+    }
+    return dateTime.toInstant().toEpochMilli();
+  }
+
+  private static ChronoUnit toChronoUnit(String unit) {
+    switch (unit) {
+      case "YEAR":
+        return ChronoUnit.YEARS;
+      case "MONTH":
+        return ChronoUnit.MONTHS;
+      case "DAY":
+        return ChronoUnit.DAYS;
+      case "HOUR":
+        return ChronoUnit.HOURS;
+      case "MINUTE":
+        return ChronoUnit.MINUTES;
+      case "SECOND":
+        return ChronoUnit.SECONDS;
+      default:
+        return ChronoUnit.MILLIS;
+    }
+  }
+
+  /**
+   * Parses the queries created by SolrUtils.parseFilter, using the field types
+   * to create point queries for numbers and dates and term queries for strings
+   */
+  private static class FilterQueryParser extends QueryParser {
+    FilterQueryParser() {
+      super(ViewerSafeConstants.SOLR_ROW_SEARCH, ANALYZER);
+      setAllowLeadingWildcard(true);
+      setLowercaseExpandedTerms(false);
+    }
+
+    @Override
+    protected Query getFieldQuery(String field, String queryText, boolean quoted)
+      throws org.apache.lucene.queryparser.classic.ParseException {
+      switch (getFieldType(field)) {
+        case LONG:
+          Long number = parseLong(queryText);
+          return number != null ? LongPoint.newExactQuery(field, number) : new MatchNoDocsQuery();
+        case DATE:
+          Long date = parseDate(queryText);
+          return date != null ? LongPoint.newExactQuery(field, date) : new MatchNoDocsQuery();
+        case DOUBLE:
+          Double decimal = parseDouble(queryText);
+          return decimal != null ? DoublePoint.newExactQuery(field, decimal) : new MatchNoDocsQuery();
+        case BOOLEAN:
+          return new TermQuery(new Term(field, Boolean.toString(Boolean.parseBoolean(queryText))));
+        case STRING:
+          return new TermQuery(new Term(field, queryText));
+        default:
+          return super.getFieldQuery(field, queryText, quoted);
+      }
+    }
+
+    @Override
+    protected Query getRangeQuery(String field, String part1, String part2, boolean startInclusive,
+      boolean endInclusive) throws org.apache.lucene.queryparser.classic.ParseException {
+      String from = "*".equals(part1) ? null : part1;
+      String to = "*".equals(part2) ? null : part2;
+
+      switch (getFieldType(field)) {
+        case LONG:
+        case DATE:
+          boolean isDate = getFieldType(field) == FieldType.DATE;
+          Long lower = from == null ? Long.valueOf(Long.MIN_VALUE) : isDate ? parseDate(from) : parseLong(from);
+          Long upper = to == null ? Long.valueOf(Long.MAX_VALUE) : isDate ? parseDate(to) : parseLong(to);
+          if (lower == null || upper == null) {
+            throw new org.apache.lucene.queryparser.classic.ParseException("Invalid range [" + part1 + " TO " + part2
+              + "] for field " + field);
+          }
+          if (from != null && !startInclusive) {
+            if (lower == Long.MAX_VALUE) {
+              return new MatchNoDocsQuery();
+            }
+            lower++;
+          }
+          if (to != null && !endInclusive) {
+            if (upper == Long.MIN_VALUE) {
+              return new MatchNoDocsQuery();
+            }
+            upper--;
+          }
+          return LongPoint.newRangeQuery(field, lower, upper);
+        case DOUBLE:
+          Double lowerDecimal = from == null ? Double.valueOf(Double.NEGATIVE_INFINITY) : parseDouble(from);
+          Double upperDecimal = to == null ? Double.valueOf(Double.POSITIVE_INFINITY) : parseDouble(to);
+          if (lowerDecimal == null || upperDecimal == null) {
+            throw new org.apache.lucene.queryparser.classic.ParseException("Invalid range [" + part1 + " TO " + part2
+              + "] for field " + field);
+          }
+          if (from != null && !startInclusive) {
+            lowerDecimal = Math.nextUp(lowerDecimal);
+          }
+          if (to != null && !endInclusive) {
+            upperDecimal = Math.nextDown(upperDecimal);
+          }
+          return DoublePoint.newRangeQuery(field, lowerDecimal, upperDecimal);
+        default:
+          return TermRangeQuery.newStringRange(field, from, to, startInclusive, endInclusive);
+      }
+    }
+
+    @Override
+    protected Query getWildcardQuery(String field, String termStr)
+      throws org.apache.lucene.queryparser.classic.ParseException {
+      if ("*".equals(termStr)) {
+        if ("*".equals(field) || ViewerSafeConstants.SOLR_ROW_SEARCH.equals(field)) {
+          return new MatchAllDocsQuery();
+        }
+        // documents with any value in the field
+        return new TermQuery(new Term(FIELD_NAMES, field));
+      }
+      return super.getWildcardQuery(field, normalize(field, termStr));
+    }
+
+    @Override
+    protected Query getPrefixQuery(String field, String termStr)
+      throws org.apache.lucene.queryparser.classic.ParseException {
+      return super.getPrefixQuery(field, normalize(field, termStr));
+    }
+
+    /**
+     * Lower cases the terms of wildcard queries on text fields, which are not
+     * analyzed
+     */
+    private static String normalize(String field, String termStr) {
+      return getFieldType(field) == FieldType.TEXT ? termStr.toLowerCase(Locale.ROOT) : termStr;
+    }
+  }
+}
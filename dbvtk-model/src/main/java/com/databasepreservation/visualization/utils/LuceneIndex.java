@@ -0,0 +1,183 @@
+package com.databasepreservation.visualization.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.solr.common.SolrInputDocument;
+
+import com.databasepreservation.visualization.shared.ViewerSafeConstants;
+
+/**
+ * A Lucene index stored in a memory mapped directory, the embedded equivalent
+ * of a Solr collection.
+ *
+ * The index writer is only open while documents are being added (it holds the
+ * index write lock), and is closed when the changes are committed. Searchers
+ * are shared and refreshed after each commit, and periodically to see the
+ * commits made by other processes (e.g. an ingest run from the command line).
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+class LuceneIndex implements Closeable {
+  private static final long REFRESH_INTERVAL = 1000; // 1 second
+
+  private final String name;
+  private final Path path;
+  private final boolean catchAll;
+
+  // guarded by this
+  private Directory directory;
+  private IndexWriter writer;
+  private volatile SearcherManager searcherManager;
+  private volatile long lastRefresh = 0;
+
+  /**
+   * @param catchAll
+   *          true to copy all values to the "search" field (see
+   *          LuceneDocuments.toDocument)
+   */
+  LuceneIndex(String name, Path path, boolean catchAll) {
+    this.name = name;
+    this.path = path;
+    this.catchAll = catchAll;
+  }
+
+  String getName() {
+    return name;
+  }
+
+  /**
+   * Adds a document, replacing the document with the same id if it exists. The
+   * document is only visible after the next commit.
+   */
+  synchronized void update(SolrInputDocument doc) throws IOException {
+    Object id = doc.getFieldValue(ViewerSafeConstants.SOLR_ROW_ID);
+    if (id == null) {
+      throw new IOException("Attempted to insert a document without id into index " + name);
+    }
+    getWriter().updateDocument(new Term(ViewerSafeConstants.SOLR_ROW_ID, id.toString()),
+      LuceneDocuments.toDocument(doc, catchAll));
+  }
+
+  synchronized void delete(String id) throws IOException {
+    getWriter().deleteDocuments(new Term(ViewerSafeConstants.SOLR_ROW_ID, id));
+  }
+
+  /**
+   * Commits the changes made since the last commit (if any), closes the writer
+   * and makes the changes visible to new searches
+   */
+  synchronized void commit() throws IOException {
+    if (writer == null) {
+      return;
+    }
+
+    try {
+      writer.commit();
+    } finally {
+      writer.close();
+      writer = null;
+    }
+
+    SearcherManager manager = getSearcherManager();
+    if (manager != null) {
+      manager.maybeRefreshBlocking();
+    }
+  }
+
+  /**
+   * @return a searcher, which must be released after being used, or null if
+   *         the index does not exist (yet)
+   */
+  IndexSearcher acquire() throws IOException {
+    SearcherManager manager = searcherManager;
+    if (manager == null) {
+      manager = getSearcherManager();
+      if (manager == null) {
+        return null;
+      }
+    }
+
+    long now = System.currentTimeMillis();
+    if (now - lastRefresh > REFRESH_INTERVAL) {
+      lastRefresh = now;
+      manager.maybeRefresh();
+    }
+    return manager.acquire();
+  }
+
+  void release(IndexSearcher searcher) throws IOException {
+    if (searcher != null) {
+      searcherManager.release(searcher);
+    }
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    try {
+      if (writer != null) {
+        // documents that were not committed are discarded, as in Solr
+        writer.rollback();
+        writer = null;
+      }
+      if (searcherManager != null) {
+        searcherManager.close();
+        searcherManager = null;
+      }
+    } finally {
+      if (directory != null) {
+        directory.close();
+        directory = null;
+      }
+    }
+  }
+
+  private synchronized IndexWriter getWriter() throws IOException {
+    if (writer == null) {
+      IndexWriterConfig config = new IndexWriterConfig(LuceneDocuments.ANALYZER);
+      config.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+      writer = new IndexWriter(getDirectory(true), config);
+    }
+    return writer;
+  }
+
+  private synchronized SearcherManager getSearcherManager() throws IOException {
+    if (searcherManager == null) {
+      Directory dir = getDirectory(false);
+      if (dir == null || !DirectoryReader.indexExists(dir)) {
+        return null;
+      }
+      searcherManager = new SearcherManager(dir, null);
+      lastRefresh = System.currentTimeMillis();
+    }
+    return searcherManager;
+  }
+
+  /**
+   * @param create
+   *          true to create the directory if it does not exist
+   * @return the directory, or null if it does not exist and create is false
+   */
+  private synchronized Directory getDirectory(boolean create) throws IOException {
+    if (directory == null) {
+      if (!Files.isDirectory(path)) {
+        if (!create) {
+          return null;
+        }
+        Files.createDirectories(path);
+      }
+      directory = new MMapDirectory(path);
+    }
+    return directory;
+  }
+}
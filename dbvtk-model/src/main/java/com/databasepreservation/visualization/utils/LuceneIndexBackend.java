@@ -0,0 +1,554 @@
+package com.databasepreservation.visualization.utils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.SolrInputDocument;
+import org.roda.core.data.adapter.facet.Facets;
+import org.roda.core.data.adapter.filter.Filter;
+import org.roda.core.data.adapter.sort.Sorter;
+import org.roda.core.data.adapter.sublist.Sublist;
+import org.roda.core.data.exceptions.GenericException;
+import org.roda.core.data.exceptions.NotFoundException;
+import org.roda.core.data.exceptions.RequestNotValidException;
+import org.roda.core.data.v2.index.FacetFieldResult;
+import org.roda.core.data.v2.index.IndexResult;
+import org.roda.core.data.v2.index.IsIndexed;
+import org.roda.core.data.v2.user.RodaUser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.databasepreservation.visualization.client.SavedSearch;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerDatabase;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerRow;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerRowWithRelations;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerSchema;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerTable;
+import com.databasepreservation.visualization.exceptions.ViewerException;
+import com.databasepreservation.visualization.shared.ViewerSafeConstants;
+import com.databasepreservation.visualization.transformers.SolrTransformer;
+
+/**
+ * Stores the databases, rows and saved searches in embedded Lucene indexes,
+ * searched in the viewer process without any HTTP requests or response
+ * serialization.
+ *
+ * Each Solr collection is a Lucene index in a (memory mapped) directory under
+ * the root directory, with the same name as the collection: one for the
+ * databases, one for the saved searches and one for each table. The documents
+ * and queries are the same as in Solr (see LuceneDocuments).
+ *
+ * Facets are not supported: the facet results are always empty.
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+public class LuceneIndexBackend implements IndexBackend {
+  private static final Logger LOGGER = LoggerFactory.getLogger(LuceneIndexBackend.class);
+  private static final int STREAM_PAGE_SIZE = 1000;
+  // table UUIDs are used as directory names
+  private static final Pattern VALID_TABLE_UUID = Pattern.compile("[A-Za-z0-9_-]+");
+
+  private final Path root;
+  private final LuceneIndex databaseIndex;
+  private final LuceneIndex searchesIndex;
+  // guarded by itself
+  private final Map<String, LuceneIndex> tableIndexes = new HashMap<>();
+  private final MetadataCache metadataCache;
+
+  private final Set<LuceneIndex> indexesToCommit = new LinkedHashSet<>();
+  // databases being ingested, and the statistics of their tables (by table
+  // UUID), which are stored in the database metadata when committing
+  private final Map<String, ViewerDatabase> ingestedDatabases = new HashMap<>();
+  private final Map<String, TableStatisticsCollector> tableStatistics = new HashMap<>();
+  private final Set<String> databasesWithStatistics = new HashSet<>();
+
+  /**
+   * @param root
+   *          the directory where the indexes are stored, created if needed
+   */
+  public LuceneIndexBackend(Path root) {
+    this.root = root;
+    databaseIndex = new LuceneIndex(ViewerSafeConstants.SOLR_INDEX_DATABASE_COLLECTION_NAME,
+      root.resolve(ViewerSafeConstants.SOLR_INDEX_DATABASE_COLLECTION_NAME), false);
+    searchesIndex = new LuceneIndex(ViewerSafeConstants.SOLR_INDEX_SEARCHES_COLLECTION_NAME,
+      root.resolve(ViewerSafeConstants.SOLR_INDEX_SEARCHES_COLLECTION_NAME), false);
+
+    metadataCache = new MetadataCache(new MetadataCache.DocumentSource() {
+      @Override
+      public SolrDocument retrieveDocument(String id, List<String> fields) throws NotFoundException,
+        GenericException {
+        return LuceneIndexBackend.retrieveDocument(databaseIndex, id, fields);
+      }
+
+      @Override
+      public List<SolrDocument> retrieveDocuments(String field, String value) throws GenericException {
+        return search(databaseIndex, new TermQuery(new Term(field, value)), LuceneDocuments.parseSorter(null, true),
+          0, Integer.MAX_VALUE, null);
+      }
+    });
+    LOGGER.info("Using the Lucene indexes in {}", root);
+  }
+
+  private LuceneIndex getTableIndex(String tableUUID) throws GenericException {
+    if (tableUUID == null || !VALID_TABLE_UUID.matcher(tableUUID).matches()) {
+      throw new GenericException("Invalid table UUID: " + tableUUID);
+    }
+
+    synchronized (tableIndexes) {
+      LuceneIndex index = tableIndexes.get(tableUUID);
+      if (index == null) {
+        String name = SolrUtils.getTableCollectionName(tableUUID);
+        index = new LuceneIndex(name, root.resolve(name), true);
+        tableIndexes.put(tableUUID, index);
+      }
+      return index;
+    }
+  }
+
+  private <T> LuceneIndex getIndex(Class<T> resultClass) throws GenericException {
+    if (resultClass.equals(ViewerDatabase.class)) {
+      return databaseIndex;
+    } else if (resultClass.equals(SavedSearch.class)) {
+      return searchesIndex;
+    } else if (resultClass.equals(ViewerRow.class)) {
+      throw new GenericException("Can not determine index name from " + ViewerRow.class.getName() + " class name");
+    } else {
+      throw new GenericException("Cannot find class index name: " + resultClass.getName());
+    }
+  }
+
+  @Override
+  public void addDatabase(ViewerDatabase database) throws ViewerException {
+    ingestedDatabases.put(database.getUUID(), database);
+    insertDatabaseDocuments(database);
+  }
+
+  /**
+   * Inserts (or replaces) the documents with the database metadata
+   */
+  private void insertDatabaseDocuments(ViewerDatabase database) throws ViewerException {
+    metadataCache.invalidate(database.getUUID());
+    insertDocument(databaseIndex, SolrTransformer.fromDatabase(database));
+
+    // schemas and tables are stored in separate documents, so they can be
+    // loaded without loading the whole database metadata
+    for (ViewerSchema schema : database.getMetadata().getSchemas()) {
+      insertDocument(databaseIndex, SolrTransformer.fromSchema(database.getUUID(), schema));
+      for (ViewerTable table : schema.getTables()) {
+        insertDocument(databaseIndex, SolrTransformer.fromTable(database.getUUID(), table));
+      }
+    }
+  }
+
+  @Override
+  public void addTable(ViewerTable table) throws ViewerException {
+    try {
+      indexesToCommit.add(getTableIndex(table.getUUID()));
+    } catch (GenericException e) {
+      throw new ViewerException(e);
+    }
+    applyTableStatistics();
+    tableStatistics.put(table.getUUID(), new TableStatisticsCollector(table));
+  }
+
+  @Override
+  public void addRow(ViewerTable table, ViewerRow row) throws ViewerException {
+    try {
+      insertDocument(getTableIndex(table.getUUID()), SolrTransformer.fromRow(table, row));
+    } catch (GenericException e) {
+      throw new ViewerException(e);
+    }
+
+    TableStatisticsCollector statistics = tableStatistics.get(table.getUUID());
+    if (statistics != null) {
+      statistics.add(row);
+    }
+  }
+
+  private void insertDocument(LuceneIndex index, SolrInputDocument doc) throws ViewerException {
+    if (doc == null) {
+      throw new ViewerException("Attempted to insert null document into index " + index.getName());
+    }
+
+    try {
+      index.update(doc);
+    } catch (IOException e) {
+      throw new ViewerException("Could not insert a document in index " + index.getName(), e);
+    }
+    indexesToCommit.add(index);
+  }
+
+  /**
+   * Sets the row counts and column statistics computed while adding rows in the
+   * metadata of the databases that were added using this backend, and discards
+   * the collectors. Rows are added one table at a time, so this is done for the
+   * previous tables as soon as the next table is added.
+   */
+  private void applyTableStatistics() {
+    for (TableStatisticsCollector statistics : tableStatistics.values()) {
+      for (ViewerDatabase database : ingestedDatabases.values()) {
+        ViewerTable table = database.getMetadata().getTable(statistics.getTableUUID());
+        if (table != null) {
+          statistics.applyTo(table);
+          databasesWithStatistics.add(database.getUUID());
+        }
+      }
+    }
+    tableStatistics.clear();
+  }
+
+  /**
+   * Stores the metadata of the databases that got table statistics
+   */
+  private void storeTableStatistics() throws ViewerException {
+    applyTableStatistics();
+    for (ViewerDatabase database : ingestedDatabases.values()) {
+      if (databasesWithStatistics.contains(database.getUUID())) {
+        LOGGER.info("Storing table statistics for database " + database.getUUID());
+        insertDatabaseDocuments(database);
+      }
+    }
+    ingestedDatabases.clear();
+    databasesWithStatistics.clear();
+  }
+
+  /**
+   * Commits all changes to all modified indexes. Table statistics computed
+   * during ingest are stored before committing.
+   */
+  @Override
+  public void commitAll() throws ViewerException {
+    storeTableStatistics();
+    for (LuceneIndex index : indexesToCommit) {
+      try {
+        index.commit();
+      } catch (IOException e) {
+        throw new ViewerException("Problem committing index " + index.getName(), e);
+      }
+    }
+    indexesToCommit.clear();
+  }
+
+  @Override
+  public void freeResources() throws ViewerException {
+    List<LuceneIndex> indexes = new ArrayList<>();
+    indexes.add(databaseIndex);
+    indexes.add(searchesIndex);
+    synchronized (tableIndexes) {
+      indexes.addAll(tableIndexes.values());
+      tableIndexes.clear();
+    }
+
+    Map<String, Throwable> errors = new HashMap<>();
+    for (LuceneIndex index : indexes) {
+      try {
+        index.close();
+      } catch (IOException e) {
+        errors.put(index.getName(), e);
+      }
+    }
+    if (!errors.isEmpty()) {
+      throw new ViewerException(errors);
+    }
+  }
+
+  @Override
+  public <T extends IsIndexed> IndexResult<T> find(RodaUser user, Class<T> classToReturn, Filter filter, Sorter sorter,
+    Sublist sublist, Facets facets) throws GenericException, RequestNotValidException {
+    return find(getIndex(classToReturn), classToReturn, createQuery(classToReturn, filter), sorter, sublist, null);
+  }
+
+  @Override
+  public <T extends IsIndexed> Long count(RodaUser user, Class<T> classToReturn, Filter filter)
+    throws GenericException, RequestNotValidException {
+    return count(getIndex(classToReturn), createQuery(classToReturn, filter));
+  }
+
+  @Override
+  public <T extends IsIndexed> T retrieve(RodaUser user, Class<T> classToReturn, String id) throws NotFoundException,
+    GenericException {
+    if (ViewerDatabase.class.equals(classToReturn)) {
+      return classToReturn.cast(metadataCache.get(id).getDatabase());
+    }
+    return SolrUtils.solrDocumentTo(classToReturn, retrieveDocument(getIndex(classToReturn), id, null));
+  }
+
+  /**
+   * The databases index also contains the schema and table metadata documents,
+   * which must not be returned when searching for databases
+   */
+  private static <T> Query createQuery(Class<T> classToReturn, Filter filter) throws RequestNotValidException {
+    Query query = LuceneDocuments.parseFilter(filter);
+    if (ViewerDatabase.class.equals(classToReturn)) {
+      BooleanQuery.Builder builder = new BooleanQuery.Builder();
+      builder.add(query, BooleanClause.Occur.MUST);
+      builder.add(new TermQuery(new Term(ViewerSafeConstants.SOLR_DATABASE_DOCUMENT_TYPE,
+        ViewerSafeConstants.SOLR_DATABASE_DOCUMENT_TYPE_SCHEMA)), BooleanClause.Occur.MUST_NOT);
+      builder.add(new TermQuery(new Term(ViewerSafeConstants.SOLR_DATABASE_DOCUMENT_TYPE,
+        ViewerSafeConstants.SOLR_DATABASE_DOCUMENT_TYPE_TABLE)), BooleanClause.Occur.MUST_NOT);
+      query = builder.build();
+    }
+    return query;
+  }
+
+  @Override
+  public CachedDatabase retrieveCachedDatabase(RodaUser user, String databaseUUID) throws NotFoundException,
+    GenericException {
+    return metadataCache.get(databaseUUID);
+  }
+
+  @Override
+  public ViewerDatabase retrieveDatabaseSummary(RodaUser user, String databaseUUID) throws NotFoundException,
+    GenericException {
+    return metadataCache.getSummary(databaseUUID);
+  }
+
+  @Override
+  public ViewerSchema retrieveSchema(RodaUser user, String databaseUUID, String schemaUUID) throws NotFoundException,
+    GenericException {
+    return metadataCache.getSchema(databaseUUID, schemaUUID);
+  }
+
+  @Override
+  public ViewerTable retrieveTable(RodaUser user, String databaseUUID, String tableUUID) throws NotFoundException,
+    GenericException {
+    return metadataCache.getTable(databaseUUID, tableUUID);
+  }
+
+  @Override
+  public <T extends IsIndexed> IndexResult<T> findRows(RodaUser user, Class<T> classToReturn, String tableUUID,
+    Filter filter, Sorter sorter, Sublist sublist, Facets facets) throws GenericException, RequestNotValidException {
+    return findRows(user, classToReturn, tableUUID, filter, sorter, sublist, facets, null);
+  }
+
+  @Override
+  public <T extends IsIndexed> IndexResult<T> findRows(RodaUser user, Class<T> classToReturn, String tableUUID,
+    Filter filter, Sorter sorter, Sublist sublist, Facets facets, List<String> fieldsToReturn)
+    throws GenericException, RequestNotValidException {
+    return find(getTableIndex(tableUUID), classToReturn, LuceneDocuments.parseFilter(filter), sorter, sublist,
+      fieldsToReturn);
+  }
+
+  /**
+   * The searches run in the calling thread and can not be cancelled, so the
+   * request tag is ignored
+   */
+  @Override
+  public <T extends IsIndexed> IndexResult<T> findRows(RodaUser user, Class<T> classToReturn, String tableUUID,
+    Filter filter, Sorter sorter, Sublist sublist, Facets facets, List<String> fieldsToReturn, String requestTag,
+    long requestSerial) throws GenericException, RequestNotValidException {
+    return findRows(user, classToReturn, tableUUID, filter, sorter, sublist, facets, fieldsToReturn);
+  }
+
+  @Override
+  public SolrDocumentStream streamRows(RodaUser user, String tableUUID, Filter filter, Sorter sorter,
+    Sublist sublist, List<String> fields) throws GenericException, RequestNotValidException {
+    int offset = sublist != null ? sublist.getFirstElementIndex() : 0;
+    int limit = sublist != null ? sublist.getMaximumElementCount() : Integer.MAX_VALUE;
+    return new LuceneDocumentStream(getTableIndex(tableUUID), LuceneDocuments.parseFilter(filter),
+      LuceneDocuments.parseSorter(sorter, true), offset, limit, fields, STREAM_PAGE_SIZE);
+  }
+
+  @Override
+  public <T extends IsIndexed> Long countRows(RodaUser user, Class<T> classToReturn, String tableUUID, Filter filter)
+    throws GenericException, RequestNotValidException {
+    return count(getTableIndex(tableUUID), LuceneDocuments.parseFilter(filter));
+  }
+
+  @Override
+  public <T extends IsIndexed> T retrieveRows(RodaUser user, Class<T> classToReturn, String tableUUID, String rowUUID)
+    throws NotFoundException, GenericException {
+    return SolrUtils.solrDocumentTo(classToReturn, retrieveDocument(getTableIndex(tableUUID), rowUUID, null));
+  }
+
+  /**
+   * Retrieves many rows, possibly from different tables. Each row is looked up
+   * by id, which is cheap without a request per row.
+   */
+  @Override
+  public <T extends IsIndexed> Map<String, List<T>> retrieveRows(RodaUser user, Class<T> classToReturn,
+    Map<String, ? extends Collection<String>> rowUUIDsByTable) throws GenericException, RequestNotValidException {
+    SolrUtils.checkRowBatchSize(rowUUIDsByTable);
+    Map<String, List<T>> ret = new HashMap<>();
+    for (Map.Entry<String, ? extends Collection<String>> entry : rowUUIDsByTable.entrySet()) {
+      LuceneIndex index = getTableIndex(entry.getKey());
+      List<T> rows = new ArrayList<>();
+      for (String rowUUID : entry.getValue()) {
+        for (SolrDocument doc : search(index, createIdQuery(rowUUID), null, 0, 1, null)) {
+          rows.add(SolrUtils.solrDocumentTo(classToReturn, doc));
+        }
+      }
+      ret.put(entry.getKey(), rows);
+    }
+    return ret;
+  }
+
+  /**
+   * Retrieves a row along with its foreign key relations (see RowRelations).
+   *
+   * The relations are computed with one search per foreign key, run
+   * sequentially.
+   */
+  @Override
+  public ViewerRowWithRelations retrieveRowWithRelations(RodaUser user, String databaseUUID, String tableUUID,
+    String rowUUID) throws NotFoundException, GenericException {
+    CachedDatabase database = metadataCache.get(databaseUUID);
+    ViewerTable table = database.getTable(tableUUID);
+    if (table == null) {
+      throw new NotFoundException("Could not find table " + tableUUID);
+    }
+
+    ViewerRow row = retrieveRows(user, ViewerRow.class, tableUUID, rowUUID);
+
+    RowRelations relations = new RowRelations(database, table, row);
+    for (int i = 0; i < relations.size(); i++) {
+      Filter filter = relations.getFilter(i);
+      if (filter != null) {
+        try {
+          relations.setResult(i, find(getTableIndex(relations.getTableUUID(i)), ViewerRow.class,
+            LuceneDocuments.parseFilter(filter), null, new Sublist(0, relations.getMaxRows(i)), null));
+        } catch (RequestNotValidException e) {
+          throw new GenericException("Could not query index", e);
+        }
+      }
+    }
+
+    return new ViewerRowWithRelations(row, relations.getRelations());
+  }
+
+  @Override
+  public void addSavedSearch(RodaUser user, SavedSearch savedSearch) throws NotFoundException, GenericException {
+    try {
+      searchesIndex.update(SolrTransformer.fromSavedSearch(savedSearch));
+      searchesIndex.commit();
+    } catch (IOException e) {
+      throw new GenericException("Could not save search", e);
+    }
+  }
+
+  @Override
+  public void editSavedSearch(RodaUser user, String uuid, String name, String description) throws NotFoundException,
+    GenericException {
+    // documents can not be partially updated, the whole saved search is
+    // replaced
+    SavedSearch savedSearch = SolrTransformer.toSavedSearch(retrieveDocument(searchesIndex, uuid, null));
+    savedSearch.setName(name);
+    savedSearch.setDescription(description);
+    addSavedSearch(user, savedSearch);
+  }
+
+  @Override
+  public void deleteSavedSearch(RodaUser user, String uuid) throws NotFoundException, GenericException {
+    try {
+      searchesIndex.delete(uuid);
+      searchesIndex.commit();
+    } catch (IOException e) {
+      throw new GenericException("Could not delete search", e);
+    }
+  }
+
+  private static Query createIdQuery(String id) {
+    return new TermQuery(new Term(ViewerSafeConstants.SOLR_ROW_ID, id));
+  }
+
+  private static SolrDocument retrieveDocument(LuceneIndex index, String id, List<String> fields)
+    throws NotFoundException, GenericException {
+    List<SolrDocument> docs = search(index, createIdQuery(id), null, 0, 1, fields);
+    if (docs.isEmpty()) {
+      throw new NotFoundException("Could not find document " + id);
+    }
+    return docs.get(0);
+  }
+
+  private static <T> IndexResult<T> find(LuceneIndex index, Class<T> classToReturn, Query query, Sorter sorter,
+    Sublist sublist, List<String> fieldsToReturn) throws GenericException {
+    SolrDocumentList docList = search(index, query, LuceneDocuments.parseSorter(sorter, false),
+      sublist.getFirstElementIndex(), sublist.getMaximumElementCount(), fieldsToReturn);
+
+    List<T> docs = new ArrayList<>();
+    for (SolrDocument doc : docList) {
+      docs.add(SolrUtils.solrDocumentTo(classToReturn, doc));
+    }
+    return new IndexResult<T>(docList.getStart(), docList.size(), docList.getNumFound(), docs,
+      Collections.<FacetFieldResult> emptyList());
+  }
+
+  private static Long count(LuceneIndex index, Query query) throws GenericException {
+    return search(index, query, null, 0, 0, null).getNumFound();
+  }
+
+  /**
+   * @param sort
+   *          the sort, or null to sort by relevance
+   * @param fields
+   *          the fields to load, or null to load all stored fields
+   * @return the documents, with the total number of documents found
+   */
+  private static SolrDocumentList search(LuceneIndex index, Query query, Sort sort, int offset, int limit,
+    List<String> fields) throws GenericException {
+    SolrDocumentList ret = new SolrDocumentList();
+    ret.setStart(offset);
+    ret.setNumFound(0);
+
+    IndexSearcher searcher;
+    try {
+      searcher = index.acquire();
+    } catch (IOException e) {
+      throw new GenericException("Could not open index " + index.getName(), e);
+    }
+    if (searcher == null) {
+      // nothing was added to the index yet
+      return ret;
+    }
+
+    try {
+      if (limit <= 0) {
+        ret.setNumFound(searcher.count(query));
+        return ret;
+      }
+
+      int rows = (int) Math.max(1, Math.min((long) offset + limit, searcher.getIndexReader().maxDoc()));
+      TopDocs topDocs = sort == null ? searcher.search(query, rows) : searcher.search(query, rows, sort);
+      ret.setNumFound(topDocs.totalHits);
+
+      Set<String> fieldsToLoad = LuceneDocuments.getFieldsToLoad(fields);
+      ScoreDoc[] scoreDocs = topDocs.scoreDocs;
+      for (int i = offset; i < scoreDocs.length; i++) {
+        Document doc = fieldsToLoad == null ? searcher.doc(scoreDocs[i].doc) : searcher.doc(scoreDocs[i].doc,
+          fieldsToLoad);
+        ret.add(LuceneDocuments.toSolrDocument(doc));
+      }
+      return ret;
+    } catch (IOException e) {
+      throw new GenericException("Could not query index " + index.getName(), e);
+    } finally {
+      try {
+        index.release(searcher);
+      } catch (IOException e) {
+        LOGGER.debug("Could not release searcher of index {}", index.getName(), e);
+      }
+    }
+  }
+}
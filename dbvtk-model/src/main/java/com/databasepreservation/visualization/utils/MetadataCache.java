@@ -0,0 +1,554 @@
+package com.databasepreservation.visualization.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.common.SolrDocument;
+import org.roda.core.data.exceptions.GenericException;
+import org.roda.core.data.exceptions.NotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerDatabase;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerSchema;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerTable;
+import com.databasepreservation.visualization.exceptions.ViewerException;
+import com.databasepreservation.visualization.shared.ViewerSafeConstants;
+import com.databasepreservation.visualization.transformers.SolrTransformer;
+
+/**
+ * Keeps parsed database metadata in memory, so that it is retrieved from the
+ * index and parsed only once per database instead of once per request.
+ *
+ * The least recently used databases are evicted when the cache is full, and
+ * cached metadata is retrieved again after some time (see
+ * PROPERTY_TIME_TO_LIVE), in case the database was changed by another process.
+ * Concurrent requests for metadata that is not cached share a single load.
+ *
+ * Metadata summaries, schemas and tables can also be obtained (and are cached)
+ * without loading the complete metadata of the database.
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+public class MetadataCache {
+  private static final Logger LOGGER = LoggerFactory.getLogger(MetadataCache.class);
+  private static final int DEFAULT_MAX_ENTRIES = 32;
+
+  /**
+   * Milliseconds after which cached metadata is retrieved again
+   */
+  public static final String PROPERTY_TIME_TO_LIVE = "dbvtk.metadataCache.timeToLive";
+  private static final long DEFAULT_TIME_TO_LIVE = 5 * 60 * 1000L;
+
+  // schema and table documents kept per cached database, on average
+  private static final int PARTS_PER_DATABASE = 64;
+
+  private static final Metrics.Family<Metrics.Counter> CACHE_REQUESTS = Metrics.counter(
+    "dbvtk_metadata_cache_requests_total", "Metadata cache lookups, by cache and result (hit or miss)", "cache",
+    "result");
+  private static final Metrics.Counter DATABASE_HITS = CACHE_REQUESTS.labels("database", "hit");
+  private static final Metrics.Counter DATABASE_MISSES = CACHE_REQUESTS.labels("database", "miss");
+  private static final Metrics.Counter SUMMARY_HITS = CACHE_REQUESTS.labels("summary", "hit");
+  private static final Metrics.Counter SUMMARY_MISSES = CACHE_REQUESTS.labels("summary", "miss");
+  private static final Metrics.Counter SCHEMA_HITS = CACHE_REQUESTS.labels("schema", "hit");
+  private static final Metrics.Counter SCHEMA_MISSES = CACHE_REQUESTS.labels("schema", "miss");
+  private static final Metrics.Counter TABLE_HITS = CACHE_REQUESTS.labels("table", "hit");
+  private static final Metrics.Counter TABLE_MISSES = CACHE_REQUESTS.labels("table", "miss");
+
+  private final DocumentSource source;
+  private final long timeToLive;
+
+  // guarded by itself
+  private final Map<String, CacheEntry<CachedDatabase>> entries;
+
+  // guarded by itself
+  private final Map<String, CacheEntry<ViewerDatabase>> summaries;
+
+  // schemas and tables retrieved without the rest of the database metadata,
+  // by partKey(databaseUUID, uuid). guarded by itself
+  private final Map<String, CacheEntry<ViewerSchema>> schemas;
+
+  // guarded by itself
+  private final Map<String, CacheEntry<ViewerTable>> tables;
+
+  /**
+   * Retrieves the documents of the databases collection (the database, schema
+   * and table documents, as created by SolrTransformer) from an index
+   */
+  public interface DocumentSource {
+    /**
+     * @param fields
+     *          the fields to retrieve, or null to retrieve all fields
+     */
+    SolrDocument retrieveDocument(String id, List<String> fields) throws NotFoundException, GenericException;
+
+    List<SolrDocument> retrieveDocuments(String field, String value) throws GenericException;
+  }
+
+  /**
+   * A cached value, or the value being loaded by some thread. Other threads
+   * needing the same value wait for that load instead of starting their own.
+   */
+  private static final class CacheEntry<V> {
+    private final FutureTask<V> task;
+    private final long created = System.currentTimeMillis();
+
+    CacheEntry(Callable<V> loader) {
+      this.task = new FutureTask<>(loader);
+    }
+
+    boolean isExpired(long timeToLive) {
+      return task.isDone() && System.currentTimeMillis() - created > timeToLive;
+    }
+  }
+
+  public MetadataCache(SolrClient client) {
+    this(client, DEFAULT_MAX_ENTRIES);
+  }
+
+  public MetadataCache(SolrClient client, int maxEntries) {
+    this(solrDocumentSource(client), maxEntries);
+  }
+
+  public MetadataCache(DocumentSource source) {
+    this(source, DEFAULT_MAX_ENTRIES);
+  }
+
+  public MetadataCache(DocumentSource source, int maxEntries) {
+    this(source, maxEntries, Long.getLong(PROPERTY_TIME_TO_LIVE, DEFAULT_TIME_TO_LIVE));
+  }
+
+  /**
+   * @param source
+   *          the index to retrieve the metadata from
+   * @param maxEntries
+   *          the maximum number of databases kept in the cache
+   * @param timeToLive
+   *          milliseconds after which cached metadata is retrieved again, to
+   *          notice changes made by other processes (changes made through this
+   *          process invalidate the cache right away)
+   */
+  public MetadataCache(DocumentSource source, int maxEntries, long timeToLive) {
+    this.source = source;
+    this.timeToLive = timeToLive;
+    this.entries = createLRUMap(maxEntries);
+    this.summaries = createLRUMap(maxEntries);
+    this.schemas = createLRUMap(maxEntries * PARTS_PER_DATABASE);
+    this.tables = createLRUMap(maxEntries * PARTS_PER_DATABASE);
+  }
+
+  private static DocumentSource solrDocumentSource(final SolrClient client) {
+    return new DocumentSource() {
+      @Override
+      public SolrDocument retrieveDocument(String id, List<String> fields) throws NotFoundException,
+        GenericException {
+        return SolrUtils.retrieveDocument(client, ViewerSafeConstants.SOLR_INDEX_DATABASE_COLLECTION_NAME, id, fields);
+      }
+
+      @Override
+      public List<SolrDocument> retrieveDocuments(String field, String value) throws GenericException {
+        return SolrUtils.retrieveDocuments(client, ViewerSafeConstants.SOLR_INDEX_DATABASE_COLLECTION_NAME, field,
+          value);
+      }
+    };
+  }
+
+  private static <V> Map<String, V> createLRUMap(final int maxEntries) {
+    return new LinkedHashMap<String, V>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+        return size() > maxEntries;
+      }
+    };
+  }
+
+  /**
+   * Gets a value from one of the caches, loading it if it is missing or
+   * expired. Concurrent requests for the same missing value share a single
+   * load, and failed loads are not cached.
+   */
+  private <V> V get(Map<String, CacheEntry<V>> cache, String key, Callable<V> loader, Metrics.Counter hits,
+    Metrics.Counter misses) throws NotFoundException, GenericException {
+    CacheEntry<V> entry;
+    boolean load = false;
+    synchronized (cache) {
+      entry = cache.get(key);
+      if (entry == null || entry.isExpired(timeToLive)) {
+        entry = new CacheEntry<>(loader);
+        cache.put(key, entry);
+        load = true;
+      }
+    }
+
+    if (load) {
+      misses.inc();
+      entry.task.run();
+    } else {
+      hits.inc();
+    }
+
+    try {
+      return entry.task.get();
+    } catch (ExecutionException e) {
+      synchronized (cache) {
+        cache.remove(key, entry);
+      }
+      Throwable cause = e.getCause();
+      if (cause instanceof NotFoundException) {
+        throw (NotFoundException) cause;
+      } else if (cause instanceof GenericException) {
+        throw (GenericException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else {
+        throw new GenericException("Could not load the metadata for " + key, cause);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new GenericException("Interrupted while waiting for the metadata of " + key, e);
+    }
+  }
+
+  /**
+   * @return the value, or null if it is not cached (or still being loaded)
+   */
+  private <V> V getIfPresent(Map<String, CacheEntry<V>> cache, String key) {
+    CacheEntry<V> entry;
+    synchronized (cache) {
+      entry = cache.get(key);
+    }
+    if (entry != null && entry.task.isDone() && !entry.isExpired(timeToLive)) {
+      try {
+        return entry.task.get();
+      } catch (ExecutionException | InterruptedException e) {
+        // the thread that loaded it reports the failure
+        return null;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Gets a database from the cache, retrieving and parsing it if needed
+   *
+   * @param databaseUUID
+   *          the database UUID
+   * @return the cached database
+   * @throws NotFoundException
+   *           if the database does not exist
+   */
+  public CachedDatabase get(final String databaseUUID) throws NotFoundException, GenericException {
+    return get(entries, databaseUUID, new Callable<CachedDatabase>() {
+      @Override
+      public CachedDatabase call() throws Exception {
+        return load(databaseUUID);
+      }
+    }, DATABASE_HITS, DATABASE_MISSES);
+  }
+
+  /**
+   * Removes a database from the cache, forcing it to be retrieved again the next
+   * time it is needed
+   *
+   * @param databaseUUID
+   *          the database UUID
+   */
+  public void invalidate(String databaseUUID) {
+    synchronized (entries) {
+      entries.remove(databaseUUID);
+    }
+    synchronized (summaries) {
+      summaries.remove(databaseUUID);
+    }
+    removeParts(schemas, databaseUUID);
+    removeParts(tables, databaseUUID);
+  }
+
+  public void clear() {
+    synchronized (entries) {
+      entries.clear();
+    }
+    synchronized (summaries) {
+      summaries.clear();
+    }
+    synchronized (schemas) {
+      schemas.clear();
+    }
+    synchronized (tables) {
+      tables.clear();
+    }
+  }
+
+  private static String partKey(String databaseUUID, String uuid) {
+    return databaseUUID + "/" + uuid;
+  }
+
+  private static void removeParts(Map<String, ?> parts, String databaseUUID) {
+    String prefix = partKey(databaseUUID, "");
+    synchronized (parts) {
+      Iterator<String> keys = parts.keySet().iterator();
+      while (keys.hasNext()) {
+        if (keys.next().startsWith(prefix)) {
+          keys.remove();
+        }
+      }
+    }
+  }
+
+  /**
+   * Gets a database containing only a summary of its metadata: the schemas and
+   * tables are listed, but without their columns, keys, views, routines, etc.
+   * The complete metadata is not loaded.
+   *
+   * @param databaseUUID
+   *          the database UUID
+   * @return the database with the metadata summary
+   * @throws NotFoundException
+   *           if the database does not exist
+   */
+  public ViewerDatabase getSummary(final String databaseUUID) throws NotFoundException, GenericException {
+    return get(summaries, databaseUUID, new Callable<ViewerDatabase>() {
+      @Override
+      public ViewerDatabase call() throws Exception {
+        return loadSummary(databaseUUID);
+      }
+    }, SUMMARY_HITS, SUMMARY_MISSES);
+  }
+
+  private ViewerDatabase loadSummary(String databaseUUID) throws NotFoundException, GenericException {
+    SolrDocument doc = source.retrieveDocument(databaseUUID, Arrays.asList(ViewerSafeConstants.SOLR_DATABASE_ID,
+      ViewerSafeConstants.SOLR_DATABASE_DOCUMENT_TYPE, ViewerSafeConstants.SOLR_DATABASE_METADATA));
+
+    if (SolrTransformer.isDatabaseSummaryDocument(doc)) {
+      try {
+        return SolrTransformer.toDatabase(doc);
+      } catch (ViewerException e) {
+        throw new GenericException("Cannot retrieve " + ViewerDatabase.class.getName(), e);
+      }
+    } else {
+      // the metadata was stored before it was split, the complete metadata is
+      // all there is
+      return get(databaseUUID).getDatabase();
+    }
+  }
+
+  /**
+   * Gets the complete metadata of a schema, including its tables, without
+   * loading the metadata of the other schemas
+   *
+   * @param databaseUUID
+   *          the database UUID
+   * @param schemaUUID
+   *          the schema UUID
+   * @return the schema
+   * @throws NotFoundException
+   *           if the schema does not exist in the database
+   */
+  public ViewerSchema getSchema(final String databaseUUID, final String schemaUUID) throws NotFoundException,
+    GenericException {
+    CachedDatabase cached = getIfPresent(entries, databaseUUID);
+    if (cached != null) {
+      SCHEMA_HITS.inc();
+      return getSchema(cached, schemaUUID);
+    }
+
+    return get(schemas, partKey(databaseUUID, schemaUUID), new Callable<ViewerSchema>() {
+      @Override
+      public ViewerSchema call() throws Exception {
+        return loadSchema(databaseUUID, schemaUUID);
+      }
+    }, SCHEMA_HITS, SCHEMA_MISSES);
+  }
+
+  private ViewerSchema loadSchema(String databaseUUID, String schemaUUID) throws NotFoundException,
+    GenericException {
+    SolrDocument doc = retrievePartDocument(databaseUUID, schemaUUID);
+    if (doc == null || !SolrTransformer.isSchemaDocument(doc)) {
+      return getSchema(get(databaseUUID), schemaUUID);
+    }
+
+    try {
+      ViewerSchema schema = SolrTransformer.toSchema(doc);
+
+      Map<String, ViewerTable> schemaTables = new HashMap<>();
+      for (SolrDocument tableDoc : source
+        .retrieveDocuments(ViewerSafeConstants.SOLR_DATABASE_SCHEMA_UUID, schemaUUID)) {
+        ViewerTable table = SolrTransformer.toTable(tableDoc);
+        schemaTables.put(table.getUUID(), table);
+      }
+      schema.setTables(replaceTableSummaries(schema.getTables(), schemaTables));
+      return schema;
+    } catch (ViewerException e) {
+      throw new GenericException("Cannot retrieve " + ViewerSchema.class.getName(), e);
+    }
+  }
+
+  /**
+   * Gets the complete metadata of a table, without loading the metadata of the
+   * other tables
+   *
+   * @param databaseUUID
+   *          the database UUID
+   * @param tableUUID
+   *          the table UUID
+   * @return the table
+   * @throws NotFoundException
+   *           if the table does not exist in the database
+   */
+  public ViewerTable getTable(final String databaseUUID, final String tableUUID) throws NotFoundException,
+    GenericException {
+    CachedDatabase cached = getIfPresent(entries, databaseUUID);
+    if (cached != null) {
+      TABLE_HITS.inc();
+      return getTable(cached, tableUUID);
+    }
+
+    return get(tables, partKey(databaseUUID, tableUUID), new Callable<ViewerTable>() {
+      @Override
+      public ViewerTable call() throws Exception {
+        return loadTable(databaseUUID, tableUUID);
+      }
+    }, TABLE_HITS, TABLE_MISSES);
+  }
+
+  private ViewerTable loadTable(String databaseUUID, String tableUUID) throws NotFoundException, GenericException {
+    SolrDocument doc = retrievePartDocument(databaseUUID, tableUUID);
+    if (doc == null || !SolrTransformer.isTableDocument(doc)) {
+      return getTable(get(databaseUUID), tableUUID);
+    }
+
+    try {
+      return SolrTransformer.toTable(doc);
+    } catch (ViewerException e) {
+      throw new GenericException("Cannot retrieve " + ViewerTable.class.getName(), e);
+    }
+  }
+
+  private static ViewerSchema getSchema(CachedDatabase cached, String schemaUUID) throws NotFoundException {
+    ViewerSchema schema = cached.getMetadata().getSchema(schemaUUID);
+    if (schema == null) {
+      throw new NotFoundException("Could not find schema " + schemaUUID);
+    }
+    return schema;
+  }
+
+  private static ViewerTable getTable(CachedDatabase cached, String tableUUID) throws NotFoundException {
+    ViewerTable table = cached.getTable(tableUUID);
+    if (table == null) {
+      throw new NotFoundException("Could not find table " + tableUUID);
+    }
+    return table;
+  }
+
+  /**
+   * @return the schema or table document, or null if it does not exist or
+   *         belongs to another database
+   */
+  private SolrDocument retrievePartDocument(String databaseUUID, String id) throws GenericException {
+    try {
+      SolrDocument doc = source.retrieveDocument(id, null);
+      if (databaseUUID.equals(doc.getFieldValue(ViewerSafeConstants.SOLR_DATABASE_DATABASE_UUID))) {
+        return doc;
+      }
+    } catch (NotFoundException e) {
+      LOGGER.debug("Document {} not found, using the complete metadata of database {}", id, databaseUUID);
+    }
+    return null;
+  }
+
+  /**
+   * Replaces the table summaries (as stored in the schema and database
+   * documents) by the complete tables, keeping the original order
+   */
+  private static List<ViewerTable> replaceTableSummaries(List<ViewerTable> summaries, Map<String, ViewerTable> tables) {
+    List<ViewerTable> ret = new ArrayList<>(summaries.size());
+    for (ViewerTable summary : summaries) {
+      ViewerTable table = tables.get(summary.getUUID());
+      ret.add(table != null ? table : summary);
+    }
+    return ret;
+  }
+
+  private CachedDatabase load(String databaseUUID) throws NotFoundException, GenericException {
+    long start = System.currentTimeMillis();
+    SolrDocument doc = source.retrieveDocument(databaseUUID, null);
+    String metadataJson = SolrTransformer.toMetadataJson(doc);
+    List<String> jsonParts = new ArrayList<>();
+    jsonParts.add(metadataJson);
+
+    ViewerDatabase database;
+    try {
+      database = SolrTransformer.toDatabase(doc, metadataJson);
+
+      if (SolrTransformer.isDatabaseSummaryDocument(doc)) {
+        String privilegesJson = SolrTransformer.toPrivilegesJson(doc);
+        jsonParts.add(privilegesJson);
+        database.getMetadata().setPrivileges(SolrTransformer.toPrivileges(privilegesJson));
+
+        Map<String, ViewerSchema> schemas = new HashMap<>();
+        Map<String, ViewerTable> tables = new HashMap<>();
+        for (SolrDocument partDoc : source.retrieveDocuments(ViewerSafeConstants.SOLR_DATABASE_DATABASE_UUID,
+          databaseUUID)) {
+          jsonParts.add(SolrTransformer.toMetadataJson(partDoc));
+          if (SolrTransformer.isSchemaDocument(partDoc)) {
+            ViewerSchema schema = SolrTransformer.toSchema(partDoc);
+            schemas.put(schema.getUUID(), schema);
+          } else if (SolrTransformer.isTableDocument(partDoc)) {
+            ViewerTable table = SolrTransformer.toTable(partDoc);
+            tables.put(table.getUUID(), table);
+          }
+        }
+
+        List<ViewerSchema> completeSchemas = new ArrayList<>();
+        for (ViewerSchema summary : database.getMetadata().getSchemas()) {
+          ViewerSchema schema = schemas.get(summary.getUUID());
+          if (schema == null) {
+            schema = summary;
+          }
+          schema.setTables(replaceTableSummaries(summary.getTables(), tables));
+          completeSchemas.add(schema);
+        }
+        database.getMetadata().setSchemas(completeSchemas);
+      }
+    } catch (ViewerException e) {
+      throw new GenericException("Cannot retrieve " + ViewerDatabase.class.getName(), e);
+    }
+
+    CachedDatabase cached = new CachedDatabase(database, computeETag(databaseUUID, jsonParts));
+    LOGGER.debug("Loaded metadata for database {} in {} ms", databaseUUID, System.currentTimeMillis() - start);
+    return cached;
+  }
+
+  private static String computeETag(String databaseUUID, List<String> jsonParts) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance(ViewerSafeConstants.SHA1);
+      digest.update(databaseUUID.getBytes(StandardCharsets.UTF_8));
+      for (String json : jsonParts) {
+        if (json != null) {
+          digest.update(json.getBytes(StandardCharsets.UTF_8));
+        }
+      }
+
+      StringBuilder hex = new StringBuilder();
+      for (byte b : digest.digest()) {
+        hex.append(String.format("%02x", b));
+      }
+      return hex.toString();
+    } catch (NoSuchAlgorithmException e) {
+      LOGGER.debug("Could not compute metadata ETag", e);
+      return databaseUUID;
+    }
+  }
+}
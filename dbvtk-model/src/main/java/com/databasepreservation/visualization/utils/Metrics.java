@@ -0,0 +1,295 @@
+package com.databasepreservation.visualization.utils;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registry of the application metrics (counters, gauges and histograms), which
+ * can be written in the Prometheus text exposition format.
+ *
+ * Recording a value does not take any lock: metrics are backed by
+ * LongAdder/DoubleAdder, and each labelled child is created once and then
+ * looked up without locking. Label values must have a low cardinality (e.g. a
+ * method name, never a table or row UUID).
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+public final class Metrics {
+  /**
+   * Histogram buckets suitable for request and query latencies, in seconds
+   */
+  public static final double[] LATENCY_BUCKETS = {0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30};
+
+  public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+  // sorted by name, so the output is stable
+  private static final ConcurrentMap<String, Family<?>> FAMILIES = new ConcurrentSkipListMap<>();
+
+  private Metrics() {
+  }
+
+  public static Family<Counter> counter(String name, String help, String... labelNames) {
+    return register(new Family<Counter>(name, help, "counter", labelNames) {
+      @Override
+      protected Counter newChild() {
+        return new Counter();
+      }
+    });
+  }
+
+  public static Family<Gauge> gauge(String name, String help, String... labelNames) {
+    return register(new Family<Gauge>(name, help, "gauge", labelNames) {
+      @Override
+      protected Gauge newChild() {
+        return new Gauge();
+      }
+    });
+  }
+
+  public static Family<Histogram> histogram(String name, String help, final double[] buckets, String... labelNames) {
+    return register(new Family<Histogram>(name, help, "histogram", labelNames) {
+      @Override
+      protected Histogram newChild() {
+        return new Histogram(buckets);
+      }
+    });
+  }
+
+  /**
+   * Registering a metric twice returns the metric that was registered first
+   */
+  @SuppressWarnings("unchecked")
+  private static <T extends Metric> Family<T> register(Family<T> family) {
+    Family<?> existing = FAMILIES.putIfAbsent(family.name, family);
+    if (existing == null) {
+      return family;
+    } else if (!existing.type.equals(family.type)) {
+      throw new IllegalArgumentException("Metric " + family.name + " is already registered as a " + existing.type);
+    }
+    return (Family<T>) existing;
+  }
+
+  /**
+   * Writes all the metrics in the Prometheus text exposition format (version
+   * 0.0.4)
+   */
+  public static void write(Writer writer) throws IOException {
+    for (Family<?> family : FAMILIES.values()) {
+      family.write(writer);
+    }
+    writer.flush();
+  }
+
+  /**
+   * A metric, with all its labelled children
+   */
+  public abstract static class Family<T extends Metric> {
+    private final String name;
+    private final String help;
+    private final String type;
+    private final List<String> labelNames;
+    private final ConcurrentMap<List<String>, T> children = new ConcurrentHashMap<>();
+
+    private Family(String name, String help, String type, String... labelNames) {
+      this.name = name;
+      this.help = help;
+      this.type = type;
+      this.labelNames = Arrays.asList(labelNames);
+    }
+
+    protected abstract T newChild();
+
+    /**
+     * @return the child with these label values (in the order of the label
+     *         names), created if needed
+     */
+    public T labels(String... labelValues) {
+      if (labelValues.length != labelNames.size()) {
+        throw new IllegalArgumentException("Metric " + name + " has labels " + labelNames + ", got "
+          + Arrays.toString(labelValues));
+      }
+
+      List<String> key = Arrays.asList(labelValues);
+      T child = children.get(key);
+      if (child == null) {
+        T created = newChild();
+        child = children.putIfAbsent(key, created);
+        if (child == null) {
+          child = created;
+        }
+      }
+      return child;
+    }
+
+    private void write(Writer writer) throws IOException {
+      writer.write("# HELP " + name + " " + help.replace("\\", "\\\\").replace("\n", "\\n") + "\n");
+      writer.write("# TYPE " + name + " " + type + "\n");
+
+      List<Map.Entry<List<String>, T>> entries = new ArrayList<>(children.entrySet());
+      Collections.sort(entries, new Comparator<Map.Entry<List<String>, T>>() {
+        @Override
+        public int compare(Map.Entry<List<String>, T> o1, Map.Entry<List<String>, T> o2) {
+          return o1.getKey().toString().compareTo(o2.getKey().toString());
+        }
+      });
+
+      for (Map.Entry<List<String>, T> entry : entries) {
+        entry.getValue().write(writer, name, labelNames, entry.getKey());
+      }
+    }
+  }
+
+  public abstract static class Metric {
+    abstract void write(Writer writer, String name, List<String> labelNames, List<String> labelValues)
+      throws IOException;
+  }
+
+  /**
+   * A value that only goes up, e.g. the number of requests
+   */
+  public static class Counter extends Metric {
+    private final LongAdder value = new LongAdder();
+
+    private Counter() {
+    }
+
+    public void inc() {
+      value.increment();
+    }
+
+    public void inc(long amount) {
+      value.add(amount);
+    }
+
+    public long get() {
+      return value.sum();
+    }
+
+    @Override
+    void write(Writer writer, String name, List<String> labelNames, List<String> labelValues) throws IOException {
+      writeSample(writer, name, labelNames, labelValues, null, null, Long.toString(get()));
+    }
+  }
+
+  /**
+   * A value that goes up and down, e.g. the number of requests in progress
+   */
+  public static class Gauge extends Metric {
+    private final LongAdder value = new LongAdder();
+
+    private Gauge() {
+    }
+
+    public void inc() {
+      value.increment();
+    }
+
+    public void dec() {
+      value.decrement();
+    }
+
+    public long get() {
+      return value.sum();
+    }
+
+    @Override
+    void write(Writer writer, String name, List<String> labelNames, List<String> labelValues) throws IOException {
+      writeSample(writer, name, labelNames, labelValues, null, null, Long.toString(get()));
+    }
+  }
+
+  /**
+   * Counts observations (e.g. latencies, in seconds) in buckets
+   */
+  public static class Histogram extends Metric {
+    private final double[] upperBounds;
+    // not cumulative, the counts are added up when written
+    private final LongAdder[] bucketCounts;
+    private final LongAdder count = new LongAdder();
+    private final DoubleAdder sum = new DoubleAdder();
+
+    private Histogram(double[] upperBounds) {
+      this.upperBounds = upperBounds;
+      this.bucketCounts = new LongAdder[upperBounds.length + 1];
+      for (int i = 0; i < bucketCounts.length; i++) {
+        bucketCounts[i] = new LongAdder();
+      }
+    }
+
+    public void observe(double value) {
+      int i = 0;
+      while (i < upperBounds.length && value > upperBounds[i]) {
+        i++;
+      }
+      bucketCounts[i].increment();
+      count.increment();
+      sum.add(value);
+    }
+
+    /**
+     * Observes a duration, converted to seconds
+     */
+    public void observeNanos(long nanos) {
+      observe(nanos / (double) TimeUnit.SECONDS.toNanos(1));
+    }
+
+    public void observeMillis(long millis) {
+      observe(millis / (double) TimeUnit.SECONDS.toMillis(1));
+    }
+
+    public long getCount() {
+      return count.sum();
+    }
+
+    @Override
+    void write(Writer writer, String name, List<String> labelNames, List<String> labelValues) throws IOException {
+      long cumulative = 0;
+      for (int i = 0; i < bucketCounts.length; i++) {
+        cumulative += bucketCounts[i].sum();
+        String le = i < upperBounds.length ? Double.toString(upperBounds[i]) : "+Inf";
+        writeSample(writer, name + "_bucket", labelNames, labelValues, "le", le, Long.toString(cumulative));
+      }
+      writeSample(writer, name + "_sum", labelNames, labelValues, null, null, Double.toString(sum.sum()));
+      writeSample(writer, name + "_count", labelNames, labelValues, null, null, Long.toString(count.sum()));
+    }
+  }
+
+  private static void writeSample(Writer writer, String name, List<String> labelNames, List<String> labelValues,
+    String extraLabelName, String extraLabelValue, String value) throws IOException {
+    StringBuilder line = new StringBuilder(name);
+    if (!labelNames.isEmpty() || extraLabelName != null) {
+      line.append('{');
+      String separator = "";
+      for (int i = 0; i < labelNames.size(); i++) {
+        line.append(separator).append(labelNames.get(i)).append("=\"").append(escapeLabelValue(labelValues.get(i)))
+          .append('"');
+        separator = ",";
+      }
+      if (extraLabelName != null) {
+        line.append(separator).append(extraLabelName).append("=\"").append(extraLabelValue).append('"');
+      }
+      line.append('}');
+    }
+    line.append(' ').append(value).append('\n');
+    writer.write(line.toString());
+  }
+
+  private static String escapeLabelValue(String value) {
+    if (value == null) {
+      return "";
+    }
+    return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+  }
+}
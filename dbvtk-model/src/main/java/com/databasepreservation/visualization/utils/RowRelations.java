@@ -0,0 +1,129 @@
+package com.databasepreservation.visualization.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.roda.core.data.adapter.filter.Filter;
+import org.roda.core.data.adapter.filter.FilterParameter;
+import org.roda.core.data.adapter.filter.SimpleFilterParameter;
+import org.roda.core.data.v2.index.IndexResult;
+
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerCell;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerForeignKey;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerReference;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerRow;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerRowRelation;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerTable;
+
+/**
+ * The foreign key relations of a row, and the filters that find the related
+ * rows: for each foreign key of the row table, the referenced rows; and for
+ * each foreign key (in any table) that references the row table, the rows that
+ * reference this row.
+ *
+ * Each index backend runs the queries (in the way that suits it best) and sets
+ * their results.
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+final class RowRelations {
+  private final List<ViewerRowRelation> relations = new ArrayList<>();
+  private final List<Filter> filters = new ArrayList<>();
+
+  RowRelations(CachedDatabase database, ViewerTable table, ViewerRow row) {
+    // this row references other rows
+    if (table.getForeignKeys() != null) {
+      for (ViewerForeignKey foreignKey : table.getForeignKeys()) {
+        ViewerTable otherTable = database.getTable(foreignKey.getReferencedTableUUID());
+        if (otherTable != null) {
+          relations.add(new ViewerRowRelation(otherTable.getUUID(), foreignKey, false));
+          filters.add(createRelationFilter(row, table, otherTable, foreignKey, false));
+        }
+      }
+    }
+
+    // other rows reference this row
+    for (Pair<ViewerTable, ViewerForeignKey> referencing : database.getForeignKeysReferencing(table.getUUID())) {
+      ViewerTable otherTable = referencing.getLeft();
+      ViewerForeignKey foreignKey = referencing.getRight();
+      relations.add(new ViewerRowRelation(otherTable.getUUID(), foreignKey, true));
+      filters.add(createRelationFilter(row, table, otherTable, foreignKey, true));
+    }
+  }
+
+  int size() {
+    return relations.size();
+  }
+
+  List<ViewerRowRelation> getRelations() {
+    return relations;
+  }
+
+  /**
+   * @return the UUID of the table where the related rows are
+   */
+  String getTableUUID(int index) {
+    return relations.get(index).getTableUUID();
+  }
+
+  /**
+   * @return the filter that finds the related rows, or null if no rows can be
+   *         related (and there is nothing to query)
+   */
+  Filter getFilter(int index) {
+    return filters.get(index);
+  }
+
+  /**
+   * @return how many related rows must be returned by the query: the
+   *         referenced row is shown if there is only one, while the rows that
+   *         reference this row are only counted
+   */
+  int getMaxRows(int index) {
+    return relations.get(index).isReferencedBy() ? 0 : 1;
+  }
+
+  void setResult(int index, IndexResult<ViewerRow> result) {
+    ViewerRowRelation relation = relations.get(index);
+    relation.setCount(result.getTotalCount());
+    if (result.getTotalCount() == 1 && !result.getResults().isEmpty()) {
+      relation.setRelatedRow(result.getResults().get(0));
+    }
+  }
+
+  /**
+   * Creates a filter to find the rows of otherTable that are related to a row of
+   * table by a foreign key
+   *
+   * @param referencedBy
+   *          true if the foreign key belongs to otherTable and references table,
+   *          false if the foreign key belongs to table and references
+   *          otherTable
+   * @return the filter, or null if some of the row values used in the foreign
+   *         key are null (meaning that the row is not related to any other)
+   */
+  private static Filter createRelationFilter(ViewerRow row, ViewerTable table, ViewerTable otherTable,
+    ViewerForeignKey foreignKey, boolean referencedBy) {
+    List<FilterParameter> filterParameters = new ArrayList<>();
+    for (ViewerReference reference : foreignKey.getReferences()) {
+      int columnIndexInTable;
+      int columnIndexInOtherTable;
+      if (referencedBy) {
+        columnIndexInTable = reference.getReferencedColumnIndex();
+        columnIndexInOtherTable = reference.getSourceColumnIndex();
+      } else {
+        columnIndexInTable = reference.getSourceColumnIndex();
+        columnIndexInOtherTable = reference.getReferencedColumnIndex();
+      }
+
+      ViewerCell cell = row.getCells().get(table.getColumns().get(columnIndexInTable).getSolrName());
+      if (cell == null || cell.getValue() == null) {
+        return null;
+      }
+      filterParameters.add(new SimpleFilterParameter(otherTable.getColumns().get(columnIndexInOtherTable)
+        .getSolrName(), cell.getValue()));
+    }
+    return new Filter(filterParameters);
+  }
+}
@@ -0,0 +1,113 @@
+package com.databasepreservation.visualization.utils;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * A query that took longer than the slow query threshold
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+public class SlowQuery {
+  private final Date date;
+  private final String caller;
+  private final String collection;
+  private final String tableUUID;
+  private final String query;
+  private final List<String> filterQueries;
+  private final String sort;
+  private final Integer qTime;
+  private final long elapsedTime;
+  private final long numFound;
+  private final int returnedRows;
+  private final boolean partialResults;
+
+  SlowQuery(Date date, String caller, String collection, String tableUUID, String query, List<String> filterQueries,
+    String sort, Integer qTime, long elapsedTime, long numFound, int returnedRows, boolean partialResults) {
+    this.date = date;
+    this.caller = caller;
+    this.collection = collection;
+    this.tableUUID = tableUUID;
+    this.query = query;
+    this.filterQueries = filterQueries;
+    this.sort = sort;
+    this.qTime = qTime;
+    this.elapsedTime = elapsedTime;
+    this.numFound = numFound;
+    this.returnedRows = returnedRows;
+    this.partialResults = partialResults;
+  }
+
+  public Date getDate() {
+    return date;
+  }
+
+  /**
+   * @return the class and method that made the query
+   */
+  public String getCaller() {
+    return caller;
+  }
+
+  public String getCollection() {
+    return collection;
+  }
+
+  /**
+   * @return the table UUID, or null if the query was not made on a table
+   */
+  public String getTableUUID() {
+    return tableUUID;
+  }
+
+  public String getQuery() {
+    return query;
+  }
+
+  public List<String> getFilterQueries() {
+    return filterQueries;
+  }
+
+  public String getSort() {
+    return sort;
+  }
+
+  /**
+   * @return the time spent by Solr processing the query (in milliseconds), or
+   *         null if it is unknown
+   */
+  public Integer getQTime() {
+    return qTime;
+  }
+
+  /**
+   * @return the time spent waiting for the response (in milliseconds),
+   *         including the network and the response parsing
+   */
+  public long getElapsedTime() {
+    return elapsedTime;
+  }
+
+  public long getNumFound() {
+    return numFound;
+  }
+
+  public int getReturnedRows() {
+    return returnedRows;
+  }
+
+  /**
+   * @return true if the query exceeded the time allowed and returned the
+   *         results found so far
+   */
+  public boolean isPartialResults() {
+    return partialResults;
+  }
+
+  @Override
+  public String toString() {
+    return "caller=" + caller + " collection=" + collection + " table=" + tableUUID + " elapsed=" + elapsedTime
+      + "ms qtime=" + qTime + "ms numFound=" + numFound + " rows=" + returnedRows + " partial=" + partialResults
+      + " q=" + query + " fq=" + filterQueries + " sort=" + sort;
+  }
+}
@@ -0,0 +1,122 @@
+package com.databasepreservation.visualization.utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Deque;
+import java.util.List;
+
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.params.CommonParams;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records the queries that take longer than a threshold, in the log (using a
+ * dedicated logger, so they can be sent to a separate file) and in a bounded
+ * in-memory buffer that keeps the most recent ones.
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+public class SlowQueryLog {
+  private static final Logger LOGGER = LoggerFactory.getLogger("com.databasepreservation.visualization.slowquery");
+
+  private static final String PARTIAL_RESULTS_KEY = "partialResults";
+
+  private volatile long threshold;
+  private final int capacity;
+  private final Deque<SlowQuery> entries;
+
+  /**
+   * @param threshold
+   *          queries taking at least this long (in milliseconds) are recorded,
+   *          a negative value disables the log
+   * @param capacity
+   *          the maximum number of queries kept in memory
+   */
+  public SlowQueryLog(long threshold, int capacity) {
+    this.threshold = threshold;
+    this.capacity = capacity;
+    this.entries = new ArrayDeque<>(capacity);
+  }
+
+  public long getThreshold() {
+    return threshold;
+  }
+
+  public void setThreshold(long threshold) {
+    this.threshold = threshold;
+  }
+
+  /**
+   * Records the query if it took longer than the threshold
+   *
+   * @param caller
+   *          the operation that made the query (e.g. SolrManager.findRows), or
+   *          null
+   * @param collection
+   *          the queried collection
+   * @param tableUUID
+   *          the queried table, or null
+   * @param query
+   *          the query sent to Solr
+   * @param response
+   *          the response
+   * @param elapsedTime
+   *          the time (in milliseconds) spent waiting for the response
+   */
+  public void record(String caller, String collection, String tableUUID, SolrQuery query, QueryResponse response,
+    long elapsedTime) {
+    long currentThreshold = threshold;
+    if (currentThreshold < 0 || elapsedTime < currentThreshold) {
+      return;
+    }
+
+    Integer qTime = null;
+    boolean partialResults = false;
+    if (response.getResponseHeader() != null) {
+      Object value = response.getResponseHeader().get("QTime");
+      if (value instanceof Number) {
+        qTime = ((Number) value).intValue();
+      }
+      partialResults = Boolean.TRUE.equals(response.getResponseHeader().get(PARTIAL_RESULTS_KEY));
+    }
+    long numFound = 0;
+    int returnedRows = 0;
+    if (response.getResults() != null) {
+      numFound = response.getResults().getNumFound();
+      returnedRows = response.getResults().size();
+    }
+    List<String> filterQueries = query.getFilterQueries() != null ? Arrays.asList(query.getFilterQueries())
+      : Collections.<String> emptyList();
+
+    SlowQuery slowQuery = new SlowQuery(new Date(), caller, collection, tableUUID, query.getQuery(),
+      filterQueries, query.get(CommonParams.SORT), qTime, elapsedTime, numFound, returnedRows, partialResults);
+    LOGGER.warn("Slow query: {}", slowQuery);
+
+    synchronized (entries) {
+      if (entries.size() >= capacity) {
+        entries.removeLast();
+      }
+      entries.addFirst(slowQuery);
+    }
+  }
+
+  /**
+   * @return the recorded queries, most recent first
+   */
+  public List<SlowQuery> getEntries() {
+    synchronized (entries) {
+      return new ArrayList<>(entries);
+    }
+  }
+
+  public void clear() {
+    synchronized (entries) {
+      entries.clear();
+    }
+  }
+}
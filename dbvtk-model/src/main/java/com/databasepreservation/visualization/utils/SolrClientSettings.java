@@ -0,0 +1,306 @@
+package com.databasepreservation.visualization.utils;
+
+import org.apache.http.client.HttpClient;
+import org.apache.solr.client.solrj.impl.HttpClientUtil;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Settings of the client used to connect to Solr, and of the collections it
+ * creates. Defaults can be changed using system properties (e.g.
+ * -Ddbvtk.solr.maxConnections=256).
+ *
+ * When a ZooKeeper host is set, requests are sent to the SolrCloud nodes that
+ * host each collection (load balanced across replicas) instead of a single
+ * node.
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+public class SolrClientSettings {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SolrClientSettings.class);
+
+  private static final String PROPERTY_PREFIX = "dbvtk.solr.";
+  public static final String PROPERTY_MAX_CONNECTIONS = PROPERTY_PREFIX + "maxConnections";
+  public static final String PROPERTY_MAX_CONNECTIONS_PER_HOST = PROPERTY_PREFIX + "maxConnectionsPerHost";
+  public static final String PROPERTY_CONNECTION_TIMEOUT = PROPERTY_PREFIX + "connectionTimeout";
+  public static final String PROPERTY_SOCKET_TIMEOUT = PROPERTY_PREFIX + "socketTimeout";
+  public static final String PROPERTY_ALLOW_COMPRESSION = PROPERTY_PREFIX + "allowCompression";
+  public static final String PROPERTY_ZK_HOST = PROPERTY_PREFIX + "zkHost";
+  public static final String PROPERTY_REPLICATION_FACTOR = PROPERTY_PREFIX + "replicationFactor";
+  public static final String PROPERTY_ROWS_PER_SHARD = PROPERTY_PREFIX + "rowsPerShard";
+  public static final String PROPERTY_MAX_SHARDS_PER_TABLE = PROPERTY_PREFIX + "maxShardsPerTable";
+  public static final String PROPERTY_SHARED_TABLE_MAX_ROWS = PROPERTY_PREFIX + "sharedTableMaxRows";
+  public static final String PROPERTY_COMMIT_WITHIN = PROPERTY_PREFIX + "commitWithin";
+  public static final String PROPERTY_OPTIMIZE_AFTER_INGEST = PROPERTY_PREFIX + "optimizeAfterIngest";
+  public static final String PROPERTY_QUERY_TIME_ALLOWED = PROPERTY_PREFIX + "queryTimeAllowed";
+  public static final String PROPERTY_COALESCE_QUERIES = PROPERTY_PREFIX + "coalesceQueries";
+  public static final String PROPERTY_SLOW_QUERY_THRESHOLD = PROPERTY_PREFIX + "slowQueryThreshold";
+
+  private int maxConnections = 128;
+  private int maxConnectionsPerHost = 64;
+  // milliseconds
+  private int connectionTimeout = 5000;
+  private int socketTimeout = 120000;
+  private boolean allowCompression = true;
+
+  // e.g. "zk1:2181,zk2:2181,zk3:2181/solr", null to use a single node
+  private String zkHost = null;
+  private int replicationFactor = 1;
+  // tables with more rows than this are split in several shards
+  private long rowsPerShard = 10000000L;
+  private int maxShardsPerTable = 16;
+  // tables with at most this many rows are stored in a shared collection, 0
+  // gives every table its own collection
+  private long sharedTableMaxRows = 10000L;
+  // milliseconds, rows added during ingest become visible (soft commit) after
+  // at most this time. 0 keeps them hidden until the ingest is committed
+  private int commitWithin = 30000;
+  private boolean optimizeAfterIngest = true;
+  // milliseconds, searches taking longer fail (instead of returning partial
+  // results). 0 disables the limit
+  private int queryTimeAllowed = 15000;
+  // identical concurrent queries share a single request
+  private boolean coalesceQueries = true;
+  // milliseconds, slower searches are logged. negative disables the log
+  private int slowQueryThreshold = 1000;
+
+  public SolrClientSettings() {
+  }
+
+  /**
+   * @return the default settings, overridden by any system properties that are
+   *         set
+   */
+  public static SolrClientSettings fromSystemProperties() {
+    SolrClientSettings settings = new SolrClientSettings();
+    settings.maxConnections = getInt(PROPERTY_MAX_CONNECTIONS, settings.maxConnections);
+    settings.maxConnectionsPerHost = getInt(PROPERTY_MAX_CONNECTIONS_PER_HOST, settings.maxConnectionsPerHost);
+    settings.connectionTimeout = getInt(PROPERTY_CONNECTION_TIMEOUT, settings.connectionTimeout);
+    settings.socketTimeout = getInt(PROPERTY_SOCKET_TIMEOUT, settings.socketTimeout);
+    String compression = System.getProperty(PROPERTY_ALLOW_COMPRESSION);
+    if (compression != null) {
+      settings.allowCompression = Boolean.parseBoolean(compression);
+    }
+    String zkHost = System.getProperty(PROPERTY_ZK_HOST);
+    if (zkHost != null && !zkHost.trim().isEmpty()) {
+      settings.zkHost = zkHost.trim();
+    }
+    settings.replicationFactor = Math.max(1, getInt(PROPERTY_REPLICATION_FACTOR, settings.replicationFactor));
+    settings.rowsPerShard = Math.max(1, getLong(PROPERTY_ROWS_PER_SHARD, settings.rowsPerShard));
+    settings.maxShardsPerTable = Math.max(1, getInt(PROPERTY_MAX_SHARDS_PER_TABLE, settings.maxShardsPerTable));
+    settings.sharedTableMaxRows = Math.max(0, getLong(PROPERTY_SHARED_TABLE_MAX_ROWS, settings.sharedTableMaxRows));
+    settings.commitWithin = Math.max(0, getInt(PROPERTY_COMMIT_WITHIN, settings.commitWithin));
+    String optimize = System.getProperty(PROPERTY_OPTIMIZE_AFTER_INGEST);
+    if (optimize != null) {
+      settings.optimizeAfterIngest = Boolean.parseBoolean(optimize);
+    }
+    settings.queryTimeAllowed = Math.max(0, getInt(PROPERTY_QUERY_TIME_ALLOWED, settings.queryTimeAllowed));
+    String coalesce = System.getProperty(PROPERTY_COALESCE_QUERIES);
+    if (coalesce != null) {
+      settings.coalesceQueries = Boolean.parseBoolean(coalesce);
+    }
+    settings.slowQueryThreshold = getInt(PROPERTY_SLOW_QUERY_THRESHOLD, settings.slowQueryThreshold);
+    return settings;
+  }
+
+  private static int getInt(String property, int defaultValue) {
+    String value = System.getProperty(property);
+    if (value != null) {
+      try {
+        return Integer.parseInt(value.trim());
+      } catch (NumberFormatException e) {
+        LOGGER.warn("Invalid value '{}' for {}, using {}", value, property, defaultValue);
+      }
+    }
+    return defaultValue;
+  }
+
+  private static long getLong(String property, long defaultValue) {
+    String value = System.getProperty(property);
+    if (value != null) {
+      try {
+        return Long.parseLong(value.trim());
+      } catch (NumberFormatException e) {
+        LOGGER.warn("Invalid value '{}' for {}, using {}", value, property, defaultValue);
+      }
+    }
+    return defaultValue;
+  }
+
+  /**
+   * @param expectedRows
+   *          the number of rows that are going to be stored in the collection
+   * @return the number of shards needed to keep at most rowsPerShard rows in
+   *         each shard, limited to maxShardsPerTable
+   */
+  public int getNumShards(long expectedRows) {
+    long shards = (expectedRows + rowsPerShard - 1) / rowsPerShard;
+    return (int) Math.max(1, Math.min(maxShardsPerTable, shards));
+  }
+
+  /**
+   * @param expectedRows
+   *          the number of rows that are going to be stored, 0 (or less) if it
+   *          is not known
+   * @return true if the table is known to be small enough to be stored in the
+   *         collection shared by small tables. Tables with an unknown number
+   *         of rows may be big, so they get a dedicated collection.
+   */
+  public boolean useSharedCollection(long expectedRows) {
+    return sharedTableMaxRows > 0 && expectedRows > 0 && expectedRows <= sharedTableMaxRows;
+  }
+
+  /**
+   * Creates an HTTP client with a pool of persistent (keep-alive) connections,
+   * configured with these settings. The client must be closed using
+   * HttpClientUtil.close when it is no longer needed.
+   */
+  public HttpClient createHttpClient() {
+    ModifiableSolrParams params = new ModifiableSolrParams();
+    params.set(HttpClientUtil.PROP_MAX_CONNECTIONS, maxConnections);
+    params.set(HttpClientUtil.PROP_MAX_CONNECTIONS_PER_HOST, maxConnectionsPerHost);
+    params.set(HttpClientUtil.PROP_CONNECTION_TIMEOUT, connectionTimeout);
+    params.set(HttpClientUtil.PROP_SO_TIMEOUT, socketTimeout);
+    // solr (jetty) compresses responses with gzip when the client accepts it
+    params.set(HttpClientUtil.PROP_ALLOW_COMPRESSION, allowCompression);
+    params.set(HttpClientUtil.PROP_FOLLOW_REDIRECTS, false);
+    LOGGER.debug("Creating Solr HTTP client: {}", this);
+    return HttpClientUtil.createClient(params);
+  }
+
+  public int getMaxConnections() {
+    return maxConnections;
+  }
+
+  public void setMaxConnections(int maxConnections) {
+    this.maxConnections = maxConnections;
+  }
+
+  public int getMaxConnectionsPerHost() {
+    return maxConnectionsPerHost;
+  }
+
+  public void setMaxConnectionsPerHost(int maxConnectionsPerHost) {
+    this.maxConnectionsPerHost = maxConnectionsPerHost;
+  }
+
+  public int getConnectionTimeout() {
+    return connectionTimeout;
+  }
+
+  public void setConnectionTimeout(int connectionTimeout) {
+    this.connectionTimeout = connectionTimeout;
+  }
+
+  public int getSocketTimeout() {
+    return socketTimeout;
+  }
+
+  public void setSocketTimeout(int socketTimeout) {
+    this.socketTimeout = socketTimeout;
+  }
+
+  public boolean isAllowCompression() {
+    return allowCompression;
+  }
+
+  public void setAllowCompression(boolean allowCompression) {
+    this.allowCompression = allowCompression;
+  }
+
+  public String getZkHost() {
+    return zkHost;
+  }
+
+  public void setZkHost(String zkHost) {
+    this.zkHost = zkHost;
+  }
+
+  public boolean isCloud() {
+    return zkHost != null;
+  }
+
+  public int getReplicationFactor() {
+    return replicationFactor;
+  }
+
+  public void setReplicationFactor(int replicationFactor) {
+    this.replicationFactor = replicationFactor;
+  }
+
+  public long getRowsPerShard() {
+    return rowsPerShard;
+  }
+
+  public void setRowsPerShard(long rowsPerShard) {
+    this.rowsPerShard = rowsPerShard;
+  }
+
+  public int getMaxShardsPerTable() {
+    return maxShardsPerTable;
+  }
+
+  public void setMaxShardsPerTable(int maxShardsPerTable) {
+    this.maxShardsPerTable = maxShardsPerTable;
+  }
+
+  public long getSharedTableMaxRows() {
+    return sharedTableMaxRows;
+  }
+
+  public void setSharedTableMaxRows(long sharedTableMaxRows) {
+    this.sharedTableMaxRows = sharedTableMaxRows;
+  }
+
+  public int getCommitWithin() {
+    return commitWithin;
+  }
+
+  public void setCommitWithin(int commitWithin) {
+    this.commitWithin = commitWithin;
+  }
+
+  public boolean isOptimizeAfterIngest() {
+    return optimizeAfterIngest;
+  }
+
+  public void setOptimizeAfterIngest(boolean optimizeAfterIngest) {
+    this.optimizeAfterIngest = optimizeAfterIngest;
+  }
+
+  public int getQueryTimeAllowed() {
+    return queryTimeAllowed;
+  }
+
+  public void setQueryTimeAllowed(int queryTimeAllowed) {
+    this.queryTimeAllowed = queryTimeAllowed;
+  }
+
+  public boolean isCoalesceQueries() {
+    return coalesceQueries;
+  }
+
+  public void setCoalesceQueries(boolean coalesceQueries) {
+    this.coalesceQueries = coalesceQueries;
+  }
+
+  public int getSlowQueryThreshold() {
+    return slowQueryThreshold;
+  }
+
+  public void setSlowQueryThreshold(int slowQueryThreshold) {
+    this.slowQueryThreshold = slowQueryThreshold;
+  }
+
+  @Override
+  public String toString() {
+    return "SolrClientSettings{" + "maxConnections=" + maxConnections + ", maxConnectionsPerHost="
+      + maxConnectionsPerHost + ", connectionTimeout=" + connectionTimeout + ", socketTimeout=" + socketTimeout
+      + ", allowCompression=" + allowCompression + ", zkHost=" + zkHost + ", replicationFactor=" + replicationFactor
+      + ", rowsPerShard=" + rowsPerShard + ", maxShardsPerTable=" + maxShardsPerTable + ", sharedTableMaxRows="
+      + sharedTableMaxRows + ", commitWithin=" + commitWithin + ", optimizeAfterIngest=" + optimizeAfterIngest
+      + ", queryTimeAllowed=" + queryTimeAllowed + ", coalesceQueries=" + coalesceQueries + ", slowQueryThreshold="
+      + slowQueryThreshold + '}';
+  }
+}
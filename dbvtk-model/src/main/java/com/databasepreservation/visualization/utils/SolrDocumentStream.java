@@ -0,0 +1,278 @@
+package com.databasepreservation.visualization.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.io.Tuple;
+import org.apache.solr.client.solrj.io.stream.TupleStream;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.CursorMarkParams;
+import org.roda.core.data.exceptions.GenericException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads all documents that match a query, one at a time, without keeping the
+ * whole result in memory (neither in the viewer nor in Solr).
+ *
+ * All documents are read using the /export handler when possible, and using
+ * cursorMark paging otherwise. A subset of the documents is read using start
+ * and rows paging.
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+public abstract class SolrDocumentStream implements Closeable {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SolrDocumentStream.class);
+
+  /**
+   * @return the next document, or null if there are no more documents
+   * @throws GenericException
+   *           if the documents could not be obtained from Solr
+   */
+  public abstract SolrDocument next() throws GenericException;
+
+  /**
+   * @return the fields that are returned in each document
+   */
+  public abstract List<String> getFields();
+
+  @Override
+  public abstract void close() throws IOException;
+
+  /**
+   * Streams documents using the /export handler, from a single node (using a
+   * SolrStream) or from all the shards of a collection (using a
+   * CloudSolrStream, that merges the sorted shard streams). All returned fields
+   * and sort fields must have docValues.
+   *
+   * The returned fields are usually docValues only copies of the fields, so
+   * the tuple keys are renamed back to the original field names.
+   */
+  static class ExportHandlerStream extends SolrDocumentStream {
+    private final TupleStream stream;
+    private final List<String> fields;
+    private final Map<String, String> fieldNames;
+    private boolean finished = false;
+    // the first document is read when the stream is opened, to detect errors
+    // (e.g. fields without docValues) as soon as possible
+    private SolrDocument first;
+
+    /**
+     * @param fieldNames
+     *          the original field name of each exported field that has a
+     *          different name
+     */
+    ExportHandlerStream(TupleStream stream, List<String> fields, Map<String, String> fieldNames)
+      throws GenericException {
+      this.stream = stream;
+      this.fields = fields;
+      this.fieldNames = fieldNames;
+      try {
+        stream.open();
+        first = next();
+      } catch (IOException | GenericException e) {
+        try {
+          stream.close();
+        } catch (IOException e1) {
+          LOGGER.debug("Could not close export stream", e1);
+        }
+        throw new GenericException("Could not open export stream", e);
+      }
+    }
+
+    @Override
+    public SolrDocument next() throws GenericException {
+      if (first != null) {
+        SolrDocument doc = first;
+        first = null;
+        return doc;
+      } else if (finished) {
+        return null;
+      }
+
+      Tuple tuple;
+      try {
+        tuple = stream.read();
+      } catch (IOException e) {
+        throw new GenericException("Could not read from export stream", e);
+      }
+
+      if (tuple.EXCEPTION) {
+        throw new GenericException("Error in export stream: " + tuple.getException());
+      } else if (tuple.EOF) {
+        finished = true;
+        return null;
+      }
+
+      SolrDocument doc = new SolrDocument();
+      for (Object key : tuple.fields.keySet()) {
+        String name = String.valueOf(key);
+        String fieldName = fieldNames.get(name);
+        doc.setField(fieldName != null ? fieldName : name, tuple.get(key));
+      }
+      return doc;
+    }
+
+    @Override
+    public List<String> getFields() {
+      return fields;
+    }
+
+    @Override
+    public void close() throws IOException {
+      stream.close();
+    }
+
+    /**
+     * @return the query parameters, to be used by a stream that requests
+     *         documents from the /export handler
+     */
+    static Map<String, String> getExportParams(SolrQuery query) {
+      Map<String, String> params = new HashMap<>();
+      Iterator<String> names = query.getParameterNamesIterator();
+      while (names.hasNext()) {
+        String name = names.next();
+        params.put(name, query.get(name));
+      }
+      params.put(CommonParams.QT, SolrUtils.EXPORT_HANDLER);
+      return params;
+    }
+  }
+
+  /**
+   * Streams documents by fetching pages using cursorMark. The query must be
+   * sorted by the unique key (possibly after other fields).
+   */
+  static class CursorStream extends SolrDocumentStream {
+    private final SolrClient client;
+    private final String collection;
+    private final SolrQuery query;
+    private final List<String> fields;
+
+    private String cursorMark = CursorMarkParams.CURSOR_MARK_START;
+    private List<SolrDocument> page = new ArrayList<>();
+    private int pageIndex = 0;
+    private boolean lastPage = false;
+
+    CursorStream(SolrClient client, String collection, SolrQuery query, List<String> fields, int pageSize) {
+      this.client = client;
+      this.collection = collection;
+      this.query = query;
+      this.fields = fields;
+      query.setRows(pageSize);
+    }
+
+    @Override
+    public SolrDocument next() throws GenericException {
+      while (pageIndex >= page.size()) {
+        if (lastPage) {
+          return null;
+        }
+        fetchNextPage();
+      }
+      return page.get(pageIndex++);
+    }
+
+    private void fetchNextPage() throws GenericException {
+      query.set(CursorMarkParams.CURSOR_MARK_PARAM, cursorMark);
+      try {
+        QueryResponse response = client.query(collection, query);
+        page = response.getResults();
+        pageIndex = 0;
+
+        String nextCursorMark = response.getNextCursorMark();
+        lastPage = cursorMark.equals(nextCursorMark);
+        cursorMark = nextCursorMark;
+        LOGGER.trace("Fetched page with {} documents from {}", page.size(), collection);
+      } catch (SolrServerException | IOException e) {
+        throw new GenericException("Could not query index", e);
+      }
+    }
+
+    @Override
+    public List<String> getFields() {
+      return fields;
+    }
+
+    @Override
+    public void close() throws IOException {
+      // nothing to close, the client is shared
+    }
+  }
+
+  /**
+   * Streams at most a limited number of documents, starting at an offset, by
+   * fetching pages using start and rows.
+   */
+  static class PagedStream extends SolrDocumentStream {
+    private final SolrClient client;
+    private final String collection;
+    private final SolrQuery query;
+    private final List<String> fields;
+    private final int pageSize;
+
+    private int nextStart;
+    private int remaining;
+    private List<SolrDocument> page = new ArrayList<>();
+    private int pageIndex = 0;
+    private boolean lastPage = false;
+
+    PagedStream(SolrClient client, String collection, SolrQuery query, List<String> fields, int start, int count,
+      int pageSize) {
+      this.client = client;
+      this.collection = collection;
+      this.query = query;
+      this.fields = fields;
+      this.pageSize = pageSize;
+      this.nextStart = start;
+      this.remaining = count;
+    }
+
+    @Override
+    public SolrDocument next() throws GenericException {
+      while (pageIndex >= page.size()) {
+        if (lastPage || remaining <= 0) {
+          return null;
+        }
+        fetchNextPage();
+      }
+      remaining--;
+      return page.get(pageIndex++);
+    }
+
+    private void fetchNextPage() throws GenericException {
+      int rows = Math.min(pageSize, remaining);
+      query.setStart(nextStart);
+      query.setRows(rows);
+      try {
+        QueryResponse response = client.query(collection, query);
+        page = response.getResults();
+        pageIndex = 0;
+        nextStart += page.size();
+        lastPage = page.size() < rows;
+      } catch (SolrServerException | IOException e) {
+        throw new GenericException("Could not query index", e);
+      }
+    }
+
+    @Override
+    public List<String> getFields() {
+      return fields;
+    }
+
+    @Override
+    public void close() throws IOException {
+      // nothing to close, the client is shared
+    }
+  }
+}
@@ -3,17 +3,36 @@ package com.databasepreservation.visualization.utils;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
 
+import org.apache.http.client.HttpClient;
+import org.apache.solr.client.solrj.SolrClient;
 import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.impl.CloudSolrClient;
+import org.apache.solr.client.solrj.impl.HttpClientUtil;
 import org.apache.solr.client.solrj.impl.HttpSolrClient;
 import org.apache.solr.client.solrj.request.CollectionAdminRequest;
 import org.apache.solr.client.solrj.response.UpdateResponse;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrException;
 import org.apache.solr.common.SolrInputDocument;
 import org.apache.solr.common.util.NamedList;
 import org.roda.core.data.adapter.facet.Facets;
@@ -31,39 +50,100 @@ import org.slf4j.LoggerFactory;
 import com.databasepreservation.visualization.client.SavedSearch;
 import com.databasepreservation.visualization.client.ViewerStructure.ViewerDatabase;
 import com.databasepreservation.visualization.client.ViewerStructure.ViewerRow;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerRowWithRelations;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerSchema;
 import com.databasepreservation.visualization.client.ViewerStructure.ViewerTable;
 import com.databasepreservation.visualization.exceptions.ViewerException;
 import com.databasepreservation.visualization.shared.ViewerSafeConstants;
 import com.databasepreservation.visualization.transformers.SolrTransformer;
 
 /**
- * Exposes some methods to interact with a Solr Server connected through HTTP
+ * Exposes some methods to interact with a Solr Server connected through HTTP,
+ * or with a SolrCloud cluster through ZooKeeper
  * 
  * @author Bruno Ferreira <bferreira@keep.pt>
  */
-public class SolrManager {
+public class SolrManager implements IndexBackend {
   private static final Logger LOGGER = LoggerFactory.getLogger(SolrManager.class);
   private static final long INSERT_DOCUMENT_TIMEOUT = 60000; // 60 seconds
   private static final int MAX_BUFFERED_DOCUMENTS_PER_COLLECTION = 10;
   private static final int MAX_BUFFERED_COLLECTIONS = 10;
-
-  private final HttpSolrClient client;
+  // threads and queued queries of the pool used to run independent queries in
+  // parallel; when both are busy, the calling thread runs the query itself
+  private static final int FAN_OUT_THREADS = 8;
+  private static final int FAN_OUT_QUEUE_SIZE = 64;
+  private static final int SLOW_QUERY_LOG_CAPACITY = 100;
+
+  private final SolrClientSettings settings;
+  private final HttpClient httpClient;
+  private final SolrClient client;
+  // time budget and slow query log of the searches
+  private final SolrQueryContext queryContext;
+  private final MetadataCache metadataCache;
   private final Set<String> collectionsToCommit;
+  // used to run independent queries in parallel (e.g. the relations of a row)
+  private final ExecutorService fanOutExecutor;
+  // runs the queries of views that may supersede their previous queries
+  private final TaggedQueryRunner taggedQueryRunner;
   // private final LinkedHashMap<String, String> tablesUUIDandName = new
   // LinkedHashMap<>();
   private Map<String, List<SolrInputDocument>> docsByCollection = new HashMap<>();
+  // databases being ingested, and the statistics of their tables (by table
+  // UUID), which are stored in the database metadata when committing
+  private final Map<String, ViewerDatabase> ingestedDatabases = new HashMap<>();
+  private final Map<String, TableStatisticsCollector> tableStatistics = new HashMap<>();
+  private final Set<String> databasesWithStatistics = new HashSet<>();
+  // collection where the rows of each table are stored (by table UUID)
+  private final Map<String, TableCollection> tableCollections = new ConcurrentHashMap<>();
+  private boolean sharedTableCollectionCreated = false;
   private boolean setupDone = false;
 
   public SolrManager(String url) {
-    client = new HttpSolrClient(url);
-    client.setConnectionTimeout(5000);
-    // allowCompression defaults to false.
-    // Server side must support gzip or deflate for this to have any effect.
-    // solrDBList.setAllowCompression(true);
+    this(url, SolrClientSettings.fromSystemProperties());
+  }
+
+  public SolrManager(String url, SolrClientSettings settings) {
+    // the http client keeps a pool of persistent connections, shared by all
+    // threads using this SolrManager
+    this.settings = settings;
+    httpClient = settings.createHttpClient();
+    SolrClient solrClient;
+    if (settings.isCloud()) {
+      // routes each request to the nodes hosting the collection, and balances
+      // the queries between its replicas
+      CloudSolrClient cloudClient = new CloudSolrClient.Builder().withZkHost(settings.getZkHost())
+        .withHttpClient(httpClient).build();
+      cloudClient.connect();
+      solrClient = cloudClient;
+    } else {
+      solrClient = new HttpSolrClient(url, httpClient);
+    }
+
+    // identical concurrent queries (e.g. many users opening the same table)
+    // share a single request to solr
+    if (settings.isCoalesceQueries()) {
+      solrClient = new CoalescingSolrClient(solrClient);
+    }
+    client = solrClient;
 
     // TODO: ensure that solr is running in cloud mode before execution
 
+    queryContext = new SolrQueryContext(settings.getQueryTimeAllowed(), new SlowQueryLog(
+      settings.getSlowQueryThreshold(), SLOW_QUERY_LOG_CAPACITY));
+    metadataCache = new MetadataCache(client);
     collectionsToCommit = new HashSet<>();
+    fanOutExecutor = new ThreadPoolExecutor(FAN_OUT_THREADS, FAN_OUT_THREADS, 0L, TimeUnit.MILLISECONDS,
+      new LinkedBlockingQueue<Runnable>(FAN_OUT_QUEUE_SIZE), new ThreadFactory() {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, "solr-fan-out-" + counter.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        }
+      }, new ThreadPoolExecutor.CallerRunsPolicy());
+    taggedQueryRunner = new TaggedQueryRunner();
   }
 
   /**
@@ -73,18 +153,20 @@ public class SolrManager {
    * @param database
    *          the new database
    */
+  @Override
   public void addDatabase(ViewerDatabase database) throws ViewerException {
     // creates databases collection, skipping if it is present
     CollectionAdminRequest.Create request = new CollectionAdminRequest.Create();
     request.setCollectionName(ViewerSafeConstants.SOLR_INDEX_DATABASE_COLLECTION_NAME);
     request.setConfigName(ViewerSafeConstants.SOLR_CONFIGSET_DATABASE);
     request.setNumShards(1);
+    request.setReplicationFactor(settings.getReplicationFactor());
     try {
       NamedList<Object> response = client.request(request);
     } catch (SolrServerException | IOException e) {
       throw new ViewerException("Error creating collection " + ViewerSafeConstants.SOLR_INDEX_DATABASE_COLLECTION_NAME,
         e);
-    } catch (HttpSolrClient.RemoteSolrException e) {
+    } catch (SolrException e) {
       if (e.getMessage().contains(
         "collection already exists: " + ViewerSafeConstants.SOLR_INDEX_DATABASE_COLLECTION_NAME)) {
         LOGGER.info("collection " + ViewerSafeConstants.SOLR_INDEX_DATABASE_COLLECTION_NAME + " already exists.");
@@ -95,8 +177,8 @@ public class SolrManager {
     }
 
     // add this database to the collection
-    collectionsToCommit.add(ViewerSafeConstants.SOLR_INDEX_DATABASE_COLLECTION_NAME);
-    insertDocument(ViewerSafeConstants.SOLR_INDEX_DATABASE_COLLECTION_NAME, SolrTransformer.fromDatabase(database));
+    ingestedDatabases.put(database.getUUID(), database);
+    insertDatabaseDocuments(database);
 
     // create collection needed to store saved searches
     try {
@@ -114,20 +196,113 @@ public class SolrManager {
   }
 
   /**
-   * Creates a new table collection in solr for the specified table
+   * Inserts (or replaces) the documents with the database metadata
+   */
+  private void insertDatabaseDocuments(ViewerDatabase database) throws ViewerException {
+    metadataCache.invalidate(database.getUUID());
+    collectionsToCommit.add(ViewerSafeConstants.SOLR_INDEX_DATABASE_COLLECTION_NAME);
+    insertDocument(ViewerSafeConstants.SOLR_INDEX_DATABASE_COLLECTION_NAME, SolrTransformer.fromDatabase(database));
+
+    // schemas and tables are stored in separate documents, so they can be
+    // loaded without loading the whole database metadata
+    for (ViewerSchema schema : database.getMetadata().getSchemas()) {
+      insertDocument(ViewerSafeConstants.SOLR_INDEX_DATABASE_COLLECTION_NAME,
+        SolrTransformer.fromSchema(database.getUUID(), schema));
+      for (ViewerTable table : schema.getTables()) {
+        insertDocument(ViewerSafeConstants.SOLR_INDEX_DATABASE_COLLECTION_NAME,
+          SolrTransformer.fromTable(database.getUUID(), table, chooseTableCollection(table)));
+      }
+    }
+  }
+
+  /**
+   * Creates a new table collection in solr for the specified table, or uses
+   * the collection shared by small tables
    *
    * @param table
    *          the table which data is going to be saved in this collections
    */
+  @Override
   public void addTable(ViewerTable table) throws ViewerException {
+    TableCollection tableCollection = chooseTableCollection(table);
+    if (tableCollection.isShared()) {
+      LOGGER.info("Storing table " + table.getName() + " with id " + table.getUUID() + " in collection "
+        + tableCollection.getName());
+      createSharedTableCollection();
+    } else {
+      createTableCollection(table);
+    }
+
+    collectionsToCommit.add(tableCollection.getName());
+    applyTableStatistics();
+    tableStatistics.put(table.getUUID(), new TableStatisticsCollector(table));
+  }
+
+  /**
+   * Decides where the rows of a table are stored, based on its expected number
+   * of rows (tables with an unknown number of rows get a dedicated collection).
+   * The decision is made once per table, as rows can not move between
+   * collections.
+   */
+  private TableCollection chooseTableCollection(ViewerTable table) {
+    TableCollection tableCollection = tableCollections.get(table.getUUID());
+    if (tableCollection == null) {
+      if (settings.useSharedCollection(table.getCountRows())) {
+        tableCollection = TableCollection.shared(table.getUUID());
+      } else {
+        tableCollection = TableCollection.dedicated(table.getUUID());
+      }
+      tableCollections.put(table.getUUID(), tableCollection);
+    }
+    return tableCollection;
+  }
+
+  /**
+   * Gets the collection where the rows of a table are stored, from the table
+   * metadata document. Tables without that information (ingested before small
+   * tables shared a collection) have a dedicated collection, and tables
+   * ingested before their rows had docValues only copies are not streamed by
+   * the /export handler.
+   */
+  private TableCollection getTableCollection(String tableUUID)
+    throws org.roda.core.data.exceptions.GenericException {
+    TableCollection tableCollection = tableCollections.get(tableUUID);
+    if (tableCollection == null) {
+      try {
+        SolrDocument doc = SolrUtils.retrieveDocument(client, ViewerSafeConstants.SOLR_INDEX_DATABASE_COLLECTION_NAME,
+          tableUUID, Arrays.asList(ViewerSafeConstants.SOLR_DATABASE_TABLE_COLLECTION,
+            ViewerSafeConstants.SOLR_DATABASE_TABLE_DOC_VALUES));
+        Object collectionName = doc.getFieldValue(ViewerSafeConstants.SOLR_DATABASE_TABLE_COLLECTION);
+        Object docValues = doc.getFieldValue(ViewerSafeConstants.SOLR_DATABASE_TABLE_DOC_VALUES);
+        tableCollection = TableCollection.fromName(tableUUID, collectionName != null ? collectionName.toString()
+          : null, Boolean.TRUE.equals(docValues));
+        tableCollections.put(tableUUID, tableCollection);
+      } catch (NotFoundException e) {
+        // not cached, the table may be added later
+        tableCollection = TableCollection.fromName(tableUUID, null, false);
+      }
+    }
+    return tableCollection;
+  }
+
+  private void createTableCollection(ViewerTable table) {
     String collectionName = SolrUtils.getTableCollectionName(table.getUUID());
     CollectionAdminRequest.Create request = new CollectionAdminRequest.Create();
     request.setCollectionName(collectionName);
     request.setConfigName(ViewerSafeConstants.SOLR_CONFIGSET_TABLE);
-    request.setNumShards(1);
+
+    // big tables are split in several shards, so that each core keeps a
+    // manageable index size and queries are processed in parallel
+    int numShards = settings.getNumShards(table.getCountRows());
+    int replicationFactor = settings.getReplicationFactor();
+    request.setNumShards(numShards);
+    request.setReplicationFactor(replicationFactor);
+    // allow creating the collection in clusters with less nodes than cores
+    request.setMaxShardsPerNode(numShards * replicationFactor);
 
     try {
-      LOGGER.info("Creating collection for table " + table.getName() + " with id " + table.getUUID());
+      LOGGER.info("Creating collection for table " + table.getName() + " with id " + table.getUUID() + " ("
+        + numShards + " shards, replication factor " + replicationFactor + ")");
       NamedList<Object> response = client.request(request);
       LOGGER.debug("Response from server (create collection for table with id " + table.getUUID() + "): "
         + response.toString());
@@ -135,83 +310,424 @@ public class SolrManager {
       if (duration != null) {
         LOGGER.info("Created in " + duration + " ms");
       }
-    } catch (HttpSolrClient.RemoteSolrException e) {
+    } catch (SolrException e) {
       LOGGER.error("Error in Solr server while creating collection " + collectionName, e);
     } catch (Exception e) {
       // mainly: SolrServerException and IOException
       LOGGER.error("Error creating collection " + collectionName, e);
     }
+  }
+
+  private synchronized void createSharedTableCollection() throws ViewerException {
+    if (sharedTableCollectionCreated) {
+      return;
+    }
 
-    collectionsToCommit.add(collectionName);
+    // creates the collection shared by small tables, skipping if it is present
+    CollectionAdminRequest.Create request = new CollectionAdminRequest.Create();
+    request.setCollectionName(ViewerSafeConstants.SOLR_INDEX_SHARED_TABLE_COLLECTION_NAME);
+    request.setConfigName(ViewerSafeConstants.SOLR_CONFIGSET_TABLE);
+    request.setNumShards(1);
+    request.setReplicationFactor(settings.getReplicationFactor());
+    try {
+      NamedList<Object> response = client.request(request);
+    } catch (SolrServerException | IOException e) {
+      throw new ViewerException("Error creating collection "
+        + ViewerSafeConstants.SOLR_INDEX_SHARED_TABLE_COLLECTION_NAME, e);
+    } catch (SolrException e) {
+      if (e.getMessage().contains(
+        "collection already exists: " + ViewerSafeConstants.SOLR_INDEX_SHARED_TABLE_COLLECTION_NAME)) {
+        LOGGER.info("collection " + ViewerSafeConstants.SOLR_INDEX_SHARED_TABLE_COLLECTION_NAME + " already exists.");
+      } else {
+        throw new ViewerException("Error creating collection "
+          + ViewerSafeConstants.SOLR_INDEX_SHARED_TABLE_COLLECTION_NAME, e);
+      }
+    }
+    sharedTableCollectionCreated = true;
   }
 
+  @Override
   public void addRow(ViewerTable table, ViewerRow row) throws ViewerException {
-    String collectionName = SolrUtils.getTableCollectionName(table.getUUID());
-    insertDocument(collectionName, SolrTransformer.fromRow(table, row));
+    TableCollection tableCollection = chooseTableCollection(table);
+    SolrInputDocument doc = SolrTransformer.fromRow(table, row);
+    tableCollection.addTableField(doc);
+    insertDocument(tableCollection.getName(), doc);
+
+    TableStatisticsCollector statistics = tableStatistics.get(table.getUUID());
+    if (statistics != null) {
+      statistics.add(row);
+    }
+  }
+
+  /**
+   * Sets the row counts and column statistics computed while adding rows in the
+   * metadata of the databases that were added using this SolrManager, and discards
+   * the collectors. Rows are added one table at a time, so this is done for the
+   * previous tables as soon as the next table is added.
+   */
+  private void applyTableStatistics() {
+    for (TableStatisticsCollector statistics : tableStatistics.values()) {
+      for (ViewerDatabase database : ingestedDatabases.values()) {
+        ViewerTable table = database.getMetadata().getTable(statistics.getTableUUID());
+        if (table != null) {
+          statistics.applyTo(table);
+          databasesWithStatistics.add(database.getUUID());
+        }
+      }
+    }
+    tableStatistics.clear();
+  }
+
+  /**
+   * Stores the metadata of the databases that got table statistics
+   */
+  private void storeTableStatistics() throws ViewerException {
+    applyTableStatistics();
+    for (ViewerDatabase database : ingestedDatabases.values()) {
+      if (databasesWithStatistics.contains(database.getUUID())) {
+        LOGGER.info("Storing table statistics for database " + database.getUUID());
+        insertDatabaseDocuments(database);
+      }
+    }
+    ingestedDatabases.clear();
+    databasesWithStatistics.clear();
   }
 
   /**
-   * Commits all changes to all modified collections and optimizes them
+   * Commits all changes to all modified collections (a single durable commit
+   * per collection, at the end of the ingest) and optimizes them, if
+   * configured. Table statistics computed during ingest are stored before
+   * committing.
+   *
+   * While ingesting, rows become visible through the soft commits requested
+   * using commitWithin (only for the table collections, the database documents
+   * become visible with this commit), and Solr limits the transaction log size with its own
+   * periodic hard commits (autoCommit, which does not open a searcher).
    *
    * @throws ViewerException
    */
+  @Override
   public void commitAll() throws ViewerException {
+    storeTableStatistics();
     for (String collection : collectionsToCommit) {
-      commitAndOptimize(collection);
+      if (settings.isOptimizeAfterIngest()) {
+        commitAndOptimize(collection);
+      } else {
+        insertPendingDocuments();
+        commit(collection, false);
+      }
     }
     collectionsToCommit.clear();
   }
 
+  /**
+   * @return the searches made by this SolrManager that took longer than the
+   *         slow query threshold
+   */
+  public SlowQueryLog getSlowQueryLog() {
+    return queryContext.getSlowQueryLog();
+  }
+
   /**
    * Frees resources created by this SolrManager object
    *
    * @throws ViewerException
    *           in case some resource could not be closed successfully
    */
+  @Override
   public void freeResources() throws ViewerException {
+    fanOutExecutor.shutdownNow();
     try {
       client.close();
     } catch (IOException e) {
       throw new ViewerException(e);
+    } finally {
+      // the solr client does not close http clients it did not create
+      HttpClientUtil.close(httpClient);
     }
   }
 
+  @Override
   public <T extends IsIndexed> IndexResult<T> find(RodaUser user, Class<T> classToReturn, Filter filter, Sorter sorter,
     Sublist sublist, Facets facets) throws org.roda.core.data.exceptions.GenericException, RequestNotValidException {
-    return SolrUtils.find(client, classToReturn, filter, sorter, sublist, facets);
+    return SolrUtils.find(client, queryContext.withCaller("SolrManager.find"), classToReturn, filter, sorter, sublist,
+      facets);
   }
 
+  @Override
   public <T extends IsIndexed> Long count(RodaUser user, Class<T> classToReturn, Filter filter)
     throws org.roda.core.data.exceptions.GenericException, RequestNotValidException {
-    return SolrUtils.count(client, classToReturn, filter);
+    return SolrUtils.count(client, queryContext.withCaller("SolrManager.count"), classToReturn, filter);
   }
 
+  @Override
   public <T extends IsIndexed> T retrieve(RodaUser user, Class<T> classToReturn, String id) throws NotFoundException,
     org.roda.core.data.exceptions.GenericException {
+    if (ViewerDatabase.class.equals(classToReturn)) {
+      return classToReturn.cast(metadataCache.get(id).getDatabase());
+    }
     return SolrUtils.retrieve(client, classToReturn, id);
   }
 
+  /**
+   * Gets a database (with parsed metadata and lookup indexes) from the metadata
+   * cache, retrieving it from Solr only if it is not cached
+   */
+  @Override
+  public CachedDatabase retrieveCachedDatabase(RodaUser user, String databaseUUID) throws NotFoundException,
+    org.roda.core.data.exceptions.GenericException {
+    return metadataCache.get(databaseUUID);
+  }
+
+  /**
+   * Gets a database with only a summary of its metadata (schemas and tables are
+   * listed, but without their structure)
+   */
+  @Override
+  public ViewerDatabase retrieveDatabaseSummary(RodaUser user, String databaseUUID) throws NotFoundException,
+    org.roda.core.data.exceptions.GenericException {
+    return metadataCache.getSummary(databaseUUID);
+  }
+
+  /**
+   * Gets the complete metadata of a single schema of a database
+   */
+  @Override
+  public ViewerSchema retrieveSchema(RodaUser user, String databaseUUID, String schemaUUID) throws NotFoundException,
+    org.roda.core.data.exceptions.GenericException {
+    return metadataCache.getSchema(databaseUUID, schemaUUID);
+  }
+
+  /**
+   * Gets the complete metadata of a single table of a database
+   */
+  @Override
+  public ViewerTable retrieveTable(RodaUser user, String databaseUUID, String tableUUID) throws NotFoundException,
+    org.roda.core.data.exceptions.GenericException {
+    return metadataCache.getTable(databaseUUID, tableUUID);
+  }
+
+  @Override
   public <T extends IsIndexed> IndexResult<T> findRows(RodaUser user, Class<T> classToReturn, String tableUUID,
     Filter filter, Sorter sorter, Sublist sublist, Facets facets)
     throws org.roda.core.data.exceptions.GenericException, RequestNotValidException {
-    return SolrUtils.find(client, classToReturn, tableUUID, filter, sorter, sublist, facets);
+    return SolrUtils.find(client, queryContext.withCaller("SolrManager.findRows"), classToReturn,
+      getTableCollection(tableUUID), filter, sorter, sublist, facets);
+  }
+
+  @Override
+  public <T extends IsIndexed> IndexResult<T> findRows(RodaUser user, Class<T> classToReturn, String tableUUID,
+    Filter filter, Sorter sorter, Sublist sublist, Facets facets, List<String> fieldsToReturn)
+    throws org.roda.core.data.exceptions.GenericException, RequestNotValidException {
+    return SolrUtils.find(client, queryContext.withCaller("SolrManager.findRows"), classToReturn,
+      getTableCollection(tableUUID), filter, sorter, sublist, facets, fieldsToReturn);
+  }
+
+  /**
+   * Finds rows on behalf of a view that supersedes its own queries: if a query
+   * with the same tag and a lower serial is still running, it is cancelled.
+   *
+   * @param requestTag
+   *          identifies the view making the request
+   * @param requestSerial
+   *          increases with each request made by the view
+   */
+  @Override
+  public <T extends IsIndexed> IndexResult<T> findRows(RodaUser user, final Class<T> classToReturn,
+    final String tableUUID, final Filter filter, final Sorter sorter, final Sublist sublist, final Facets facets,
+    final List<String> fieldsToReturn, String requestTag, long requestSerial)
+    throws org.roda.core.data.exceptions.GenericException, RequestNotValidException {
+    if (requestTag == null) {
+      return findRows(user, classToReturn, tableUUID, filter, sorter, sublist, facets, fieldsToReturn);
+    }
+
+    return taggedQueryRunner.run(requestTag, requestSerial, new Callable<IndexResult<T>>() {
+      @Override
+      public IndexResult<T> call() throws Exception {
+        return SolrUtils.find(client, queryContext.withCaller("SolrManager.findRows"), classToReturn,
+          getTableCollection(tableUUID), filter, sorter, sublist, facets, fieldsToReturn);
+      }
+    });
   }
 
   public InputStream findRowsCSV(RodaUser user, String tableUUID, Filter filter, Sorter sorter, Sublist sublist,
     List<String> fields) throws org.roda.core.data.exceptions.GenericException, RequestNotValidException {
-    return SolrUtils.findCSV(client, SolrUtils.getTableCollectionName(tableUUID), filter, sorter, sublist, fields);
+    return SolrUtils.findCSV(client, getTableCollection(tableUUID), filter, sorter, sublist, fields);
+  }
+
+  /**
+   * Streams the rows of a table that match the filter and are inside the
+   * sublist (all rows if the sublist is null). The returned stream must be
+   * closed after being used.
+   */
+  @Override
+  public SolrDocumentStream streamRows(RodaUser user, String tableUUID, Filter filter, Sorter sorter,
+    Sublist sublist, List<String> fields) throws org.roda.core.data.exceptions.GenericException,
+    RequestNotValidException {
+    return SolrUtils.streamDocuments(client, getTableCollection(tableUUID), filter, sorter, sublist, fields);
   }
 
+  @Override
   public <T extends IsIndexed> Long countRows(RodaUser user, Class<T> classToReturn, String tableUUID, Filter filter)
     throws org.roda.core.data.exceptions.GenericException, RequestNotValidException {
-    return SolrUtils.count(client, classToReturn, tableUUID, filter);
+    return SolrUtils.count(client, queryContext.withCaller("SolrManager.countRows"), classToReturn,
+      getTableCollection(tableUUID), filter);
   }
 
+  @Override
   public <T extends IsIndexed> T retrieveRows(RodaUser user, Class<T> classToReturn, String tableUUID, String rowUUID)
     throws NotFoundException, org.roda.core.data.exceptions.GenericException {
-    return SolrUtils.retrieve(client, classToReturn, tableUUID, rowUUID);
+    return SolrUtils.retrieve(client, classToReturn, getTableCollection(tableUUID), rowUUID);
+  }
+
+  /**
+   * Retrieves many rows, possibly from different tables, at once. Each
+   * collection is queried using a single request (the small tables that share
+   * a collection are retrieved together) and the collections are queried in
+   * parallel.
+   *
+   * @param rowUUIDsByTable
+   *          the UUIDs of the rows to retrieve, grouped by table UUID (at most
+   *          ViewerSafeConstants.MAX_ROWS_RETRIEVED_BY_ID in total)
+   * @return the rows that were found, grouped by table UUID. Rows that do not
+   *         exist are not included.
+   */
+  @Override
+  public <T extends IsIndexed> Map<String, List<T>> retrieveRows(RodaUser user, final Class<T> classToReturn,
+    final Map<String, ? extends Collection<String>> rowUUIDsByTable)
+    throws org.roda.core.data.exceptions.GenericException, RequestNotValidException {
+    SolrUtils.checkRowBatchSize(rowUUIDsByTable);
+    final SolrQueryContext context = queryContext.withCaller("SolrManager.retrieveRows");
+
+    Map<String, List<TableCollection>> tablesByCollection = new LinkedHashMap<>();
+    for (String tableUUID : rowUUIDsByTable.keySet()) {
+      TableCollection table = getTableCollection(tableUUID);
+      List<TableCollection> tables = tablesByCollection.get(table.getName());
+      if (tables == null) {
+        tables = new ArrayList<>();
+        tablesByCollection.put(table.getName(), tables);
+      }
+      tables.add(table);
+    }
+
+    Map<String, List<T>> ret = new HashMap<>();
+    if (tablesByCollection.size() == 1) {
+      // no need to use other threads
+      for (List<TableCollection> tables : tablesByCollection.values()) {
+        ret.putAll(SolrUtils.retrieve(client, context, classToReturn, tables, rowUUIDsByTable));
+      }
+      return ret;
+    }
+
+    List<Future<Map<String, List<T>>>> futures = new ArrayList<>();
+    for (final List<TableCollection> tables : tablesByCollection.values()) {
+      futures.add(fanOutExecutor.submit(new Callable<Map<String, List<T>>>() {
+        @Override
+        public Map<String, List<T>> call() throws Exception {
+          return SolrUtils.retrieve(client, context, classToReturn, tables, rowUUIDsByTable);
+        }
+      }));
+    }
+
+    try {
+      for (Future<Map<String, List<T>>> future : futures) {
+        ret.putAll(getQueryResult(future));
+      }
+    } catch (org.roda.core.data.exceptions.GenericException | RuntimeException e) {
+      cancelAll(futures);
+      throw e;
+    }
+    return ret;
+  }
+
+  /**
+   * Retrieves a row along with its foreign key relations (see RowRelations).
+   *
+   * The relations are computed with one query per foreign key, run in
+   * parallel.
+   */
+  @Override
+  public ViewerRowWithRelations retrieveRowWithRelations(RodaUser user, String databaseUUID, String tableUUID,
+    String rowUUID) throws NotFoundException, org.roda.core.data.exceptions.GenericException {
+    CachedDatabase database = metadataCache.get(databaseUUID);
+    ViewerTable table = database.getTable(tableUUID);
+    if (table == null) {
+      throw new NotFoundException("Could not find table " + tableUUID);
+    }
+
+    ViewerRow row = SolrUtils.retrieve(client, ViewerRow.class, getTableCollection(tableUUID), rowUUID);
+
+    RowRelations relations = new RowRelations(database, table, row);
+    List<Future<IndexResult<ViewerRow>>> futures = new ArrayList<>();
+    for (int i = 0; i < relations.size(); i++) {
+      futures.add(submitRelationQuery(relations.getTableUUID(i), relations.getFilter(i), relations.getMaxRows(i)));
+    }
+
+    try {
+      for (int i = 0; i < relations.size(); i++) {
+        Future<IndexResult<ViewerRow>> future = futures.get(i);
+        if (future != null) {
+          relations.setResult(i, getQueryResult(future));
+        }
+      }
+    } catch (org.roda.core.data.exceptions.GenericException | RuntimeException e) {
+      cancelAll(futures);
+      throw e;
+    }
+
+    return new ViewerRowWithRelations(row, relations.getRelations());
+  }
+
+  /**
+   * @return the future result of the query, or null if the filter is null
+   *         (which means that no rows can be related)
+   */
+  private Future<IndexResult<ViewerRow>> submitRelationQuery(final String tableUUID, final Filter filter,
+    final int maxRows) {
+    if (filter == null) {
+      return null;
+    }
+
+    return fanOutExecutor.submit(new Callable<IndexResult<ViewerRow>>() {
+      @Override
+      public IndexResult<ViewerRow> call() throws Exception {
+        return SolrUtils.find(client, queryContext.withCaller("SolrManager.retrieveRowWithRelations"),
+          ViewerRow.class, getTableCollection(tableUUID), filter, null, new Sublist(0, maxRows));
+      }
+    });
+  }
+
+  /**
+   * Waits for a query submitted to the fan-out executor, unwrapping the
+   * exception it may have thrown
+   */
+  private static <R> R getQueryResult(Future<R> future) throws org.roda.core.data.exceptions.GenericException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new org.roda.core.data.exceptions.GenericException("Interrupted while waiting for query results", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof org.roda.core.data.exceptions.GenericException) {
+        throw (org.roda.core.data.exceptions.GenericException) e.getCause();
+      }
+      throw new org.roda.core.data.exceptions.GenericException("Could not query index", e.getCause());
+    }
+  }
+
+  /**
+   * Cancels the queries that are still running or waiting, when their results
+   * are no longer needed (e.g. because another query failed)
+   */
+  private static void cancelAll(Collection<? extends Future<?>> futures) {
+    for (Future<?> future : futures) {
+      if (future != null) {
+        future.cancel(true);
+      }
+    }
   }
 
+  @Override
   public void addSavedSearch(RodaUser user, SavedSearch savedSearch) throws NotFoundException,
     org.roda.core.data.exceptions.GenericException {
     try {
@@ -232,6 +748,7 @@ public class SolrManager {
     }
   }
 
+  @Override
   public void editSavedSearch(RodaUser user, String uuid, String name, String description) throws NotFoundException,
     org.roda.core.data.exceptions.GenericException {
     try {
@@ -256,6 +773,7 @@ public class SolrManager {
     }
   }
 
+  @Override
   public void deleteSavedSearch(RodaUser user, String uuid) throws NotFoundException,
     org.roda.core.data.exceptions.GenericException {
     try {
@@ -274,12 +792,13 @@ public class SolrManager {
     request.setCollectionName(ViewerSafeConstants.SOLR_INDEX_SEARCHES_COLLECTION_NAME);
     request.setConfigName(ViewerSafeConstants.SOLR_CONFIGSET_SEARCHES);
     request.setNumShards(1);
+    request.setReplicationFactor(settings.getReplicationFactor());
     try {
       NamedList<Object> response = client.request(request);
     } catch (SolrServerException | IOException e) {
       throw new ViewerException("Error creating collection " + ViewerSafeConstants.SOLR_INDEX_SEARCHES_COLLECTION_NAME,
         e);
-    } catch (HttpSolrClient.RemoteSolrException e) {
+    } catch (SolrException e) {
       if (e.getMessage().contains(
         "collection already exists: " + ViewerSafeConstants.SOLR_INDEX_SEARCHES_COLLECTION_NAME)) {
         LOGGER.info("collection " + ViewerSafeConstants.SOLR_INDEX_SEARCHES_COLLECTION_NAME + " already exists.");
@@ -321,6 +840,8 @@ public class SolrManager {
     long timeoutStart = System.currentTimeMillis();
     int tries = 0;
     boolean insertedAllDocuments;
+    // -1 leaves the documents invisible until the next commit
+    int rowsCommitWithin = settings.getCommitWithin() > 0 ? settings.getCommitWithin() : -1;
     do {
       UpdateResponse response = null;
       try {
@@ -329,7 +850,12 @@ public class SolrManager {
           List<SolrInputDocument> docs = docsByCollection.get(currentCollection);
           if (!docs.isEmpty()) {
             try {
-              response = client.add(currentCollection, docs);
+              // only rows are made visible during ingest. the database, schema
+              // and table documents are only published by commitAll, so the
+              // viewer never loads (and caches) the metadata of a database
+              // that is still being ingested
+              int commitWithin = isTableCollection(currentCollection) ? rowsCommitWithin : -1;
+              response = client.add(currentCollection, docs, commitWithin);
               if (response.getStatus() == 0) {
                 // LOGGER.info("~~ Inserted " + docs.size() +
                 // " into collection " + currentCollection);
@@ -341,8 +867,8 @@ public class SolrManager {
                 LOGGER.warn("Could not insert a document batch in collection " + currentCollection + ". Response: "
                   + response.toString());
               }
-            } catch (HttpSolrClient.RemoteSolrException e) {
-              if (e.getMessage().contains("<title>Error 404 Not Found</title>")) {
+            } catch (SolrException e) {
+              if (isCollectionNotFound(e)) {
                 // this means that the collection does not exist yet. retry
                 LOGGER.debug("Collection " + currentCollection + " does not exist (yet). Retrying (" + tries + ")");
               } else {
@@ -389,6 +915,11 @@ public class SolrManager {
     }
   }
 
+  private static boolean isTableCollection(String collection) {
+    return collection.startsWith(ViewerSafeConstants.SOLR_INDEX_ROW_COLLECTION_NAME_PREFIX)
+      || collection.equals(ViewerSafeConstants.SOLR_INDEX_SHARED_TABLE_COLLECTION_NAME);
+  }
+
   private void commitAndOptimize(String collection) throws ViewerException {
     // insert any pending documents before optimizing
     insertPendingDocuments();
@@ -433,8 +964,8 @@ public class SolrManager {
         } else {
           return;
         }
-      } catch (HttpSolrClient.RemoteSolrException e) {
-        if (e.getMessage().contains("<title>Error 404 Not Found</title>")) {
+      } catch (SolrException e) {
+        if (isCollectionNotFound(e)) {
           // this means that the collection does not exist yet. retry
           LOGGER.debug("Collection " + collection + " does not exist. Retrying (" + tries + ")");
         } else {
@@ -460,4 +991,14 @@ public class SolrManager {
     }
 
   }
+
+  /**
+   * @return true if the error means that the collection does not exist (yet),
+   *         either when talking to a single node or through ZooKeeper
+   */
+  private static boolean isCollectionNotFound(SolrException e) {
+    String message = e.getMessage();
+    return message != null
+      && (message.contains("<title>Error 404 Not Found</title>") || message.contains("Collection not found"));
+  }
 }
@@ -0,0 +1,56 @@
+package com.databasepreservation.visualization.utils;
+
+/**
+ * The settings of the searches made by a SolrManager: the time that Solr may
+ * spend in each search and where the slow searches are recorded. Each
+ * SolrManager has its own, so several managers (e.g. connected to different
+ * Solr servers) do not share them.
+ *
+ * It also identifies the operation making the search (see withCaller), which
+ * is shown in the slow query log.
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+public final class SolrQueryContext {
+  private final int timeAllowed;
+  private final SlowQueryLog slowQueryLog;
+  private final String caller;
+
+  /**
+   * @param timeAllowed
+   *          the maximum time (in milliseconds) that Solr may spend in each
+   *          search, or 0 for no limit
+   * @param slowQueryLog
+   *          where the searches that take too long are recorded
+   */
+  public SolrQueryContext(int timeAllowed, SlowQueryLog slowQueryLog) {
+    this(timeAllowed, slowQueryLog, null);
+  }
+
+  private SolrQueryContext(int timeAllowed, SlowQueryLog slowQueryLog, String caller) {
+    this.timeAllowed = timeAllowed;
+    this.slowQueryLog = slowQueryLog;
+    this.caller = caller;
+  }
+
+  /**
+   * @param caller
+   *          the operation making the searches (e.g. SolrManager.findRows)
+   * @return a context with the same settings, for searches made by the caller
+   */
+  public SolrQueryContext withCaller(String caller) {
+    return new SolrQueryContext(timeAllowed, slowQueryLog, caller);
+  }
+
+  public int getTimeAllowed() {
+    return timeAllowed;
+  }
+
+  public SlowQueryLog getSlowQueryLog() {
+    return slowQueryLog;
+  }
+
+  public String getCaller() {
+    return caller;
+  }
+}
@@ -9,18 +9,26 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
+import java.math.BigDecimal;
 import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
@@ -30,13 +38,22 @@ import org.apache.solr.client.solrj.SolrClient;
 import org.apache.solr.client.solrj.SolrQuery;
 import org.apache.solr.client.solrj.SolrServerException;
 import org.apache.solr.client.solrj.impl.CloudSolrClient;
+import org.apache.solr.client.solrj.impl.HttpSolrClient;
 import org.apache.solr.client.solrj.impl.InputStreamResponseParser;
+import org.apache.solr.client.solrj.io.stream.CloudSolrStream;
+import org.apache.solr.client.solrj.io.stream.SolrStream;
+import org.apache.solr.client.solrj.io.stream.TupleStream;
 import org.apache.solr.client.solrj.request.QueryRequest;
 import org.apache.solr.client.solrj.response.FacetField;
 import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.client.solrj.util.ClientUtils;
 import org.apache.solr.common.SolrDocument;
 import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.CursorMarkParams;
 import org.apache.solr.common.params.FacetParams;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.util.NamedList;
 import org.roda.core.data.adapter.facet.FacetParameter;
 import org.roda.core.data.adapter.facet.Facets;
 import org.roda.core.data.adapter.facet.RangeFacetParameter;
@@ -72,11 +89,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.databasepreservation.utils.FileUtils;
+import com.databasepreservation.visualization.client.NestedFacetParameter;
 import com.databasepreservation.visualization.client.SavedSearch;
+import com.databasepreservation.visualization.client.StatisticsFacetParameter;
 import com.databasepreservation.visualization.client.ViewerStructure.ViewerDatabase;
 import com.databasepreservation.visualization.client.ViewerStructure.ViewerRow;
 import com.databasepreservation.visualization.exceptions.ViewerException;
 import com.databasepreservation.visualization.shared.ViewerSafeConstants;
+import com.databasepreservation.visualization.transformers.JsonTransformer;
 import com.databasepreservation.visualization.transformers.SolrTransformer;
 
 /**
@@ -84,6 +104,33 @@ import com.databasepreservation.visualization.transformers.SolrTransformer;
  */
 public class SolrUtils {
   private static final Logger LOGGER = LoggerFactory.getLogger(SolrUtils.class);
+  // all collections use the same uniqueKey
+  private static final String UNIQUE_KEY_FIELD = "id";
+  private static final int RETRIEVE_DOCUMENTS_PAGE_SIZE = 1000;
+  private static final String JSON_FACET_PARAM = "json.facet";
+  static final String EXPORT_HANDLER = "/export";
+  // suffixes of the dynamic fields that have docValues only copies in the table
+  // configset (the copy name ends in SOLR_DYN_DOC_VALUES)
+  private static final List<String> DOC_VALUES_SUFFIXES = Arrays.asList(ViewerSafeConstants.SOLR_DYN_BOOLEAN,
+    ViewerSafeConstants.SOLR_DYN_STRING, ViewerSafeConstants.SOLR_DYN_TDATE, ViewerSafeConstants.SOLR_DYN_TDOUBLE,
+    ViewerSafeConstants.SOLR_DYN_TLONG, ViewerSafeConstants.SOLR_DYN_TINT, ViewerSafeConstants.SOLR_DYN_TFLOAT);
+  private static final String JSON_FACET_RESPONSE_KEY = "facets";
+  // suffixes of the date dynamic fields, whose range facets use solr date math
+  private static final List<String> DATE_SUFFIXES = Arrays.asList(ViewerSafeConstants.SOLR_DYN_DATE,
+    ViewerSafeConstants.SOLR_DYN_DATES, ViewerSafeConstants.SOLR_DYN_TDATE, ViewerSafeConstants.SOLR_DYN_TDATES);
+  private static final String PARTIAL_RESULTS_KEY = "partialResults";
+
+  private static final String METRICS_TABLE_COLLECTION_LABEL = "table";
+  private static final Metrics.Family<Metrics.Histogram> SOLR_QUERY_DURATION = Metrics.histogram(
+    "dbvtk_solr_query_duration_seconds", "Time spent waiting for Solr search responses, as seen by the viewer",
+    Metrics.LATENCY_BUCKETS, "collection");
+  private static final Metrics.Family<Metrics.Histogram> SOLR_QUERY_QTIME = Metrics.histogram(
+    "dbvtk_solr_query_qtime_seconds", "Time spent by Solr processing searches (QTime)", Metrics.LATENCY_BUCKETS,
+    "collection");
+  private static final Metrics.Family<Metrics.Counter> SOLR_QUERY_ERRORS = Metrics.counter(
+    "dbvtk_solr_query_errors_total", "Solr searches that failed", "collection");
+  private static final Metrics.Family<Metrics.Counter> SOLR_QUERY_PARTIAL_RESULTS = Metrics.counter(
+    "dbvtk_solr_query_partial_results_total", "Solr searches that exceeded the time allowed", "collection");
 
   /** Private empty constructor */
   private SolrUtils() {
@@ -94,6 +141,57 @@ public class SolrUtils {
     return UUID.randomUUID().toString();
   }
 
+  /**
+   * Sets the maximum time that Solr may spend in the search (timeAllowed)
+   */
+  private static void setTimeAllowed(SolrQuery query, SolrQueryContext context) {
+    if (context.getTimeAllowed() > 0) {
+      query.setTimeAllowed(context.getTimeAllowed());
+    }
+  }
+
+  /**
+   * Runs a search, recording its latency and recording it in the slow query log
+   * if it takes too long
+   *
+   * @throws GenericException
+   *           if the search exceeded the time allowed, and so Solr only
+   *           returned part of the results
+   */
+  private static QueryResponse query(SolrClient index, SolrQueryContext context, String collection,
+    String tableUUID, SolrQuery query) throws SolrServerException, IOException, GenericException {
+    // table collections are grouped, there is one per table
+    String collectionLabel = tableUUID != null ? METRICS_TABLE_COLLECTION_LABEL : collection;
+    long start = System.nanoTime();
+    QueryResponse response;
+    try {
+      response = index.query(collection, query);
+    } catch (SolrServerException | IOException | RuntimeException e) {
+      SOLR_QUERY_ERRORS.labels(collectionLabel).inc();
+      throw e;
+    }
+    long elapsedNanos = System.nanoTime() - start;
+    SOLR_QUERY_DURATION.labels(collectionLabel).observeNanos(elapsedNanos);
+    SOLR_QUERY_QTIME.labels(collectionLabel).observeMillis(response.getQTime());
+
+    context.getSlowQueryLog().record(context.getCaller(), collection, tableUUID, query, response,
+      TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+
+    if (hasPartialResults(response)) {
+      // partial results would be shown (and counted) as if they were complete
+      SOLR_QUERY_PARTIAL_RESULTS.labels(collectionLabel).inc();
+      LOGGER.warn("Search in {} exceeded the time budget of {} ms: {}", collection, query.getTimeAllowed(), query);
+      throw new GenericException("The search took longer than " + query.getTimeAllowed()
+        + " ms, please use a more specific search");
+    }
+    return response;
+  }
+
+  private static boolean hasPartialResults(QueryResponse response) {
+    return response.getResponseHeader() != null
+      && Boolean.TRUE.equals(response.getResponseHeader().get(PARTIAL_RESULTS_KEY));
+  }
+
   public static String getTableCollectionName(String tableUUID) {
     return ViewerSafeConstants.SOLR_INDEX_ROW_COLLECTION_NAME_PREFIX + tableUUID;
   }
@@ -215,7 +313,7 @@ public class SolrUtils {
   }
 
   // TODO: Handle Viewer datatypes
-  private static <T> T solrDocumentTo(Class<T> resultClass, SolrDocument doc) throws GenericException {
+  static <T> T solrDocumentTo(Class<T> resultClass, SolrDocument doc) throws GenericException {
     T ret = null;
     try {
       if (resultClass.equals(ViewerDatabase.class)) {
@@ -258,13 +356,15 @@ public class SolrUtils {
     return indexName;
   }
 
-  public static <T extends Serializable> IndexResult<T> find(SolrClient index, Class<T> classToRetrieve, Filter filter,
-    Sorter sorter, Sublist sublist) throws GenericException, RequestNotValidException {
-    return find(index, classToRetrieve, filter, sorter, sublist, null);
+  public static <T extends Serializable> IndexResult<T> find(SolrClient index, SolrQueryContext context,
+    Class<T> classToRetrieve, Filter filter, Sorter sorter, Sublist sublist) throws GenericException,
+    RequestNotValidException {
+    return find(index, context, classToRetrieve, filter, sorter, sublist, null);
   }
 
-  public static <T extends Serializable> IndexResult<T> find(SolrClient index, Class<T> classToRetrieve, Filter filter,
-    Sorter sorter, Sublist sublist, Facets facets) throws GenericException, RequestNotValidException {
+  public static <T extends Serializable> IndexResult<T> find(SolrClient index, SolrQueryContext context,
+    Class<T> classToRetrieve, Filter filter, Sorter sorter, Sublist sublist, Facets facets) throws GenericException,
+    RequestNotValidException {
     IndexResult<T> ret;
     SolrQuery query = new SolrQuery();
     query.setQuery(parseFilter(filter));
@@ -272,9 +372,11 @@ public class SolrUtils {
     query.setStart(sublist.getFirstElementIndex());
     query.setRows(sublist.getMaximumElementCount());
     parseAndConfigureFacets(facets, query);
+    addDocumentTypeFilterQuery(query, classToRetrieve);
+    setTimeAllowed(query, context);
 
     try {
-      QueryResponse response = index.query(getIndexName(classToRetrieve), query);
+      QueryResponse response = query(index, context, getIndexName(classToRetrieve), null, query);
       ret = queryResponseToIndexResult(response, classToRetrieve, facets);
     } catch (SolrServerException | IOException e) {
       throw new GenericException("Could not query index", e);
@@ -283,9 +385,9 @@ public class SolrUtils {
     return ret;
   }
 
-  public static <T extends Serializable> IndexResult<T> find(SolrClient index, Class<T> classToRetrieve, Filter filter,
-    Sorter sorter, Sublist sublist, Facets facets, RodaUser user, boolean showInactive) throws GenericException,
-    RequestNotValidException {
+  public static <T extends Serializable> IndexResult<T> find(SolrClient index, SolrQueryContext context,
+    Class<T> classToRetrieve, Filter filter, Sorter sorter, Sublist sublist, Facets facets, RodaUser user,
+    boolean showInactive) throws GenericException, RequestNotValidException {
     IndexResult<T> ret;
     SolrQuery query = new SolrQuery();
     query.setQuery(parseFilter(filter));
@@ -296,9 +398,11 @@ public class SolrUtils {
     if (hasPermissionFilters(classToRetrieve)) {
       query.addFilterQuery(getFilterQueries(user, showInactive));
     }
+    addDocumentTypeFilterQuery(query, classToRetrieve);
+    setTimeAllowed(query, context);
 
     try {
-      QueryResponse response = index.query(getIndexName(classToRetrieve), query);
+      QueryResponse response = query(index, context, getIndexName(classToRetrieve), null, query);
       ret = queryResponseToIndexResult(response, classToRetrieve, facets);
     } catch (SolrServerException | IOException e) {
       throw new GenericException("Could not query index", e);
@@ -307,25 +411,55 @@ public class SolrUtils {
     return ret;
   }
 
-  public static <T extends Serializable> IndexResult<T> find(SolrClient index, Class<T> classToRetrieve,
-    String tableUUID, Filter filter, Sorter sorter, Sublist sublist) throws GenericException, RequestNotValidException {
-    return find(index, classToRetrieve, tableUUID, filter, sorter, sublist, null);
+  /**
+   * The databases collection also contains the schema and table metadata
+   * documents, which must not be returned when searching for databases
+   */
+  private static <T> void addDocumentTypeFilterQuery(SolrQuery query, Class<T> classToRetrieve) {
+    if (ViewerDatabase.class.equals(classToRetrieve)) {
+      query.addFilterQuery("-" + ViewerSafeConstants.SOLR_DATABASE_DOCUMENT_TYPE + ":("
+        + ViewerSafeConstants.SOLR_DATABASE_DOCUMENT_TYPE_SCHEMA + " OR "
+        + ViewerSafeConstants.SOLR_DATABASE_DOCUMENT_TYPE_TABLE + ")");
+    }
   }
 
-  public static <T extends Serializable> IndexResult<T> find(SolrClient index, Class<T> classToRetrieve,
-    String tableUUID, Filter filter, Sorter sorter, Sublist sublist, Facets facets) throws GenericException,
-    RequestNotValidException {
+  public static <T extends Serializable> IndexResult<T> find(SolrClient index, SolrQueryContext context,
+    Class<T> classToRetrieve, TableCollection table, Filter filter, Sorter sorter, Sublist sublist)
+    throws GenericException, RequestNotValidException {
+    return find(index, context, classToRetrieve, table, filter, sorter, sublist, null);
+  }
+
+  public static <T extends Serializable> IndexResult<T> find(SolrClient index, SolrQueryContext context,
+    Class<T> classToRetrieve, TableCollection table, Filter filter, Sorter sorter, Sublist sublist, Facets facets)
+    throws GenericException, RequestNotValidException {
+    return find(index, context, classToRetrieve, table, filter, sorter, sublist, facets, null);
+  }
+
+  /**
+   * Finds rows in a table collection, optionally restricting the stored fields
+   * that are returned for each row
+   *
+   * @param fieldsToReturn
+   *          the solr names of the fields to load for each row, or null to load
+   *          all fields. The row id is always returned.
+   */
+  public static <T extends Serializable> IndexResult<T> find(SolrClient index, SolrQueryContext context,
+    Class<T> classToRetrieve, TableCollection table, Filter filter, Sorter sorter, Sublist sublist, Facets facets,
+    List<String> fieldsToReturn) throws GenericException, RequestNotValidException {
     IndexResult<T> ret;
     SolrQuery query = new SolrQuery();
     query.setQuery(parseFilter(filter));
     query.setSorts(parseSorter(sorter));
     query.setStart(sublist.getFirstElementIndex());
     query.setRows(sublist.getMaximumElementCount());
+    setQueryFields(query, fieldsToReturn);
+    table.addFilterQuery(query);
+    setTimeAllowed(query, context);
 
     parseAndConfigureFacets(facets, query);
 
     try {
-      QueryResponse response = index.query(getTableCollectionName(tableUUID), query);
+      QueryResponse response = query(index, context, table.getName(), table.getTableUUID(), query);
       ret = queryResponseToIndexResult(response, classToRetrieve, facets);
     } catch (SolrServerException | IOException e) {
       throw new GenericException("Could not query index", e);
@@ -334,10 +468,11 @@ public class SolrUtils {
     return ret;
   }
 
-  public static InputStream findCSV(SolrClient index, String collection, Filter filter, Sorter sorter, Sublist sublist,
-    List<String> fields) throws GenericException, RequestNotValidException {
+  public static InputStream findCSV(SolrClient index, TableCollection table, Filter filter, Sorter sorter,
+    Sublist sublist, List<String> fields) throws GenericException, RequestNotValidException {
     SolrQuery query = new SolrQuery();
     query.setQuery(parseFilter(filter));
+    table.addFilterQuery(query);
     query.setSorts(parseSorter(sorter));
     if (sublist != null) {
       query.setStart(sublist.getFirstElementIndex());
@@ -351,7 +486,7 @@ public class SolrUtils {
     try {
       QueryRequest queryRequest = new QueryRequest(query);
       queryRequest.setResponseParser(new InputStreamResponseParser("csv"));
-      QueryResponse response = queryRequest.process(index, collection);
+      QueryResponse response = queryRequest.process(index, table.getName());
 
       Object stream = response.getResponse().get("stream");
       if (stream instanceof InputStream) {
@@ -365,6 +500,169 @@ public class SolrUtils {
     }
   }
 
+  /**
+   * Streams all the documents in a collection that match the filter. The
+   * /export handler is used if the table was ingested with docValues only
+   * copies of its fields and all fields (returned and sorted) have one,
+   * otherwise the documents are fetched in pages using cursorMark. In both
+   * cases the memory used does not depend on the number of documents.
+   *
+   * The returned stream must be closed after being used.
+   */
+  public static SolrDocumentStream streamDocuments(SolrClient index, TableCollection table, Filter filter,
+    Sorter sorter, List<String> fields) throws GenericException, RequestNotValidException {
+    return streamDocuments(index, table, filter, sorter, null, fields);
+  }
+
+  /**
+   * Streams the documents in a collection that match the filter and are inside
+   * the sublist. A null sublist, or one that starts at 0 and has no limit,
+   * selects all documents.
+   *
+   * The returned stream must be closed after being used.
+   */
+  public static SolrDocumentStream streamDocuments(SolrClient index, TableCollection table, Filter filter,
+    Sorter sorter, Sublist sublist, List<String> fields) throws GenericException, RequestNotValidException {
+    String collection = table.getName();
+    SolrQuery query = new SolrQuery();
+    query.setQuery(parseFilter(filter));
+    table.addFilterQuery(query);
+    if (fields != null) {
+      query.setFields(fields.toArray(new String[0]));
+    }
+
+    // cursorMark needs the unique key as a tie breaker, and it also makes the
+    // order of exported documents deterministic
+    List<SolrQuery.SortClause> sorts = parseSorter(sorter);
+    boolean sortedByUniqueKey = false;
+    List<String> sortFields = new ArrayList<>();
+    for (SolrQuery.SortClause sort : sorts) {
+      sortFields.add(sort.getItem());
+      sortedByUniqueKey |= UNIQUE_KEY_FIELD.equals(sort.getItem());
+    }
+    if (!sortedByUniqueKey) {
+      sorts.add(SolrQuery.SortClause.asc(UNIQUE_KEY_FIELD));
+    }
+    query.setSorts(sorts);
+
+    if (sublist != null
+      && (sublist.getFirstElementIndex() != 0 || sublist.getMaximumElementCount() != Integer.MAX_VALUE)) {
+      LOGGER.debug("Streaming documents {} from {} using pages: {}", sublist, collection, query);
+      return new SolrDocumentStream.PagedStream(index, collection, query, fields, sublist.getFirstElementIndex(),
+        sublist.getMaximumElementCount(), RETRIEVE_DOCUMENTS_PAGE_SIZE);
+    }
+
+    if (index instanceof CoalescingSolrClient) {
+      // export streams are never coalesced
+      index = ((CoalescingSolrClient) index).getDelegate();
+    }
+
+    Map<String, String> docValuesFields = table.hasDocValues() && fields != null && !fields.isEmpty()
+      ? getDocValuesFields(fields, sorts) : null;
+    if (docValuesFields != null) {
+      // the export handler reads the docValues only copies, which are renamed
+      // back to the requested fields in each document
+      SolrQuery exportQuery = query.getCopy();
+      List<String> exportFields = new ArrayList<>();
+      for (String field : fields) {
+        exportFields.add(docValuesFields.get(field));
+      }
+      exportQuery.setFields(exportFields.toArray(new String[0]));
+      List<SolrQuery.SortClause> exportSorts = new ArrayList<>();
+      for (SolrQuery.SortClause sort : sorts) {
+        exportSorts.add(new SolrQuery.SortClause(docValuesFields.get(sort.getItem()), sort.getOrder()));
+      }
+      exportQuery.setSorts(exportSorts);
+
+      Map<String, String> params = SolrDocumentStream.ExportHandlerStream.getExportParams(exportQuery);
+      TupleStream tupleStream = null;
+      if (index instanceof HttpSolrClient) {
+        tupleStream = new SolrStream(((HttpSolrClient) index).getBaseURL() + "/" + collection, params);
+      } else if (index instanceof CloudSolrClient && fields.containsAll(sortFields)
+        && fields.contains(UNIQUE_KEY_FIELD)) {
+        // the shard streams are merged using the sort fields, so they must be
+        // returned in each document
+        try {
+          tupleStream = new CloudSolrStream(((CloudSolrClient) index).getZkHost(), collection, params);
+        } catch (IOException e) {
+          LOGGER.warn("Could not create the export stream for {}", collection, e);
+        }
+      }
+
+      if (tupleStream != null) {
+        Map<String, String> fieldNames = new HashMap<>();
+        for (Map.Entry<String, String> entry : docValuesFields.entrySet()) {
+          fieldNames.put(entry.getValue(), entry.getKey());
+        }
+        try {
+          LOGGER.debug("Streaming documents from {} using the export handler: {}", collection, exportQuery);
+          return new SolrDocumentStream.ExportHandlerStream(tupleStream, fields, fieldNames);
+        } catch (GenericException e) {
+          LOGGER.warn("Could not use the export handler for {}, using cursorMark instead", collection, e);
+        }
+      }
+    }
+
+    LOGGER.debug("Streaming documents from {} using cursorMark: {}", collection, query);
+    return new SolrDocumentStream.CursorStream(index, collection, query, fields, RETRIEVE_DOCUMENTS_PAGE_SIZE);
+  }
+
+  /**
+   * @return the docValues only field used by the /export handler for each of
+   *         the returned and sorted fields, or null if some field has none
+   */
+  private static Map<String, String> getDocValuesFields(List<String> fields, List<SolrQuery.SortClause> sorts) {
+    Map<String, String> docValuesFields = new HashMap<>();
+    List<String> allFields = new ArrayList<>(fields);
+    for (SolrQuery.SortClause sort : sorts) {
+      allFields.add(sort.getItem());
+    }
+    for (String field : allFields) {
+      String docValuesField = getDocValuesField(field);
+      if (docValuesField == null) {
+        return null;
+      }
+      docValuesFields.put(field, docValuesField);
+    }
+    return docValuesFields;
+  }
+
+  /**
+   * @return the field with the docValues of a field in the table configset, or
+   *         null if it has none
+   */
+  static String getDocValuesField(String field) {
+    if (field.endsWith(ViewerSafeConstants.SOLR_DYN_SORT)) {
+      // sort keys only have docValues
+      return field;
+    }
+    boolean docValues = UNIQUE_KEY_FIELD.equals(field);
+    for (String suffix : DOC_VALUES_SUFFIXES) {
+      docValues |= field.endsWith(suffix);
+    }
+    return docValues ? field + ViewerSafeConstants.SOLR_DYN_DOC_VALUES : null;
+  }
+
+  /**
+   * Sets the field list (fl) of the query, making sure the row id is always
+   * part of it. Does nothing if the list of fields is null or empty, so that
+   * all stored fields are returned.
+   *
+   * @param query
+   *          the query to configure
+   * @param fieldsToReturn
+   *          the solr names of the fields to return
+   */
+  private static void setQueryFields(SolrQuery query, List<String> fieldsToReturn) {
+    if (fieldsToReturn != null && !fieldsToReturn.isEmpty()) {
+      List<String> fields = new ArrayList<>(fieldsToReturn);
+      if (!fields.contains(ViewerSafeConstants.SOLR_ROW_ID)) {
+        fields.add(ViewerSafeConstants.SOLR_ROW_ID);
+      }
+      query.setFields(fields.toArray(new String[fields.size()]));
+    }
+  }
+
   public static List<SolrQuery.SortClause> parseSorter(Sorter sorter) {
     List<SolrQuery.SortClause> ret = new ArrayList<SolrQuery.SortClause>();
     if (sorter != null) {
@@ -383,19 +681,33 @@ public class SolrUtils {
         query.addFacetQuery(facets.getQuery());
       }
       StringBuilder filterQuery = new StringBuilder();
+      Map<String, Object> jsonFacets = new LinkedHashMap<>();
       for (Map.Entry<String, FacetParameter> parameter : facets.getParameters().entrySet()) {
         FacetParameter facetParameter = parameter.getValue();
 
-        if (facetParameter instanceof SimpleFacetParameter) {
+        if (facetParameter instanceof NestedFacetParameter) {
+          jsonFacets.put(facetParameter.getName(), toJsonFacet(facetParameter));
+          appendValuesUsingOROperator(filterQuery, facetParameter.getName(), facetParameter.getValues());
+        } else if (facetParameter instanceof SimpleFacetParameter) {
           setQueryFacetParameter(query, (SimpleFacetParameter) facetParameter);
           appendValuesUsingOROperator(filterQuery, facetParameter.getName(),
             ((SimpleFacetParameter) facetParameter).getValues());
         } else if (facetParameter instanceof RangeFacetParameter) {
-          LOGGER.error("Unsupported facet parameter class: {}", facetParameter.getClass().getName());
+          jsonFacets.put(facetParameter.getName(), toJsonFacet(facetParameter));
+          appendRangeFacetValues(filterQuery, (RangeFacetParameter) facetParameter);
+        } else if (facetParameter instanceof StatisticsFacetParameter) {
+          putStatisticsJsonFacets(jsonFacets, (StatisticsFacetParameter) facetParameter);
         } else {
           LOGGER.error("Unsupported facet parameter class: {}", facetParameter.getClass().getName());
         }
       }
+      if (!jsonFacets.isEmpty()) {
+        try {
+          query.set(JSON_FACET_PARAM, JsonTransformer.getJsonFromObject(jsonFacets));
+        } catch (ViewerException e) {
+          LOGGER.error("Could not create JSON facet request, ignoring range, nested and statistics facets", e);
+        }
+      }
       if (filterQuery.length() > 0) {
         query.addFilterQuery(filterQuery.toString());
         LOGGER.trace("Query after defining facets: " + query.toString());
@@ -403,6 +715,103 @@ public class SolrUtils {
     }
   }
 
+  /**
+   * Converts a range or nested facet parameter to its JSON Facet API
+   * representation
+   */
+  static Map<String, Object> toJsonFacet(FacetParameter facetParameter) {
+    Map<String, Object> facet = new LinkedHashMap<>();
+    facet.put("field", facetParameter.getName());
+    facet.put("mincount", facetParameter.getMinCount());
+
+    if (facetParameter instanceof RangeFacetParameter) {
+      RangeFacetParameter rangeParameter = (RangeFacetParameter) facetParameter;
+      facet.put("type", "range");
+      facet.put("start", rangeParameter.getStart());
+      facet.put("end", rangeParameter.getEnd());
+      facet.put("gap", rangeParameter.getGap());
+    } else if (facetParameter instanceof SimpleFacetParameter) {
+      facet.put("type", "terms");
+      facet.put("limit", ((SimpleFacetParameter) facetParameter).getLimit());
+      facet.put("sort", "index asc");
+
+      if (facetParameter instanceof NestedFacetParameter) {
+        Map<String, Object> subFacets = new LinkedHashMap<>();
+        for (FacetParameter subFacet : ((NestedFacetParameter) facetParameter).getSubFacets()) {
+          if (subFacet instanceof StatisticsFacetParameter) {
+            putStatisticsJsonFacets(subFacets, (StatisticsFacetParameter) subFacet);
+          } else if (subFacet instanceof SimpleFacetParameter || subFacet instanceof RangeFacetParameter) {
+            subFacets.put(subFacet.getName(), toJsonFacet(subFacet));
+          } else {
+            LOGGER.error("Unsupported sub facet parameter class: {}", subFacet.getClass().getName());
+          }
+        }
+        if (!subFacets.isEmpty()) {
+          facet.put("facet", subFacets);
+        }
+      }
+    }
+    return facet;
+  }
+
+  private static void putStatisticsJsonFacets(Map<String, Object> jsonFacets, StatisticsFacetParameter facetParameter) {
+    for (String function : facetParameter.getFunctions()) {
+      String statistic = getStatisticKey(facetParameter.getName(), function);
+      jsonFacets.put(statistic, statistic);
+    }
+  }
+
+  private static String getStatisticKey(String field, String function) {
+    return function + "(" + field + ")";
+  }
+
+  /**
+   * Filters by the selected range facet values. Each value is the start of a
+   * bucket, so it is converted to the [start TO start+gap} interval
+   */
+  static void appendRangeFacetValues(StringBuilder ret, RangeFacetParameter facetParameter) {
+    List<String> values = facetParameter.getValues();
+    if (!values.isEmpty()) {
+      appendANDOperator(ret, true);
+
+      String gap = facetParameter.getGap();
+      // numeric gaps may also have a sign (e.g. +10), so the field type decides
+      boolean dateField = isDateField(facetParameter.getName());
+
+      ret.append("(");
+      for (int i = 0; i < values.size(); i++) {
+        if (i != 0) {
+          ret.append(" OR ");
+        }
+        String start = values.get(i);
+        ret.append("(").append(facetParameter.getName()).append(":[");
+        if (dateField) {
+          // use solr date math to compute the end of the bucket
+          ret.append("\"").append(start).append("\" TO \"").append(start).append(gap).append("\"");
+        } else {
+          try {
+            BigDecimal end = new BigDecimal(start).add(new BigDecimal(gap));
+            ret.append(start).append(" TO ").append(end.toPlainString());
+          } catch (NumberFormatException e) {
+            LOGGER.error("Could not compute the end of range facet value {} with gap {}", start, gap, e);
+            ret.append(start).append(" TO *");
+          }
+        }
+        ret.append("})");
+      }
+      ret.append(")");
+    }
+  }
+
+  private static boolean isDateField(String field) {
+    for (String suffix : DATE_SUFFIXES) {
+      if (field.endsWith(suffix)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   private static void setQueryFacetParameter(SolrQuery query, SimpleFacetParameter facetParameter) {
     query.addFacetField(facetParameter.getName());
     if (facetParameter.getMinCount() != FacetParameter.DEFAULT_MIN_COUNT) {
@@ -449,6 +858,7 @@ public class SolrUtils {
     Class<T> responseClass, List<String> columnNames, Facets facets) throws GenericException {
     final SolrDocumentList docList = response.getResults();
     final List<FacetFieldResult> facetResults = processFacetFields(facets, response.getFacetFields());
+    facetResults.addAll(processJsonFacets(facets, response));
     final long offset = docList.getStart();
     final long limit = docList.size();
     final long totalCount = docList.getNumFound();
@@ -481,19 +891,99 @@ public class SolrUtils {
     return ret;
   }
 
-  public static <T extends Serializable> Long count(SolrClient index, Class<T> classToRetrieve, Filter filter)
-    throws GenericException, RequestNotValidException {
-    return find(index, classToRetrieve, filter, null, new Sublist(0, 0)).getTotalCount();
+  /**
+   * Converts the results of the facets requested using the JSON Facet API
+   * (range, nested and statistics facets)
+   */
+  static List<FacetFieldResult> processJsonFacets(Facets facets, QueryResponse response) {
+    List<FacetFieldResult> ret = new ArrayList<>();
+    Object jsonFacets = response.getResponse().get(JSON_FACET_RESPONSE_KEY);
+    if (facets != null && jsonFacets instanceof NamedList) {
+      for (FacetParameter facetParameter : facets.getParameters().values()) {
+        if (facetParameter instanceof RangeFacetParameter || facetParameter instanceof NestedFacetParameter
+          || facetParameter instanceof StatisticsFacetParameter) {
+          processJsonFacet(ret, facetParameter.getName(), facetParameter, (NamedList<?>) jsonFacets,
+            facetParameter.getValues());
+        }
+      }
+    }
+    return ret;
   }
 
-  public static <T extends Serializable> Long count(SolrClient index, Class<T> classToRetrieve, Filter filter,
-    RodaUser user, boolean showInactive) throws GenericException, RequestNotValidException {
-    return find(index, classToRetrieve, filter, null, new Sublist(0, 0), null, user, showInactive).getTotalCount();
+  private static void processJsonFacet(List<FacetFieldResult> ret, String resultName, FacetParameter facetParameter,
+    NamedList<?> parent, List<String> selectedValues) {
+    if (facetParameter instanceof StatisticsFacetParameter) {
+      long count = getLong(parent.get("count"));
+      FacetFieldResult facetResult = new FacetFieldResult(resultName, count, selectedValues);
+      for (String function : ((StatisticsFacetParameter) facetParameter).getFunctions()) {
+        Object value = parent.get(getStatisticKey(facetParameter.getName(), function));
+        if (value != null) {
+          facetResult.addFacetValue(function, getJsonFacetValue(value), count);
+        }
+      }
+      ret.add(facetResult);
+    } else {
+      Object facet = parent.get(facetParameter.getName());
+      if (!(facet instanceof NamedList)) {
+        LOGGER.debug("No JSON facet results for {}", resultName);
+        return;
+      }
+
+      List<?> buckets = (List<?>) ((NamedList<?>) facet).get("buckets");
+      if (buckets == null) {
+        buckets = Collections.emptyList();
+      }
+      FacetFieldResult facetResult = new FacetFieldResult(resultName, buckets.size(), selectedValues);
+      ret.add(facetResult);
+
+      for (Object bucketObject : buckets) {
+        NamedList<?> bucket = (NamedList<?>) bucketObject;
+        String value = getJsonFacetValue(bucket.get("val"));
+        facetResult.addFacetValue(value, value, getLong(bucket.get("count")));
+
+        if (facetParameter instanceof NestedFacetParameter) {
+          for (FacetParameter subFacet : ((NestedFacetParameter) facetParameter).getSubFacets()) {
+            String subResultName = resultName + NestedFacetParameter.PATH_SEPARATOR + value
+              + NestedFacetParameter.PATH_SEPARATOR + subFacet.getName();
+            processJsonFacet(ret, subResultName, subFacet, bucket, subFacet.getValues());
+          }
+        }
+      }
+    }
   }
 
-  public static <T extends Serializable> Long count(SolrClient index, Class<T> classToRetrieve, String tableUUID,
-    Filter filter) throws GenericException, RequestNotValidException {
-    return find(index, classToRetrieve, tableUUID, filter, null, new Sublist(0, 0)).getTotalCount();
+  private static String getJsonFacetValue(Object value) {
+    if (value instanceof Date) {
+      return ((Date) value).toInstant().toString();
+    } else {
+      return String.valueOf(value);
+    }
+  }
+
+  private static long getLong(Object value) {
+    if (value instanceof Number) {
+      return ((Number) value).longValue();
+    } else {
+      return 0L;
+    }
+  }
+
+  public static <T extends Serializable> Long count(SolrClient index, SolrQueryContext context,
+    Class<T> classToRetrieve, Filter filter) throws GenericException, RequestNotValidException {
+    return find(index, context, classToRetrieve, filter, null, new Sublist(0, 0)).getTotalCount();
+  }
+
+  public static <T extends Serializable> Long count(SolrClient index, SolrQueryContext context,
+    Class<T> classToRetrieve, Filter filter, RodaUser user, boolean showInactive) throws GenericException,
+    RequestNotValidException {
+    return find(index, context, classToRetrieve, filter, null, new Sublist(0, 0), null, user, showInactive)
+      .getTotalCount();
+  }
+
+  public static <T extends Serializable> Long count(SolrClient index, SolrQueryContext context,
+    Class<T> classToRetrieve, TableCollection table, Filter filter) throws GenericException,
+    RequestNotValidException {
+    return find(index, context, classToRetrieve, table, filter, null, new Sublist(0, 0)).getTotalCount();
   }
 
   public static <T> T retrieve(SolrClient index, Class<T> classToRetrieve, String id) throws NotFoundException,
@@ -512,11 +1002,118 @@ public class SolrUtils {
     return ret;
   }
 
-  public static <T> T retrieve(SolrClient index, Class<T> classToRetrieve, String tableUUID, String rowUUID)
+  /**
+   * Retrieves a raw document from a collection
+   *
+   * @param index
+   *          the solr client
+   * @param collection
+   *          the collection containing the document
+   * @param id
+   *          the document id
+   * @return the document
+   * @throws NotFoundException
+   *           if the document does not exist
+   */
+  public static SolrDocument retrieveDocument(SolrClient index, String collection, String id)
+    throws NotFoundException, GenericException {
+    return retrieveDocument(index, collection, id, null);
+  }
+
+  /**
+   * Retrieves some fields of a raw document from a collection
+   *
+   * @param index
+   *          the solr client
+   * @param collection
+   *          the collection containing the document
+   * @param id
+   *          the document id
+   * @param fieldsToReturn
+   *          the fields to load, or null to load all stored fields
+   * @return the document
+   * @throws NotFoundException
+   *           if the document does not exist
+   */
+  public static SolrDocument retrieveDocument(SolrClient index, String collection, String id,
+    List<String> fieldsToReturn) throws NotFoundException, GenericException {
+    try {
+      SolrDocument doc;
+      if (fieldsToReturn == null) {
+        doc = index.getById(collection, id);
+      } else {
+        ModifiableSolrParams params = new ModifiableSolrParams();
+        params.set(CommonParams.FL, StringUtils.join(fieldsToReturn, ","));
+        doc = index.getById(collection, id, params);
+      }
+
+      if (doc == null) {
+        throw new NotFoundException("Could not find document " + id);
+      }
+      return doc;
+    } catch (SolrServerException | IOException e) {
+      throw new GenericException("Could not retrieve document from index", e);
+    }
+  }
+
+  /**
+   * Retrieves all the raw documents in a collection that have a specific value
+   * in a field, paging through them with a cursor
+   *
+   * @param index
+   *          the solr client
+   * @param collection
+   *          the collection containing the documents
+   * @param field
+   *          the field name
+   * @param value
+   *          the value that the field must have
+   * @return the documents, sorted by id
+   */
+  public static List<SolrDocument> retrieveDocuments(SolrClient index, String collection, String field, String value)
+    throws GenericException {
+    List<SolrDocument> ret = new ArrayList<>();
+
+    SolrQuery query = new SolrQuery();
+    query.setQuery("*:*");
+    query.addFilterQuery(field + ":" + ClientUtils.escapeQueryChars(value));
+    query.setRows(RETRIEVE_DOCUMENTS_PAGE_SIZE);
+    query.setSort(SolrQuery.SortClause.asc(UNIQUE_KEY_FIELD));
+
+    String cursorMark = CursorMarkParams.CURSOR_MARK_START;
+    boolean done = false;
+    try {
+      while (!done) {
+        query.set(CursorMarkParams.CURSOR_MARK_PARAM, cursorMark);
+        QueryResponse response = index.query(collection, query);
+        ret.addAll(response.getResults());
+
+        String nextCursorMark = response.getNextCursorMark();
+        done = cursorMark.equals(nextCursorMark);
+        cursorMark = nextCursorMark;
+      }
+    } catch (SolrServerException | IOException e) {
+      throw new GenericException("Could not retrieve documents from index", e);
+    }
+    return ret;
+  }
+
+  public static <T> T retrieve(SolrClient index, Class<T> classToRetrieve, TableCollection table, String rowUUID)
     throws NotFoundException, GenericException {
     T ret;
     try {
-      SolrDocument doc = index.getById(getTableCollectionName(tableUUID), rowUUID);
+      SolrDocument doc;
+      if (table.isShared()) {
+        // the row may belong to another table of the shared collection, which
+        // must not be reachable through this one
+        SolrQuery query = new SolrQuery(UNIQUE_KEY_FIELD + ":" + ClientUtils.escapeQueryChars(rowUUID));
+        table.addFilterQuery(query);
+        query.setRows(1);
+        SolrDocumentList docs = index.query(table.getName(), query).getResults();
+        doc = docs.isEmpty() ? null : docs.get(0);
+      } else {
+        doc = index.getById(table.getName(), rowUUID);
+      }
       if (doc != null) {
         ret = solrDocumentTo(classToRetrieve, doc);
       } else {
@@ -528,6 +1125,116 @@ public class SolrUtils {
     return ret;
   }
 
+  /**
+   * Checks that a batch retrieval does not ask for more rows than allowed (see
+   * ViewerSafeConstants.MAX_ROWS_RETRIEVED_BY_ID)
+   */
+  public static void checkRowBatchSize(Map<String, ? extends Collection<String>> rowUUIDsByTable)
+    throws RequestNotValidException {
+    int count = 0;
+    for (Collection<String> rowUUIDs : rowUUIDsByTable.values()) {
+      count += rowUUIDs.size();
+    }
+    if (count > ViewerSafeConstants.MAX_ROWS_RETRIEVED_BY_ID) {
+      throw new RequestNotValidException("Can not retrieve " + count + " rows at once, the maximum is "
+        + ViewerSafeConstants.MAX_ROWS_RETRIEVED_BY_ID);
+    }
+  }
+
+  /**
+   * Retrieves several rows of the tables stored in a collection using a single
+   * request: a real-time get with multiple ids for a dedicated collection, or a
+   * query restricted to the tables for the shared collection (where the ids
+   * alone could match rows of other tables)
+   *
+   * @param tables
+   *          the tables, all stored in the same collection
+   * @param rowUUIDsByTable
+   *          the UUIDs of the rows to retrieve, grouped by table UUID
+   * @return the rows that were found, grouped by table UUID and in the same
+   *         order as the UUIDs. Rows that do not exist are not included.
+   */
+  public static <T> Map<String, List<T>> retrieve(SolrClient index, SolrQueryContext context,
+    Class<T> classToRetrieve, List<TableCollection> tables, Map<String, ? extends Collection<String>> rowUUIDsByTable)
+    throws GenericException {
+    Map<String, List<T>> ret = new HashMap<>();
+    if (tables.isEmpty()) {
+      return ret;
+    }
+
+    String collection = tables.get(0).getName();
+    // documents by table UUID and then by row UUID
+    Map<String, Map<String, SolrDocument>> docs = new HashMap<>();
+    try {
+      if (tables.get(0).isShared()) {
+        List<String> tableUUIDs = new ArrayList<>();
+        Set<String> rowUUIDs = new LinkedHashSet<>();
+        for (TableCollection table : tables) {
+          tableUUIDs.add(table.getTableUUID());
+          rowUUIDs.addAll(rowUUIDsByTable.get(table.getTableUUID()));
+        }
+
+        if (!rowUUIDs.isEmpty()) {
+          SolrQuery query = new SolrQuery(termsQuery(UNIQUE_KEY_FIELD, rowUUIDs));
+          query.addFilterQuery(termsQuery(ViewerSafeConstants.SOLR_ROW_TABLE_UUID, tableUUIDs));
+          // table_uuid is not stored, but its docValues are returned when it is
+          // explicitly requested
+          query.setFields("*", ViewerSafeConstants.SOLR_ROW_TABLE_UUID);
+          query.setRows(rowUUIDs.size());
+          setTimeAllowed(query, context);
+          for (SolrDocument doc : query(index, context, collection, null, query).getResults()) {
+            String tableUUID = String.valueOf(doc.getFirstValue(ViewerSafeConstants.SOLR_ROW_TABLE_UUID));
+            doc.removeFields(ViewerSafeConstants.SOLR_ROW_TABLE_UUID);
+            putDocument(docs, tableUUID, doc);
+          }
+        }
+      } else {
+        // a dedicated collection has the rows of a single table
+        String tableUUID = tables.get(0).getTableUUID();
+        Collection<String> rowUUIDs = rowUUIDsByTable.get(tableUUID);
+        if (!rowUUIDs.isEmpty()) {
+          for (SolrDocument doc : index.getById(collection, rowUUIDs)) {
+            putDocument(docs, tableUUID, doc);
+          }
+        }
+      }
+    } catch (SolrServerException | IOException e) {
+      throw new GenericException("Could not retrieve rows from index", e);
+    }
+
+    for (TableCollection table : tables) {
+      Map<String, SolrDocument> tableDocs = docs.get(table.getTableUUID());
+      List<T> rows = new ArrayList<>();
+      if (tableDocs != null) {
+        for (String rowUUID : rowUUIDsByTable.get(table.getTableUUID())) {
+          SolrDocument doc = tableDocs.get(rowUUID);
+          if (doc != null) {
+            rows.add(solrDocumentTo(classToRetrieve, doc));
+          }
+        }
+      }
+      ret.put(table.getTableUUID(), rows);
+    }
+    return ret;
+  }
+
+  private static void putDocument(Map<String, Map<String, SolrDocument>> docs, String tableUUID, SolrDocument doc) {
+    Map<String, SolrDocument> tableDocs = docs.get(tableUUID);
+    if (tableDocs == null) {
+      tableDocs = new HashMap<>();
+      docs.put(tableUUID, tableDocs);
+    }
+    tableDocs.put(String.valueOf(doc.getFieldValue(ViewerSafeConstants.SOLR_ROW_ID)), doc);
+  }
+
+  /**
+   * @return a query that matches any of the values (using the terms query
+   *         parser, which is not limited by maxBooleanClauses)
+   */
+  private static String termsQuery(String field, Collection<String> values) {
+    return "{!terms f=" + field + "}" + StringUtils.join(values, ',');
+  }
+
   public static String getSolrQuery(Filter filter, Sorter sorter, Sublist sublist, Facets facets)
     throws GenericException, RequestNotValidException {
     SolrQuery query = new SolrQuery();
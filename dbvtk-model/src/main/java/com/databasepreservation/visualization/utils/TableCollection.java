@@ -0,0 +1,108 @@
+package com.databasepreservation.visualization.utils;
+
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.util.ClientUtils;
+import org.apache.solr.common.SolrInputDocument;
+
+import com.databasepreservation.visualization.shared.ViewerSafeConstants;
+
+/**
+ * The Solr collection where the rows of a table are stored.
+ *
+ * Big tables have a dedicated collection. Small tables share a single
+ * collection, where the rows of each table are distinguished by the table UUID
+ * (and every query on that collection is restricted to a table).
+ *
+ * Tables ingested after the table configset got docValues only copies of its
+ * fields (see {@link ViewerSafeConstants#SOLR_DYN_DOC_VALUES}) can be streamed
+ * by the /export handler.
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+public class TableCollection {
+  private final String tableUUID;
+  private final String name;
+  private final boolean shared;
+  private final boolean docValues;
+
+  private TableCollection(String tableUUID, String name, boolean shared, boolean docValues) {
+    this.tableUUID = tableUUID;
+    this.name = name;
+    this.shared = shared;
+    this.docValues = docValues;
+  }
+
+  /**
+   * @return the dedicated collection of a table that is being ingested
+   */
+  public static TableCollection dedicated(String tableUUID) {
+    return new TableCollection(tableUUID, SolrUtils.getTableCollectionName(tableUUID), false, true);
+  }
+
+  /**
+   * @return the collection shared by small tables, for a table that is being
+   *         ingested
+   */
+  public static TableCollection shared(String tableUUID) {
+    return new TableCollection(tableUUID, ViewerSafeConstants.SOLR_INDEX_SHARED_TABLE_COLLECTION_NAME, true, true);
+  }
+
+  /**
+   * @param collectionName
+   *          the collection name stored in the table metadata document, or
+   *          null for tables ingested before collections could be shared
+   * @param docValues
+   *          true if the table metadata document states that the rows have
+   *          docValues only copies of their fields
+   */
+  public static TableCollection fromName(String tableUUID, String collectionName, boolean docValues) {
+    if (ViewerSafeConstants.SOLR_INDEX_SHARED_TABLE_COLLECTION_NAME.equals(collectionName)) {
+      return new TableCollection(tableUUID, collectionName, true, docValues);
+    } else {
+      return new TableCollection(tableUUID, SolrUtils.getTableCollectionName(tableUUID), false, docValues);
+    }
+  }
+
+  public String getTableUUID() {
+    return tableUUID;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public boolean isShared() {
+    return shared;
+  }
+
+  /**
+   * @return true if the rows have docValues only copies of their fields, false
+   *         for tables ingested before those copies existed
+   */
+  public boolean hasDocValues() {
+    return docValues;
+  }
+
+  /**
+   * Restricts the query to the rows of this table
+   */
+  public void addFilterQuery(SolrQuery query) {
+    if (shared) {
+      query.addFilterQuery(ViewerSafeConstants.SOLR_ROW_TABLE_UUID + ":" + ClientUtils.escapeQueryChars(tableUUID));
+    }
+  }
+
+  /**
+   * Marks a row document as belonging to this table
+   */
+  public void addTableField(SolrInputDocument doc) {
+    if (shared) {
+      doc.setField(ViewerSafeConstants.SOLR_ROW_TABLE_UUID, tableUUID);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return name + (shared ? " (table " + tableUUID + ")" : "");
+  }
+}
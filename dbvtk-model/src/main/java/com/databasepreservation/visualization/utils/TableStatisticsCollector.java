@@ -0,0 +1,62 @@
+package com.databasepreservation.visualization.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerCell;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerColumn;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerRow;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerTable;
+
+/**
+ * Computes the number of rows and column statistics of a table as its rows are
+ * ingested.
+ *
+ * Not thread-safe.
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+public class TableStatisticsCollector {
+  private final String tableUUID;
+  private long rowCount = 0;
+
+  // solrName -> collector
+  private final Map<String, ColumnStatisticsCollector> columns = new HashMap<>();
+
+  public TableStatisticsCollector(ViewerTable table) {
+    tableUUID = table.getUUID();
+    for (ViewerColumn column : table.getColumns()) {
+      columns.put(column.getSolrName(), new ColumnStatisticsCollector(column));
+    }
+  }
+
+  public String getTableUUID() {
+    return tableUUID;
+  }
+
+  public long getRowCount() {
+    return rowCount;
+  }
+
+  public void add(ViewerRow row) {
+    rowCount++;
+    for (Map.Entry<String, ColumnStatisticsCollector> entry : columns.entrySet()) {
+      ViewerCell cell = row.getCells().get(entry.getKey());
+      entry.getValue().add(cell != null ? cell.getValue() : null);
+    }
+  }
+
+  /**
+   * Sets the row count and column statistics of the table. The table must have
+   * the same columns as the one used to create this collector.
+   */
+  public void applyTo(ViewerTable table) {
+    table.setCountRows(rowCount);
+    for (ViewerColumn column : table.getColumns()) {
+      ColumnStatisticsCollector collector = columns.get(column.getSolrName());
+      if (collector != null) {
+        column.setStatistics(collector.getStatistics());
+      }
+    }
+  }
+}
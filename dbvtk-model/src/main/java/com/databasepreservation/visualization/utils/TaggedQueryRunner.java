@@ -0,0 +1,133 @@
+package com.databasepreservation.visualization.utils;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.roda.core.data.exceptions.GenericException;
+import org.roda.core.data.exceptions.RequestNotValidException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs queries on behalf of views (e.g. a list of rows) that may send a new
+ * query before the previous one finishes, for instance when the user pages
+ * quickly or types a new search. Each view tags its queries with the same tag
+ * and an increasing serial number; a query supersedes (and cancels) the
+ * running query with the same tag and a lower serial, and queries that arrive
+ * while a newer one is running are not run at all.
+ *
+ * Queries run on the calling thread, and are only registered so that they can
+ * be cancelled: the thread running a superseded query is interrupted, and its
+ * result is discarded. The interrupt does not abort a request that is already
+ * waiting for Solr (HttpClient socket reads ignore interrupts), it only stops
+ * the query before it sends further requests (e.g. while waiting for a pooled
+ * connection). A request already sent keeps its thread until Solr answers,
+ * which is bounded by the query time budget (timeAllowed) and the client
+ * socket timeout.
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+class TaggedQueryRunner {
+  private static final Logger LOGGER = LoggerFactory.getLogger(TaggedQueryRunner.class);
+
+  // tag -> latest query with that tag
+  private final Map<String, TaggedQuery> latestQueries = new ConcurrentHashMap<>();
+
+  /**
+   * Runs the query on the calling thread
+   *
+   * @throws GenericException
+   *           if the query failed, or was superseded by a newer query with the
+   *           same tag
+   */
+  <R> R run(String tag, long serial, Callable<R> query) throws GenericException, RequestNotValidException {
+    TaggedQuery taggedQuery = new TaggedQuery(serial, Thread.currentThread());
+    TaggedQuery previous;
+    synchronized (latestQueries) {
+      previous = latestQueries.get(tag);
+      if (previous != null && previous.serial > serial) {
+        throw new GenericException("Query " + tag + "#" + serial + " was superseded by query #" + previous.serial);
+      }
+      latestQueries.put(tag, taggedQuery);
+    }
+
+    if (previous != null && previous.cancel()) {
+      LOGGER.debug("Cancelled query {}#{}, superseded by query #{}", tag, previous.serial, serial);
+    }
+
+    try {
+      R ret = query.call();
+      if (taggedQuery.isCancelled()) {
+        throw superseded(tag, serial);
+      }
+      return ret;
+    } catch (GenericException | RequestNotValidException e) {
+      if (taggedQuery.isCancelled()) {
+        throw superseded(tag, serial);
+      }
+      throw e;
+    } catch (Exception e) {
+      if (taggedQuery.isCancelled()) {
+        throw superseded(tag, serial);
+      }
+      throw new GenericException("Could not query index", e);
+    } finally {
+      taggedQuery.finish();
+      synchronized (latestQueries) {
+        // keep the entry if a newer query replaced it
+        if (latestQueries.get(tag) == taggedQuery) {
+          latestQueries.remove(tag);
+        }
+      }
+    }
+  }
+
+  private static GenericException superseded(String tag, long serial) {
+    return new GenericException("Query " + tag + "#" + serial + " was superseded by a newer query");
+  }
+
+  private static class TaggedQuery {
+    private final long serial;
+    private final Thread thread;
+    // guarded by this
+    private boolean cancelled = false;
+    private boolean finished = false;
+
+    private TaggedQuery(long serial, Thread thread) {
+      this.serial = serial;
+      this.thread = thread;
+    }
+
+    /**
+     * Interrupts the thread running the query, unless it already finished. The
+     * query result is discarded even if the interrupt is not noticed.
+     *
+     * @return true if the query was cancelled
+     */
+    private synchronized boolean cancel() {
+      if (finished || cancelled) {
+        return false;
+      }
+      cancelled = true;
+      thread.interrupt();
+      return true;
+    }
+
+    private synchronized boolean isCancelled() {
+      return cancelled;
+    }
+
+    /**
+     * Must be called by the thread that ran the query, so that it is not
+     * interrupted after the query finished (and the interruption is not seen by
+     * unrelated work done later by the same thread)
+     */
+    private synchronized void finish() {
+      finished = true;
+      if (cancelled) {
+        Thread.interrupted();
+      }
+    }
+  }
+}
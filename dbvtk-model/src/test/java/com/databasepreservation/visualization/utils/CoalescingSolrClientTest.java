@@ -0,0 +1,182 @@
+package com.databasepreservation.visualization.utils;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.request.QueryRequest;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.util.NamedList;
+import org.testng.annotations.Test;
+
+/**
+ * Tests that identical concurrent requests are sent to Solr once, and that
+ * every caller gets its own copy of the response or the same exception
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+@Test(groups = {"unit"})
+public class CoalescingSolrClientTest {
+  private static final String COLLECTION = "dbv-tables-shared";
+  private static final int WAITERS = 3;
+
+  @Test
+  public void testCoalescedCallersGetCopies() throws Exception {
+    SolrDocument document = new SolrDocument();
+    document.setField("id", "row1");
+    document.setField("col1_s", "value");
+    SolrDocumentList documents = new SolrDocumentList();
+    documents.add(document);
+    documents.setNumFound(1);
+    NamedList<Object> response = new NamedList<>();
+    response.add("response", documents);
+
+    BlockingSolrClient delegate = new BlockingSolrClient(response, null);
+    List<Future<NamedList<Object>>> results = requestConcurrently(delegate);
+
+    List<NamedList<Object>> responses = new ArrayList<>();
+    for (Future<NamedList<Object>> result : results) {
+      responses.add(result.get(10, TimeUnit.SECONDS));
+    }
+    assertThat(delegate.requests.get(), equalTo(1));
+
+    for (NamedList<Object> callerResponse : responses) {
+      assertThat(callerResponse, not(sameInstance(response)));
+      SolrDocumentList callerDocuments = (SolrDocumentList) callerResponse.get("response");
+      assertThat(callerDocuments.getNumFound(), equalTo(1L));
+      assertThat(callerDocuments.get(0).getFieldValue("col1_s"), equalTo((Object) "value"));
+    }
+
+    // changing the response of a caller does not change the others
+    ((SolrDocumentList) responses.get(0).get("response")).get(0).removeFields("col1_s");
+    assertThat(((SolrDocumentList) responses.get(1).get("response")).get(0).getFieldValue("col1_s"),
+      equalTo((Object) "value"));
+    assertThat(document.getFieldValue("col1_s"), equalTo((Object) "value"));
+  }
+
+  @Test
+  public void testCoalescedCallersGetTheSameException() throws Exception {
+    SolrServerException failure = new SolrServerException("Solr is down");
+    BlockingSolrClient delegate = new BlockingSolrClient(null, failure);
+    List<Future<NamedList<Object>>> results = requestConcurrently(delegate);
+
+    for (Future<NamedList<Object>> result : results) {
+      try {
+        result.get(10, TimeUnit.SECONDS);
+        throw new AssertionError("The request should have failed");
+      } catch (ExecutionException e) {
+        assertThat(e.getCause(), sameInstance((Throwable) failure));
+      }
+    }
+    assertThat(delegate.requests.get(), equalTo(1));
+  }
+
+  @Test
+  public void testCopy() {
+    SolrDocument child = new SolrDocument();
+    child.setField("id", "child");
+    SolrDocument document = new SolrDocument();
+    document.setField("id", "parent");
+    document.addChildDocument(child);
+
+    SolrDocument copy = CoalescingSolrClient.copy(document);
+    assertThat(copy, not(sameInstance(document)));
+    assertThat(copy.getFieldValue("id"), equalTo((Object) "parent"));
+    assertThat(copy.getChildDocuments().get(0), not(sameInstance(child)));
+    assertThat(copy.getChildDocuments().get(0).getFieldValue("id"), equalTo((Object) "child"));
+  }
+
+  /**
+   * Sends the same request from a first caller and, while the delegate is
+   * answering it, from WAITERS other callers
+   *
+   * @return the results of all callers, the first caller first
+   */
+  private static List<Future<NamedList<Object>>> requestConcurrently(BlockingSolrClient delegate)
+    throws InterruptedException {
+    final CoalescingSolrClient client = new CoalescingSolrClient(delegate);
+    Callable<NamedList<Object>> request = new Callable<NamedList<Object>>() {
+      @Override
+      public NamedList<Object> call() throws Exception {
+        return client.request(new QueryRequest(new SolrQuery("*:*")), COLLECTION);
+      }
+    };
+
+    ExecutorService executor = Executors.newFixedThreadPool(WAITERS + 1);
+    try {
+      List<Future<NamedList<Object>>> results = new ArrayList<>();
+      long coalescedBefore = client.getCoalescedRequests();
+      results.add(executor.submit(request));
+      assertThat(delegate.started.await(10, TimeUnit.SECONDS), equalTo(true));
+
+      for (int i = 0; i < WAITERS; i++) {
+        results.add(executor.submit(request));
+      }
+      // the coalesced requests counter is shared by all clients, other tests may
+      // also increment it
+      long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+      while (client.getCoalescedRequests() - coalescedBefore < WAITERS && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      delegate.release.countDown();
+      return results;
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Answers requests only after being released
+   */
+  private static class BlockingSolrClient extends SolrClient {
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger requests = new AtomicInteger();
+    private final NamedList<Object> response;
+    private final SolrServerException failure;
+
+    private BlockingSolrClient(NamedList<Object> response, SolrServerException failure) {
+      this.response = response;
+      this.failure = failure;
+    }
+
+    @Override
+    public NamedList<Object> request(SolrRequest request, String collection) throws SolrServerException,
+      IOException {
+      requests.incrementAndGet();
+      started.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        throw new SolrServerException(e);
+      }
+      if (failure != null) {
+        throw failure;
+      }
+      return response;
+    }
+
+    @Override
+    public void close() throws IOException {
+      // nothing to close
+    }
+  }
+}
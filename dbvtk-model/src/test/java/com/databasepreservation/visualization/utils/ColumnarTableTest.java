@@ -0,0 +1,240 @@
+package com.databasepreservation.visualization.utils;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.solr.common.SolrInputDocument;
+import org.roda.core.data.adapter.filter.BasicSearchFilterParameter;
+import org.roda.core.data.adapter.filter.DateRangeFilterParameter;
+import org.roda.core.data.adapter.filter.EmptyKeyFilterParameter;
+import org.roda.core.data.adapter.filter.Filter;
+import org.roda.core.data.adapter.filter.FilterParameter;
+import org.roda.core.data.adapter.filter.LongRangeFilterParameter;
+import org.roda.core.data.adapter.filter.SimpleFilterParameter;
+import org.roda.core.data.adapter.sort.SortParameter;
+import org.roda.core.data.adapter.sort.Sorter;
+import org.roda.core.data.adapter.sublist.Sublist;
+import org.roda.core.data.common.RodaConstants;
+import org.roda.core.data.exceptions.GenericException;
+import org.roda.core.data.exceptions.RequestNotValidException;
+import org.roda.core.data.v2.index.IndexResult;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerRow;
+import com.databasepreservation.visualization.shared.ViewerSafeConstants;
+
+/**
+ * Runs the same filters and sorters on a table kept in memory and on a Lucene
+ * index with the same rows, which must find the same rows in the same order
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+@Test(groups = {"unit"})
+public class ColumnarTableTest {
+  private static final String TEXT = "col0" + ViewerSafeConstants.SOLR_DYN_TEXT_GENERAL;
+  private static final String TEXT_SORT = "col0" + ViewerSafeConstants.SOLR_DYN_SORT;
+  private static final String LONG = "col1" + ViewerSafeConstants.SOLR_DYN_TLONG;
+  private static final String DOUBLE = "col2" + ViewerSafeConstants.SOLR_DYN_TDOUBLE;
+  private static final String DATE = "col3" + ViewerSafeConstants.SOLR_DYN_TDATE;
+  private static final String STRING = "col4" + ViewerSafeConstants.SOLR_DYN_STRING;
+  private static final String SEARCH = ViewerSafeConstants.SOLR_ROW_SEARCH;
+
+  private static final String[] COLUMNS = {TEXT, LONG, DOUBLE, DATE, STRING};
+
+  // one row per line, null for missing values
+  private static final String[][] ROWS = {
+    {"Red apple pie", "12", "1.5", "2016-01-15T10:00:00Z", "A"},
+    {"green apple", "120", "-3.25", "2015-06-01T00:00:00Z", "b"},
+    {"banana split", "2016", "12.0", "2016-12-31T23:59:59Z", "a"},
+    {"red banana", null, "0.5", null, "A"},
+    {null, "-7", null, "2017-03-01T00:00:00Z", null},
+    {"Apple red", "12", "1.5", "2016-01-15T10:00:00Z", "b"},
+    {"cherry 2016", "33", null, null, "c d"},
+    {"apple", "0", "120.75", "1999-12-31T00:00:00Z", "A"}};
+
+  private Directory directory;
+  private DirectoryReader reader;
+  private IndexSearcher searcher;
+  private ColumnarTable table;
+
+  @BeforeClass
+  public void setUp() throws IOException, GenericException {
+    directory = new RAMDirectory();
+    try (IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(LuceneDocuments.ANALYZER))) {
+      for (int i = 0; i < ROWS.length; i++) {
+        SolrInputDocument doc = new SolrInputDocument();
+        doc.setField(ViewerSafeConstants.SOLR_ROW_ID, "row" + i);
+        for (int j = 0; j < COLUMNS.length; j++) {
+          if (ROWS[i][j] != null) {
+            doc.addField(COLUMNS[j], ROWS[i][j]);
+          }
+        }
+        writer.addDocument(LuceneDocuments.toDocument(doc, true));
+      }
+    }
+    reader = DirectoryReader.open(directory);
+    searcher = new IndexSearcher(reader);
+
+    // as ColumnarCacheBackend loads it, with the rows streamed by id
+    table = load(true);
+  }
+
+  @AfterClass
+  public void tearDown() throws IOException {
+    reader.close();
+    directory.close();
+  }
+
+  private ColumnarTable load(boolean valuesAsIndexed) throws IOException, GenericException {
+    TopDocs docs = searcher.search(new MatchAllDocsQuery(), ROWS.length, LuceneDocuments.parseSorter(null, true));
+    ColumnarTable.Builder builder = ColumnarTable.builder(docs.totalHits, valuesAsIndexed);
+    for (ScoreDoc scoreDoc : docs.scoreDocs) {
+      ViewerRow row = SolrUtils.solrDocumentTo(ViewerRow.class,
+        LuceneDocuments.toSolrDocument(searcher.doc(scoreDoc.doc)));
+      assertThat("row can not be kept in memory", builder.add(row), equalTo(true));
+    }
+    return builder.build();
+  }
+
+  private static Object[] test(Sorter sorter, FilterParameter... parameters) {
+    return new Object[] {new Filter(parameters), sorter};
+  }
+
+  private static Object[] test(FilterParameter... parameters) {
+    return test(null, parameters);
+  }
+
+  private static Sorter sortBy(String name, boolean descending) {
+    return new Sorter(new SortParameter(name, descending));
+  }
+
+  private static Date date(String value) {
+    return new Date(Instant.parse(value).toEpochMilli());
+  }
+
+  @DataProvider
+  public Iterator<Object[]> filtersProvider() {
+    List<Object[]> tests = new ArrayList<>();
+
+    // no filter
+    tests.add(test());
+
+    // ranges
+    tests.add(test(new LongRangeFilterParameter(LONG, 12L, 120L)));
+    tests.add(test(new LongRangeFilterParameter(LONG, null, 12L)));
+    tests.add(test(new LongRangeFilterParameter(LONG, 33L, null)));
+    tests.add(test(new DateRangeFilterParameter(DATE, date("2016-01-01T00:00:00Z"), date("2016-12-31T00:00:00Z"),
+      RodaConstants.DateGranularity.DAY)));
+    tests.add(test(new DateRangeFilterParameter(DATE, null, date("2016-01-15T10:00:00Z"))));
+
+    // exact values
+    tests.add(test(new SimpleFilterParameter(LONG, "12")));
+    tests.add(test(new SimpleFilterParameter(STRING, "A")));
+    tests.add(test(new SimpleFilterParameter(STRING, "c d")));
+    tests.add(test(new BasicSearchFilterParameter(DOUBLE, "1.5")));
+
+    // words, negations and wildcards
+    tests.add(test(new BasicSearchFilterParameter(TEXT, "apple")));
+    tests.add(test(new BasicSearchFilterParameter(TEXT, "APPLE red")));
+    tests.add(test(new BasicSearchFilterParameter(TEXT, "-red")));
+    tests.add(test(new BasicSearchFilterParameter(TEXT, "apple"), new BasicSearchFilterParameter(TEXT, "-red")));
+    tests.add(test(new BasicSearchFilterParameter(TEXT, "app*")));
+    tests.add(test(new BasicSearchFilterParameter(TEXT, "*an*")));
+    tests.add(test(new BasicSearchFilterParameter(STRING, "*")));
+    tests.add(test(new BasicSearchFilterParameter(TEXT, "")));
+
+    // phrases
+    tests.add(test(new BasicSearchFilterParameter(TEXT, "\"red apple\"")));
+    tests.add(test(new BasicSearchFilterParameter(TEXT, "\"apple red\"")));
+    tests.add(test(new BasicSearchFilterParameter(TEXT, "\"banana\"")));
+
+    // the catch-all field, on text, numbers and dates
+    tests.add(test(new BasicSearchFilterParameter(SEARCH, "apple")));
+    tests.add(test(new BasicSearchFilterParameter(SEARCH, "2016")));
+    tests.add(test(new BasicSearchFilterParameter(SEARCH, "2016*")));
+    tests.add(test(new BasicSearchFilterParameter(SEARCH, "12*")));
+    tests.add(test(new BasicSearchFilterParameter(SEARCH, "1.5")));
+    tests.add(test(new BasicSearchFilterParameter(SEARCH, "\"red banana\"")));
+    tests.add(test(new BasicSearchFilterParameter(SEARCH, "\"c d\"")));
+    tests.add(test(new BasicSearchFilterParameter(SEARCH, "cherry -apple")));
+
+    // missing values
+    tests.add(test(new EmptyKeyFilterParameter(TEXT)));
+    tests.add(test(new EmptyKeyFilterParameter(LONG)));
+    tests.add(test(new EmptyKeyFilterParameter(DATE), new BasicSearchFilterParameter(TEXT, "red")));
+
+    // sort order, with missing values and ties
+    tests.add(test(sortBy(LONG, false)));
+    tests.add(test(sortBy(LONG, true)));
+    tests.add(test(sortBy(DOUBLE, false)));
+    tests.add(test(sortBy(DOUBLE, true)));
+    tests.add(test(sortBy(DATE, false)));
+    tests.add(test(sortBy(DATE, true)));
+    tests.add(test(sortBy(TEXT_SORT, false)));
+    tests.add(test(sortBy(TEXT_SORT, true)));
+    tests.add(test(sortBy(STRING, false)));
+    tests.add(test(sortBy(ViewerSafeConstants.SOLR_ROW_ID, true)));
+    tests.add(test(new Sorter(new SortParameter[] {new SortParameter(STRING, false), new SortParameter(LONG, true)})));
+    tests.add(test(sortBy(DATE, true), new BasicSearchFilterParameter(SEARCH, "apple")));
+
+    return tests.iterator();
+  }
+
+  @Test(description = "In-memory table finds the same rows as the Lucene index", dataProvider = "filtersProvider", groups = {"unit"})
+  public void testSameResultsAsLucene(Filter filter, Sorter sorter) throws RequestNotValidException, IOException {
+    Query query = LuceneDocuments.parseFilter(filter);
+
+    IndexResult<ViewerRow> result = table.find(ViewerRow.class, query, sorter, new Sublist(0, ROWS.length), null);
+    assertThat("query not evaluated in memory: " + query, result, notNullValue());
+    List<String> inMemory = new ArrayList<>();
+    for (ViewerRow row : result.getResults()) {
+      inMemory.add(row.getUUID());
+    }
+
+    Sort sort = LuceneDocuments.parseSorter(sorter, true);
+    TopDocs docs = searcher.search(query, ROWS.length, sort);
+    List<String> indexed = new ArrayList<>();
+    for (ScoreDoc scoreDoc : docs.scoreDocs) {
+      indexed.add(searcher.doc(scoreDoc.doc).get(ViewerSafeConstants.SOLR_ROW_ID));
+    }
+
+    assertThat("different rows for " + query, inMemory, equalTo(indexed));
+    assertThat("different total for " + query, result.getTotalCount(), equalTo((long) docs.totalHits));
+    assertThat("different count for " + query, table.count(query), equalTo((long) docs.totalHits));
+  }
+
+  @Test(description = "Catch-all search on numbers is left to the index when values are not returned as indexed", groups = {"unit"})
+  public void testCatchAllOnNumbersNotAsIndexed() throws RequestNotValidException, IOException,
+    GenericException {
+    ColumnarTable notAsIndexed = load(false);
+    Query query = LuceneDocuments.parseFilter(new Filter(new BasicSearchFilterParameter(SEARCH, "2016")));
+    assertThat(notAsIndexed.find(ViewerRow.class, query, null, new Sublist(0, ROWS.length), null), nullValue());
+    assertThat(notAsIndexed.count(query), nullValue());
+
+    query = LuceneDocuments.parseFilter(new Filter(new BasicSearchFilterParameter(TEXT, "apple")));
+    assertThat(notAsIndexed.count(query), equalTo(4L));
+  }
+}
@@ -0,0 +1,86 @@
+package com.databasepreservation.visualization.utils;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests the distinct value estimates of the HyperLogLog sketch, alone and
+ * merged
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+@Test(groups = {"unit"})
+public class HyperLogLogTest {
+  // three times the standard error of the default precision (about 1.6%)
+  private static final double MAX_RELATIVE_ERROR = 0.05;
+
+  @Test
+  public void testEmpty() {
+    assertThat(new HyperLogLog().estimate(), equalTo(0L));
+  }
+
+  @Test
+  public void testSmallCardinality() {
+    HyperLogLog sketch = add(new HyperLogLog(), 0, 100);
+    assertEstimate(sketch, 100);
+  }
+
+  @Test
+  public void testLargeCardinality() {
+    HyperLogLog sketch = add(new HyperLogLog(), 0, 100000);
+    assertEstimate(sketch, 100000);
+  }
+
+  @Test
+  public void testRepeatedValuesAreCountedOnce() {
+    HyperLogLog sketch = new HyperLogLog();
+    for (int i = 0; i < 10; i++) {
+      add(sketch, 0, 5000);
+    }
+    assertEstimate(sketch, 5000);
+  }
+
+  @Test
+  public void testMerge() {
+    HyperLogLog first = add(new HyperLogLog(), 0, 60000);
+    HyperLogLog second = add(new HyperLogLog(), 40000, 100000);
+
+    first.merge(second);
+    // the union of both sets, the common values are counted once
+    assertEstimate(first, 100000);
+    assertEstimate(second, 60000);
+  }
+
+  @Test
+  public void testMergeIsTheSameAsAdding() {
+    HyperLogLog merged = add(new HyperLogLog(), 0, 30000);
+    merged.merge(add(new HyperLogLog(), 30000, 50000));
+    HyperLogLog added = add(new HyperLogLog(), 0, 50000);
+
+    assertThat(merged.estimate(), equalTo(added.estimate()));
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testMergeWithDifferentPrecision() {
+    new HyperLogLog(12).merge(new HyperLogLog(10));
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testInvalidPrecision() {
+    new HyperLogLog(3);
+  }
+
+  private static HyperLogLog add(HyperLogLog sketch, int from, int to) {
+    for (int i = from; i < to; i++) {
+      sketch.add("value" + i);
+    }
+    return sketch;
+  }
+
+  private static void assertEstimate(HyperLogLog sketch, long expected) {
+    assertThat((double) sketch.estimate(), closeTo(expected, expected * MAX_RELATIVE_ERROR));
+  }
+}
@@ -0,0 +1,109 @@
+package com.databasepreservation.visualization.utils;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests the Prometheus text exposition format written by the metrics registry.
+ * The registry is global, so each test uses its own metric names.
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+@Test(groups = {"unit"})
+public class MetricsTest {
+  @Test
+  public void testCounter() throws IOException {
+    Metrics.Family<Metrics.Counter> requests = Metrics.counter("dbvtk_test_requests_total", "Test requests",
+      "method");
+    requests.labels("find").inc();
+    requests.labels("find").inc(2);
+    requests.labels("retrieve").inc();
+
+    String output = write();
+    assertThat(output, containsString("# HELP dbvtk_test_requests_total Test requests\n"
+      + "# TYPE dbvtk_test_requests_total counter\n" + "dbvtk_test_requests_total{method=\"find\"} 3\n"
+      + "dbvtk_test_requests_total{method=\"retrieve\"} 1\n"));
+  }
+
+  @Test
+  public void testGaugeWithoutLabels() throws IOException {
+    Metrics.Gauge inProgress = Metrics.gauge("dbvtk_test_in_progress", "Test requests in progress").labels();
+    inProgress.inc();
+    inProgress.inc();
+    inProgress.dec();
+
+    assertThat(write(), containsString("# TYPE dbvtk_test_in_progress gauge\ndbvtk_test_in_progress 1\n"));
+  }
+
+  @Test
+  public void testHistogram() throws IOException {
+    Metrics.Histogram duration = Metrics.histogram("dbvtk_test_duration_seconds", "Test durations",
+      new double[] {0.1, 1}, "collection").labels("dbv-tables-shared");
+    duration.observe(0.05);
+    duration.observe(0.1);
+    duration.observeMillis(500);
+    duration.observe(3);
+
+    // buckets are cumulative, and an observation equal to a bound is in its
+    // bucket
+    assertThat(write(), containsString("# TYPE dbvtk_test_duration_seconds histogram\n"
+      + "dbvtk_test_duration_seconds_bucket{collection=\"dbv-tables-shared\",le=\"0.1\"} 2\n"
+      + "dbvtk_test_duration_seconds_bucket{collection=\"dbv-tables-shared\",le=\"1.0\"} 3\n"
+      + "dbvtk_test_duration_seconds_bucket{collection=\"dbv-tables-shared\",le=\"+Inf\"} 4\n"
+      + "dbvtk_test_duration_seconds_sum{collection=\"dbv-tables-shared\"} 3.65\n"
+      + "dbvtk_test_duration_seconds_count{collection=\"dbv-tables-shared\"} 4\n"));
+    assertThat(duration.getCount(), equalTo(4L));
+  }
+
+  @Test
+  public void testEscaping() throws IOException {
+    Metrics.counter("dbvtk_test_escaped_total", "Help with \\ and\nnewline", "label")
+      .labels("quote \" backslash \\ newline \n").inc();
+
+    String output = write();
+    assertThat(output, containsString("# HELP dbvtk_test_escaped_total Help with \\\\ and\\nnewline\n"));
+    assertThat(output,
+      containsString("dbvtk_test_escaped_total{label=\"quote \\\" backslash \\\\ newline \\n\"} 1\n"));
+  }
+
+  @Test
+  public void testFamiliesAreSortedByName() throws IOException {
+    Metrics.counter("dbvtk_test_sorted_b_total", "Second").labels().inc();
+    Metrics.counter("dbvtk_test_sorted_a_total", "First").labels().inc();
+
+    String output = write();
+    assertThat(output.indexOf("dbvtk_test_sorted_a_total"), lessThan(output.indexOf("dbvtk_test_sorted_b_total")));
+  }
+
+  @Test
+  public void testRegisteringTwiceReturnsTheSameMetric() {
+    Metrics.Family<Metrics.Counter> first = Metrics.counter("dbvtk_test_twice_total", "Registered twice");
+    Metrics.Family<Metrics.Counter> second = Metrics.counter("dbvtk_test_twice_total", "Registered twice");
+    assertThat(second, sameInstance(first));
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testRegisteringWithAnotherType() {
+    Metrics.counter("dbvtk_test_type_total", "A counter");
+    Metrics.gauge("dbvtk_test_type_total", "Not a counter");
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testWrongNumberOfLabels() {
+    Metrics.counter("dbvtk_test_labels_total", "Labelled", "method").labels("find", "extra");
+  }
+
+  private static String write() throws IOException {
+    StringWriter writer = new StringWriter();
+    Metrics.write(writer);
+    return writer.toString();
+  }
+}
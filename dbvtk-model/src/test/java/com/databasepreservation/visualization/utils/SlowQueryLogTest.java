@@ -0,0 +1,114 @@
+package com.databasepreservation.visualization.utils;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+import org.testng.annotations.Test;
+
+/**
+ * Tests which queries are recorded by the slow query log, and that only the
+ * most recent ones are kept
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+@Test(groups = {"unit"})
+public class SlowQueryLogTest {
+  private static final String COLLECTION = "dbv-tables-shared";
+
+  @Test
+  public void testThreshold() {
+    SlowQueryLog log = new SlowQueryLog(100, 10);
+    log.record("fast", COLLECTION, null, new SolrQuery("*:*"), response(5, 1), 99);
+    log.record("slow", COLLECTION, null, new SolrQuery("*:*"), response(5, 1), 100);
+
+    assertThat(callers(log), contains("slow"));
+  }
+
+  @Test
+  public void testNegativeThresholdDisablesTheLog() {
+    SlowQueryLog log = new SlowQueryLog(-1, 10);
+    log.record("slow", COLLECTION, null, new SolrQuery("*:*"), response(5, 1), 60000);
+
+    assertThat(log.getEntries(), empty());
+  }
+
+  @Test
+  public void testThresholdChange() {
+    SlowQueryLog log = new SlowQueryLog(-1, 10);
+    log.record("before", COLLECTION, null, new SolrQuery("*:*"), response(5, 1), 500);
+    log.setThreshold(0);
+    log.record("after", COLLECTION, null, new SolrQuery("*:*"), response(5, 1), 0);
+
+    assertThat(callers(log), contains("after"));
+  }
+
+  @Test
+  public void testOldestQueriesAreEvicted() {
+    SlowQueryLog log = new SlowQueryLog(0, 3);
+    for (int i = 1; i <= 5; i++) {
+      log.record("query" + i, COLLECTION, null, new SolrQuery("*:*"), response(5, 1), i);
+    }
+
+    assertThat(callers(log), contains("query5", "query4", "query3"));
+
+    log.clear();
+    assertThat(log.getEntries(), empty());
+  }
+
+  @Test
+  public void testRecordedDetails() {
+    SlowQueryLog log = new SlowQueryLog(0, 1);
+    SolrQuery solrQuery = new SolrQuery("col1_t:value");
+    solrQuery.addFilterQuery("table_uuid:table1");
+    solrQuery.setSort("col2_l", SolrQuery.ORDER.desc);
+    log.record("SolrManager.findRows", COLLECTION, "table1", solrQuery, response(42, 2), 250);
+    SlowQuery query = log.getEntries().get(0);
+
+    assertThat(query.getCaller(), equalTo("SolrManager.findRows"));
+    assertThat(query.getCollection(), equalTo(COLLECTION));
+    assertThat(query.getTableUUID(), equalTo("table1"));
+    assertThat(query.getQuery(), equalTo("col1_t:value"));
+    assertThat(query.getFilterQueries(), contains("table_uuid:table1"));
+    assertThat(query.getSort(), equalTo("col2_l desc"));
+    assertThat(query.getQTime(), equalTo(200));
+    assertThat(query.getElapsedTime(), equalTo(250L));
+    assertThat(query.getNumFound(), equalTo(42L));
+    assertThat(query.getReturnedRows(), equalTo(2));
+  }
+
+  private static List<String> callers(SlowQueryLog log) {
+    List<String> callers = new ArrayList<>();
+    for (SlowQuery query : log.getEntries()) {
+      callers.add(query.getCaller());
+    }
+    return callers;
+  }
+
+  private static QueryResponse response(long numFound, int returnedRows) {
+    SolrDocumentList documents = new SolrDocumentList();
+    documents.setNumFound(numFound);
+    for (int i = 0; i < returnedRows; i++) {
+      documents.add(new SolrDocument());
+    }
+    NamedList<Object> header = new SimpleOrderedMap<>();
+    header.add("QTime", 200);
+
+    NamedList<Object> response = new NamedList<>();
+    response.add("responseHeader", header);
+    response.add("response", documents);
+    QueryResponse queryResponse = new QueryResponse();
+    queryResponse.setResponse(response);
+    return queryResponse;
+  }
+}
@@ -0,0 +1,192 @@
+package com.databasepreservation.visualization.utils;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasKey;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+import org.roda.core.data.adapter.facet.Facets;
+import org.roda.core.data.adapter.facet.RangeFacetParameter;
+import org.roda.core.data.adapter.facet.SimpleFacetParameter;
+import org.roda.core.data.v2.index.FacetFieldResult;
+import org.roda.core.data.v2.index.FacetValue;
+import org.testng.annotations.Test;
+
+import com.databasepreservation.visualization.client.NestedFacetParameter;
+import com.databasepreservation.visualization.client.StatisticsFacetParameter;
+
+/**
+ * Tests the conversion of range, nested and statistics facets to and from the
+ * Solr JSON Facet API
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+@Test(groups = {"unit"})
+public class SolrUtilsTest {
+  private static final String NUMBER_FIELD = "col1_d";
+  private static final String DATE_FIELD = "col2_dt";
+  private static final String STRING_FIELD = "col3_s";
+
+  @Test
+  public void testRangeJsonFacet() {
+    Map<String, Object> facet = SolrUtils.toJsonFacet(new RangeFacetParameter(NUMBER_FIELD, "0", "100", "+10"));
+
+    assertThat(facet.get("type"), equalTo((Object) "range"));
+    assertThat(facet.get("field"), equalTo((Object) NUMBER_FIELD));
+    assertThat(facet.get("start"), equalTo((Object) "0"));
+    assertThat(facet.get("end"), equalTo((Object) "100"));
+    assertThat(facet.get("gap"), equalTo((Object) "+10"));
+    assertThat(facet, not(hasKey("facet")));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testNestedJsonFacet() {
+    NestedFacetParameter nested = new NestedFacetParameter(STRING_FIELD, 5, new RangeFacetParameter(NUMBER_FIELD, "0",
+      "100", "10"), new StatisticsFacetParameter(NUMBER_FIELD, StatisticsFacetParameter.AVG));
+    Map<String, Object> facet = SolrUtils.toJsonFacet(nested);
+
+    assertThat(facet.get("type"), equalTo((Object) "terms"));
+    assertThat(facet.get("field"), equalTo((Object) STRING_FIELD));
+    assertThat(facet.get("limit"), equalTo((Object) 5));
+
+    Map<String, Object> subFacets = (Map<String, Object>) facet.get("facet");
+    assertThat(((Map<String, Object>) subFacets.get(NUMBER_FIELD)).get("type"), equalTo((Object) "range"));
+    assertThat(subFacets.get("avg(" + NUMBER_FIELD + ")"), equalTo((Object) ("avg(" + NUMBER_FIELD + ")")));
+  }
+
+  @Test
+  public void testNumericRangeFacetValuesWithSignedGap() {
+    RangeFacetParameter range = new RangeFacetParameter(NUMBER_FIELD, "0", "100", "+10");
+    range.setValues(Arrays.asList("0", "20.5"));
+
+    StringBuilder filterQuery = new StringBuilder();
+    SolrUtils.appendRangeFacetValues(filterQuery, range);
+
+    assertThat(filterQuery.toString(), equalTo("((" + NUMBER_FIELD + ":[0 TO 10}) OR (" + NUMBER_FIELD
+      + ":[20.5 TO 30.5}))"));
+  }
+
+  @Test
+  public void testDateRangeFacetValues() {
+    RangeFacetParameter range = new RangeFacetParameter(DATE_FIELD, "2000-01-01T00:00:00Z",
+      "2010-01-01T00:00:00Z", "+1YEAR");
+    range.setValues(Arrays.asList("2003-01-01T00:00:00Z"));
+
+    StringBuilder filterQuery = new StringBuilder("other:value");
+    SolrUtils.appendRangeFacetValues(filterQuery, range);
+
+    assertThat(filterQuery.toString(), equalTo("other:value AND ((" + DATE_FIELD
+      + ":[\"2003-01-01T00:00:00Z\" TO \"2003-01-01T00:00:00Z+1YEAR\"}))"));
+  }
+
+  @Test
+  public void testRangeFacetResults() {
+    RangeFacetParameter range = new RangeFacetParameter(DATE_FIELD, "2000-01-01T00:00:00Z",
+      "2010-01-01T00:00:00Z", "+5YEARS");
+    range.setValues(Arrays.asList("2005-01-01T00:00:00Z"));
+
+    NamedList<Object> facets = new SimpleOrderedMap<>();
+    facets.add("count", 7L);
+    facets.add(DATE_FIELD, buckets(bucket(new Date(946684800000L), 3L), bucket(new Date(1104537600000L), 4L)));
+
+    List<FacetFieldResult> results = SolrUtils.processJsonFacets(new Facets(range), response(facets));
+
+    assertThat(results.size(), equalTo(1));
+    FacetFieldResult result = results.get(0);
+    assertThat(result.getField(), equalTo(DATE_FIELD));
+    assertThat(result.getTotalCount(), equalTo(2L));
+    assertThat(result.getSelectedValues(), equalTo(range.getValues()));
+    assertFacetValue(result.getValues().get(0), "2000-01-01T00:00:00Z", 3L);
+    assertFacetValue(result.getValues().get(1), "2005-01-01T00:00:00Z", 4L);
+  }
+
+  @Test
+  public void testNestedFacetResults() {
+    NestedFacetParameter nested = new NestedFacetParameter(STRING_FIELD, new StatisticsFacetParameter(NUMBER_FIELD,
+      StatisticsFacetParameter.MIN, StatisticsFacetParameter.MAX));
+
+    NamedList<Object> first = bucket("a", 2L);
+    first.add("min(" + NUMBER_FIELD + ")", 1.5);
+    first.add("max(" + NUMBER_FIELD + ")", 3.0);
+    NamedList<Object> second = bucket("b", 1L);
+    second.add("min(" + NUMBER_FIELD + ")", 7.0);
+    second.add("max(" + NUMBER_FIELD + ")", 7.0);
+
+    NamedList<Object> facets = new SimpleOrderedMap<>();
+    facets.add("count", 3L);
+    facets.add(STRING_FIELD, buckets(first, second));
+
+    List<FacetFieldResult> results = SolrUtils.processJsonFacets(new Facets(nested), response(facets));
+
+    assertThat(results.size(), equalTo(3));
+    assertThat(results.get(0).getField(), equalTo(STRING_FIELD));
+    assertFacetValue(results.get(0).getValues().get(0), "a", 2L);
+    assertFacetValue(results.get(0).getValues().get(1), "b", 1L);
+
+    FacetFieldResult statistics = results.get(1);
+    assertThat(statistics.getField(), equalTo(STRING_FIELD + "/a/" + NUMBER_FIELD));
+    assertFacetValue(statistics.getValues().get(0), "1.5", 2L);
+    assertThat(statistics.getValues().get(0).getLabel(), equalTo(StatisticsFacetParameter.MIN));
+    assertFacetValue(statistics.getValues().get(1), "3.0", 2L);
+    assertThat(results.get(2).getField(), equalTo(STRING_FIELD + "/b/" + NUMBER_FIELD));
+  }
+
+  @Test
+  public void testFacetResultsIgnoreFieldFacets() {
+    NamedList<Object> facets = new SimpleOrderedMap<>();
+    facets.add("count", 3L);
+
+    List<FacetFieldResult> results = SolrUtils.processJsonFacets(new Facets(new SimpleFacetParameter(STRING_FIELD)),
+      response(facets));
+
+    assertThat(results.size(), equalTo(0));
+  }
+
+  @Test
+  public void testDocValuesFields() {
+    assertThat(SolrUtils.getDocValuesField("id"), equalTo("id_dv"));
+    assertThat(SolrUtils.getDocValuesField(STRING_FIELD), equalTo(STRING_FIELD + "_dv"));
+    assertThat(SolrUtils.getDocValuesField("col4_tdt"), equalTo("col4_tdt_dv"));
+    assertThat(SolrUtils.getDocValuesField("col5_sort"), equalTo("col5_sort"));
+    assertThat(SolrUtils.getDocValuesField("col6_t"), nullValue());
+    assertThat(SolrUtils.getDocValuesField("col7_stored"), nullValue());
+  }
+
+  private static void assertFacetValue(FacetValue facetValue, String value, long count) {
+    assertThat(facetValue.getValue(), equalTo(value));
+    assertThat(facetValue.getCount(), equalTo(count));
+  }
+
+  private static NamedList<Object> bucket(Object value, long count) {
+    NamedList<Object> bucket = new SimpleOrderedMap<>();
+    bucket.add("val", value);
+    bucket.add("count", count);
+    return bucket;
+  }
+
+  @SafeVarargs
+  private static NamedList<Object> buckets(NamedList<Object>... buckets) {
+    NamedList<Object> facet = new SimpleOrderedMap<>();
+    facet.add("buckets", new ArrayList<>(Arrays.asList(buckets)));
+    return facet;
+  }
+
+  private static QueryResponse response(NamedList<Object> facets) {
+    NamedList<Object> response = new NamedList<>();
+    response.add("facets", facets);
+    QueryResponse queryResponse = new QueryResponse();
+    queryResponse.setResponse(response);
+    return queryResponse;
+  }
+}
@@ -0,0 +1,70 @@
+package com.databasepreservation.visualization.api.utils;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.ext.Provider;
+
+import com.databasepreservation.visualization.utils.Metrics;
+
+/**
+ * Records the latency and the outcome of each REST request, by resource
+ * method. For streamed responses (e.g. exports) the latency is the time until
+ * the response starts, the time spent writing the stream is not included.
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+@Provider
+public class MetricsFilter implements ContainerRequestFilter, ContainerResponseFilter {
+  private static final Metrics.Family<Metrics.Histogram> REST_DURATION = Metrics.histogram(
+    "dbvtk_rest_request_duration_seconds", "Time spent processing REST requests", Metrics.LATENCY_BUCKETS, "method");
+  private static final Metrics.Family<Metrics.Counter> REST_ERRORS = Metrics.counter(
+    "dbvtk_rest_request_errors_total", "REST requests that failed with a server error (5xx)", "method");
+  private static final Metrics.Family<Metrics.Gauge> REST_IN_FLIGHT = Metrics.gauge("dbvtk_rest_requests_in_flight",
+    "REST requests being processed", "method");
+
+  private static final String START_PROPERTY = MetricsFilter.class.getName() + ".start";
+  private static final String UNMATCHED_METHOD = "unmatched";
+  private static final int SERVER_ERROR = 500;
+
+  @Context
+  private ResourceInfo resourceInfo;
+
+  @Override
+  public void filter(ContainerRequestContext requestContext) throws IOException {
+    requestContext.setProperty(START_PROPERTY, System.nanoTime());
+    REST_IN_FLIGHT.labels(getMethodName()).inc();
+  }
+
+  @Override
+  public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext)
+    throws IOException {
+    Object start = requestContext.getProperty(START_PROPERTY);
+    if (!(start instanceof Long)) {
+      // the request did not go through the request filter (e.g. no resource
+      // matched the path)
+      return;
+    }
+
+    String method = getMethodName();
+    REST_DURATION.labels(method).observeNanos(System.nanoTime() - (Long) start);
+    if (responseContext.getStatus() >= SERVER_ERROR) {
+      REST_ERRORS.labels(method).inc();
+    }
+    REST_IN_FLIGHT.labels(method).dec();
+  }
+
+  private String getMethodName() {
+    Method method = resourceInfo != null ? resourceInfo.getResourceMethod() : null;
+    if (method == null) {
+      return UNMATCHED_METHOD;
+    }
+    return method.getDeclaringClass().getSimpleName() + "." + method.getName();
+  }
+}
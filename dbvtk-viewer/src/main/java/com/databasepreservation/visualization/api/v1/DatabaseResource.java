@@ -0,0 +1,57 @@
+package com.databasepreservation.visualization.api.v1;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+
+import org.roda.core.data.exceptions.RODAException;
+
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerMetadata;
+import com.databasepreservation.visualization.shared.ViewerFactory;
+import com.databasepreservation.visualization.shared.ViewerSafeConstants;
+import com.databasepreservation.visualization.utils.CachedDatabase;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+
+/**
+ * Resource used to obtain database information
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+@Path(DatabaseResource.ENDPOINT)
+@Api(value = DatabaseResource.SWAGGER_ENDPOINT)
+public class DatabaseResource {
+  public static final String ENDPOINT = ViewerSafeConstants.API_V1_DATABASE_RESOURCE;
+  public static final String SWAGGER_ENDPOINT = "v1 database";
+
+  @Context
+  private Request request;
+
+  @GET
+  @Path("/{" + ViewerSafeConstants.API_PATH_PARAM_DATABASE_UUID + "}/" + ViewerSafeConstants.API_DATABASE_METADATA)
+  @Produces({MediaType.APPLICATION_JSON})
+  @ApiOperation(value = "Get metadata", notes = "Gets database metadata. Supports conditional requests using ETags.", response = ViewerMetadata.class)
+  public Response getMetadata(@PathParam(ViewerSafeConstants.API_PATH_PARAM_DATABASE_UUID) String databaseUUID)
+    throws RODAException {
+    CachedDatabase cachedDatabase = ViewerFactory.getIndexBackend().retrieveCachedDatabase(null, databaseUUID);
+    EntityTag tag = new EntityTag(cachedDatabase.getETag());
+
+    CacheControl cacheControl = new CacheControl();
+    cacheControl.setNoCache(true);
+
+    // answer with 304 Not Modified if the client already has this version
+    Response.ResponseBuilder builder = request.evaluatePreconditions(tag);
+    if (builder == null) {
+      builder = Response.ok(cachedDatabase.getMetadata(), MediaType.APPLICATION_JSON);
+    }
+    return builder.tag(tag).cacheControl(cacheControl).build();
+  }
+}
@@ -0,0 +1,187 @@
+package com.databasepreservation.visualization.api.v1;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.ws.rs.DELETE;
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.roda.core.data.adapter.filter.Filter;
+import org.roda.core.data.adapter.sort.Sorter;
+import org.roda.core.data.exceptions.GenericException;
+import org.roda.core.data.exceptions.RODAException;
+import org.roda.core.data.exceptions.RequestNotValidException;
+import org.roda.core.data.utils.JsonUtils;
+
+import com.databasepreservation.visualization.server.export.ExportFormat;
+import com.databasepreservation.visualization.server.export.ExportJob;
+import com.databasepreservation.visualization.server.export.ExportJobService;
+import com.databasepreservation.visualization.shared.ViewerFactory;
+import com.databasepreservation.visualization.shared.ViewerSafeConstants;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+
+/**
+ * Resource used to run exports in the background and download the results
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+@Path(ExportJobsResource.ENDPOINT)
+@Api(value = ExportJobsResource.SWAGGER_ENDPOINT)
+public class ExportJobsResource {
+  public static final String ENDPOINT = ViewerSafeConstants.API_V1_EXPORT_JOBS_RESOURCE;
+  public static final String SWAGGER_ENDPOINT = "v1 export jobs";
+
+  private static final Pattern RANGE_PATTERN = Pattern.compile("^bytes=(\\d*)-(\\d*)$");
+  private static final String ACCEPT_RANGES = "Accept-Ranges";
+  private static final String CONTENT_RANGE = "Content-Range";
+
+  @POST
+  @Path("/{" + ViewerSafeConstants.API_PATH_PARAM_EXPORT_FORMAT + "}/{"
+    + ViewerSafeConstants.API_PATH_PARAM_DATABASE_UUID + "}/{" + ViewerSafeConstants.API_PATH_PARAM_TABLE_UUID + "}")
+  @Produces({MediaType.APPLICATION_JSON})
+  @ApiOperation(value = "Create export job", notes = "Starts exporting query results in the background (csv, tsv, jsonl or arrow format).", response = ExportJob.class)
+  public Response createJob(@PathParam(ViewerSafeConstants.API_PATH_PARAM_EXPORT_FORMAT) String formatParam,
+    @PathParam(ViewerSafeConstants.API_PATH_PARAM_DATABASE_UUID) String databaseUUID,
+    @PathParam(ViewerSafeConstants.API_PATH_PARAM_TABLE_UUID) String tableUUID,
+    @QueryParam(ViewerSafeConstants.API_QUERY_PARAM_FILTER) String filterParam,
+    @QueryParam(ViewerSafeConstants.API_QUERY_PARAM_FIELDS) String fieldsListParam,
+    @QueryParam(ViewerSafeConstants.API_QUERY_PARAM_SORTER) String sorterParam,
+    @QueryParam(ViewerSafeConstants.API_QUERY_PARAM_GZIP) boolean gzip) throws RODAException {
+    ExportFormat format = ExportFormat.fromExtension(formatParam);
+    if (format == null) {
+      throw new RequestNotValidException("Unknown export format: " + formatParam);
+    }
+
+    Filter filter = JsonUtils.getObjectFromJson(filterParam, Filter.class);
+    List<String> fields = JsonUtils.getListFromJson(fieldsListParam, String.class);
+    Sorter sorter = JsonUtils.getObjectFromJson(sorterParam, Sorter.class);
+
+    ExportJob job = ViewerFactory.getExportJobService().submit(null, databaseUUID, tableUUID, format, gzip, filter,
+      sorter, fields);
+    return Response.status(Response.Status.ACCEPTED).entity(job).type(MediaType.APPLICATION_JSON).build();
+  }
+
+  @GET
+  @Produces({MediaType.APPLICATION_JSON})
+  @ApiOperation(value = "List export jobs", notes = "Lists the export jobs that are queued, running or recently finished.", response = ExportJob.class, responseContainer = "List")
+  public List<ExportJob> listJobs() {
+    return ViewerFactory.getExportJobService().list();
+  }
+
+  @GET
+  @Path("/{" + ViewerSafeConstants.API_PATH_PARAM_JOB_ID + "}")
+  @Produces({MediaType.APPLICATION_JSON})
+  @ApiOperation(value = "Get export job", notes = "Gets the status and progress of an export job.", response = ExportJob.class)
+  public ExportJob getJob(@PathParam(ViewerSafeConstants.API_PATH_PARAM_JOB_ID) String jobId) throws RODAException {
+    return ViewerFactory.getExportJobService().get(jobId);
+  }
+
+  @DELETE
+  @Path("/{" + ViewerSafeConstants.API_PATH_PARAM_JOB_ID + "}")
+  @ApiOperation(value = "Delete export job", notes = "Cancels an export job (if it is still running) and deletes the exported file.")
+  public Response deleteJob(@PathParam(ViewerSafeConstants.API_PATH_PARAM_JOB_ID) String jobId)
+    throws RODAException {
+    ViewerFactory.getExportJobService().remove(jobId);
+    return Response.noContent().build();
+  }
+
+  @GET
+  @Path("/{" + ViewerSafeConstants.API_PATH_PARAM_JOB_ID + "}/" + ViewerSafeConstants.API_EXPORT_JOB_FILE)
+  @Produces({MediaType.APPLICATION_OCTET_STREAM})
+  @ApiOperation(value = "Download export", notes = "Downloads the file of a finished export job. Supports byte Range requests, so interrupted downloads can be resumed.", response = String.class)
+  public Response downloadJobFile(@PathParam(ViewerSafeConstants.API_PATH_PARAM_JOB_ID) String jobId,
+    @HeaderParam(HttpHeaders.RANGE) String range) throws RODAException {
+    ExportJobService service = ViewerFactory.getExportJobService();
+    ExportJob job = service.get(jobId);
+    if (job.getStatus() != ExportJob.Status.DONE) {
+      throw new RequestNotValidException("Export job " + jobId + " is not done, its status is " + job.getStatus());
+    }
+
+    final Path file = job.getFile();
+    long size;
+    try {
+      size = Files.size(file);
+    } catch (IOException e) {
+      throw new GenericException("Could not read export file", e);
+    }
+
+    String contentDisposition = "attachment; filename=\"" + job.getFilename() + "\"";
+    String mediaType = job.isGzip() ? MediaType.APPLICATION_OCTET_STREAM : job.getFormat().getMediaType();
+
+    if (StringUtils.isNotBlank(range)) {
+      Matcher matcher = RANGE_PATTERN.matcher(range.trim());
+      if (matcher.matches() && (!matcher.group(1).isEmpty() || !matcher.group(2).isEmpty())) {
+        long start;
+        long end;
+        try {
+          if (matcher.group(1).isEmpty()) {
+            // suffix range: the last N bytes
+            start = Math.max(0, size - Long.parseLong(matcher.group(2)));
+            end = size - 1;
+          } else {
+            start = Long.parseLong(matcher.group(1));
+            end = matcher.group(2).isEmpty() ? size - 1 : Math.min(Long.parseLong(matcher.group(2)), size - 1);
+          }
+        } catch (NumberFormatException e) {
+          // positions that do not fit in a long are way past the end of the file
+          return rangeNotSatisfiable(size);
+        }
+
+        if (start >= size || start > end) {
+          return rangeNotSatisfiable(size);
+        }
+
+        return Response.status(Response.Status.PARTIAL_CONTENT).entity(streamRange(file, start, end - start + 1))
+          .type(mediaType).header(HttpHeaders.CONTENT_DISPOSITION, contentDisposition).header(ACCEPT_RANGES, "bytes")
+          .header(CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size)
+          .header(HttpHeaders.CONTENT_LENGTH, end - start + 1).build();
+      }
+      // unsupported ranges (e.g. multiple ranges) are ignored
+    }
+
+    return Response.ok(streamRange(file, 0, size), mediaType)
+      .header(HttpHeaders.CONTENT_DISPOSITION, contentDisposition).header(ACCEPT_RANGES, "bytes")
+      .header(HttpHeaders.CONTENT_LENGTH, size).build();
+  }
+
+  private static Response rangeNotSatisfiable(long size) {
+    return Response.status(Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE).header(CONTENT_RANGE, "bytes */" + size)
+      .build();
+  }
+
+  private static StreamingOutput streamRange(final Path file, final long start, final long length) {
+    return new StreamingOutput() {
+      @Override
+      public void write(OutputStream output) throws IOException, WebApplicationException {
+        try (SeekableByteChannel channel = Files.newByteChannel(file)) {
+          channel.position(start);
+          InputStream input = Channels.newInputStream(channel);
+          IOUtils.copyLarge(input, output, 0, length);
+        }
+      }
+    };
+  }
+}
@@ -1,6 +1,5 @@
 package com.databasepreservation.visualization.api.v1;
 
-import java.io.InputStream;
 import java.util.List;
 
 import javax.servlet.http.HttpServletRequest;
@@ -18,16 +17,21 @@ import org.roda.core.data.adapter.filter.Filter;
 import org.roda.core.data.adapter.sort.Sorter;
 import org.roda.core.data.adapter.sublist.Sublist;
 import org.roda.core.data.exceptions.RODAException;
+import org.roda.core.data.exceptions.RequestNotValidException;
 import org.roda.core.data.utils.JsonUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.databasepreservation.visualization.api.utils.ApiUtils;
-import com.databasepreservation.visualization.api.utils.DownloadUtils;
 import com.databasepreservation.visualization.api.utils.StreamResponse;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerColumn;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerTable;
+import com.databasepreservation.visualization.server.export.ExportFormat;
+import com.databasepreservation.visualization.server.export.RowExporter;
 import com.databasepreservation.visualization.shared.ViewerFactory;
 import com.databasepreservation.visualization.shared.ViewerSafeConstants;
-import com.databasepreservation.visualization.utils.SolrManager;
+import com.databasepreservation.visualization.utils.IndexBackend;
+import com.databasepreservation.visualization.utils.SolrDocumentStream;
 
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
@@ -45,6 +49,8 @@ public class ExportsResource {
 
   private static Logger LOGGER = LoggerFactory.getLogger(ExportsResource.class);
 
+  private static final String GZIP_MEDIA_TYPE = "application/gzip";
+
   @Context
   private HttpServletRequest request;
 
@@ -72,20 +78,24 @@ public class ExportsResource {
   // }
 
   @GET
-  @Path("/csv/{" + ViewerSafeConstants.API_PATH_PARAM_DATABASE_UUID + "}/{"
-    + ViewerSafeConstants.API_PATH_PARAM_TABLE_UUID + "}")
+  @Path("/{" + ViewerSafeConstants.API_PATH_PARAM_EXPORT_FORMAT + "}/{"
+    + ViewerSafeConstants.API_PATH_PARAM_DATABASE_UUID + "}/{" + ViewerSafeConstants.API_PATH_PARAM_TABLE_UUID + "}")
   @Produces({MediaType.APPLICATION_OCTET_STREAM})
-  @ApiOperation(value = "Export as CSV", notes = "Export query results as CSV.", response = String.class, responseContainer = "CSVExport")
-  public Response getCSVResultsPost(@PathParam(ViewerSafeConstants.API_PATH_PARAM_DATABASE_UUID) String databaseUUID,
+  @ApiOperation(value = "Export rows", notes = "Export query results as CSV, TSV, JSON Lines or Arrow IPC stream (csv, tsv, jsonl or arrow format), optionally compressed with gzip.", response = String.class, responseContainer = "Export")
+  public Response getResults(@PathParam(ViewerSafeConstants.API_PATH_PARAM_EXPORT_FORMAT) String formatParam,
+    @PathParam(ViewerSafeConstants.API_PATH_PARAM_DATABASE_UUID) String databaseUUID,
     @PathParam(ViewerSafeConstants.API_PATH_PARAM_TABLE_UUID) String tableUUID,
     @QueryParam(ViewerSafeConstants.API_QUERY_PARAM_FILTER) String filterParam,
     @QueryParam(ViewerSafeConstants.API_QUERY_PARAM_FIELDS) String fieldsListParam,
     @QueryParam(ViewerSafeConstants.API_QUERY_PARAM_SORTER) String sorterParam,
-    @QueryParam(ViewerSafeConstants.API_QUERY_PARAM_SUBLIST) String subListParam) throws RODAException {
-    // delegate action to controller
-    // Jobs jobs = JobsHelper.getJobsFromIndexResult(user, start, limit);
+    @QueryParam(ViewerSafeConstants.API_QUERY_PARAM_SUBLIST) String subListParam,
+    @QueryParam(ViewerSafeConstants.API_QUERY_PARAM_GZIP) boolean gzip) throws RODAException {
+    ExportFormat format = ExportFormat.fromExtension(formatParam);
+    if (format == null) {
+      throw new RequestNotValidException("Unknown export format: " + formatParam);
+    }
 
-    SolrManager solrManager = ViewerFactory.getSolrManager();
+    IndexBackend indexBackend = ViewerFactory.getIndexBackend();
 
     Filter filter = JsonUtils.getObjectFromJson(filterParam, Filter.class);
     List<String> fields = JsonUtils.getListFromJson(fieldsListParam, String.class);
@@ -95,10 +105,13 @@ public class ExportsResource {
       sublist = JsonUtils.getObjectFromJson(subListParam, Sublist.class);
     }
 
-    // TODO: use viewerTable to convert solrColumnNames into displayColumnNames
-    InputStream rowsCSV = solrManager.findRowsCSV(null, tableUUID, filter, sorter, sublist, fields);
+    ViewerTable table = indexBackend.retrieveTable(null, databaseUUID, tableUUID);
+    List<ViewerColumn> columns = RowExporter.getColumns(table, fields);
 
-    return ApiUtils.okResponse(new StreamResponse("file.csv", MediaType.APPLICATION_OCTET_STREAM, DownloadUtils
-      .stream(rowsCSV)));
+    // rows are read from the index while they are being written to the response
+    SolrDocumentStream rows = indexBackend.streamRows(null, tableUUID, filter, sorter, sublist, fields);
+    String mediaType = gzip ? GZIP_MEDIA_TYPE : format.getMediaType();
+    return ApiUtils.okResponse(new StreamResponse(RowExporter.getFilename(table, format, gzip), mediaType,
+      RowExporter.streamingOutput(rows, columns, format, gzip)));
   }
 }
@@ -0,0 +1,45 @@
+package com.databasepreservation.visualization.api.v1;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
+import com.databasepreservation.visualization.shared.ViewerSafeConstants;
+import com.databasepreservation.visualization.utils.Metrics;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+
+/**
+ * Resource used by monitoring systems to collect the application metrics
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+@Path(MetricsResource.ENDPOINT)
+@Api(value = MetricsResource.SWAGGER_ENDPOINT)
+public class MetricsResource {
+  public static final String ENDPOINT = ViewerSafeConstants.API_V1_METRICS_RESOURCE;
+  public static final String SWAGGER_ENDPOINT = "v1 metrics";
+
+  @GET
+  @Produces({MediaType.TEXT_PLAIN})
+  @ApiOperation(value = "Get metrics", notes = "Gets the RPC, REST, Solr, cache and export metrics in the Prometheus text format.", response = String.class)
+  public Response getMetrics() {
+    StreamingOutput output = new StreamingOutput() {
+      @Override
+      public void write(OutputStream output) throws IOException, WebApplicationException {
+        Metrics.write(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+      }
+    };
+    return Response.ok(output, Metrics.CONTENT_TYPE).build();
+  }
+}
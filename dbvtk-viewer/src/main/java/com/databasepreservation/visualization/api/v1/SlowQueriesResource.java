@@ -0,0 +1,64 @@
+package com.databasepreservation.visualization.api.v1;
+
+import java.util.Collections;
+import java.util.List;
+
+import javax.ws.rs.DELETE;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import com.databasepreservation.visualization.shared.ViewerFactory;
+import com.databasepreservation.visualization.shared.ViewerSafeConstants;
+import com.databasepreservation.visualization.utils.ColumnarCacheBackend;
+import com.databasepreservation.visualization.utils.IndexBackend;
+import com.databasepreservation.visualization.utils.SlowQuery;
+import com.databasepreservation.visualization.utils.SlowQueryLog;
+import com.databasepreservation.visualization.utils.SolrManager;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+
+/**
+ * Resource used to inspect the queries that exceeded the slow query threshold
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+@Path(SlowQueriesResource.ENDPOINT)
+@Api(value = SlowQueriesResource.SWAGGER_ENDPOINT)
+public class SlowQueriesResource {
+  public static final String ENDPOINT = ViewerSafeConstants.API_V1_SLOW_QUERIES_RESOURCE;
+  public static final String SWAGGER_ENDPOINT = "v1 slow queries";
+
+  @GET
+  @Produces({MediaType.APPLICATION_JSON})
+  @ApiOperation(value = "List slow queries", notes = "Lists the most recent queries that took longer than the slow query threshold, most recent first.", response = SlowQuery.class, responseContainer = "List")
+  public List<SlowQuery> listSlowQueries() {
+    SlowQueryLog log = getSlowQueryLog();
+    return log != null ? log.getEntries() : Collections.<SlowQuery> emptyList();
+  }
+
+  @DELETE
+  @ApiOperation(value = "Clear slow queries", notes = "Removes all the recorded slow queries.")
+  public Response clearSlowQueries() {
+    SlowQueryLog log = getSlowQueryLog();
+    if (log != null) {
+      log.clear();
+    }
+    return Response.noContent().build();
+  }
+
+  /**
+   * @return the slow query log of the Solr backend, or null if the index is not
+   *         a Solr server
+   */
+  private static SlowQueryLog getSlowQueryLog() {
+    IndexBackend backend = ViewerFactory.getIndexBackend();
+    if (backend instanceof ColumnarCacheBackend) {
+      backend = ((ColumnarCacheBackend) backend).getDelegate();
+    }
+    return backend instanceof SolrManager ? ((SolrManager) backend).getSlowQueryLog() : null;
+  }
+}
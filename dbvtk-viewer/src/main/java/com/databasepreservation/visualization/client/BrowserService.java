@@ -1,6 +1,7 @@
 package com.databasepreservation.visualization.client;
 
 import java.util.List;
+import java.util.Map;
 
 import org.roda.core.data.adapter.facet.Facets;
 import org.roda.core.data.adapter.filter.Filter;
@@ -13,6 +14,9 @@ import org.roda.core.data.exceptions.RequestNotValidException;
 import org.roda.core.data.v2.index.IndexResult;
 import org.roda.core.data.v2.index.IsIndexed;
 
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerDatabase;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerRowWithRelations;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerSchema;
 import com.databasepreservation.visualization.client.ViewerStructure.ViewerTable;
 import com.databasepreservation.visualization.client.common.search.SearchField;
 import com.databasepreservation.visualization.client.common.search.SearchInfo;
@@ -58,16 +62,51 @@ public interface BrowserService extends RemoteService {
   <T extends IsIndexed> T retrieve(String classNameToReturn, String id) throws AuthorizationDeniedException,
     GenericException, NotFoundException;
 
+  ViewerDatabase retrieveDatabaseSummary(String databaseUUID) throws AuthorizationDeniedException, GenericException,
+    NotFoundException;
+
+  ViewerSchema retrieveSchema(String databaseUUID, String schemaUUID) throws AuthorizationDeniedException,
+    GenericException, NotFoundException;
+
+  ViewerTable retrieveTable(String databaseUUID, String tableUUID) throws AuthorizationDeniedException,
+    GenericException, NotFoundException;
+
+  /**
+   * Retrieves several tables of a database in a single request
+   */
+  List<ViewerTable> retrieveTables(String databaseUUID, List<String> tableUUIDs) throws AuthorizationDeniedException,
+    GenericException, NotFoundException;
+
   <T extends IsIndexed> IndexResult<T> findRows(String classNameToReturn, String tableUUID, Filter filter,
     Sorter sorter, Sublist sublist, Facets facets, String localeString) throws GenericException,
     AuthorizationDeniedException, RequestNotValidException;
 
+  <T extends IsIndexed> IndexResult<T> findRows(String classNameToReturn, String tableUUID, Filter filter,
+    Sorter sorter, Sublist sublist, Facets facets, List<String> fieldsToReturn, String localeString)
+    throws GenericException, AuthorizationDeniedException, RequestNotValidException;
+
+  /**
+   * Finds rows on behalf of a view. A request supersedes (and cancels) the
+   * running request with the same tag and a lower serial.
+   */
+  <T extends IsIndexed> IndexResult<T> findRows(String classNameToReturn, String tableUUID, Filter filter,
+    Sorter sorter, Sublist sublist, Facets facets, List<String> fieldsToReturn, String localeString,
+    String requestTag, long requestSerial) throws GenericException, AuthorizationDeniedException,
+    RequestNotValidException;
+
   <T extends IsIndexed> Long countRows(String classNameToReturn, String tableUUID, Filter filter)
     throws AuthorizationDeniedException, GenericException, RequestNotValidException;
 
   <T extends IsIndexed> T retrieveRows(String classNameToReturn, String tableUUID, String rowUUID)
     throws AuthorizationDeniedException, GenericException, NotFoundException;
 
+  <T extends IsIndexed> Map<String, List<T>> retrieveRows(String classNameToReturn,
+    Map<String, List<String>> rowUUIDsByTable) throws AuthorizationDeniedException, GenericException,
+    RequestNotValidException;
+
+  ViewerRowWithRelations retrieveRowWithRelations(String databaseUUID, String tableUUID, String rowUUID)
+    throws AuthorizationDeniedException, GenericException, NotFoundException;
+
   String getSolrQueryString(Filter filter, Sorter sorter, Sublist sublist, Facets facets)
     throws AuthorizationDeniedException, GenericException, RequestNotValidException;
 
@@ -14,6 +14,7 @@ import com.databasepreservation.visualization.client.ViewerStructure.ViewerTable
 import com.databasepreservation.visualization.client.common.search.SearchField;
 import com.databasepreservation.visualization.client.common.search.SearchInfo;
 import com.google.gwt.core.client.GWT;
+import com.google.gwt.http.client.Request;
 import com.google.gwt.user.client.rpc.AsyncCallback;
 
 public interface BrowserServiceAsync {
@@ -43,6 +44,38 @@ public interface BrowserServiceAsync {
    */
   <T extends IsIndexed> void retrieve(java.lang.String classNameToReturn, java.lang.String id, AsyncCallback<T> callback);
 
+  /**
+   * GWT-RPC service asynchronous (client-side) interface
+   * 
+   * @see com.databasepreservation.visualization.client.BrowserService
+   */
+  void retrieveDatabaseSummary(java.lang.String databaseUUID,
+    AsyncCallback<com.databasepreservation.visualization.client.ViewerStructure.ViewerDatabase> callback);
+
+  /**
+   * GWT-RPC service asynchronous (client-side) interface
+   * 
+   * @see com.databasepreservation.visualization.client.BrowserService
+   */
+  void retrieveSchema(java.lang.String databaseUUID, java.lang.String schemaUUID,
+    AsyncCallback<com.databasepreservation.visualization.client.ViewerStructure.ViewerSchema> callback);
+
+  /**
+   * GWT-RPC service asynchronous (client-side) interface
+   * 
+   * @see com.databasepreservation.visualization.client.BrowserService
+   */
+  void retrieveTable(java.lang.String databaseUUID, java.lang.String tableUUID,
+    AsyncCallback<com.databasepreservation.visualization.client.ViewerStructure.ViewerTable> callback);
+
+  /**
+   * GWT-RPC service asynchronous (client-side) interface
+   * 
+   * @see com.databasepreservation.visualization.client.BrowserService
+   */
+  void retrieveTables(java.lang.String databaseUUID, java.util.List<java.lang.String> tableUUIDs,
+    AsyncCallback<java.util.List<com.databasepreservation.visualization.client.ViewerStructure.ViewerTable>> callback);
+
   /**
    * GWT-RPC service asynchronous (client-side) interface
    * 
@@ -53,6 +86,29 @@ public interface BrowserServiceAsync {
     org.roda.core.data.adapter.sublist.Sublist sublist, org.roda.core.data.adapter.facet.Facets facets,
     java.lang.String localeString, AsyncCallback<org.roda.core.data.v2.index.IndexResult<T>> callback);
 
+  /**
+   * GWT-RPC service asynchronous (client-side) interface
+   * 
+   * @see com.databasepreservation.visualization.client.BrowserService
+   */
+  <T extends IsIndexed> void findRows(java.lang.String classNameToReturn, java.lang.String tableUUID,
+    org.roda.core.data.adapter.filter.Filter filter, org.roda.core.data.adapter.sort.Sorter sorter,
+    org.roda.core.data.adapter.sublist.Sublist sublist, org.roda.core.data.adapter.facet.Facets facets,
+    java.util.List<java.lang.String> fieldsToReturn, java.lang.String localeString,
+    AsyncCallback<org.roda.core.data.v2.index.IndexResult<T>> callback);
+
+  /**
+   * GWT-RPC service asynchronous (client-side) interface. The returned request
+   * can be cancelled when a newer request supersedes it.
+   * 
+   * @see com.databasepreservation.visualization.client.BrowserService
+   */
+  <T extends IsIndexed> Request findRows(java.lang.String classNameToReturn, java.lang.String tableUUID,
+    org.roda.core.data.adapter.filter.Filter filter, org.roda.core.data.adapter.sort.Sorter sorter,
+    org.roda.core.data.adapter.sublist.Sublist sublist, org.roda.core.data.adapter.facet.Facets facets,
+    java.util.List<java.lang.String> fieldsToReturn, java.lang.String localeString, java.lang.String requestTag,
+    long requestSerial, AsyncCallback<org.roda.core.data.v2.index.IndexResult<T>> callback);
+
   /**
    * GWT-RPC service asynchronous (client-side) interface
    * 
@@ -69,6 +125,23 @@ public interface BrowserServiceAsync {
   <T extends IsIndexed> void retrieveRows(java.lang.String classNameToReturn, java.lang.String tableUUID,
     java.lang.String rowUUID, AsyncCallback<T> callback);
 
+  /**
+   * GWT-RPC service asynchronous (client-side) interface
+   * 
+   * @see com.databasepreservation.visualization.client.BrowserService
+   */
+  <T extends IsIndexed> void retrieveRows(java.lang.String classNameToReturn,
+    java.util.Map<java.lang.String, java.util.List<java.lang.String>> rowUUIDsByTable,
+    AsyncCallback<java.util.Map<java.lang.String, java.util.List<T>>> callback);
+
+  /**
+   * GWT-RPC service asynchronous (client-side) interface
+   * 
+   * @see com.databasepreservation.visualization.client.BrowserService
+   */
+  void retrieveRowWithRelations(java.lang.String databaseUUID, java.lang.String tableUUID, java.lang.String rowUUID,
+    AsyncCallback<com.databasepreservation.visualization.client.ViewerStructure.ViewerRowWithRelations> callback);
+
   void getSearchFields(ViewerTable viewerTable, AsyncCallback<List<SearchField>> async);
 
   void getSolrQueryString(Filter filter, Sorter sorter, Sublist sublist, Facets facets, AsyncCallback<String> async)
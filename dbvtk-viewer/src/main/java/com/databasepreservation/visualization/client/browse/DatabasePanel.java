@@ -1,15 +1,24 @@
 package com.databasepreservation.visualization.client.browse;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.roda.core.data.v2.index.IsIndexed;
 
 import com.databasepreservation.visualization.client.BrowserService;
 import com.databasepreservation.visualization.client.ViewerStructure.ViewerDatabase;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerForeignKey;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerSchema;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerTable;
 import com.databasepreservation.visualization.client.common.DefaultAsyncCallback;
 import com.databasepreservation.visualization.client.common.sidebar.DatabaseSidebar;
 import com.databasepreservation.visualization.client.common.utils.RightPanelLoader;
+import com.databasepreservation.visualization.client.common.utils.RightPanelLoader.RequiredMetadata;
 import com.databasepreservation.visualization.client.main.BreadcrumbPanel;
 import com.databasepreservation.visualization.shared.client.Tools.BreadcrumbManager;
 import com.google.gwt.core.client.GWT;
@@ -53,6 +62,12 @@ public class DatabasePanel extends Composite {
   private String databaseUUID;
   private ViewerDatabase database;
 
+  // whether database has the complete metadata, instead of the summary
+  private boolean complete = false;
+
+  // schemas and tables whose complete metadata is already in database
+  private final Set<String> completeParts = new HashSet<>();
+
   private DatabasePanel(String databaseUUID) {
     this.databaseUUID = databaseUUID;
     this.sidebar = DatabaseSidebar.getInstance(databaseUUID);
@@ -64,23 +79,131 @@ public class DatabasePanel extends Composite {
 
   public void load(RightPanelLoader rightPanelLoader) {
     if (database == null) {
-      loadPanelWithDatabase(rightPanelLoader);
+      loadPanelWithDatabaseSummary(rightPanelLoader);
     } else {
+      loadPanelWithMetadata(rightPanelLoader);
+    }
+  }
+
+  private void loadPanelWithDatabaseSummary(final RightPanelLoader rightPanelLoader) {
+    BrowserService.Util.getInstance().retrieveDatabaseSummary(databaseUUID,
+      new DefaultAsyncCallback<ViewerDatabase>() {
+        @Override
+        public void onSuccess(ViewerDatabase result) {
+          if (database == null) {
+            database = result;
+          }
+          loadPanelWithMetadata(rightPanelLoader);
+        }
+      });
+  }
+
+  /**
+   * Retrieves the metadata needed by the panel (if it was not retrieved before)
+   * and then loads the panel
+   */
+  private void loadPanelWithMetadata(final RightPanelLoader rightPanelLoader) {
+    final String uuid = rightPanelLoader.getUUID();
+    if (complete || rightPanelLoader.getRequiredMetadata() == RequiredMetadata.SUMMARY) {
       loadPanel(rightPanelLoader);
+      return;
+    }
+
+    if (completeParts.contains(uuid)) {
+      if (rightPanelLoader.getRequiredMetadata() == RequiredMetadata.SCHEMA) {
+        loadPanelWithReferencedTables(database.getMetadata().getSchema(uuid).getTables(), rightPanelLoader);
+      } else {
+        loadPanelWithReferencedTables(Collections.singletonList(database.getMetadata().getTable(uuid)),
+          rightPanelLoader);
+      }
+      return;
+    }
+
+    switch (rightPanelLoader.getRequiredMetadata()) {
+      case SCHEMA:
+        BrowserService.Util.getInstance().retrieveSchema(databaseUUID, uuid,
+          new DefaultAsyncCallback<ViewerSchema>() {
+            @Override
+            public void onSuccess(ViewerSchema schema) {
+              putSchema(schema);
+              loadPanelWithReferencedTables(schema.getTables(), rightPanelLoader);
+            }
+          });
+        break;
+      case TABLE:
+        BrowserService.Util.getInstance().retrieveTable(databaseUUID, uuid,
+          new DefaultAsyncCallback<ViewerTable>() {
+            @Override
+            public void onSuccess(ViewerTable table) {
+              putTable(table);
+              loadPanelWithReferencedTables(Collections.singletonList(table), rightPanelLoader);
+            }
+          });
+        break;
+      default:
+        BrowserService.Util.getInstance().retrieve(ViewerDatabase.class.getName(), databaseUUID,
+          new DefaultAsyncCallback<IsIndexed>() {
+            @Override
+            public void onSuccess(IsIndexed result) {
+              database = (ViewerDatabase) result;
+              complete = true;
+              loadPanel(rightPanelLoader);
+            }
+          });
+        break;
     }
   }
 
-  private void loadPanelWithDatabase(final RightPanelLoader rightPanelLoader) {
-    BrowserService.Util.getInstance().retrieve(ViewerDatabase.class.getName(), databaseUUID,
-      new DefaultAsyncCallback<IsIndexed>() {
+  /**
+   * Retrieves the tables referenced by the foreign keys of the given tables
+   * (panels show their names and columns) and then loads the panel
+   */
+  private void loadPanelWithReferencedTables(List<ViewerTable> tables, final RightPanelLoader rightPanelLoader) {
+    final Set<String> missing = new HashSet<>();
+    for (ViewerTable table : tables) {
+      if (!complete && table.getForeignKeys() != null) {
+        for (ViewerForeignKey foreignKey : table.getForeignKeys()) {
+          if (!completeParts.contains(foreignKey.getReferencedTableUUID())) {
+            missing.add(foreignKey.getReferencedTableUUID());
+          }
+        }
+      }
+    }
+
+    if (missing.isEmpty()) {
+      loadPanel(rightPanelLoader);
+      return;
+    }
+
+    BrowserService.Util.getInstance().retrieveTables(databaseUUID, new ArrayList<>(missing),
+      new DefaultAsyncCallback<List<ViewerTable>>() {
         @Override
-        public void onSuccess(IsIndexed result) {
-          database = (ViewerDatabase) result;
+        public void onSuccess(List<ViewerTable> referencedTables) {
+          for (ViewerTable table : referencedTables) {
+            putTable(table);
+          }
           loadPanel(rightPanelLoader);
         }
       });
   }
 
+  private void putSchema(ViewerSchema schema) {
+    if (!complete) {
+      database.getMetadata().putSchema(schema);
+      completeParts.add(schema.getUUID());
+      for (ViewerTable table : schema.getTables()) {
+        completeParts.add(table.getUUID());
+      }
+    }
+  }
+
+  private void putTable(ViewerTable table) {
+    if (!complete) {
+      database.getMetadata().putTable(table);
+      completeParts.add(table.getUUID());
+    }
+  }
+
   private void loadPanel(RightPanelLoader rightPanelLoader) {
     RightPanel rightPanel = rightPanelLoader.load(database);
 
@@ -9,8 +9,6 @@ import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
 
-import org.roda.core.data.v2.index.IsIndexed;
-
 import com.databasepreservation.visualization.client.BrowserService;
 import com.databasepreservation.visualization.client.ViewerStructure.ViewerCell;
 import com.databasepreservation.visualization.client.ViewerStructure.ViewerColumn;
@@ -19,7 +17,8 @@ import com.databasepreservation.visualization.client.ViewerStructure.ViewerForei
 import com.databasepreservation.visualization.client.ViewerStructure.ViewerMetadata;
 import com.databasepreservation.visualization.client.ViewerStructure.ViewerReference;
 import com.databasepreservation.visualization.client.ViewerStructure.ViewerRow;
-import com.databasepreservation.visualization.client.ViewerStructure.ViewerSchema;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerRowRelation;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerRowWithRelations;
 import com.databasepreservation.visualization.client.ViewerStructure.ViewerTable;
 import com.databasepreservation.visualization.client.common.DefaultAsyncCallback;
 import com.databasepreservation.visualization.client.common.utils.CommonClientUtils;
@@ -61,6 +60,7 @@ public class RowPanel extends RightPanel {
   private ViewerTable table;
   private final String rowUUID;
   private ViewerRow row;
+  private List<ViewerRowRelation> relations;
 
   @UiField
   HTML content;
@@ -83,7 +83,7 @@ public class RowPanel extends RightPanel {
       + SafeHtmlUtils.htmlEscape(rowUUID)));
     recordHeader.setWidget(CommonClientUtils.getSchemaAndTableHeader(database.getUUID(), table, "h1"));
 
-    init();
+    loadRowWithRelations(table.getUUID(), rowUUID);
   }
 
   private RowPanel(ViewerDatabase viewerDatabase, final String tableUUID, final String rowUUID) {
@@ -97,11 +97,20 @@ public class RowPanel extends RightPanel {
       + SafeHtmlUtils.htmlEscape(rowUUID)));
     recordHeader.setWidget(CommonClientUtils.getSchemaAndTableHeader(database.getUUID(), table, "h1"));
 
-    BrowserService.Util.getInstance().retrieveRows(ViewerRow.class.getName(), tableUUID, rowUUID,
-      new DefaultAsyncCallback<IsIndexed>() {
+    loadRowWithRelations(tableUUID, rowUUID);
+  }
+
+  /**
+   * Gets the row and its foreign key relations (computed by the server) in a
+   * single request
+   */
+  private void loadRowWithRelations(String tableUUID, String rowUUID) {
+    BrowserService.Util.getInstance().retrieveRowWithRelations(database.getUUID(), tableUUID, rowUUID,
+      new DefaultAsyncCallback<ViewerRowWithRelations>() {
         @Override
-        public void onSuccess(IsIndexed result) {
-          row = (ViewerRow) result;
+        public void onSuccess(ViewerRowWithRelations result) {
+          row = result.getRow();
+          relations = result.getRelations();
           init();
         }
       });
@@ -124,39 +133,24 @@ public class RowPanel extends RightPanel {
 
     ViewerMetadata metadata = database.getMetadata();
 
-    // get references where this column is source in foreign keys
-    for (ViewerForeignKey fk : table.getForeignKeys()) {
-      Ref ref = new Ref(table, metadata.getTable(fk.getReferencedTableUUID()), fk);
-      if (fk.getReferences().size() == 1) {
-        Set<Ref> refs = colIndexRelatedTo.get(ref.getSingleColumnIndex());
-        if (refs == null) {
-          refs = new TreeSet<>();
-          colIndexRelatedTo.put(ref.getSingleColumnIndex(), refs);
-        }
-        refs.add(ref);
-      } else {
-        recordRelatedTo.add(ref);
-      }
-    }
-
-    // get references where this column is (at least one of) the target of
-    // foreign keys
-    for (ViewerSchema viewerSchema : database.getMetadata().getSchemas()) {
-      for (ViewerTable viewerTable : viewerSchema.getTables()) {
-        for (ViewerForeignKey fk : viewerTable.getForeignKeys()) {
-          if (fk.getReferencedTableUUID().equals(table.getUUID())) {
-            Ref ref = new Ref(table, viewerTable, fk);
-            if (fk.getReferences().size() == 1) {
-              Set<Ref> refs = colIndexReferencedBy.get(ref.getSingleColumnIndex());
-              if (refs == null) {
-                refs = new TreeSet<>();
-                colIndexReferencedBy.put(ref.getSingleColumnIndex(), refs);
-              }
-              refs.add(ref);
-            } else {
-              recordReferencedBy.add(ref);
-            }
+    // relations where this row is the source (related to) or the target
+    // (referenced by) of foreign keys, skipping those without related rows
+    for (ViewerRowRelation relation : relations) {
+      if (relation.getCount() > 0) {
+        Ref ref = new Ref(table, metadata.getTable(relation.getTableUUID()), relation);
+
+        Map<String, Set<Ref>> colIndexRefs = relation.isReferencedBy() ? colIndexReferencedBy : colIndexRelatedTo;
+        if (relation.getForeignKey().getReferences().size() == 1) {
+          Set<Ref> refs = colIndexRefs.get(ref.getSingleColumnIndex());
+          if (refs == null) {
+            refs = new TreeSet<>();
+            colIndexRefs.put(ref.getSingleColumnIndex(), refs);
           }
+          refs.add(ref);
+        } else if (relation.isReferencedBy()) {
+          recordReferencedBy.add(ref);
+        } else {
+          recordRelatedTo.add(ref);
         }
       }
     }
@@ -202,8 +196,19 @@ public class RowPanel extends RightPanel {
           b.appendHtmlConstant(", ");
         }
 
-        Hyperlink hyperlink = new Hyperlink(ref.getSchemaAndTableName(), HistoryManager.linkToForeignKey(
-          database.getUUID(), ref.refTable.getUUID(), columnNamesAndValues));
+        String link;
+        if (ref.relatedRowUUID != null) {
+          link = HistoryManager.linkToRecord(database.getUUID(), ref.refTable.getUUID(), ref.relatedRowUUID);
+        } else {
+          link = HistoryManager.linkToForeignKey(database.getUUID(), ref.refTable.getUUID(), columnNamesAndValues);
+        }
+
+        String text = ref.getSchemaAndTableName();
+        if (ref.count > 1) {
+          text += " (" + ref.count + ")";
+        }
+
+        Hyperlink hyperlink = new Hyperlink(text, link);
         hyperlink.addStyleName("related-records-link");
         b.appendHtmlConstant(hyperlink.toString());
         firstRef = false;
@@ -268,13 +273,18 @@ public class RowPanel extends RightPanel {
   private static class Ref implements Comparable<Ref> {
     ViewerTable refTable;
     Map<String, String> foreignSolrColumnToRowSolrColumn;
+    long count;
+    String relatedRowUUID;
 
-    Ref(ViewerTable currentTable, ViewerTable otherTable, ViewerForeignKey foreignKey) {
+    Ref(ViewerTable currentTable, ViewerTable otherTable, ViewerRowRelation relation) {
+      ViewerForeignKey foreignKey = relation.getForeignKey();
       refTable = otherTable;
       foreignSolrColumnToRowSolrColumn = new TreeMap<>();
+      count = relation.getCount();
+      relatedRowUUID = relation.getRelatedRow() != null ? relation.getRelatedRow().getUUID() : null;
 
       // tableUUID to use in URL is always otherTable.getUUID()
-      if (foreignKey.getReferencedTableUUID().equals(otherTable.getUUID())) {
+      if (!relation.isReferencedBy()) {
         // related to
         // currentTable -> otherTable
         // fk belongs to current table, fk target is otherTable
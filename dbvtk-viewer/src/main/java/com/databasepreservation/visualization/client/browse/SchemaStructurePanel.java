@@ -6,6 +6,7 @@ import java.util.Iterator;
 import java.util.Map;
 
 import com.databasepreservation.visualization.client.ViewerStructure.ViewerColumn;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerColumnStatistics;
 import com.databasepreservation.visualization.client.ViewerStructure.ViewerDatabase;
 import com.databasepreservation.visualization.client.ViewerStructure.ViewerForeignKey;
 import com.databasepreservation.visualization.client.ViewerStructure.ViewerPrimaryKey;
@@ -259,7 +260,14 @@ public class SchemaStructurePanel extends RightPanel {
       }
     }),
 
-    new BasicTablePanel.ColumnInfo<>("Description", 35, new TextColumn<ViewerColumn>() {
+    new BasicTablePanel.ColumnInfo<>("Values", 15, new TextColumn<ViewerColumn>() {
+      @Override
+      public String getValue(ViewerColumn column) {
+        return getStatisticsSummary(column.getStatistics());
+      }
+    }),
+
+    new BasicTablePanel.ColumnInfo<>("Description", 20, new TextColumn<ViewerColumn>() {
       @Override
       public String getValue(ViewerColumn column) {
         if (ViewerStringUtils.isNotBlank(column.getDescription())) {
@@ -272,4 +280,23 @@ public class SchemaStructurePanel extends RightPanel {
 
     );
   }
+
+  private static String getStatisticsSummary(ViewerColumnStatistics statistics) {
+    if (statistics == null) {
+      return "";
+    }
+
+    StringBuilder summary = new StringBuilder();
+    if (statistics.getMin() != null && statistics.getMax() != null) {
+      summary.append(statistics.getMin()).append(" to ").append(statistics.getMax()).append(", ");
+    }
+    if (statistics.getNonNullCount() > 0) {
+      if (!statistics.isDistinctCountExact()) {
+        summary.append("~");
+      }
+      summary.append(statistics.getDistinctCount()).append(" distinct, ");
+    }
+    summary.append(statistics.getNullCount()).append(" null");
+    return summary.toString();
+  }
 }
@@ -27,6 +27,7 @@ import com.databasepreservation.visualization.shared.client.Tools.ViewerStringUt
 import com.google.gwt.cell.client.Cell;
 import com.google.gwt.cell.client.SafeHtmlCell;
 import com.google.gwt.core.shared.GWT;
+import com.google.gwt.http.client.Request;
 import com.google.gwt.i18n.client.LocaleInfo;
 import com.google.gwt.safehtml.shared.SafeHtml;
 import com.google.gwt.safehtml.shared.SafeHtmlBuilder;
@@ -52,6 +53,13 @@ public class TableRowList extends AsyncTableCell<ViewerRow, Pair<ViewerDatabase,
 
   private Sublist currentSubList;
   private Sorter currentSorter;
+  private List<String> currentFieldsToReturn;
+
+  // identifies the requests of this list, so that a new request supersedes
+  // (and cancels) the previous one in the server
+  private final String requestTag = Long.toString((long) (Math.random() * Long.MAX_VALUE), 36);
+  private long requestSerial = 0;
+  private Request currentRequest;
 
   public TableRowList(ViewerDatabase database, ViewerTable table) {
     this(database, table, null, null, null, false, false);
@@ -163,15 +171,41 @@ public class TableRowList extends AsyncTableCell<ViewerRow, Pair<ViewerDatabase,
       ViewerColumn viewerColumn = entry.getKey();
       Column<ViewerRow, ?> column = entry.getValue();
 
-      columnSortingKeyMap.put(column, Arrays.asList(viewerColumn.getSolrName()));
+      columnSortingKeyMap.put(column, Arrays.asList(viewerColumn.getSortSolrName()));
     }
 
     currentSorter = createSorter(columnSortList, columnSortingKeyMap);
 
+    // only ask for the columns that are going to be displayed
+    currentFieldsToReturn = getVisibleSolrColumnNames();
+
     GWT.log("Filter: " + filter);
 
-    BrowserService.Util.getInstance().findRows(ViewerRow.class.getName(), table.getUUID(), filter, currentSorter,
-      sublist, getFacets(), LocaleInfo.getCurrentLocale().getLocaleName(), callback);
+    // the results of the previous request are no longer needed
+    if (currentRequest != null && currentRequest.isPending()) {
+      currentRequest.cancel();
+    }
+
+    currentRequest = BrowserService.Util.getInstance().findRows(ViewerRow.class.getName(), table.getUUID(), filter,
+      currentSorter, sublist, getFacets(), currentFieldsToReturn, LocaleInfo.getCurrentLocale().getLocaleName(),
+      requestTag, ++requestSerial, callback);
+  }
+
+  /**
+   * @return the solr names of the visible columns, or null if all columns are
+   *         hidden (in which case all fields should be retrieved)
+   */
+  private List<String> getVisibleSolrColumnNames() {
+    List<String> solrColumns = new ArrayList<>();
+    for (ViewerColumn viewerColumn : columns.keySet()) {
+      if (isColumnVisible(viewerColumn)) {
+        solrColumns.add(viewerColumn.getSolrName());
+      }
+    }
+    if (solrColumns.isEmpty()) {
+      return null;
+    }
+    return solrColumns;
   }
 
   @Override
@@ -193,6 +227,14 @@ public class TableRowList extends AsyncTableCell<ViewerRow, Pair<ViewerDatabase,
         addColumn(viewerColumn, displayColumn);
       }
     }
+
+    // columns that were hidden in the last request were not retrieved
+    if (currentFieldsToReturn != null) {
+      List<String> visibleSolrColumns = getVisibleSolrColumnNames();
+      if (visibleSolrColumns == null || !currentFieldsToReturn.containsAll(visibleSolrColumns)) {
+        update();
+      }
+    }
     handleScrollChanges();
   }
 
@@ -231,14 +273,10 @@ public class TableRowList extends AsyncTableCell<ViewerRow, Pair<ViewerDatabase,
       .append(tableUUID).append(queryStart);
 
     // prepare parameter: field list
-    List<String> solrColumns = new ArrayList<>();
-    for (ViewerColumn viewerColumn : columns.keySet()) {
-      if (isColumnVisible(viewerColumn)) {
-        solrColumns.add(viewerColumn.getSolrName());
-      }
-    }
+    List<String> solrColumns = getVisibleSolrColumnNames();
     // if all columns are hidden, export all
-    if (solrColumns.isEmpty()) {
+    if (solrColumns == null) {
+      solrColumns = new ArrayList<>();
       for (ViewerColumn viewerColumn : table.getColumns()) {
         solrColumns.add(viewerColumn.getSolrName());
       }
@@ -7,8 +7,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import org.roda.core.data.v2.index.IsIndexed;
-
 import com.databasepreservation.visualization.client.BrowserService;
 import com.databasepreservation.visualization.client.ViewerStructure.ViewerDatabase;
 import com.databasepreservation.visualization.client.ViewerStructure.ViewerMetadata;
@@ -102,14 +100,14 @@ public class DatabaseSidebar extends Composite {
     initWidget(uiBinder.createAndBindUi(this));
     searchInit();
 
-    BrowserService.Util.getInstance().retrieve(ViewerDatabase.class.getName(), databaseUUID,
-      new DefaultAsyncCallback<IsIndexed>() {
-        @Override
-        public void onSuccess(IsIndexed result) {
-          database = (ViewerDatabase) result;
-          init();
-        }
-      });
+    // the sidebar only needs schema and table names
+    BrowserService.Util.getInstance().retrieveDatabaseSummary(databaseUUID, new DefaultAsyncCallback<ViewerDatabase>() {
+      @Override
+      public void onSuccess(ViewerDatabase result) {
+        database = result;
+        init();
+      }
+    });
   }
 
   private void init() {
@@ -6,9 +6,68 @@ import com.databasepreservation.visualization.client.browse.RightPanel;
 /**
  * Main passes an instance of this class to DatabasePanel, so it can obtain a
  * RightPanel when convenient
+ *
+ * By default only the metadata summary is loaded (schema and table names,
+ * without columns, keys, etc). Loaders for panels that need more than that
+ * must say so, using one of the other constructors.
  * 
  * @author Bruno Ferreira <bferreira@keep.pt>
  */
 public abstract class RightPanelLoader {
+  /**
+   * The database metadata needed to create a RightPanel
+   */
+  public enum RequiredMetadata {
+    /**
+     * database fields, users, roles and the schema and table names
+     */
+    SUMMARY,
+    /**
+     * the summary, plus the complete metadata of one schema and its tables
+     */
+    SCHEMA,
+    /**
+     * the summary, plus the complete metadata of one table
+     */
+    TABLE,
+    /**
+     * all the metadata, including the privileges and all columns and keys
+     */
+    COMPLETE
+  }
+
+  private final RequiredMetadata requiredMetadata;
+  private final String uuid;
+
+  public RightPanelLoader() {
+    this(RequiredMetadata.SUMMARY, null);
+  }
+
+  public RightPanelLoader(RequiredMetadata requiredMetadata) {
+    this(requiredMetadata, null);
+  }
+
+  /**
+   * @param requiredMetadata
+   *          the metadata needed to create the panel
+   * @param uuid
+   *          the schema UUID (for SCHEMA) or the table UUID (for TABLE)
+   */
+  public RightPanelLoader(RequiredMetadata requiredMetadata, String uuid) {
+    this.requiredMetadata = requiredMetadata;
+    this.uuid = uuid;
+  }
+
+  public RequiredMetadata getRequiredMetadata() {
+    return requiredMetadata;
+  }
+
+  /**
+   * @return the schema or table UUID, depending on getRequiredMetadata()
+   */
+  public String getUUID() {
+    return uuid;
+  }
+
   public abstract RightPanel load(ViewerDatabase database);
 }
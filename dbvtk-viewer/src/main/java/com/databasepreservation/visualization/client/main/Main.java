@@ -24,6 +24,7 @@ import com.databasepreservation.visualization.client.browse.TablePanel;
 import com.databasepreservation.visualization.client.browse.TableSavedSearchEditPanel;
 import com.databasepreservation.visualization.client.browse.TableSavedSearchPanel;
 import com.databasepreservation.visualization.client.common.utils.RightPanelLoader;
+import com.databasepreservation.visualization.client.common.utils.RightPanelLoader.RequiredMetadata;
 import com.databasepreservation.visualization.shared.client.ClientLogger;
 import com.databasepreservation.visualization.shared.client.Tools.HistoryManager;
 import com.google.gwt.core.client.EntryPoint;
@@ -142,7 +143,7 @@ public class Main implements EntryPoint {
         && currentHistoryPath.get(2).equals(HistoryManager.ROUTE_DATABASE_USERS)) {
         // #database/<id>/users
         String databaseUUID = currentHistoryPath.get(1);
-        setContent(databaseUUID, new RightPanelLoader() {
+        setContent(databaseUUID, new RightPanelLoader(RequiredMetadata.COMPLETE) {
           @Override
           public RightPanel load(ViewerDatabase database) {
             return DatabaseUsersPanel.getInstance(database);
@@ -153,7 +154,7 @@ public class Main implements EntryPoint {
         && currentHistoryPath.get(2).equals(HistoryManager.ROUTE_DATABASE_SEARCH)) {
         // #database/<id>/search
         String databaseUUID = currentHistoryPath.get(1);
-        setContent(databaseUUID, new RightPanelLoader() {
+        setContent(databaseUUID, new RightPanelLoader(RequiredMetadata.COMPLETE) {
           @Override
           public RightPanel load(ViewerDatabase database) {
             return DatabaseSearchPanel.getInstance(database);
@@ -169,7 +170,7 @@ public class Main implements EntryPoint {
         // #schema/<databaseUUID>/<schema_uuid>
         String databaseUUID = currentHistoryPath.get(1);
         final String schema_uuid = currentHistoryPath.get(2);
-        setContent(databaseUUID, new RightPanelLoader() {
+        setContent(databaseUUID, new RightPanelLoader(RequiredMetadata.SCHEMA, schema_uuid) {
           @Override
           public RightPanel load(ViewerDatabase database) {
             return SchemaStructurePanel.getInstance(database, schema_uuid);
@@ -187,7 +188,7 @@ public class Main implements EntryPoint {
 
         switch (pageSpec) {
           case HistoryManager.ROUTE_SCHEMA_STRUCTURE:
-            setContent(databaseUUID, new RightPanelLoader() {
+            setContent(databaseUUID, new RightPanelLoader(RequiredMetadata.SCHEMA, schema_uuid) {
               @Override
               public RightPanel load(ViewerDatabase database) {
                 return SchemaStructurePanel.getInstance(database, schema_uuid);
@@ -195,7 +196,7 @@ public class Main implements EntryPoint {
             });
             break;
           case HistoryManager.ROUTE_SCHEMA_ROUTINES:
-            setContent(databaseUUID, new RightPanelLoader() {
+            setContent(databaseUUID, new RightPanelLoader(RequiredMetadata.SCHEMA, schema_uuid) {
               @Override
               public RightPanel load(ViewerDatabase database) {
                 return SchemaRoutinesPanel.getInstance(database, schema_uuid);
@@ -203,7 +204,7 @@ public class Main implements EntryPoint {
             });
             break;
           case HistoryManager.ROUTE_SCHEMA_TRIGGERS:
-            setContent(databaseUUID, new RightPanelLoader() {
+            setContent(databaseUUID, new RightPanelLoader(RequiredMetadata.SCHEMA, schema_uuid) {
               @Override
               public RightPanel load(ViewerDatabase database) {
                 return SchemaTriggersPanel.getInstance(database, schema_uuid);
@@ -211,7 +212,7 @@ public class Main implements EntryPoint {
             });
             break;
           case HistoryManager.ROUTE_SCHEMA_VIEWS:
-            setContent(databaseUUID, new RightPanelLoader() {
+            setContent(databaseUUID, new RightPanelLoader(RequiredMetadata.SCHEMA, schema_uuid) {
               @Override
               public RightPanel load(ViewerDatabase database) {
                 return SchemaViewsPanel.getInstance(database, schema_uuid);
@@ -219,7 +220,7 @@ public class Main implements EntryPoint {
             });
             break;
           case HistoryManager.ROUTE_SCHEMA_CHECK_CONSTRAINTS:
-            setContent(databaseUUID, new RightPanelLoader() {
+            setContent(databaseUUID, new RightPanelLoader(RequiredMetadata.SCHEMA, schema_uuid) {
               @Override
               public RightPanel load(ViewerDatabase database) {
                 return SchemaCheckConstraintsPanel.getInstance(database, schema_uuid);
@@ -227,7 +228,7 @@ public class Main implements EntryPoint {
             });
             break;
           case HistoryManager.ROUTE_SCHEMA_DATA:
-            setContent(databaseUUID, new RightPanelLoader() {
+            setContent(databaseUUID, new RightPanelLoader(RequiredMetadata.SCHEMA, schema_uuid) {
               @Override
               public RightPanel load(ViewerDatabase database) {
                 return SchemaDataPanel.getInstance(database, schema_uuid);
@@ -249,7 +250,7 @@ public class Main implements EntryPoint {
         // #table/<databaseUUID>/<tableUUID>
         String databaseUUID = currentHistoryPath.get(1);
         final String tableUUID = currentHistoryPath.get(2);
-        setContent(databaseUUID, new RightPanelLoader() {
+        setContent(databaseUUID, new RightPanelLoader(RequiredMetadata.TABLE, tableUUID) {
           @Override
           public RightPanel load(ViewerDatabase database) {
             return TablePanel.getInstance(database, tableUUID);
@@ -261,7 +262,7 @@ public class Main implements EntryPoint {
         String databaseUUID = currentHistoryPath.get(1);
         final String tableUUID = currentHistoryPath.get(2);
         final String searchInfo = currentHistoryPath.get(3);
-        setContent(databaseUUID, new RightPanelLoader() {
+        setContent(databaseUUID, new RightPanelLoader(RequiredMetadata.TABLE, tableUUID) {
           @Override
           public RightPanel load(ViewerDatabase database) {
             return TablePanel.getInstance(database, tableUUID, searchInfo);
@@ -279,7 +280,7 @@ public class Main implements EntryPoint {
         String databaseUUID = currentHistoryPath.get(1);
         final String tableUUID = currentHistoryPath.get(2);
         final String recordUUID = currentHistoryPath.get(3);
-        setContent(databaseUUID, new RightPanelLoader() {
+        setContent(databaseUUID, new RightPanelLoader(RequiredMetadata.COMPLETE) {
           @Override
           public RightPanel load(ViewerDatabase database) {
             return RowPanel.createInstance(database, tableUUID, recordUUID);
@@ -298,7 +299,7 @@ public class Main implements EntryPoint {
         final String tableUUID = currentHistoryPath.get(2);
         final String recordUUID = currentHistoryPath.get(3);
         final String columnIndex = currentHistoryPath.get(4);
-        setContent(databaseUUID, new RightPanelLoader() {
+        setContent(databaseUUID, new RightPanelLoader(RequiredMetadata.COMPLETE) {
           @Override
           public RightPanel load(ViewerDatabase database) {
             return ReferencesPanel.getInstance(database, tableUUID, recordUUID, columnIndex);
@@ -317,7 +318,7 @@ public class Main implements EntryPoint {
         final String databaseUUID = currentHistoryPath.get(1);
         final String tableUUID = currentHistoryPath.get(2);
         final List<String> columnsAndValues = currentHistoryPath.subList(3, currentHistoryPath.size());
-        setContent(databaseUUID, new RightPanelLoader() {
+        setContent(databaseUUID, new RightPanelLoader(RequiredMetadata.TABLE, tableUUID) {
           @Override
           public RightPanel load(ViewerDatabase database) {
             return ForeignKeyPanel.createInstance(database, tableUUID, columnsAndValues);
@@ -342,7 +343,7 @@ public class Main implements EntryPoint {
         // #searches/<databaseUUID>/<searchUUID>
         final String databaseUUID = currentHistoryPath.get(1);
         final String searchUUID = currentHistoryPath.get(2);
-        setContent(databaseUUID, new RightPanelLoader() {
+        setContent(databaseUUID, new RightPanelLoader(RequiredMetadata.COMPLETE) {
           @Override
           public RightPanel load(ViewerDatabase database) {
             return TableSavedSearchPanel.createInstance(database, searchUUID);
@@ -3,8 +3,6 @@ package com.databasepreservation.visualization.client.main;
 import java.util.HashMap;
 import java.util.Map;
 
-import org.roda.core.data.v2.index.IsIndexed;
-
 import com.databasepreservation.visualization.client.BrowserService;
 import com.databasepreservation.visualization.client.ViewerStructure.ViewerDatabase;
 import com.databasepreservation.visualization.client.common.DefaultAsyncCallback;
@@ -56,11 +54,10 @@ public class MainPanel extends Composite {
     } else {
       reSetHeader();
 
-      BrowserService.Util.getInstance().retrieve(ViewerDatabase.class.getName(), databaseUUID,
-        new DefaultAsyncCallback<IsIndexed>() {
+      BrowserService.Util.getInstance().retrieveDatabaseSummary(databaseUUID,
+        new DefaultAsyncCallback<ViewerDatabase>() {
           @Override
-          public void onSuccess(IsIndexed result) {
-            ViewerDatabase database = (ViewerDatabase) result;
+          public void onSuccess(ViewerDatabase database) {
             String databaseName = database.getMetadata().getName();
 
             databaseNames.put(databaseUUID, databaseName);
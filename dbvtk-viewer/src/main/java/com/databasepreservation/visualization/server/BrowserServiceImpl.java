@@ -1,6 +1,8 @@
 package com.databasepreservation.visualization.server;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import org.roda.core.data.adapter.facet.Facets;
 import org.roda.core.data.adapter.filter.Filter;
@@ -17,12 +19,18 @@ import org.roda.core.data.v2.user.RodaUser;
 
 import com.databasepreservation.visualization.client.BrowserService;
 import com.databasepreservation.visualization.client.SavedSearch;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerDatabase;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerRowWithRelations;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerSchema;
 import com.databasepreservation.visualization.client.ViewerStructure.ViewerTable;
 import com.databasepreservation.visualization.client.common.search.SearchField;
 import com.databasepreservation.visualization.client.common.search.SearchInfo;
 import com.databasepreservation.visualization.shared.BrowserServiceUtils;
 import com.databasepreservation.visualization.shared.ViewerFactory;
+import com.databasepreservation.visualization.utils.Metrics;
 import com.databasepreservation.visualization.utils.SolrUtils;
+import com.google.gwt.user.client.rpc.SerializationException;
+import com.google.gwt.user.server.rpc.RPCRequest;
 import com.google.gwt.user.server.rpc.RemoteServiceServlet;
 
 /**
@@ -30,6 +38,39 @@ import com.google.gwt.user.server.rpc.RemoteServiceServlet;
  */
 @SuppressWarnings("serial")
 public class BrowserServiceImpl extends RemoteServiceServlet implements BrowserService {
+  private static final Metrics.Family<Metrics.Histogram> RPC_DURATION = Metrics.histogram(
+    "dbvtk_rpc_request_duration_seconds", "Time spent processing GWT RPC calls", Metrics.LATENCY_BUCKETS, "method");
+  private static final Metrics.Family<Metrics.Counter> RPC_ERRORS = Metrics.counter("dbvtk_rpc_request_errors_total",
+    "GWT RPC calls that failed", "method");
+  private static final Metrics.Family<Metrics.Gauge> RPC_IN_FLIGHT = Metrics.gauge("dbvtk_rpc_requests_in_flight",
+    "GWT RPC calls being processed", "method");
+
+  // GWT RPC responses start with //OK or, if the call failed, with //EX
+  private static final String RPC_FAILURE_PREFIX = "//EX";
+
+  /**
+   * Records the latency and the outcome of each call
+   */
+  @Override
+  public String processCall(RPCRequest rpcRequest) throws SerializationException {
+    String method = rpcRequest.getMethod().getName();
+    Metrics.Gauge inFlight = RPC_IN_FLIGHT.labels(method);
+    inFlight.inc();
+    long start = System.nanoTime();
+    boolean failed = true;
+    try {
+      String response = super.processCall(rpcRequest);
+      failed = response == null || response.startsWith(RPC_FAILURE_PREFIX);
+      return response;
+    } finally {
+      RPC_DURATION.labels(method).observeNanos(System.nanoTime() - start);
+      if (failed) {
+        RPC_ERRORS.labels(method).inc();
+      }
+      inFlight.dec();
+    }
+  }
+
   /**
    * Escape an html string. Escaping data received from the client helps to
    * prevent cross-site script vulnerabilities.
@@ -51,7 +92,7 @@ public class BrowserServiceImpl extends RemoteServiceServlet implements BrowserS
     RequestNotValidException {
     RodaUser user = null;
     Class<T> classToReturn = parseClass(classNameToReturn);
-    return ViewerFactory.getSolrManager().find(user, classToReturn, filter, sorter, sublist, facets);
+    return ViewerFactory.getIndexBackend().find(user, classToReturn, filter, sorter, sublist, facets);
   }
 
   @Override
@@ -59,7 +100,7 @@ public class BrowserServiceImpl extends RemoteServiceServlet implements BrowserS
     GenericException, RequestNotValidException {
     RodaUser user = null;
     Class<T> classToReturn = parseClass(classNameToReturn);
-    return ViewerFactory.getSolrManager().count(user, classToReturn, filter);
+    return ViewerFactory.getIndexBackend().count(user, classToReturn, filter);
   }
 
   @Override
@@ -67,7 +108,39 @@ public class BrowserServiceImpl extends RemoteServiceServlet implements BrowserS
     GenericException, NotFoundException {
     RodaUser user = null;
     Class<T> classToReturn = parseClass(classNameToReturn);
-    return ViewerFactory.getSolrManager().retrieve(user, classToReturn, id);
+    return ViewerFactory.getIndexBackend().retrieve(user, classToReturn, id);
+  }
+
+  @Override
+  public ViewerDatabase retrieveDatabaseSummary(String databaseUUID) throws AuthorizationDeniedException,
+    GenericException, NotFoundException {
+    RodaUser user = null;
+    return ViewerFactory.getIndexBackend().retrieveDatabaseSummary(user, databaseUUID);
+  }
+
+  @Override
+  public ViewerSchema retrieveSchema(String databaseUUID, String schemaUUID) throws AuthorizationDeniedException,
+    GenericException, NotFoundException {
+    RodaUser user = null;
+    return ViewerFactory.getIndexBackend().retrieveSchema(user, databaseUUID, schemaUUID);
+  }
+
+  @Override
+  public ViewerTable retrieveTable(String databaseUUID, String tableUUID) throws AuthorizationDeniedException,
+    GenericException, NotFoundException {
+    RodaUser user = null;
+    return ViewerFactory.getIndexBackend().retrieveTable(user, databaseUUID, tableUUID);
+  }
+
+  @Override
+  public List<ViewerTable> retrieveTables(String databaseUUID, List<String> tableUUIDs)
+    throws AuthorizationDeniedException, GenericException, NotFoundException {
+    RodaUser user = null;
+    List<ViewerTable> tables = new ArrayList<>();
+    for (String tableUUID : tableUUIDs) {
+      tables.add(ViewerFactory.getIndexBackend().retrieveTable(user, databaseUUID, tableUUID));
+    }
+    return tables;
   }
 
   @Override
@@ -76,7 +149,28 @@ public class BrowserServiceImpl extends RemoteServiceServlet implements BrowserS
     AuthorizationDeniedException, RequestNotValidException {
     RodaUser user = null;
     Class<T> classToReturn = parseClass(classNameToReturn);
-    return ViewerFactory.getSolrManager().findRows(user, classToReturn, tableUUID, filter, sorter, sublist, facets);
+    return ViewerFactory.getIndexBackend().findRows(user, classToReturn, tableUUID, filter, sorter, sublist, facets);
+  }
+
+  @Override
+  public <T extends IsIndexed> IndexResult<T> findRows(String classNameToReturn, String tableUUID, Filter filter,
+    Sorter sorter, Sublist sublist, Facets facets, List<String> fieldsToReturn, String localeString)
+    throws GenericException, AuthorizationDeniedException, RequestNotValidException {
+    RodaUser user = null;
+    Class<T> classToReturn = parseClass(classNameToReturn);
+    return ViewerFactory.getIndexBackend().findRows(user, classToReturn, tableUUID, filter, sorter, sublist, facets,
+      fieldsToReturn);
+  }
+
+  @Override
+  public <T extends IsIndexed> IndexResult<T> findRows(String classNameToReturn, String tableUUID, Filter filter,
+    Sorter sorter, Sublist sublist, Facets facets, List<String> fieldsToReturn, String localeString,
+    String requestTag, long requestSerial) throws GenericException, AuthorizationDeniedException,
+    RequestNotValidException {
+    RodaUser user = null;
+    Class<T> classToReturn = parseClass(classNameToReturn);
+    return ViewerFactory.getIndexBackend().findRows(user, classToReturn, tableUUID, filter, sorter, sublist, facets,
+      fieldsToReturn, requestTag, requestSerial);
   }
 
   @Override
@@ -84,7 +178,7 @@ public class BrowserServiceImpl extends RemoteServiceServlet implements BrowserS
     throws AuthorizationDeniedException, GenericException, RequestNotValidException {
     RodaUser user = null;
     Class<T> classToReturn = parseClass(classNameToReturn);
-    return ViewerFactory.getSolrManager().countRows(user, classToReturn, tableUUID, filter);
+    return ViewerFactory.getIndexBackend().countRows(user, classToReturn, tableUUID, filter);
   }
 
   @Override
@@ -92,7 +186,23 @@ public class BrowserServiceImpl extends RemoteServiceServlet implements BrowserS
     throws AuthorizationDeniedException, GenericException, NotFoundException {
     RodaUser user = null;
     Class<T> classToReturn = parseClass(classNameToReturn);
-    return ViewerFactory.getSolrManager().retrieveRows(user, classToReturn, tableUUID, rowUUID);
+    return ViewerFactory.getIndexBackend().retrieveRows(user, classToReturn, tableUUID, rowUUID);
+  }
+
+  @Override
+  public <T extends IsIndexed> Map<String, List<T>> retrieveRows(String classNameToReturn,
+    Map<String, List<String>> rowUUIDsByTable) throws AuthorizationDeniedException, GenericException,
+    RequestNotValidException {
+    RodaUser user = null;
+    Class<T> classToReturn = parseClass(classNameToReturn);
+    return ViewerFactory.getIndexBackend().retrieveRows(user, classToReturn, rowUUIDsByTable);
+  }
+
+  @Override
+  public ViewerRowWithRelations retrieveRowWithRelations(String databaseUUID, String tableUUID, String rowUUID)
+    throws AuthorizationDeniedException, GenericException, NotFoundException {
+    RodaUser user = null;
+    return ViewerFactory.getIndexBackend().retrieveRowWithRelations(user, databaseUUID, tableUUID, rowUUID);
   }
 
   @Override
@@ -117,7 +227,7 @@ public class BrowserServiceImpl extends RemoteServiceServlet implements BrowserS
     savedSearch.setTableName(tableName);
     savedSearch.setSearchInfoJson(searchInfoJson);
 
-    ViewerFactory.getSolrManager().addSavedSearch(user, savedSearch);
+    ViewerFactory.getIndexBackend().addSavedSearch(user, savedSearch);
 
     return savedSearch.getUUID();
   }
@@ -127,7 +237,7 @@ public class BrowserServiceImpl extends RemoteServiceServlet implements BrowserS
     GenericException, RequestNotValidException, NotFoundException {
     RodaUser user = null;
 
-    ViewerFactory.getSolrManager().editSavedSearch(user, savedSearchUUID, name, description);
+    ViewerFactory.getIndexBackend().editSavedSearch(user, savedSearchUUID, name, description);
   }
 
   @Override
@@ -135,7 +245,7 @@ public class BrowserServiceImpl extends RemoteServiceServlet implements BrowserS
     RequestNotValidException, NotFoundException {
     RodaUser user = null;
 
-    ViewerFactory.getSolrManager().deleteSavedSearch(user, savedSearchUUID);
+    ViewerFactory.getIndexBackend().deleteSavedSearch(user, savedSearchUUID);
   }
 
   @Override
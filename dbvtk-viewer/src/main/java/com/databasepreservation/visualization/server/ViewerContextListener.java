@@ -0,0 +1,25 @@
+package com.databasepreservation.visualization.server;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+
+import com.databasepreservation.visualization.shared.ViewerFactory;
+
+/**
+ * Releases the resources created by the ViewerFactory (export threads, Solr
+ * HTTP connections, open indexes) when the application is stopped or
+ * redeployed.
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+public class ViewerContextListener implements ServletContextListener {
+  @Override
+  public void contextInitialized(ServletContextEvent sce) {
+    // the resources are created lazily, when first needed
+  }
+
+  @Override
+  public void contextDestroyed(ServletContextEvent sce) {
+    ViewerFactory.release();
+  }
+}
@@ -0,0 +1,205 @@
+package com.databasepreservation.visualization.server.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.DateDayVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.TimeStampMilliTZVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ArrowStreamWriter;
+import org.apache.arrow.vector.types.DateUnit;
+import org.apache.arrow.vector.types.FloatingPointPrecision;
+import org.apache.arrow.vector.types.TimeUnit;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.apache.solr.common.SolrDocument;
+
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerColumn;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerType;
+
+/**
+ * Writes rows in the Arrow IPC streaming format, in record batches of
+ * BATCH_SIZE rows. Each column gets an Arrow type based on its ViewerType
+ * (64 bit integers, doubles, booleans, dates, UTC timestamps or UTF-8 strings)
+ * and is named after the column display name.
+ *
+ * The schema is written before the first row, so a value that can not be
+ * converted to the type of its column fails the export (instead of being
+ * silently exported as null). The stream is then left without its end marker,
+ * so readers can tell it is incomplete.
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+public class ArrowRowWriter extends RowWriter {
+  private static final int BATCH_SIZE = 4096;
+  private static final String SQL_DATE_TYPE = "DATE";
+  private static final String UTC = "UTC";
+
+  private final BufferAllocator allocator;
+  private final VectorSchemaRoot root;
+  private final ArrowStreamWriter writer;
+  private int batchRows = 0;
+  private long rowCount = 0;
+  private boolean failed = false;
+
+  public ArrowRowWriter(OutputStream output, List<ViewerColumn> columns) {
+    super(columns);
+    List<Field> fields = new ArrayList<>();
+    for (ViewerColumn column : columns) {
+      fields.add(new Field(column.getDisplayName(), FieldType.nullable(getArrowType(column)), null));
+    }
+
+    allocator = new RootAllocator(Long.MAX_VALUE);
+    root = VectorSchemaRoot.create(new Schema(fields), allocator);
+    // closing the arrow writer must not close the response stream
+    writer = new ArrowStreamWriter(root, null, Channels.newChannel(new CloseShieldOutputStream(output)));
+  }
+
+  private static ArrowType getArrowType(ViewerColumn column) {
+    ViewerType.dbTypes dbType = column.getType() != null ? column.getType().getDbType() : null;
+    if (ViewerType.dbTypes.NUMERIC_INTEGER.equals(dbType)) {
+      return new ArrowType.Int(64, true);
+    } else if (ViewerType.dbTypes.NUMERIC_FLOATING_POINT.equals(dbType)) {
+      return new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE);
+    } else if (ViewerType.dbTypes.BOOLEAN.equals(dbType)) {
+      return new ArrowType.Bool();
+    } else if (ViewerType.dbTypes.DATETIME.equals(dbType)) {
+      if (SQL_DATE_TYPE.equalsIgnoreCase(column.getType().getTypeName())) {
+        return new ArrowType.Date(DateUnit.DAY);
+      }
+      return new ArrowType.Timestamp(TimeUnit.MILLISECOND, UTC);
+    } else {
+      return new ArrowType.Utf8();
+    }
+  }
+
+  @Override
+  public void writeHeader() throws IOException {
+    writer.start();
+    allocateBatch();
+  }
+
+  @Override
+  public void writeRow(SolrDocument doc) throws IOException {
+    rowCount++;
+    for (int i = 0; i < columns.size(); i++) {
+      ViewerColumn column = columns.get(i);
+      setValue(root.getFieldVectors().get(i), column, doc.getFirstValue(column.getSolrName()));
+    }
+    batchRows++;
+
+    if (batchRows >= BATCH_SIZE) {
+      writeBatch();
+      allocateBatch();
+    }
+  }
+
+  private void allocateBatch() {
+    for (FieldVector vector : root.getFieldVectors()) {
+      vector.allocateNew();
+    }
+    batchRows = 0;
+  }
+
+  private void writeBatch() throws IOException {
+    root.setRowCount(batchRows);
+    writer.writeBatch();
+    root.clear();
+  }
+
+  private void setValue(FieldVector vector, ViewerColumn column, Object value) throws IOException {
+    int index = batchRows;
+    if (value == null) {
+      setNull(vector, index);
+      return;
+    }
+
+    try {
+      if (vector instanceof BigIntVector) {
+        long number = value instanceof Number ? ((Number) value).longValue() : Long.parseLong(value.toString());
+        ((BigIntVector) vector).setSafe(index, number);
+      } else if (vector instanceof Float8Vector) {
+        double number = value instanceof Number ? ((Number) value).doubleValue() : Double.parseDouble(value
+          .toString());
+        ((Float8Vector) vector).setSafe(index, number);
+      } else if (vector instanceof BitVector) {
+        boolean bool = value instanceof Boolean ? (Boolean) value : Boolean.parseBoolean(value.toString());
+        ((BitVector) vector).setSafe(index, bool ? 1 : 0);
+      } else if (vector instanceof DateDayVector) {
+        LocalDate date = toInstant(value).atZone(ZoneOffset.UTC).toLocalDate();
+        ((DateDayVector) vector).setSafe(index, (int) date.toEpochDay());
+      } else if (vector instanceof TimeStampMilliTZVector) {
+        ((TimeStampMilliTZVector) vector).setSafe(index, toInstant(value).toEpochMilli());
+      } else {
+        byte[] bytes = formatValue(column, value).getBytes(StandardCharsets.UTF_8);
+        ((VarCharVector) vector).setSafe(index, bytes, 0, bytes.length);
+      }
+    } catch (IllegalArgumentException | DateTimeException e) {
+      failed = true;
+      throw new IOException("Could not convert value '" + value + "' of column " + column.getDisplayName() + " in row "
+        + rowCount + " to " + vector.getField().getType(), e);
+    }
+  }
+
+  private static void setNull(FieldVector vector, int index) {
+    if (vector instanceof BigIntVector) {
+      ((BigIntVector) vector).setNull(index);
+    } else if (vector instanceof Float8Vector) {
+      ((Float8Vector) vector).setNull(index);
+    } else if (vector instanceof BitVector) {
+      ((BitVector) vector).setNull(index);
+    } else if (vector instanceof DateDayVector) {
+      ((DateDayVector) vector).setNull(index);
+    } else if (vector instanceof TimeStampMilliTZVector) {
+      ((TimeStampMilliTZVector) vector).setNull(index);
+    } else {
+      ((VarCharVector) vector).setNull(index);
+    }
+  }
+
+  private static Instant toInstant(Object value) {
+    if (value instanceof Date) {
+      return ((Date) value).toInstant();
+    }
+    return Instant.parse(value.toString());
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      if (!failed) {
+        if (batchRows > 0) {
+          writeBatch();
+        }
+        writer.end();
+      }
+    } finally {
+      // closing the arrow writer would also write the end marker, and it only
+      // holds the (shielded) response stream
+      if (!failed) {
+        writer.close();
+      }
+      root.close();
+      allocator.close();
+    }
+  }
+}
@@ -0,0 +1,76 @@
+package com.databasepreservation.visualization.server.export;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.apache.solr.common.SolrDocument;
+
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerColumn;
+
+/**
+ * Writes rows as CSV (RFC 4180, values quoted when needed) or TSV (tabs, line
+ * breaks and backslashes are escaped using backslashes). The header contains
+ * the column display names.
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+public class DelimitedRowWriter extends RowWriter {
+  public static final char CSV_SEPARATOR = ',';
+  public static final char TSV_SEPARATOR = '\t';
+
+  private final Writer writer;
+  private final char separator;
+
+  public DelimitedRowWriter(OutputStream output, List<ViewerColumn> columns, char separator) {
+    super(columns);
+    this.writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+    this.separator = separator;
+  }
+
+  @Override
+  public void writeHeader() throws IOException {
+    for (int i = 0; i < columns.size(); i++) {
+      writeValue(i, columns.get(i).getDisplayName());
+    }
+    writer.write("\r\n");
+  }
+
+  @Override
+  public void writeRow(SolrDocument doc) throws IOException {
+    for (int i = 0; i < columns.size(); i++) {
+      ViewerColumn column = columns.get(i);
+      writeValue(i, formatValue(column, doc.getFirstValue(column.getSolrName())));
+    }
+    writer.write("\r\n");
+  }
+
+  private void writeValue(int index, String value) throws IOException {
+    if (index != 0) {
+      writer.write(separator);
+    }
+    if (value == null) {
+      return;
+    }
+
+    if (separator == TSV_SEPARATOR) {
+      writer.write(value.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r"));
+    } else if (value.indexOf(separator) >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0
+      || value.indexOf('\r') >= 0) {
+      writer.write('"');
+      writer.write(value.replace("\"", "\"\""));
+      writer.write('"');
+    } else {
+      writer.write(value);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    writer.flush();
+  }
+}
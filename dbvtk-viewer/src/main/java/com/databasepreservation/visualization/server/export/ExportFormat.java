@@ -0,0 +1,61 @@
+package com.databasepreservation.visualization.server.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerColumn;
+
+/**
+ * Formats in which rows can be exported
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+public enum ExportFormat {
+  CSV("csv", "text/csv"), TSV("tsv", "text/tab-separated-values"), JSONL("jsonl", "application/x-ndjson"), ARROW(
+    "arrow", "application/vnd.apache.arrow.stream");
+
+  private final String extension;
+  private final String mediaType;
+
+  ExportFormat(String extension, String mediaType) {
+    this.extension = extension;
+    this.mediaType = mediaType;
+  }
+
+  public String getExtension() {
+    return extension;
+  }
+
+  public String getMediaType() {
+    return mediaType;
+  }
+
+  public RowWriter createWriter(OutputStream output, List<ViewerColumn> columns) throws IOException {
+    switch (this) {
+      case CSV:
+        return new DelimitedRowWriter(output, columns, DelimitedRowWriter.CSV_SEPARATOR);
+      case TSV:
+        return new DelimitedRowWriter(output, columns, DelimitedRowWriter.TSV_SEPARATOR);
+      case JSONL:
+        return new JsonLinesRowWriter(output, columns);
+      case ARROW:
+        return new ArrowRowWriter(output, columns);
+      default:
+        throw new IllegalStateException("No writer for export format " + this);
+    }
+  }
+
+  /**
+   * @return the format with the specified extension (case insensitive), or
+   *         null if there is no such format
+   */
+  public static ExportFormat fromExtension(String extension) {
+    for (ExportFormat format : values()) {
+      if (format.extension.equalsIgnoreCase(extension)) {
+        return format;
+      }
+    }
+    return null;
+  }
+}
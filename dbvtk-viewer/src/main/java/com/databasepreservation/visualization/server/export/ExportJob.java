@@ -0,0 +1,188 @@
+package com.databasepreservation.visualization.server.export;
+
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.roda.core.data.adapter.filter.Filter;
+import org.roda.core.data.adapter.sort.Sorter;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * An export running in the background. The exported rows are written to a file
+ * that can be downloaded after the job is done.
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+public class ExportJob {
+  public enum Status {
+    QUEUED, RUNNING, DONE, FAILED, CANCELLED
+  }
+
+  private final String id;
+  private final String databaseUUID;
+  private final String tableUUID;
+  private final ExportFormat format;
+  private final boolean gzip;
+  private final Filter filter;
+  private final Sorter sorter;
+  private final List<String> fields;
+  private final Date dateCreated;
+
+  private final AtomicLong exportedRows = new AtomicLong();
+  private volatile long totalRows = -1;
+  private final AtomicReference<Status> status = new AtomicReference<>(Status.QUEUED);
+  private volatile String error;
+  private volatile Date dateFinished;
+  private volatile Path file;
+  private volatile String filename;
+  private volatile Future<?> future;
+
+  public ExportJob(String id, String databaseUUID, String tableUUID, ExportFormat format, boolean gzip,
+    Filter filter, Sorter sorter, List<String> fields) {
+    this.id = id;
+    this.databaseUUID = databaseUUID;
+    this.tableUUID = tableUUID;
+    this.format = format;
+    this.gzip = gzip;
+    this.filter = filter;
+    this.sorter = sorter;
+    this.fields = fields;
+    this.dateCreated = new Date();
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public String getDatabaseUUID() {
+    return databaseUUID;
+  }
+
+  public String getTableUUID() {
+    return tableUUID;
+  }
+
+  public ExportFormat getFormat() {
+    return format;
+  }
+
+  public boolean isGzip() {
+    return gzip;
+  }
+
+  @JsonIgnore
+  public Filter getFilter() {
+    return filter;
+  }
+
+  @JsonIgnore
+  public Sorter getSorter() {
+    return sorter;
+  }
+
+  public List<String> getFields() {
+    return fields;
+  }
+
+  public Date getDateCreated() {
+    return dateCreated;
+  }
+
+  public long getExportedRows() {
+    return exportedRows.get();
+  }
+
+  @JsonIgnore
+  AtomicLong getExportedRowsCounter() {
+    return exportedRows;
+  }
+
+  /**
+   * @return the number of rows to export, or -1 if it is not known yet
+   */
+  public long getTotalRows() {
+    return totalRows;
+  }
+
+  void setTotalRows(long totalRows) {
+    this.totalRows = totalRows;
+  }
+
+  /**
+   * @return the percentage of exported rows, or -1 if it is not known yet
+   */
+  public int getProgress() {
+    if (status.get() == Status.DONE) {
+      return 100;
+    } else if (totalRows <= 0) {
+      return totalRows == 0 ? 100 : -1;
+    }
+    return (int) Math.min(100, exportedRows.get() * 100 / totalRows);
+  }
+
+  public Status getStatus() {
+    return status.get();
+  }
+
+  /**
+   * Changes the status, unless it was changed by someone else (e.g. the job was
+   * cancelled while it was running)
+   *
+   * @return true if the status was changed
+   */
+  boolean changeStatus(Status expected, Status status) {
+    return this.status.compareAndSet(expected, status);
+  }
+
+  public String getError() {
+    return error;
+  }
+
+  void setError(String error) {
+    this.error = error;
+  }
+
+  public Date getDateFinished() {
+    return dateFinished;
+  }
+
+  void setDateFinished(Date dateFinished) {
+    this.dateFinished = dateFinished;
+  }
+
+  @JsonIgnore
+  public Path getFile() {
+    return file;
+  }
+
+  void setFile(Path file) {
+    this.file = file;
+  }
+
+  public String getFilename() {
+    return filename;
+  }
+
+  void setFilename(String filename) {
+    this.filename = filename;
+  }
+
+  @JsonIgnore
+  Future<?> getFuture() {
+    return future;
+  }
+
+  void setFuture(Future<?> future) {
+    this.future = future;
+  }
+
+  public boolean isFinished() {
+    Status current = status.get();
+    return current == Status.DONE || current == Status.FAILED || current == Status.CANCELLED;
+  }
+}
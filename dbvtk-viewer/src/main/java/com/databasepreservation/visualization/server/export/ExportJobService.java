@@ -0,0 +1,258 @@
+package com.databasepreservation.visualization.server.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.roda.core.data.adapter.filter.Filter;
+import org.roda.core.data.adapter.sort.Sorter;
+import org.roda.core.data.exceptions.GenericException;
+import org.roda.core.data.exceptions.NotFoundException;
+import org.roda.core.data.exceptions.RequestNotValidException;
+import org.roda.core.data.v2.user.RodaUser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.databasepreservation.visualization.ViewerConstants;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerColumn;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerRow;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerTable;
+import com.databasepreservation.visualization.utils.IndexBackend;
+import com.databasepreservation.visualization.utils.SolrDocumentStream;
+import com.databasepreservation.visualization.utils.SolrUtils;
+
+/**
+ * Runs exports in the background, using a small pool of low priority threads,
+ * so that large exports do not hold HTTP connections or slow down interactive
+ * queries. Exported files are staged in the local disk and removed some time
+ * after the job finishes.
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+public class ExportJobService {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ExportJobService.class);
+
+  private static final int WORKER_THREADS = 2;
+  private static final int MAX_QUEUED_JOBS = 20;
+  // finished jobs (and their files) are kept for this long
+  private static final long JOB_RETENTION_MILLIS = TimeUnit.HOURS.toMillis(24);
+  private static final long CLEANUP_INTERVAL_MINUTES = 30;
+
+  private static final Path EXPORTS_DIR = ViewerConstants.USER_DBVIEWER_DIR.resolve("exports");
+
+  private final IndexBackend indexBackend;
+  private final Map<String, ExportJob> jobs = new ConcurrentHashMap<>();
+  private final ThreadPoolExecutor workers;
+  private final ScheduledExecutorService cleaner;
+
+  public ExportJobService(IndexBackend indexBackend) {
+    this.indexBackend = indexBackend;
+    deleteStaleFiles();
+
+    workers = new ThreadPoolExecutor(WORKER_THREADS, WORKER_THREADS, 0L, TimeUnit.MILLISECONDS,
+      new ArrayBlockingQueue<Runnable>(MAX_QUEUED_JOBS), new ThreadFactory() {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, "export-job-" + counter.incrementAndGet());
+          thread.setDaemon(true);
+          thread.setPriority(Thread.MIN_PRIORITY);
+          return thread;
+        }
+      });
+
+    cleaner = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "export-job-cleaner");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    cleaner.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        removeExpiredJobs();
+      }
+    }, CLEANUP_INTERVAL_MINUTES, CLEANUP_INTERVAL_MINUTES, TimeUnit.MINUTES);
+  }
+
+  /**
+   * Creates a new export job and queues it for execution
+   *
+   * @throws RequestNotValidException
+   *           if there are too many queued jobs
+   */
+  public ExportJob submit(RodaUser user, String databaseUUID, String tableUUID, ExportFormat format, boolean gzip,
+    Filter filter, Sorter sorter, List<String> fields) throws RequestNotValidException, NotFoundException,
+    GenericException {
+    // fail early if the table does not exist
+    indexBackend.retrieveTable(user, databaseUUID, tableUUID);
+
+    final ExportJob job = new ExportJob(SolrUtils.randomUUID(), databaseUUID, tableUUID, format, gzip, filter,
+      sorter, fields);
+    jobs.put(job.getId(), job);
+    try {
+      job.setFuture(workers.submit(new Runnable() {
+        @Override
+        public void run() {
+          runJob(job);
+        }
+      }));
+    } catch (RejectedExecutionException e) {
+      jobs.remove(job.getId());
+      throw new RequestNotValidException("Too many exports are queued, try again later");
+    }
+    return job;
+  }
+
+  public ExportJob get(String jobId) throws NotFoundException {
+    ExportJob job = jobs.get(jobId);
+    if (job == null) {
+      throw new NotFoundException("Could not find export job " + jobId);
+    }
+    return job;
+  }
+
+  public List<ExportJob> list() {
+    return new ArrayList<>(jobs.values());
+  }
+
+  /**
+   * Cancels the job if it is queued or running, and removes it along with its
+   * file
+   */
+  public void remove(String jobId) throws NotFoundException {
+    ExportJob job = get(jobId);
+    if (job.getFuture() != null && (job.changeStatus(ExportJob.Status.QUEUED, ExportJob.Status.CANCELLED)
+      || job.changeStatus(ExportJob.Status.RUNNING, ExportJob.Status.CANCELLED))) {
+      job.getFuture().cancel(true);
+    }
+    jobs.remove(jobId);
+    // if the job is finishing, it deletes its own file when it sees the
+    // cancellation
+    deleteFile(job);
+  }
+
+  public void shutdown() {
+    workers.shutdownNow();
+    cleaner.shutdownNow();
+  }
+
+  private void runJob(ExportJob job) {
+    if (!job.changeStatus(ExportJob.Status.QUEUED, ExportJob.Status.RUNNING)) {
+      // cancelled while queued
+      return;
+    }
+
+    Path partialFile = null;
+    try {
+      ViewerTable table = indexBackend.retrieveTable(null, job.getDatabaseUUID(), job.getTableUUID());
+      List<ViewerColumn> columns = RowExporter.getColumns(table, job.getFields());
+      job.setTotalRows(indexBackend.countRows(null, ViewerRow.class, job.getTableUUID(), job.getFilter()));
+      job.setFilename(RowExporter.getFilename(table, job.getFormat(), job.isGzip()));
+
+      Files.createDirectories(EXPORTS_DIR);
+      partialFile = EXPORTS_DIR.resolve(job.getId() + ".part");
+      SolrDocumentStream rows = indexBackend.streamRows(null, job.getTableUUID(), job.getFilter(), job.getSorter(),
+        null, job.getFields());
+      try (OutputStream output = Files.newOutputStream(partialFile)) {
+        RowExporter.export(rows, columns, job.getFormat(), job.isGzip(), output, job.getExportedRowsCounter());
+      }
+
+      Path file = Files.move(partialFile, EXPORTS_DIR.resolve(job.getId()), StandardCopyOption.REPLACE_EXISTING);
+      job.setFile(file);
+      if (!job.changeStatus(ExportJob.Status.RUNNING, ExportJob.Status.DONE)) {
+        // cancelled while the file was being moved, possibly before remove
+        // could see it
+        deleteFile(job);
+        return;
+      }
+      LOGGER.info("Export job {} finished, {} rows exported", job.getId(), job.getExportedRows());
+    } catch (IOException | RequestNotValidException | NotFoundException | GenericException | RuntimeException e) {
+      if (job.getStatus() != ExportJob.Status.CANCELLED) {
+        job.setError(e.getMessage());
+        if (job.changeStatus(ExportJob.Status.RUNNING, ExportJob.Status.FAILED)) {
+          LOGGER.error("Export job {} failed", job.getId(), e);
+        }
+      }
+      deletePartialFile(partialFile);
+    } finally {
+      job.setDateFinished(new Date());
+    }
+  }
+
+  private void removeExpiredJobs() {
+    long now = System.currentTimeMillis();
+    Iterator<ExportJob> iterator = jobs.values().iterator();
+    while (iterator.hasNext()) {
+      ExportJob job = iterator.next();
+      if (job.isFinished() && job.getDateFinished() != null
+        && now - job.getDateFinished().getTime() > JOB_RETENTION_MILLIS) {
+        iterator.remove();
+        deleteFile(job);
+        LOGGER.debug("Removed expired export job {}", job.getId());
+      }
+    }
+  }
+
+  /**
+   * Jobs are only kept in memory, so the files left by a previous run
+   * (finished or partial exports) can no longer be downloaded
+   */
+  private static void deleteStaleFiles() {
+    if (!Files.isDirectory(EXPORTS_DIR)) {
+      return;
+    }
+
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(EXPORTS_DIR)) {
+      for (Path file : files) {
+        try {
+          Files.deleteIfExists(file);
+        } catch (IOException e) {
+          LOGGER.warn("Could not delete stale export file {}", file, e);
+        }
+      }
+    } catch (IOException e) {
+      LOGGER.warn("Could not list stale export files in {}", EXPORTS_DIR, e);
+    }
+  }
+
+  private static void deleteFile(ExportJob job) {
+    if (job.getFile() != null) {
+      try {
+        Files.deleteIfExists(job.getFile());
+      } catch (IOException e) {
+        LOGGER.warn("Could not delete export file {}", job.getFile(), e);
+      }
+    }
+  }
+
+  private static void deletePartialFile(Path partialFile) {
+    if (partialFile != null) {
+      try {
+        Files.deleteIfExists(partialFile);
+      } catch (IOException e) {
+        LOGGER.warn("Could not delete partial export file {}", partialFile, e);
+      }
+    }
+  }
+}
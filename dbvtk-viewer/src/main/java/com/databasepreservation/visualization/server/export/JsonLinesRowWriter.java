@@ -0,0 +1,65 @@
+package com.databasepreservation.visualization.server.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import org.apache.solr.common.SolrDocument;
+
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerColumn;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Writes rows as JSON Lines: one JSON object per row, using the column display
+ * names as keys. Numbers and booleans are written as JSON numbers and booleans.
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+public class JsonLinesRowWriter extends RowWriter {
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+  private final JsonGenerator generator;
+
+  public JsonLinesRowWriter(OutputStream output, List<ViewerColumn> columns) throws IOException {
+    super(columns);
+    generator = JSON_FACTORY.createGenerator(output, JsonEncoding.UTF8);
+    generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    // lines are separated by a newline written after each object
+    generator.setRootValueSeparator(null);
+  }
+
+  @Override
+  public void writeHeader() throws IOException {
+    // JSON Lines has no header
+  }
+
+  @Override
+  public void writeRow(SolrDocument doc) throws IOException {
+    generator.writeStartObject();
+    for (ViewerColumn column : columns) {
+      Object value = doc.getFirstValue(column.getSolrName());
+      generator.writeFieldName(column.getDisplayName());
+      if (value == null) {
+        generator.writeNull();
+      } else if (value instanceof Boolean) {
+        generator.writeBoolean((Boolean) value);
+      } else if (value instanceof Long || value instanceof Integer) {
+        generator.writeNumber(((Number) value).longValue());
+      } else if ((value instanceof Double || value instanceof Float)
+        && !Double.isNaN(((Number) value).doubleValue()) && !Double.isInfinite(((Number) value).doubleValue())) {
+        generator.writeNumber(((Number) value).doubleValue());
+      } else {
+        generator.writeString(formatValue(column, value));
+      }
+    }
+    generator.writeEndObject();
+    generator.writeRaw('\n');
+  }
+
+  @Override
+  public void close() throws IOException {
+    generator.close();
+  }
+}
@@ -0,0 +1,149 @@
+package com.databasepreservation.visualization.server.export;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.solr.common.SolrDocument;
+import org.roda.core.data.exceptions.GenericException;
+
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerColumn;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerTable;
+import com.databasepreservation.visualization.utils.Metrics;
+import com.databasepreservation.visualization.utils.SolrDocumentStream;
+
+/**
+ * Exports rows, read one at a time from Solr, in any of the export formats and
+ * optionally compressed with gzip. The whole result is never kept in memory.
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+public class RowExporter {
+  private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+  private static final Metrics.Family<Metrics.Counter> EXPORTED_BYTES = Metrics.counter("dbvtk_export_bytes_total",
+    "Bytes written by exports (after compression), by format", "format");
+  private static final Metrics.Family<Metrics.Counter> EXPORTED_ROWS = Metrics.counter("dbvtk_export_rows_total",
+    "Rows written by exports, by format", "format");
+
+  private RowExporter() {
+  }
+
+  /**
+   * Writes all the documents in the stream, closing it at the end
+   *
+   * @return the number of exported rows
+   */
+  public static long export(SolrDocumentStream documents, List<ViewerColumn> columns, ExportFormat format,
+    boolean gzip, OutputStream output) throws IOException, GenericException {
+    return export(documents, columns, format, gzip, output, null);
+  }
+
+  /**
+   * Writes all the documents in the stream, closing it at the end. The export
+   * stops (with an InterruptedIOException) if the current thread is
+   * interrupted.
+   *
+   * @param exportedRows
+   *          if not null, it is incremented after each row is written
+   * @return the number of exported rows
+   */
+  public static long export(SolrDocumentStream documents, List<ViewerColumn> columns, ExportFormat format,
+    boolean gzip, OutputStream output, AtomicLong exportedRows) throws IOException, GenericException {
+    CountingOutputStream countingOutput = new CountingOutputStream(output);
+    output = countingOutput;
+    long count = 0;
+    try {
+      GZIPOutputStream gzipOutput = null;
+      if (gzip) {
+        gzipOutput = new GZIPOutputStream(output, GZIP_BUFFER_SIZE);
+        output = gzipOutput;
+      }
+
+      // the writer is also closed if the export fails or is interrupted, so
+      // that it releases its buffers (e.g. the off-heap memory used by arrow)
+      try (RowWriter writer = format.createWriter(output, columns)) {
+        writer.writeHeader();
+        SolrDocument doc;
+        while ((doc = documents.next()) != null) {
+          if (Thread.interrupted()) {
+            throw new InterruptedIOException("Export was interrupted after " + count + " rows");
+          }
+          writer.writeRow(doc);
+          count++;
+          if (exportedRows != null) {
+            exportedRows.incrementAndGet();
+          }
+        }
+      }
+
+      if (gzipOutput != null) {
+        gzipOutput.finish();
+      }
+      output.flush();
+      return count;
+    } finally {
+      IOUtils.closeQuietly(documents);
+      // also counts the exports that failed or were interrupted
+      EXPORTED_BYTES.labels(format.getExtension()).inc(countingOutput.getByteCount());
+      EXPORTED_ROWS.labels(format.getExtension()).inc(count);
+    }
+  }
+
+  public static StreamingOutput streamingOutput(final SolrDocumentStream documents, final List<ViewerColumn> columns,
+    final ExportFormat format, final boolean gzip) {
+    return new StreamingOutput() {
+      @Override
+      public void write(OutputStream output) throws IOException, WebApplicationException {
+        try {
+          export(documents, columns, format, gzip, output);
+        } catch (GenericException e) {
+          throw new WebApplicationException(e);
+        }
+      }
+    };
+  }
+
+  /**
+   * @return the columns of the table with the specified solr names, in the same
+   *         order, or all the columns of the table if no names are specified.
+   *         Unknown fields are exported using the field name as column name.
+   */
+  public static List<ViewerColumn> getColumns(ViewerTable table, List<String> solrNames) {
+    if (solrNames == null || solrNames.isEmpty()) {
+      return new ArrayList<>(table.getColumns());
+    }
+
+    List<ViewerColumn> columns = new ArrayList<>();
+    for (String solrName : solrNames) {
+      ViewerColumn found = null;
+      for (ViewerColumn column : table.getColumns()) {
+        if (solrName.equals(column.getSolrName())) {
+          found = column;
+          break;
+        }
+      }
+      if (found == null) {
+        found = new ViewerColumn();
+        found.setSolrName(solrName);
+        found.setDisplayName(solrName);
+      }
+      columns.add(found);
+    }
+    return columns;
+  }
+
+  public static String getFilename(ViewerTable table, ExportFormat format, boolean gzip) {
+    String name = table.getName().replaceAll("[^\\w.-]", "_") + "." + format.getExtension();
+    return gzip ? name + ".gz" : name;
+  }
+}
@@ -0,0 +1,74 @@
+package com.databasepreservation.visualization.server.export;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.solr.common.SolrDocument;
+
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerColumn;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerType;
+
+/**
+ * Writes rows (as Solr documents) to an output stream, one at a time. Values
+ * are formatted according to the column types.
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+public abstract class RowWriter implements Closeable {
+  private static final String SQL_DATE_TYPE = "DATE";
+
+  protected final List<ViewerColumn> columns;
+
+  protected RowWriter(List<ViewerColumn> columns) {
+    this.columns = columns;
+  }
+
+  /**
+   * Writes anything that must appear before the rows (e.g. column names). Must
+   * be called once, before writing any row.
+   */
+  public abstract void writeHeader() throws IOException;
+
+  public abstract void writeRow(SolrDocument doc) throws IOException;
+
+  /**
+   * Writes any buffered content. Closing the writer does not close the
+   * underlying output stream.
+   */
+  @Override
+  public abstract void close() throws IOException;
+
+  /**
+   * @return the value formatted as string, or null if the value is null
+   */
+  protected static String formatValue(ViewerColumn column, Object value) {
+    if (value == null) {
+      return null;
+    }
+
+    boolean dateOnly = column.getType() != null && ViewerType.dbTypes.DATETIME.equals(column.getType().getDbType())
+      && SQL_DATE_TYPE.equalsIgnoreCase(column.getType().getTypeName());
+
+    if (value instanceof Date) {
+      if (dateOnly) {
+        return ((Date) value).toInstant().atZone(ZoneOffset.UTC).toLocalDate().toString();
+      }
+      return ((Date) value).toInstant().toString();
+    } else if (value instanceof Double || value instanceof Float) {
+      double number = ((Number) value).doubleValue();
+      if (Double.isNaN(number) || Double.isInfinite(number)) {
+        return String.valueOf(number);
+      }
+      // avoid scientific notation
+      return BigDecimal.valueOf(number).toPlainString();
+    } else if (dateOnly && value instanceof String && ((String) value).length() > 10) {
+      // dates are indexed as datetimes at midnight UTC
+      return ((String) value).substring(0, 10);
+    }
+    return value.toString();
+  }
+}
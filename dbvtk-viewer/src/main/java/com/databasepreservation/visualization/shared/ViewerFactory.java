@@ -3,7 +3,10 @@ package com.databasepreservation.visualization.shared;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.databasepreservation.visualization.utils.SolrManager;
+import com.databasepreservation.visualization.exceptions.ViewerException;
+import com.databasepreservation.visualization.server.export.ExportJobService;
+import com.databasepreservation.visualization.utils.IndexBackend;
+import com.databasepreservation.visualization.utils.IndexBackends;
 
 /**
  * @author Bruno Ferreira <bferreira@keep.pt>
@@ -13,19 +16,56 @@ public class ViewerFactory {
 
   // TODO: get this information from somewhere else
   private static final String DEVELOPMENT_SOLR_URL = "http://127.0.0.1:8983/solr/";
+  private static final String SOLR_URL_PROPERTY = "dbvtk.solr.url";
 
-  private static boolean instantiated = false;
-  private static SolrManager solr;
+  private static volatile IndexBackend indexBackend;
+  private static ExportJobService exportJobService;
 
-  private static void instantiate(String solrUrl) {
-    solr = new SolrManager(solrUrl);
-    instantiated = true;
+  /**
+   * Lazily creates the index backend (see IndexBackends) exactly once, even if
+   * it is requested by many threads at the same time. If creating it fails
+   * (e.g. Solr is not reachable yet), nothing is kept and it is tried again in
+   * the next call.
+   */
+  public static IndexBackend getIndexBackend() {
+    IndexBackend backend = indexBackend;
+    if (backend == null) {
+      synchronized (ViewerFactory.class) {
+        backend = indexBackend;
+        if (backend == null) {
+          backend = IndexBackends.fromSystemProperties(System.getProperty(SOLR_URL_PROPERTY, DEVELOPMENT_SOLR_URL));
+          indexBackend = backend;
+        }
+      }
+    }
+    return backend;
+  }
+
+  public static synchronized ExportJobService getExportJobService() {
+    if (exportJobService == null) {
+      exportJobService = new ExportJobService(getIndexBackend());
+    }
+    return exportJobService;
   }
 
-  public static SolrManager getSolrManager() {
-    if (!instantiated) {
-      instantiate(DEVELOPMENT_SOLR_URL);
+  /**
+   * Stops the export jobs and releases the index backend (threads, HTTP
+   * connections and open indexes). Meant to be called when the application is
+   * stopped.
+   */
+  public static synchronized void release() {
+    if (exportJobService != null) {
+      exportJobService.shutdown();
+      exportJobService = null;
+    }
+
+    if (indexBackend != null) {
+      try {
+        indexBackend.freeResources();
+      } catch (ViewerException e) {
+        LOGGER.error("Could not release the index backend resources", e);
+      }
+      indexBackend = null;
     }
-    return solr;
   }
 }
@@ -0,0 +1,88 @@
+package com.databasepreservation.visualization.server.export;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.solr.common.SolrDocument;
+import org.junit.Test;
+
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerColumn;
+import com.databasepreservation.visualization.client.ViewerStructure.ViewerType;
+
+/**
+ * Tests the quoting of CSV values (RFC 4180) and the escaping of TSV values
+ *
+ * @author Bruno Ferreira <bferreira@keep.pt>
+ */
+public class DelimitedRowWriterTest {
+  private static final List<ViewerColumn> COLUMNS = Arrays.asList(column("col1_s", "name"),
+    column("col2_s", "notes"), column("col3_s", "empty"));
+
+  @Test
+  public void testCsvPlainValues() throws IOException {
+    assertEquals("name,notes,empty\r\nplain,value,\r\n", write(DelimitedRowWriter.CSV_SEPARATOR, "plain", "value"));
+  }
+
+  @Test
+  public void testCsvQuoting() throws IOException {
+    assertEquals("name,notes,empty\r\n\"a,b\",\"say \"\"hi\"\"\",\r\n",
+      write(DelimitedRowWriter.CSV_SEPARATOR, "a,b", "say \"hi\""));
+    assertEquals("name,notes,empty\r\n\"line\nbreak\",\"carriage\rreturn\",\r\n",
+      write(DelimitedRowWriter.CSV_SEPARATOR, "line\nbreak", "carriage\rreturn"));
+  }
+
+  @Test
+  public void testCsvDoesNotQuoteTabs() throws IOException {
+    assertEquals("name,notes,empty\r\na\tb,,\r\n", write(DelimitedRowWriter.CSV_SEPARATOR, "a\tb", null));
+  }
+
+  @Test
+  public void testTsvEscaping() throws IOException {
+    assertEquals("name\tnotes\tempty\r\na\\tb\tc\\\\d\t\r\n",
+      write(DelimitedRowWriter.TSV_SEPARATOR, "a\tb", "c\\d"));
+    assertEquals("name\tnotes\tempty\r\nline\\nbreak\tcarriage\\rreturn\t\r\n",
+      write(DelimitedRowWriter.TSV_SEPARATOR, "line\nbreak", "carriage\rreturn"));
+  }
+
+  @Test
+  public void testTsvDoesNotQuote() throws IOException {
+    assertEquals("name\tnotes\tempty\r\na,b\tsay \"hi\"\t\r\n",
+      write(DelimitedRowWriter.TSV_SEPARATOR, "a,b", "say \"hi\""));
+  }
+
+  /**
+   * Writes the header and a row with the given values for the first two
+   * columns (the third is always missing)
+   */
+  private static String write(char separator, String first, String second) throws IOException {
+    SolrDocument doc = new SolrDocument();
+    doc.setField("col1_s", first);
+    if (second != null) {
+      doc.setField("col2_s", second);
+    }
+
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    try (DelimitedRowWriter writer = new DelimitedRowWriter(output, COLUMNS, separator)) {
+      writer.writeHeader();
+      writer.writeRow(doc);
+    }
+    return new String(output.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  private static ViewerColumn column(String solrName, String displayName) {
+    ViewerType type = new ViewerType();
+    type.setDbType(ViewerType.dbTypes.STRING);
+    type.setTypeName("VARCHAR");
+
+    ViewerColumn column = new ViewerColumn();
+    column.setSolrName(solrName);
+    column.setDisplayName(displayName);
+    column.setType(type);
+    return column;
+  }
+}